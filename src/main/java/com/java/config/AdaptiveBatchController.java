@@ -0,0 +1,161 @@
+package com.java.config;
+
+import com.java.exception.ImportException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Адаптивный размер батча импорта.
+ * <p>
+ * После каждого записанного батча решение принимается по заполненности heap,
+ * доле времени GC за интервал и задержке записи одной строки:
+ * <ul>
+ *     <li>heap выше порога или GC занимает больше 15% времени — батч уменьшается вдвое;</li>
+ *     <li>задержка строки выросла более чем вдвое от лучшей — батч уменьшается на четверть;</li>
+ *     <li>heap ниже 70% порога, GC меньше 5% и задержка не растёт — батч увеличивается в 1.5 раза.</li>
+ * </ul>
+ * При критической заполненности heap чтение файла приостанавливается в {@link #awaitHeadroom}
+ * до освобождения памяти, отмены импорта или истечения времени ожидания.
+ */
+@Slf4j
+public class AdaptiveBatchController {
+
+    private static final double GC_SHRINK_RATIO = 0.15;
+    private static final double GC_GROW_RATIO = 0.05;
+    private static final double LATENCY_SHRINK_FACTOR = 2.0;
+    private static final double LATENCY_GROW_FACTOR = 1.2;
+    private static final long HEADROOM_POLL_MILLIS = 500;
+    private static final long HEADROOM_WARN_INTERVAL_MILLIS = 30_000;
+
+    private final MemoryMonitor memoryMonitor;
+    private final String name;
+    private final int minSize;
+    private final int maxSize;
+    private final boolean adaptive;
+    private final long maxWaitMillis;
+
+    private volatile int batchSize;
+    private volatile String lastDecision;
+
+    private double bestNanosPerRow = Double.MAX_VALUE;
+    private long lastGcMillis;
+    private long lastSampleNanos;
+
+    AdaptiveBatchController(MemoryMonitor memoryMonitor, String name,
+                            int initialSize, int minSize, int maxSize, boolean adaptive, long maxWaitMillis) {
+        this.memoryMonitor = memoryMonitor;
+        this.name = name;
+        this.minSize = Math.min(minSize, initialSize);
+        this.maxSize = Math.max(maxSize, initialSize);
+        this.adaptive = adaptive;
+        this.maxWaitMillis = maxWaitMillis;
+        this.batchSize = initialSize;
+        this.lastDecision = (adaptive ? "Начальный размер батча " : "Фиксированный размер батча ") + initialSize;
+        this.lastGcMillis = memoryMonitor.getTotalGcTimeMillis();
+        this.lastSampleNanos = System.nanoTime();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public String getLastDecision() {
+        return lastDecision;
+    }
+
+    /**
+     * Учитывает записанный батч и при необходимости меняет размер следующих
+     *
+     * @param rows          строк в батче
+     * @param elapsedNanos  время записи батча
+     */
+    public synchronized void onBatchCompleted(int rows, long elapsedNanos) {
+        if (!adaptive || rows == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long gcMillis = memoryMonitor.getTotalGcTimeMillis();
+        long wallMillis = Math.max(1, (now - lastSampleNanos) / 1_000_000);
+        double gcRatio = (double) (gcMillis - lastGcMillis) / wallMillis;
+        lastGcMillis = gcMillis;
+        lastSampleNanos = now;
+
+        double nanosPerRow = (double) elapsedNanos / rows;
+        bestNanosPerRow = Math.min(bestNanosPerRow, nanosPerRow);
+        double heap = memoryMonitor.getHeapUsage();
+        double highWater = memoryMonitor.getHighWaterMark();
+
+        int current = batchSize;
+        int next = current;
+        String reason = null;
+
+        if (heap > highWater) {
+            next = Math.max(minSize, current / 2);
+            reason = String.format("heap %.0f%% выше порога %.0f%%", heap * 100, highWater * 100);
+        } else if (gcRatio > GC_SHRINK_RATIO) {
+            next = Math.max(minSize, current / 2);
+            reason = String.format("GC %.0f%% времени", gcRatio * 100);
+        } else if (nanosPerRow > bestNanosPerRow * LATENCY_SHRINK_FACTOR) {
+            next = Math.max(minSize, current * 3 / 4);
+            reason = String.format("задержка %.1f мкс/строка при лучшей %.1f",
+                    nanosPerRow / 1000, bestNanosPerRow / 1000);
+        } else if (heap < highWater * 0.7 && gcRatio < GC_GROW_RATIO
+                && nanosPerRow <= bestNanosPerRow * LATENCY_GROW_FACTOR) {
+            next = Math.min(maxSize, current + current / 2);
+            reason = String.format("запас памяти: heap %.0f%%, GC %.0f%%", heap * 100, gcRatio * 100);
+        }
+
+        if (next != current) {
+            batchSize = next;
+            lastDecision = String.format("Батч %d → %d: %s", current, next, reason);
+            log.info("[{}] {}", name, lastDecision);
+        }
+    }
+
+    /**
+     * Приостанавливает чтение, пока заполненность heap критическая. Каждые 30 с пишется
+     * предупреждение, а текущее решение, видимое в прогрессе импорта, показывает время ожидания.
+     * Ожидание ограничено: если память удерживает сам импорт (накопленный батч, книга XLSX),
+     * она не освободится, а импорт держал бы воркер, соединение с БД и статус PROCESSING.
+     * Прервать ожидание можно отменой импорта.
+     *
+     * @throws ImportException если heap не освободился за import.adaptive-batch.headroom-max-wait-seconds
+     */
+    public void awaitHeadroom(BooleanSupplier cancelled) throws InterruptedException {
+        if (memoryMonitor.getHeapUsage() <= memoryMonitor.getCriticalMark()) {
+            return;
+        }
+
+        synchronized (this) {
+            int current = batchSize;
+            batchSize = minSize;
+            lastDecision = String.format("Батч %d → %d: критическая заполненность heap, чтение приостановлено",
+                    current, minSize);
+            log.warn("[{}] {}", name, lastDecision);
+        }
+
+        System.gc();
+        long waited = 0;
+        while (memoryMonitor.getHeapUsage() > memoryMonitor.getCriticalMark() && !cancelled.getAsBoolean()) {
+            if (waited >= maxWaitMillis) {
+                String reason = String.format("heap %.0f%% выше критического порога %.0f%% дольше %d с",
+                        memoryMonitor.getHeapUsage() * 100, memoryMonitor.getCriticalMark() * 100, waited / 1000);
+                lastDecision = "Чтение остановлено: " + reason;
+                log.error("[{}] {}", name, lastDecision);
+                throw new ImportException("Недостаточно памяти для продолжения импорта: " + reason);
+            }
+            Thread.sleep(HEADROOM_POLL_MILLIS);
+            waited += HEADROOM_POLL_MILLIS;
+            if (waited % HEADROOM_WARN_INTERVAL_MILLIS == 0) {
+                lastDecision = String.format("Чтение приостановлено %d с: heap %.0f%% выше критического порога %.0f%%",
+                        waited / 1000, memoryMonitor.getHeapUsage() * 100, memoryMonitor.getCriticalMark() * 100);
+                log.warn("[{}] {}", name, lastDecision);
+            }
+        }
+        if (waited >= HEADROOM_WARN_INTERVAL_MILLIS) {
+            log.info("[{}] Чтение возобновлено после {} с ожидания памяти", name, waited / 1000);
+        }
+    }
+}
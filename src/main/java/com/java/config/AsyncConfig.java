@@ -56,7 +56,9 @@ public class AsyncConfig {
         executor.setMaxPoolSize(Math.max(1, importMaxPoolSize));
         executor.setQueueCapacity(Math.max(0, importQueueCapacity));
         executor.setThreadNamePrefix(importThreadNamePrefix != null ? importThreadNamePrefix : "ImportExecutor-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // Пул только анализирует файлы, импорт выполняет ImportJobScheduler.
+        // При переполнении отказываем, а не выполняем анализ в HTTP-потоке
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
@@ -107,6 +109,23 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * Пул потоков записи листов XLSX. Без очереди: если свободного потока нет,
+     * лист пишется в потоке экспорта
+     */
+    @Bean(name = "xlsxSheetExecutor")
+    public Executor xlsxSheetExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("XlsxSheet-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        return executor;
+    }
+
     /**
      * Пул потоков для утилит (долгосрочные операции)
      */
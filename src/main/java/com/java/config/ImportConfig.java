@@ -8,6 +8,7 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.java.mapper.FileMetadataMapper;
 import com.java.mapper.ExportTemplateMapper;
 import com.java.mapper.ExportSessionMapper;
+import com.java.model.enums.PersistenceEngine;
 import jakarta.annotation.PostConstruct;
 
 /**
@@ -28,6 +29,42 @@ public class ImportConfig {
     @Value("${import.timeout-minutes:60}")
     private int timeoutMinutes;
 
+    @Value("${import.xlsx.streaming-enabled:true}")
+    private boolean xlsxStreamingEnabled;
+
+    @Value("${import.persistence.engine:BATCH_INSERT}")
+    private PersistenceEngine persistenceEngine;
+
+    @Value("${import.checkpoint.enabled:false}")
+    private boolean checkpointEnabled;
+
+    @Value("${import.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+
+    @Value("${import.pipeline.transform-workers:0}")
+    private int pipelineWorkers;
+
+    @Value("${import.pipeline.queue-capacity:8}")
+    private int pipelineQueueCapacity;
+
+    @Value("${import.adaptive-batch.enabled:true}")
+    private boolean adaptiveBatchEnabled;
+
+    @Value("${import.adaptive-batch.min-size:100}")
+    private int adaptiveBatchMinSize;
+
+    @Value("${import.adaptive-batch.max-size:5000}")
+    private int adaptiveBatchMaxSize;
+
+    @Value("${import.adaptive-batch.headroom-max-wait-seconds:300}")
+    private int headroomMaxWaitSeconds;
+
+    @Value("${import.errors.sample-per-type:100}")
+    private int errorSamplePerType;
+
+    @Value("${import.errors.flush-size:1000}")
+    private int errorFlushSize;
+
     @Bean
     public ImportSettings importSettings() {
         return ImportSettings.builder()
@@ -35,6 +72,18 @@ public class ImportConfig {
                 .maxMemoryPercentage(maxMemoryPercentage)
                 .sampleRows(sampleRows)
                 .timeoutMinutes(timeoutMinutes)
+                .xlsxStreamingEnabled(xlsxStreamingEnabled)
+                .persistenceEngine(persistenceEngine)
+                .checkpointEnabled(checkpointEnabled)
+                .pipelineEnabled(pipelineEnabled)
+                .pipelineWorkers(pipelineWorkers)
+                .pipelineQueueCapacity(pipelineQueueCapacity)
+                .adaptiveBatchEnabled(adaptiveBatchEnabled)
+                .adaptiveBatchMinSize(adaptiveBatchMinSize)
+                .adaptiveBatchMaxSize(adaptiveBatchMaxSize)
+                .headroomMaxWaitSeconds(headroomMaxWaitSeconds)
+                .errorSamplePerType(errorSamplePerType)
+                .errorFlushSize(errorFlushSize)
                 .build();
     }
 
@@ -62,13 +111,41 @@ public class ImportConfig {
         private final int maxMemoryPercentage;
         private final int sampleRows;
         private final int timeoutMinutes;
+        private final boolean xlsxStreamingEnabled;
+        private final PersistenceEngine persistenceEngine;
+        private final boolean checkpointEnabled;
+        private final boolean pipelineEnabled;
+        private final int pipelineWorkers;
+        private final int pipelineQueueCapacity;
+        private final boolean adaptiveBatchEnabled;
+        private final int adaptiveBatchMinSize;
+        private final int adaptiveBatchMaxSize;
+        private final int headroomMaxWaitSeconds;
+        private final int errorSamplePerType;
+        private final int errorFlushSize;
 
         private ImportSettings(int batchSize, int maxMemoryPercentage,
-                               int sampleRows, int timeoutMinutes) {
+                               int sampleRows, int timeoutMinutes,
+                               boolean xlsxStreamingEnabled, PersistenceEngine persistenceEngine,
+                               boolean checkpointEnabled, boolean pipelineEnabled, int pipelineWorkers, int pipelineQueueCapacity,
+                               boolean adaptiveBatchEnabled, int adaptiveBatchMinSize, int adaptiveBatchMaxSize,
+                               int headroomMaxWaitSeconds, int errorSamplePerType, int errorFlushSize) {
             this.batchSize = batchSize;
             this.maxMemoryPercentage = maxMemoryPercentage;
             this.sampleRows = sampleRows;
             this.timeoutMinutes = timeoutMinutes;
+            this.xlsxStreamingEnabled = xlsxStreamingEnabled;
+            this.persistenceEngine = persistenceEngine;
+            this.checkpointEnabled = checkpointEnabled;
+            this.pipelineEnabled = pipelineEnabled;
+            this.pipelineWorkers = pipelineWorkers;
+            this.pipelineQueueCapacity = pipelineQueueCapacity;
+            this.adaptiveBatchEnabled = adaptiveBatchEnabled;
+            this.adaptiveBatchMinSize = adaptiveBatchMinSize;
+            this.adaptiveBatchMaxSize = adaptiveBatchMaxSize;
+            this.headroomMaxWaitSeconds = headroomMaxWaitSeconds;
+            this.errorSamplePerType = errorSamplePerType;
+            this.errorFlushSize = errorFlushSize;
         }
 
         public static ImportSettingsBuilder builder() {
@@ -80,6 +157,25 @@ public class ImportConfig {
         public int getMaxMemoryPercentage() { return maxMemoryPercentage; }
         public int getSampleRows() { return sampleRows; }
         public int getTimeoutMinutes() { return timeoutMinutes; }
+        public boolean isXlsxStreamingEnabled() { return xlsxStreamingEnabled; }
+        public PersistenceEngine getPersistenceEngine() { return persistenceEngine; }
+        public boolean isCheckpointEnabled() { return checkpointEnabled; }
+        public boolean isPipelineEnabled() { return pipelineEnabled; }
+        public int getPipelineQueueCapacity() { return pipelineQueueCapacity; }
+        public boolean isAdaptiveBatchEnabled() { return adaptiveBatchEnabled; }
+        public int getAdaptiveBatchMinSize() { return adaptiveBatchMinSize; }
+        public int getAdaptiveBatchMaxSize() { return adaptiveBatchMaxSize; }
+        public int getHeadroomMaxWaitSeconds() { return headroomMaxWaitSeconds; }
+        public int getErrorSamplePerType() { return errorSamplePerType; }
+        public int getErrorFlushSize() { return errorFlushSize; }
+
+        /**
+         * Количество потоков трансформации; 0 — по числу ядер минус поток чтения
+         */
+        public int getPipelineWorkers() {
+            if (pipelineWorkers > 0) return pipelineWorkers;
+            return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        }
 
         public long getMaxMemoryBytes() {
             Runtime runtime = Runtime.getRuntime();
@@ -92,6 +188,18 @@ public class ImportConfig {
             private int maxMemoryPercentage = 60;
             private int sampleRows = 100;
             private int timeoutMinutes = 60;
+            private boolean xlsxStreamingEnabled = true;
+            private PersistenceEngine persistenceEngine = PersistenceEngine.BATCH_INSERT;
+            private boolean checkpointEnabled = false;
+            private boolean pipelineEnabled = false;
+            private int pipelineWorkers = 0;
+            private int pipelineQueueCapacity = 8;
+            private boolean adaptiveBatchEnabled = true;
+            private int adaptiveBatchMinSize = 100;
+            private int adaptiveBatchMaxSize = 5000;
+            private int headroomMaxWaitSeconds = 300;
+            private int errorSamplePerType = 100;
+            private int errorFlushSize = 1000;
 
             public ImportSettingsBuilder batchSize(int batchSize) {
                 this.batchSize = batchSize;
@@ -113,9 +221,72 @@ public class ImportConfig {
                 return this;
             }
 
+            public ImportSettingsBuilder xlsxStreamingEnabled(boolean enabled) {
+                this.xlsxStreamingEnabled = enabled;
+                return this;
+            }
+
+            public ImportSettingsBuilder persistenceEngine(PersistenceEngine engine) {
+                this.persistenceEngine = engine;
+                return this;
+            }
+
+            public ImportSettingsBuilder checkpointEnabled(boolean enabled) {
+                this.checkpointEnabled = enabled;
+                return this;
+            }
+
+            public ImportSettingsBuilder pipelineEnabled(boolean enabled) {
+                this.pipelineEnabled = enabled;
+                return this;
+            }
+
+            public ImportSettingsBuilder pipelineWorkers(int workers) {
+                this.pipelineWorkers = workers;
+                return this;
+            }
+
+            public ImportSettingsBuilder pipelineQueueCapacity(int capacity) {
+                this.pipelineQueueCapacity = capacity;
+                return this;
+            }
+
+            public ImportSettingsBuilder adaptiveBatchEnabled(boolean enabled) {
+                this.adaptiveBatchEnabled = enabled;
+                return this;
+            }
+
+            public ImportSettingsBuilder adaptiveBatchMinSize(int size) {
+                this.adaptiveBatchMinSize = size;
+                return this;
+            }
+
+            public ImportSettingsBuilder adaptiveBatchMaxSize(int size) {
+                this.adaptiveBatchMaxSize = size;
+                return this;
+            }
+
+            public ImportSettingsBuilder headroomMaxWaitSeconds(int seconds) {
+                this.headroomMaxWaitSeconds = seconds;
+                return this;
+            }
+
+            public ImportSettingsBuilder errorSamplePerType(int count) {
+                this.errorSamplePerType = count;
+                return this;
+            }
+
+            public ImportSettingsBuilder errorFlushSize(int size) {
+                this.errorFlushSize = size;
+                return this;
+            }
+
             public ImportSettings build() {
                 return new ImportSettings(batchSize, maxMemoryPercentage,
-                        sampleRows, timeoutMinutes);
+                        sampleRows, timeoutMinutes, xlsxStreamingEnabled, persistenceEngine,
+                        checkpointEnabled, pipelineEnabled, pipelineWorkers, pipelineQueueCapacity,
+                        adaptiveBatchEnabled, adaptiveBatchMinSize, adaptiveBatchMaxSize,
+                        headroomMaxWaitSeconds, errorSamplePerType, errorFlushSize);
             }
         }
     }
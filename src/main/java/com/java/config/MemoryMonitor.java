@@ -1,41 +1,145 @@
 package com.java.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * Монитор использования памяти для контроля ресурсов при импорте
+ * Монитор использования памяти для контроля ресурсов при импорте и экспорте.
+ * <p>
+ * Порог заполненности heap задаётся import.max-memory-percentage; критический порог —
+ * посередине между ним и 100%. Для каждой сессии импорта создаётся
+ * {@link AdaptiveBatchController}, размер окна SXSSF экспорта подбирается при создании книги
+ * (отключается отдельно от импорта — export.adaptive-window.enabled).
  */
 @Component
 @Slf4j
 public class MemoryMonitor {
 
+    private static final int MIN_EXPORT_WINDOW = 100;
+
     private final ImportConfig.ImportSettings importSettings;
+    private final boolean adaptiveExportWindow;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final Map<Long, AdaptiveBatchController> importControllers = new ConcurrentHashMap<>();
+    private volatile String lastExportDecision;
 
-    public MemoryMonitor(ImportConfig.ImportSettings importSettings) {
+    public MemoryMonitor(ImportConfig.ImportSettings importSettings,
+                         @Value("${export.adaptive-window.enabled:true}") boolean adaptiveExportWindow) {
         this.importSettings = importSettings;
+        this.adaptiveExportWindow = adaptiveExportWindow;
     }
 
     /**
      * Проверяет доступность памяти для операции
      */
     public boolean isMemoryAvailable() {
-        Runtime runtime = Runtime.getRuntime();
-        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
-        long maxMemory = runtime.maxMemory();
-        long availableMemory = maxMemory - usedMemory;
-
-        // УЖЕСТОЧАЕМ проверку для домашнего ПК
-        long threshold = maxMemory / 2; // 50% вместо текущих настроек
-
-        if (availableMemory < threshold) {
-            log.warn("Низкий уровень памяти: {}MB свободно из {}MB",
-                    availableMemory / (1024 * 1024), maxMemory / (1024 * 1024));
+        double usage = getHeapUsage();
+        if (usage > getHighWaterMark()) {
+            MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+            log.warn("Низкий уровень памяти: занято {}MB из {}MB ({}%)",
+                    heap.getUsed() / (1024 * 1024), maxHeap(heap) / (1024 * 1024), Math.round(usage * 100));
             return false;
         }
         return true;
     }
 
+    /**
+     * Доля занятого heap от максимального (0..1)
+     */
+    public double getHeapUsage() {
+        MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+        return (double) heap.getUsed() / maxHeap(heap);
+    }
+
+    /**
+     * Суммарное время сборок мусора с запуска JVM
+     */
+    public long getTotalGcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : gcBeans) {
+            long time = gc.getCollectionTime();
+            if (time > 0) total += time;
+        }
+        return total;
+    }
+
+    public double getHighWaterMark() {
+        return importSettings.getMaxMemoryPercentage() / 100.0;
+    }
+
+    public double getCriticalMark() {
+        double high = getHighWaterMark();
+        return high + (1 - high) / 2;
+    }
+
+    /**
+     * Создаёт контроллер размера батча для сессии импорта
+     */
+    public AdaptiveBatchController startImportBatching(Long sessionId) {
+        int configured = importSettings.getBatchSize();
+        AdaptiveBatchController controller = new AdaptiveBatchController(this, "Импорт " + sessionId,
+                configured,
+                importSettings.getAdaptiveBatchMinSize(),
+                importSettings.getAdaptiveBatchMaxSize(),
+                importSettings.isAdaptiveBatchEnabled(),
+                importSettings.getHeadroomMaxWaitSeconds() * 1000L);
+        importControllers.put(sessionId, controller);
+        return controller;
+    }
+
+    public Optional<AdaptiveBatchController> findImportBatching(Long sessionId) {
+        return Optional.ofNullable(importControllers.get(sessionId));
+    }
+
+    public void stopImportBatching(Long sessionId) {
+        importControllers.remove(sessionId);
+    }
+
+    /**
+     * Размер окна строк SXSSF в памяти: настроенный при запасе памяти,
+     * пропорционально меньше при заполненности heap выше порога
+     */
+    public int recommendExportWindow(int configured) {
+        if (!adaptiveExportWindow) {
+            return configured;
+        }
+        double usage = getHeapUsage();
+        double high = getHighWaterMark();
+        int window = configured;
+        if (usage > high) {
+            double headroom = Math.max(0, (1 - usage) / (1 - high));
+            window = Math.max(Math.min(MIN_EXPORT_WINDOW, configured), (int) (configured * headroom));
+        }
+        lastExportDecision = window == configured
+                ? String.format("Окно SXSSF %d (heap %.0f%%)", window, usage * 100)
+                : String.format("Окно SXSSF %d → %d: heap %.0f%% выше порога %.0f%%",
+                        configured, window, usage * 100, high * 100);
+        if (window != configured) {
+            log.info(lastExportDecision);
+        }
+        return window;
+    }
+
+    public String getLastExportDecision() {
+        return lastExportDecision;
+    }
+
+    private long maxHeap(MemoryUsage heap) {
+        return heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+    }
+
     /**
      * Получает информацию об использовании памяти
      */
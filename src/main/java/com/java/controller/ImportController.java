@@ -272,6 +272,7 @@ public class ImportController {
                 .ifPresent(session -> {
                     model.addAttribute("importSession", session);
                     model.addAttribute("templateName", session.getTemplate().getName());
+                    model.addAttribute("resumable", asyncImportService.isResumable(session.getId()));
                 });
 
         model.addAttribute("operation", operation);
@@ -289,6 +290,28 @@ public class ImportController {
         return "operations/status";
     }
 
+    /**
+     * Продолжение прерванного импорта с контрольной точки
+     */
+    @PostMapping("/resume/{operationId}")
+    public String resumeImport(@PathVariable Long operationId,
+                               RedirectAttributes redirectAttributes) {
+        log.debug("POST запрос на продолжение импорта для операции ID: {}", operationId);
+
+        try {
+            ImportSession session = sessionRepository.findByFileOperationId(operationId)
+                    .orElseThrow(() -> new IllegalArgumentException("Сессия импорта не найдена"));
+            asyncImportService.resumeImport(session.getId());
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Импорт продолжен со строки " + (session.getCheckpointRow() + 1));
+        } catch (Exception e) {
+            log.error("Ошибка продолжения импорта", e);
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/import/status/" + operationId;
+    }
+
     /**
      * API endpoint для отмены импорта
      */
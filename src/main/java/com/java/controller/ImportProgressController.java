@@ -4,6 +4,7 @@ import com.java.dto.ImportProgressDto;
 import com.java.dto.ImportSessionDto;
 import com.java.mapper.ImportSessionMapper;
 import com.java.repository.ImportSessionRepository;
+import com.java.service.imports.ImportJobScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
@@ -24,6 +25,7 @@ public class ImportProgressController {
 
     private final ImportSessionRepository sessionRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ImportJobScheduler jobScheduler;
 
     /**
      * REST endpoint - получение текущего статуса импорта
@@ -54,10 +56,23 @@ public class ImportProgressController {
                         .errorRows(session.getErrorRows())
                         .progressPercentage(session.getProgressPercentage())
                         .isCompleted(isCompleted(session.getStatus()))
+                        .queuePosition(jobScheduler.getQueuePosition(session.getId()))
                         .build())
                 .orElse(null);
     }
 
+    /**
+     * REST endpoint - состояние очереди импортов для операции
+     */
+    @GetMapping("/queue/operation/{operationId}")
+    public ImportQueueDto getQueuePosition(@PathVariable Long operationId) {
+        Integer position = sessionRepository.findByFileOperationId(operationId)
+                .map(session -> jobScheduler.getQueuePosition(session.getId()))
+                .orElse(null);
+        return new ImportQueueDto(position, jobScheduler.getQueuedCount(),
+                jobScheduler.getRunningCount(), jobScheduler.getMaxConcurrent());
+    }
+
     /**
      * WebSocket endpoint - подписка на обновления конкретной операции
      * Клиент отправляет: SUBSCRIBE /topic/import-progress/{operationId}
@@ -108,4 +123,14 @@ public class ImportProgressController {
                 status == com.java.model.enums.ImportStatus.FAILED ||
                 status == com.java.model.enums.ImportStatus.CANCELLED;
     }
-}
\ No newline at end of file
+
+    /**
+     * Состояние очереди импортов
+     *
+     * @param position      позиция операции в очереди или null, если она не ждёт запуска
+     * @param queued        всего заданий в очереди
+     * @param running       выполняется сейчас
+     * @param maxConcurrent предел одновременных импортов
+     */
+    public record ImportQueueDto(Integer position, int queued, int running, int maxConcurrent) {}
+}
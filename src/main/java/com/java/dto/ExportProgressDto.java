@@ -22,6 +22,10 @@ public class ExportProgressDto {
     private String estimatedTimeRemaining;
     private Boolean isCompleted;
 
+    // Заполненность heap и последнее решение по окну SXSSF
+    private Integer memoryUsagePercent;
+    private String memoryDecision;
+
     // Для WebSocket обновлений
     private String updateType; // PROGRESS, STATUS_CHANGE, ERROR, COMPLETED
     private String message;
@@ -43,6 +43,14 @@ public class ExportRequestDto {
     @Builder.Default
     private Integer maxReportAgeDays = 3;
 
+    // Дельта-выгрузка: только строки, добавленные после последней дельта-выгрузки шаблона
+    @Builder.Default
+    private Boolean deltaMode = false;
+
+    // Дописать строки предыдущего файла дельта-выгрузки после новых (только CSV)
+    @Builder.Default
+    private Boolean mergeWithPrevious = false;
+
     @Builder.Default
     private Boolean asyncMode = true;
 }
\ No newline at end of file
@@ -23,6 +23,21 @@ public class ImportProgressDto {
     private String estimatedTimeRemaining;
     private Boolean isCompleted;
 
+    // Позиция в очереди импортов (null, если импорт не в очереди)
+    private Integer queuePosition;
+
+    // Метрики стадий конвейерного импорта (null в последовательном режиме)
+    private Double readRowsPerSecond;
+    private Double transformRowsPerSecond;
+    private Double persistRowsPerSecond;
+    private Integer transformQueueDepth;
+    private Integer persistQueueDepth;
+
+    // Адаптивный размер батча: текущее значение, заполненность heap и последнее решение
+    private Integer batchSize;
+    private Integer memoryUsagePercent;
+    private String memoryDecision;
+
     // Для WebSocket обновлений
     private String updateType; // PROGRESS, STATUS_CHANGE, ERROR, COMPLETED
     private String message;
@@ -1,5 +1,6 @@
 package com.java.dto;
 
+import com.java.model.enums.ImportReadMode;
 import com.java.model.enums.ImportStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -31,4 +32,7 @@ public class ImportSessionDto {
     private Integer progressPercentage;
     private String estimatedTimeRemaining;
     private Boolean isCancelled;
+    private ImportReadMode readMode;
+    private Long checkpointRow;
+    private ZonedDateTime checkpointAt;
 }
\ No newline at end of file
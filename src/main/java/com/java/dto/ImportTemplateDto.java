@@ -4,6 +4,7 @@ import com.java.model.enums.DataSourceType;
 import com.java.model.enums.DuplicateStrategy;
 import com.java.model.enums.EntityType;
 import com.java.model.enums.ErrorStrategy;
+import com.java.model.enums.PersistenceEngine;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -46,6 +47,8 @@ public class ImportTemplateDto {
     @Builder.Default
     private ErrorStrategy errorStrategy = ErrorStrategy.CONTINUE_ON_ERROR;
 
+    private PersistenceEngine persistenceEngine;
+
     private String fileType;
 
     private String delimiter;
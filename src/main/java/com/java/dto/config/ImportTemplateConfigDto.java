@@ -22,6 +22,7 @@ public class ImportTemplateConfigDto {
     private String dataSourceType;
     private String duplicateStrategy;
     private String errorStrategy;
+    private String persistenceEngine;
     private String fileType;
     private String delimiter;
     private String encoding;
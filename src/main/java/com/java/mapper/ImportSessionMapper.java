@@ -44,6 +44,9 @@ public class ImportSessionMapper {
                 .completedAt(entity.getCompletedAt())
                 .progressPercentage(entity.getProgressPercentage())
                 .isCancelled(entity.getIsCancelled())
+                .readMode(entity.getReadMode())
+                .checkpointRow(entity.getCheckpointRow())
+                .checkpointAt(entity.getCheckpointAt())
                 .build();
 
         // Вычисляем оставшееся время
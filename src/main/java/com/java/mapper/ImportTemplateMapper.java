@@ -34,6 +34,7 @@ public class ImportTemplateMapper {
                 .dataSourceType(entity.getDataSourceType())
                 .duplicateStrategy(entity.getDuplicateStrategy())
                 .errorStrategy(entity.getErrorStrategy())
+                .persistenceEngine(entity.getPersistenceEngine())
                 .fileType(entity.getFileType())
                 .delimiter(entity.getDelimiter())
                 .encoding(entity.getEncoding())
@@ -62,6 +63,7 @@ public class ImportTemplateMapper {
                 .dataSourceType(dto.getDataSourceType())
                 .duplicateStrategy(dto.getDuplicateStrategy())
                 .errorStrategy(dto.getErrorStrategy())
+                .persistenceEngine(dto.getPersistenceEngine())
                 .fileType(dto.getFileType())
                 .delimiter(dto.getDelimiter())
                 .encoding(dto.getEncoding())
@@ -92,6 +94,7 @@ public class ImportTemplateMapper {
         entity.setDataSourceType(dto.getDataSourceType());
         entity.setDuplicateStrategy(dto.getDuplicateStrategy());
         entity.setErrorStrategy(dto.getErrorStrategy());
+        entity.setPersistenceEngine(dto.getPersistenceEngine());
         entity.setFileType(dto.getFileType());
         entity.setDelimiter(dto.getDelimiter());
         entity.setEncoding(dto.getEncoding());
@@ -71,6 +71,26 @@ public class ExportSession {
     @Column(name = "file_size")
     private Long fileSize;
 
+    // Отметка дельта-выгрузки: created_at и id последней выгруженной строки
+    @Column(name = "high_water_created_at")
+    private ZonedDateTime highWaterCreatedAt;
+
+    @Column(name = "high_water_id")
+    private Long highWaterId;
+
+    // Формат CSV файла дельта-выгрузки: в нём файл читается при объединении со следующей
+    @Column(name = "csv_delimiter")
+    private String csvDelimiter;
+
+    @Column(name = "csv_quote_char")
+    private String csvQuoteChar;
+
+    @Column(name = "csv_encoding")
+    private String csvEncoding;
+
+    @Column(name = "csv_include_header")
+    private Boolean csvIncludeHeader;
+
     @CreationTimestamp
     @Column(name = "started_at", updatable = false)
     private ZonedDateTime startedAt;
@@ -1,6 +1,7 @@
 package com.java.model.entity;
 
 import com.java.model.FileOperation;
+import com.java.model.enums.ImportReadMode;
 import com.java.model.enums.ImportStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -78,6 +80,33 @@ public class ImportSession {
     @Builder.Default
     private Boolean isEstimated = false;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "read_mode")
+    private ImportReadMode readMode;
+
+    // Контрольная точка: номер последней зафиксированной строки файла
+    @Column(name = "checkpoint_row")
+    private Long checkpointRow;
+
+    // Байтовая позиция начала следующей записи (только CSV)
+    @Column(name = "checkpoint_byte_offset")
+    private Long checkpointByteOffset;
+
+    @Column(name = "checkpoint_at")
+    private ZonedDateTime checkpointAt;
+
+    @Column(name = "queued_at")
+    private ZonedDateTime queuedAt;
+
+    // Экземпляр приложения, который ставит импорт в очередь и выполняет его
+    @Column(name = "owner_instance")
+    private String ownerInstance;
+
+    // Время последнего сохранения сессии: по нему дельта-выгрузка отличает зависшие импорты
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private ZonedDateTime updatedAt;
+
     @OneToMany(mappedBy = "importSession", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<ImportError> errors = new ArrayList<>();
@@ -5,6 +5,7 @@ import com.java.model.enums.DataSourceType;
 import com.java.model.enums.DuplicateStrategy;
 import com.java.model.enums.EntityType;
 import com.java.model.enums.ErrorStrategy;
+import com.java.model.enums.PersistenceEngine;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -63,6 +64,10 @@ public class ImportTemplate {
     @Builder.Default
     private ErrorStrategy errorStrategy = ErrorStrategy.CONTINUE_ON_ERROR;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "persistence_engine")
+    private PersistenceEngine persistenceEngine; // null — глобальная настройка
+
     @Column(name = "file_type")
     private String fileType; // CSV, XLSX, etc.
 
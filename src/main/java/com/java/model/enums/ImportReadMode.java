@@ -0,0 +1,20 @@
+package com.java.model.enums;
+
+/**
+ * Режим чтения файла при импорте
+ */
+public enum ImportReadMode {
+    CSV_STREAM("Потоковое чтение CSV"),
+    XLSX_STREAM("Потоковое чтение XLSX (SAX)"),
+    EXCEL_DOM("Чтение Excel целиком (DOM)");
+
+    private final String displayName;
+
+    ImportReadMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
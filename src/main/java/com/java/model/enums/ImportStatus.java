@@ -2,6 +2,7 @@ package com.java.model.enums;
 
 public enum ImportStatus {
     INITIALIZING("Инициализация"),
+    QUEUED("В очереди"),
     ANALYZING("Анализ файла"),
     VALIDATING("Валидация"),
     PROCESSING("Обработка"),
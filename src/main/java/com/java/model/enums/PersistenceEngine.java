@@ -0,0 +1,20 @@
+package com.java.model.enums;
+
+/**
+ * Способ записи импортированных строк в БД
+ */
+public enum PersistenceEngine {
+    BATCH_INSERT("Пакетный INSERT"),
+    COPY("PostgreSQL COPY"),
+    STAGING("Staging-таблица (COPY + перенос в конце)");
+
+    private final String displayName;
+
+    PersistenceEngine(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
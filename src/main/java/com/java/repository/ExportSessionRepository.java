@@ -48,6 +48,18 @@ public interface ExportSessionRepository extends JpaRepository<ExportSession, Lo
                 .stream().findFirst();
     }
 
+    @Query("SELECT es FROM ExportSession es WHERE es.template.id = :templateId AND es.status = :status " +
+            "AND es.highWaterId IS NOT NULL ORDER BY es.id DESC")
+    Page<ExportSession> findLastWithHighWaterMark(@Param("templateId") Long templateId,
+                                                  @Param("status") ExportStatus status,
+                                                  Pageable pageable);
+
+    // Последняя завершённая дельта-выгрузка шаблона (с отметкой)
+    default Optional<ExportSession> findLastDeltaByTemplateId(Long templateId) {
+        return findLastWithHighWaterMark(templateId, ExportStatus.COMPLETED, PageRequest.of(0, 1))
+                .stream().findFirst();
+    }
+
     // Изменяем запрос для получения последнего использованного шаблона
     @Query("SELECT DISTINCT es.template FROM ExportSession es " +
             "WHERE es.template.client.id = :clientId " +
@@ -19,6 +19,9 @@ public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long
     // Найти по хешу файла (для проверки дубликатов файлов)
     Optional<FileMetadata> findByFileHash(String fileHash);
 
+    // Последний анализ файла с тем же содержимым и форматом (для повторных загрузок)
+    Optional<FileMetadata> findFirstByFileHashAndFileFormatOrderByIdDesc(String fileHash, String fileFormat);
+
     // Найти по временному пути
     Optional<FileMetadata> findByTempFilePath(String tempFilePath);
 }
\ No newline at end of file
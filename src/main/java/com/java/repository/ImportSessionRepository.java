@@ -38,6 +38,11 @@ public interface ImportSessionRepository extends JpaRepository<ImportSession, Lo
     // Найти сессии по статусу
     List<ImportSession> findByStatus(ImportStatus status);
 
+    // Найти сессии экземпляра приложения по статусу (вместе с сессиями без экземпляра)
+    @Query("SELECT s FROM ImportSession s WHERE s.status = :status " +
+            "AND (s.ownerInstance = :owner OR s.ownerInstance IS NULL)")
+    List<ImportSession> findOwnedByStatus(@Param("status") ImportStatus status, @Param("owner") String owner);
+
     // Найти сессии для отмены (долго выполняющиеся)
     @Query("SELECT s FROM ImportSession s WHERE s.status = :status AND s.startedAt < :timeout")
     List<ImportSession> findTimedOutSessions(@Param("status") ImportStatus status,
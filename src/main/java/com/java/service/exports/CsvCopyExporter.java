@@ -0,0 +1,317 @@
+package com.java.service.exports;
+
+import com.java.dto.ExportRequestDto;
+import com.java.model.entity.ExportTemplate;
+import com.java.model.entity.ExportTemplateField;
+import com.java.model.enums.ExportStrategy;
+import com.java.util.PathResolver;
+import com.opencsv.CSVWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Быстрый путь CSV экспорта через PostgreSQL COPY (SELECT ...) TO STDOUT.
+ * <p>
+ * Применяется, когда результат полностью выражается в SQL: стратегия DEFAULT, формат CSV,
+ * без нормализации, форматов данных и статистики, а все колонки имеют типы, текст которых
+ * в PostgreSQL совпадает с тем, что выдаёт ValueFormatter (строки, целые, даты, boolean).
+ * Тогда строки не проходят через JDBC, Map и OpenCSV: сервер сам формирует CSV,
+ * а файл получает тот же результат байт в байт.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CsvCopyExporter {
+
+    /**
+     * Как часто (в байтах) сообщать о прогрессе записи
+     */
+    private static final long PROGRESS_INTERVAL_BYTES = 4L * 1024 * 1024;
+
+    private static final String DATE_TIME_PATTERN = "DD.MM.YYYY HH24:MI:SS";
+
+    private final ExportDataService dataService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PathResolver pathResolver;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<String, Map<String, String>> columnTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Можно ли выгрузить шаблон через COPY без изменения результата
+     */
+    public boolean canExport(ExportTemplate template) {
+        if (template.getExportStrategy() != ExportStrategy.DEFAULT
+                || !"CSV".equalsIgnoreCase(template.getFileFormat())
+                || Boolean.TRUE.equals(template.getEnableStatistics())) {
+            return false;
+        }
+        return buildSelectList(template) != null;
+    }
+
+    /**
+     * Выгружает данные в CSV файл через COPY
+     *
+     * @param onProgress получает количество записанных байт
+     * @param cancelled  проверяется при каждой записи в файл; после отмены COPY прерывается
+     * @return путь к файлу в директории экспорта и количество строк или null, если экспорт отменён
+     */
+    public CopyResult export(ExportTemplate template, ExportRequestDto request, List<Long> operationIds,
+                             ExportDataService.DeltaWindow delta, String fileName,
+                             LongConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        String selectList = buildSelectList(template);
+        if (selectList == null) {
+            throw new IllegalStateException("Шаблон " + template.getName() + " нельзя выгрузить через COPY");
+        }
+
+        String query = dataService.buildCopyQuery(selectList, operationIds, template,
+                request.getDateFrom(), request.getDateTo(), request.getAdditionalFilters(), delta);
+        char delimiter = firstChar(template.getCsvDelimiter(), ',');
+        char quote = firstChar(template.getCsvQuoteChar(), '"');
+        // FORCE_QUOTE * и COALESCE(..., '') повторяют CSVWriter: все значения, включая пустые, в кавычках
+        String sql = "COPY (" + query + ") TO STDOUT WITH (FORMAT csv, DELIMITER " + literal(delimiter) +
+                ", QUOTE " + literal(quote) + ", FORCE_QUOTE *)";
+        log.debug("COPY экспорта: {}", sql);
+
+        Path tempFile = pathResolver.createTempFile("export_", ".csv");
+        long started = System.currentTimeMillis();
+        Long rows;
+        try (CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(tempFile), onProgress,
+                cancelled);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, getCharset(template)))) {
+
+            List<String> headers = orderedFields(template).stream()
+                    .map(ExportTemplateField::getExportColumnName)
+                    .toList();
+            if (Boolean.TRUE.equals(template.getCsvIncludeHeader()) && !headers.isEmpty()) {
+                // Заголовок пишется тем же CSVWriter, что и в обычном экспорте
+                CSVWriter headerWriter = new CSVWriter(writer, delimiter, quote, quote, CSVWriter.DEFAULT_LINE_END);
+                headerWriter.writeNext(headers.toArray(new String[0]));
+                headerWriter.flush();
+            }
+
+            // COPY идёт в отдельной транзакции: отменённый или упавший COPY прерывает транзакцию,
+            // в которой выполнялся, а в транзакции экспорта ещё сохраняется статус сессии
+            TransactionTemplate copyTransaction = new TransactionTemplate(transactionManager);
+            copyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            copyTransaction.setReadOnly(true);
+            rows = copyTransaction.execute(status -> jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+                try {
+                    // Исключение записи прерывает COPY: CopyManager отменяет его на сервере
+                    return copyOut(con, sql, writer);
+                } catch (IOException e) {
+                    throw new SQLException("Ошибка записи файла экспорта: " + e.getMessage(), e);
+                }
+            }));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            if (cancelled.getAsBoolean()) {
+                log.info("CSV экспорт через COPY отменён");
+                return null;
+            }
+            throw e;
+        }
+
+        long size = Files.size(tempFile);
+        boolean hasTemplate = template.getFilenameTemplate() != null && !template.getFilenameTemplate().trim().isEmpty();
+        Path result = pathResolver.moveFromTempToExport(tempFile, fileName, !hasTemplate);
+        log.info("CSV экспорт через COPY: {} строк, {} КБ за {} мс", rows, size / 1024,
+                System.currentTimeMillis() - started);
+        return new CopyResult(result, rows != null ? rows : 0L);
+    }
+
+    /**
+     * Выполняет COPY ... TO STDOUT на соединении и пишет результат в writer
+     *
+     * @return количество выгруженных строк
+     */
+    long copyOut(Connection con, String sql, Writer writer) throws SQLException, IOException {
+        return con.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, writer);
+    }
+
+    /**
+     * Список выражений SELECT в порядке колонок файла или null, если шаблон не выражается в SQL
+     */
+    private String buildSelectList(ExportTemplate template) {
+        List<ExportTemplateField> fields = orderedFields(template);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Map<String, String> types = columnTypes(dataService.tableName(template));
+        List<String> selected = dataService.selectedColumns(template);
+
+        List<String> expressions = new ArrayList<>(fields.size());
+        for (ExportTemplateField field : fields) {
+            if (field.getNormalizationType() != null || field.getDataFormat() != null) {
+                return null;
+            }
+            // Та же колонка, что берёт DefaultExportStrategy: по имени поля, затем по snake_case
+            String column = findColumn(selected, field.getEntityFieldName());
+            if (column == null) {
+                column = findColumn(selected, toSnakeCase(field.getEntityFieldName()));
+            }
+            if (column == null) {
+                expressions.add("''");
+                continue;
+            }
+            String expression = textExpression(column, types.get(column));
+            if (expression == null) {
+                log.debug("Колонка {} типа {} не поддерживается COPY экспортом", column, types.get(column));
+                return null;
+            }
+            expressions.add("COALESCE(" + expression + ", '')");
+        }
+        return String.join(", ", expressions);
+    }
+
+    /**
+     * Выражение, текст которого совпадает с ValueFormatter.format для значения колонки
+     */
+    private String textExpression(String column, String type) {
+        if (type == null) {
+            return null;
+        }
+        return switch (type) {
+            case "text", "character varying", "character", "smallint", "integer", "bigint" -> column + "::text";
+            case "boolean" -> "CASE WHEN " + column + " THEN 'true' WHEN NOT " + column + " THEN 'false' END";
+            case "timestamp with time zone", "timestamp without time zone", "date" ->
+                    "to_char(" + column + ", '" + DATE_TIME_PATTERN + "')";
+            // double precision и numeric: Double.toString/BigDecimal.toString не совпадают с текстом PostgreSQL
+            default -> null;
+        };
+    }
+
+    private Map<String, String> columnTypes(String table) {
+        return columnTypes.computeIfAbsent(table, t -> {
+            Map<String, String> types = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT column_name, data_type FROM information_schema.columns " +
+                            "WHERE table_schema = current_schema() AND table_name = ?",
+                    rs -> {
+                        types.put(rs.getString("column_name"), rs.getString("data_type"));
+                    }, t);
+            return Collections.unmodifiableMap(types);
+        });
+    }
+
+    private static String findColumn(List<String> columns, String name) {
+        for (String column : columns) {
+            if (column.equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    private static List<ExportTemplateField> orderedFields(ExportTemplate template) {
+        return template.getFields().stream()
+                .filter(f -> Boolean.TRUE.equals(f.getIsIncluded()))
+                .sorted(Comparator.comparing(ExportTemplateField::getFieldOrder))
+                .toList();
+    }
+
+    private static Charset getCharset(ExportTemplate template) {
+        String encoding = template.getCsvEncoding();
+        if (encoding == null || encoding.trim().isEmpty()) {
+            encoding = "UTF-8";
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (UnsupportedCharsetException e) {
+            log.warn("Unsupported charset: {}, falling back to UTF-8", encoding);
+            return Charset.forName("UTF-8");
+        }
+    }
+
+    private static char firstChar(String value, char defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : value.charAt(0);
+    }
+
+    private static String literal(char c) {
+        return c == '\'' ? "''''" : "'" + c + "'";
+    }
+
+    private static String toSnakeCase(String value) {
+        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Результат COPY экспорта
+     */
+    public record CopyResult(Path path, long rows) {
+    }
+
+    /**
+     * Считает записанные байты и сообщает о них каждые PROGRESS_INTERVAL_BYTES.
+     * После отмены экспорта запись завершается исключением
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final LongConsumer onProgress;
+        private final BooleanSupplier cancelled;
+        private long written;
+        private long nextReport = PROGRESS_INTERVAL_BYTES;
+
+        CountingOutputStream(OutputStream out, LongConsumer onProgress, BooleanSupplier cancelled) {
+            super(out);
+            this.onProgress = onProgress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+            count(len);
+        }
+
+        private void checkCancelled() throws IOException {
+            if (cancelled.getAsBoolean()) {
+                throw new IOException("Экспорт отменён");
+            }
+        }
+
+        private void count(int len) {
+            written += len;
+            if (written >= nextReport) {
+                nextReport = written + PROGRESS_INTERVAL_BYTES;
+                onProgress.accept(written);
+            }
+        }
+    }
+}
@@ -7,20 +7,31 @@ import com.java.model.entity.ExportTemplateField;
 import com.java.model.enums.EntityType;
 import com.java.model.enums.ExportStrategy;
 import com.java.model.enums.FilterType;
+import com.java.model.enums.ImportStatus;
+import com.java.service.exports.row.ExportRowMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.core.Utils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Сервис для получения данных для экспорта
@@ -30,7 +41,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ExportDataService {
 
+    /**
+     * Статусы импорта, при которых сессия ещё может зафиксировать строки
+     */
+    private static final List<ImportStatus> ACTIVE_IMPORT_STATUSES = List.of(
+            ImportStatus.INITIALIZING, ImportStatus.QUEUED, ImportStatus.ANALYZING,
+            ImportStatus.VALIDATING, ImportStatus.PROCESSING, ImportStatus.COMPLETING);
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Ограничение на максимальное количество записей для предотвращения
@@ -40,11 +59,18 @@ public class ExportDataService {
     private int maxRows;
 
     /**
-     * Размер чанка при потоковой выгрузке
+     * Количество строк, которое курсор получает с сервера за один раз
      */
     @Value("${export.chunk-size:10000}")
     private int chunkSize;
 
+    /**
+     * Незавершённый импорт, который дольше этого времени не сохранял сессию, считается зависшим
+     * и не ограничивает дельта-выгрузку
+     */
+    @Value("${export.delta.stale-import-minutes:120}")
+    private long staleImportMinutes;
+
     /**
      * Загружает данные для экспорта
      */
@@ -58,7 +84,185 @@ public class ExportDataService {
         log.info("Загрузка данных для экспорта: операции {}, шаблон {}",
                 operationIds, template.getName());
 
+        DataQuery query = buildDataQuery(operationIds, template, dateFrom, dateTo, additionalFilters, null);
+
+        // Один запрос с серверным курсором вместо страниц LIMIT/OFFSET: каждая следующая
+        // страница OFFSET заново перебирала все предыдущие строки
+        List<Map<String, Object>> data = new ArrayList<>();
+        ExportRowMapper rowMapper = new ExportRowMapper();
+        streamRows(query.limitedSql(), query.limitedParams(maxRows),
+                rs -> data.add(rowMapper.mapRow(rs, data.size())));
+
+        log.info("Загружено {} записей (ограничение: {})", data.size(), maxRows);
+        if (data.size() >= maxRows) {
+            log.warn("Результат усечен до {} записей, добавьте фильтры для уменьшения объема данных", maxRows);
+        }
+        if (!data.isEmpty()) {
+            log.debug("Пример строки: ключи={}, значения={}", data.get(0).keySet(), data.get(0));
+        }
+
+        return data;
+    }
+
+    /**
+     * Открывает поток строк для экспорта без загрузки в память. Строки читаются серверным
+     * курсором порциями по chunkSize по мере потребления потока, поэтому вызывать нужно
+     * в транзакции, а поток — закрыть
+     */
+    public Stream<Map<String, Object>> streamData(
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Потоковая выгрузка данных возможна только в транзакции");
+        }
+        log.info("Потоковая выгрузка данных для экспорта: операции {}, шаблон {}",
+                operationIds, template.getName());
+
+        DataQuery query = buildDataQuery(operationIds, template, dateFrom, dateTo, additionalFilters, delta);
+        List<Object> params = query.limitedParams(maxRows);
+        return jdbcTemplate.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(query.limitedSql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(chunkSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(ps);
+            return ps;
+        }, new ExportRowMapper()).map(row -> (Map<String, Object>) row);
+    }
+
+    /**
+     * Количество строк, которое вернёт выгрузка (с учётом ограничения export.max-rows)
+     */
+    public long countExportRows(
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
+        Long total = countData(operationIds, template, dateFrom, dateTo, additionalFilters, delta);
+        return Math.min(total != null ? total : 0L, maxRows);
+    }
+
+    /**
+     * Операции, строки которых попадут в выгрузку. Нужны, когда операции в запросе
+     * не указаны, а данные читаются потоком
+     */
+    public List<Long> findOperationIds(
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
+        DataQuery query = buildDataQuery(Collections.emptyList(), template, dateFrom, dateTo, additionalFilters, delta);
+        String sql = "SELECT DISTINCT operation_id FROM (" + query.limitedSql() + ") t " +
+                "WHERE operation_id IS NOT NULL";
+        return jdbcTemplate.queryForList(sql, Long.class, query.limitedParams(maxRows).toArray());
+    }
+
+    /**
+     * Окно дельта-выгрузки: строки после отметки предыдущей выгрузки, но не больше
+     * export.max-rows старейших из них. Верхняя граница — отметка последней строки окна —
+     * фиксируется до чтения, строки за ней попадут в следующую выгрузку.
+     * <p>
+     * Порядок (created_at, id) не совпадает с порядком коммитов: created_at и id строка
+     * получает при записи, а видна она становится после коммита импорта. Строки импорта,
+     * который ещё идёт, после коммита оказались бы ниже отметки, обогнавшей их, и не попали
+     * бы ни в одну выгрузку. Поэтому окно заканчивается до начала самого раннего
+     * незавершённого импорта: его строки и всё, что записано после него, ждут следующей выгрузки
+     *
+     * @param afterCreatedAt created_at последней строки предыдущей выгрузки (null — с начала)
+     * @param afterId        id последней строки предыдущей выгрузки
+     */
+    public DeltaWindow deltaWindow(
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            ZonedDateTime afterCreatedAt,
+            Long afterId) {
+        // Сначала незавершённые импорты, потом строки: импорт, закончившийся между двумя
+        // запросами, уже виден целиком
+        OffsetDateTime importsFrom = earliestActiveImportStart();
+
+        DeltaWindow after = new DeltaWindow(afterCreatedAt, afterId, null, null);
+        DataQuery query = buildDataQuery("created_at, id", operationIds, template, dateFrom, dateTo,
+                additionalFilters, after, " ORDER BY created_at, id");
+        List<Object> params = query.limitedParams(maxRows);
+        // Строки окна упорядочены по created_at, поэтому граница по импортам, наложенная
+        // после LIMIT, оставляет те же старейшие строки, что и наложенная до него
+        String sql = "SELECT created_at, id FROM (" + query.limitedSql() + ") w" +
+                (importsFrom != null ? " WHERE created_at < ?" : "") +
+                " ORDER BY created_at DESC, id DESC LIMIT 1";
+        if (importsFrom != null) {
+            params.add(importsFrom);
+        }
+        List<DeltaWindow> last = jdbcTemplate.query(sql, (rs, i) -> new DeltaWindow(afterCreatedAt, afterId,
+                rs.getObject("created_at", OffsetDateTime.class).toZonedDateTime(), rs.getLong("id")),
+                params.toArray());
+        // Новых строк нет: окно пустое, отметка остаётся прежней
+        return last.isEmpty() ? new DeltaWindow(afterCreatedAt, afterId, afterCreatedAt, afterId) : last.get(0);
+    }
+
+    /**
+     * Время начала самой ранней сессии импорта, которая ещё может записать строки (null — таких нет).
+     * Сессии, которые дольше staleImportMinutes не сохранялись, пропускаются: иначе импорт,
+     * зависший в активном статусе, навсегда остановил бы дельта-выгрузку
+     */
+    private OffsetDateTime earliestActiveImportStart() {
+        String statuses = ACTIVE_IMPORT_STATUSES.stream()
+                .map(status -> "'" + status.name() + "'")
+                .collect(Collectors.joining(", "));
+        OffsetDateTime staleBefore = OffsetDateTime.now().minusMinutes(staleImportMinutes);
+        List<ActiveImport> sessions = jdbcTemplate.query(
+                "SELECT id, status, started_at, COALESCE(updated_at, started_at) AS active_at " +
+                        "FROM import_sessions WHERE status IN (" + statuses + ") AND started_at IS NOT NULL " +
+                        "ORDER BY started_at",
+                (rs, i) -> new ActiveImport(rs.getLong("id"), rs.getString("status"),
+                        rs.getObject("started_at", OffsetDateTime.class),
+                        rs.getObject("active_at", OffsetDateTime.class)));
+        for (ActiveImport session : sessions) {
+            if (session.activeAt().isBefore(staleBefore)) {
+                log.warn("Сессия импорта {} в статусе {} не обновлялась с {} — дельта-выгрузка её не ждёт",
+                        session.id(), session.status(), session.activeAt());
+                continue;
+            }
+            log.warn("Дельта-выгрузка ограничена строками до {}: не завершена сессия импорта {} в статусе {}",
+                    session.startedAt(), session.id(), session.status());
+            return session.startedAt();
+        }
+        return null;
+    }
+
+    private record ActiveImport(long id, String status, OffsetDateTime startedAt, OffsetDateTime activeAt) {}
+
+    /**
+     * Строит запрос выгрузки: колонки шаблона, фильтры и сортировку
+     */
+    private DataQuery buildDataQuery(
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
+
         // Определяем нужные колонки
+        List<String> columns = selectedColumns(template);
+        String columnList = columns.isEmpty() ? "*" : String.join(", ", columns);
+        return buildDataQuery(columnList, operationIds, template, dateFrom, dateTo, additionalFilters, delta,
+                " ORDER BY created_at DESC");
+    }
+
+    /**
+     * Колонки таблицы, которые выбирает запрос выгрузки
+     */
+    List<String> selectedColumns(ExportTemplate template) {
         List<String> columns = template.getFields().stream()
                 .filter(f -> Boolean.TRUE.equals(f.getIsIncluded()))
                 .map(ExportTemplateField::getEntityFieldName)
@@ -72,23 +276,85 @@ public class ExportDataService {
                 && !columns.contains("data_source")) {
             columns.add("data_source");
         }
-        String columnList = columns.isEmpty() ? "*" : String.join(", ", columns);
+        return columns;
+    }
+
+    /**
+     * Таблица, из которой выгружаются данные шаблона
+     */
+    String tableName(ExportTemplate template) {
+        return switch (template.getEntityType()) {
+            case AV_DATA -> "av_data";
+            case AV_HANDBOOK -> "av_handbook";
+            default -> throw new IllegalArgumentException("Неподдерживаемый тип сущности: " +
+                    template.getEntityType());
+        };
+    }
+
+    /**
+     * Запрос выгрузки для COPY: COPY не принимает параметры, поэтому значения фильтров
+     * подставляются в текст запроса литералами с экранированием драйвера PostgreSQL
+     *
+     * @param selectList список выражений SELECT
+     */
+    String buildCopyQuery(
+            String selectList,
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
+
+        DataQuery query = buildDataQuery(selectList, operationIds, template, dateFrom, dateTo, additionalFilters, delta,
+                " ORDER BY created_at DESC");
+        String sql = query.limitedSql();
+        List<Object> params = query.limitedParams(maxRows);
+
+        StringBuilder inlined = new StringBuilder(sql.length() + params.size() * 16);
+        int param = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                inlined.append(toSqlLiteral(params.get(param++)));
+            } else {
+                inlined.append(c);
+            }
+        }
+        return inlined.toString();
+    }
+
+    private String toSqlLiteral(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        String text = value instanceof ZonedDateTime zoned ? zoned.toOffsetDateTime().toString() : value.toString();
+        try {
+            String literal = "'" + Utils.escapeLiteral(null, text, true) + "'";
+            return value instanceof ZonedDateTime || value instanceof OffsetDateTime ? literal + "::timestamptz" : literal;
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Недопустимое значение фильтра: " + text, e);
+        }
+    }
+
+    private DataQuery buildDataQuery(
+            String columnList,
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta,
+            String orderBy) {
 
         // Строим SQL запрос
         StringBuilder sql = new StringBuilder();
         List<Object> params = new ArrayList<>();
 
-        switch (template.getEntityType()) {
-            case AV_DATA:
-                sql.append("SELECT ").append(columnList).append(" FROM av_data WHERE 1=1");
-                break;
-            case AV_HANDBOOK:
-                sql.append("SELECT ").append(columnList).append(" FROM av_handbook WHERE 1=1");
-                break;
-            default:
-                throw new IllegalArgumentException("Неподдерживаемый тип сущности: " +
-                        template.getEntityType());
-        }
+        sql.append("SELECT ").append(columnList).append(" FROM ").append(tableName(template)).append(" WHERE 1=1");
 
         // Фильтр по операциям
         if (operationIds != null && !operationIds.isEmpty()) {
@@ -109,6 +375,7 @@ public class ExportDataService {
             sql.append(" AND created_at <= ?");
             params.add(dateTo);
         }
+        applyDeltaWindow(sql, params, delta);
 
         // Применяем фильтры из шаблона
         List<ExportTemplateFilter> activeFilters = template.getFilters().stream()
@@ -153,49 +420,77 @@ public class ExportDataService {
             log.debug("Применен фильтр data_source=REPORT для стратегии TASK_REPORT");
         }
 
-        sql.append(" ORDER BY created_at DESC");
+        sql.append(orderBy);
 
         String baseSql = sql.toString();
         log.debug("SQL запрос: {}", baseSql);
         log.debug("Параметры: {}", params);
+        return new DataQuery(baseSql, params);
+    }
 
-        List<Map<String, Object>> data = new ArrayList<>();
-        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
-        int offset = 0;
-        boolean more = true;
-        while (more && data.size() < maxRows) {
-            int limit = Math.min(chunkSize, maxRows - data.size());
-            String pagedSql = baseSql + " LIMIT ? OFFSET ?";
-            List<Object> pagedParams = new ArrayList<>(params);
-            pagedParams.add(limit);
-            pagedParams.add(offset);
-
-            int before = data.size();
-            RowCallbackHandler handler = new RowCallbackHandler() {
-                int rowNum = 0;
-
-                @Override
-                public void processRow(java.sql.ResultSet rs) throws java.sql.SQLException {
-                    data.add(rowMapper.mapRow(rs, rowNum++));
-                }
-            };
+    /**
+     * Запрос выгрузки без ограничения количества строк
+     */
+    private record DataQuery(String sql, List<Object> params) {
 
-            jdbcTemplate.query(pagedSql, pagedParams.toArray(), handler);
+        String limitedSql() {
+            return sql + " LIMIT ?";
+        }
 
-            int fetched = data.size() - before;
-            more = fetched == limit;
-            offset += limit;
+        List<Object> limitedParams(int limit) {
+            List<Object> limited = new ArrayList<>(params);
+            limited.add(limit);
+            return limited;
         }
+    }
 
-        log.info("Загружено {} записей (ограничение: {})", data.size(), maxRows);
-        if (data.size() >= maxRows) {
-            log.warn("Результат усечен до {} записей, добавьте фильтры для уменьшения объема данных", maxRows);
+    /**
+     * Ограничивает выборку окном дельта-выгрузки. Условие по одному created_at дублирует
+     * сравнение пар, чтобы планировщик мог использовать индекс по created_at
+     */
+    private void applyDeltaWindow(StringBuilder sql, List<Object> params, DeltaWindow delta) {
+        if (delta == null) {
+            return;
         }
-        if (!data.isEmpty()) {
-            log.debug("Пример строки: ключи={}, значения={}", data.get(0).keySet(), data.get(0));
+        // Строки без created_at не имеют места относительно отметки и в дельта-выгрузку не попадают
+        sql.append(" AND created_at IS NOT NULL");
+        if (delta.afterId() != null) {
+            OffsetDateTime after = delta.afterCreatedAt().toOffsetDateTime();
+            sql.append(" AND created_at >= ? AND (created_at, id) > (?, ?)");
+            params.addAll(List.of(after, after, delta.afterId()));
+        }
+        if (delta.untilId() != null) {
+            OffsetDateTime until = delta.untilCreatedAt().toOffsetDateTime();
+            sql.append(" AND created_at <= ? AND (created_at, id) <= (?, ?)");
+            params.addAll(List.of(until, until, delta.untilId()));
         }
+    }
 
-        return data;
+    /**
+     * Окно дельта-выгрузки по паре (created_at, id): после отметки предыдущей выгрузки
+     * и не позже отметки текущей
+     *
+     * @param afterCreatedAt нижняя граница, не включается (null — без границы)
+     * @param untilCreatedAt верхняя граница, включается (null — без границы)
+     */
+    public record DeltaWindow(ZonedDateTime afterCreatedAt, Long afterId,
+                              ZonedDateTime untilCreatedAt, Long untilId) {
+    }
+
+    /**
+     * Выполняет запрос через серверный курсор: PostgreSQL отдаёт строки порциями по chunkSize
+     * по мере чтения ResultSet. Курсор работает только при выключенном autocommit,
+     * поэтому запрос выполняется в транзакции (существующей или новой)
+     */
+    private void streamRows(String sql, List<Object> params, RowCallbackHandler handler) {
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(chunkSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(ps);
+            return ps;
+        }, handler));
+        log.debug("Запрос выгрузки выполнен за {} мс", (System.nanoTime() - started) / 1_000_000);
     }
 
     /**
@@ -342,7 +637,7 @@ public class ExportDataService {
     /**
      * Преобразует имя поля фильтра в соответствующее имя колонки БД
      */
-    private String resolveColumnName(String fieldName) {
+    String resolveColumnName(String fieldName) {
         return switch (fieldName) {
             case "taskNumber" -> "product_additional1";
             case "retailerCode" -> "product_additional4";
@@ -396,6 +691,19 @@ public class ExportDataService {
             ZonedDateTime dateFrom,
             ZonedDateTime dateTo,
             List<ExportTemplateFilterDto> additionalFilters) {
+        return countData(operationIds, template, dateFrom, dateTo, additionalFilters, null);
+    }
+
+    /**
+     * Получает количество записей для экспорта в окне дельта-выгрузки
+     */
+    public Long countData(
+            List<Long> operationIds,
+            ExportTemplate template,
+            ZonedDateTime dateFrom,
+            ZonedDateTime dateTo,
+            List<ExportTemplateFilterDto> additionalFilters,
+            DeltaWindow delta) {
 
         // Используем тот же запрос, но с COUNT
         StringBuilder sql = new StringBuilder();
@@ -430,6 +738,7 @@ public class ExportDataService {
             sql.append(" AND created_at <= ?");
             params.add(dateTo);
         }
+        applyDeltaWindow(sql, params, delta);
 
         // Фильтры из шаблона и дополнительные
         List<ExportTemplateFilter> activeFilters = template.getFilters().stream()
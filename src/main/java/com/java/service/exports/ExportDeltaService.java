@@ -0,0 +1,172 @@
+package com.java.service.exports;
+
+import com.java.dto.ExportRequestDto;
+import com.java.model.entity.ExportSession;
+import com.java.model.entity.ExportTemplate;
+import com.java.repository.ExportSessionRepository;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Дельта-выгрузка: повторный экспорт шаблона читает только строки, добавленные после
+ * последней завершённой дельта-выгрузки этого шаблона (а значит, и клиента).
+ * <p>
+ * Граница — отметка (created_at, id) последней выгруженной строки, она сохраняется
+ * в сессии экспорта. Пара, а не одно время: строки одного батча импорта имеют одинаковый
+ * created_at, id упорядочивает их внутри. Отметка не заходит за начало незавершённых импортов
+ * (см. {@link ExportDataService#deltaWindow}). Первая дельта-выгрузка шаблона — полная
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExportDeltaService {
+
+    private final ExportSessionRepository sessionRepository;
+    private final ExportDataService dataService;
+
+    /**
+     * Окно строк для экспорта или null, если дельта-выгрузка не запрошена
+     */
+    public Delta prepare(ExportTemplate template, ExportRequestDto request) {
+        if (!Boolean.TRUE.equals(request.getDeltaMode())) {
+            return null;
+        }
+        ExportSession base = sessionRepository.findLastDeltaByTemplateId(template.getId()).orElse(null);
+        List<Long> operationIds = request.getOperationIds() != null
+                ? request.getOperationIds() : Collections.emptyList();
+        ExportDataService.DeltaWindow window = dataService.deltaWindow(operationIds, template,
+                request.getDateFrom(), request.getDateTo(), request.getAdditionalFilters(),
+                base != null ? base.getHighWaterCreatedAt() : null,
+                base != null ? base.getHighWaterId() : null);
+        if (base != null) {
+            log.info("Дельта-выгрузка после сессии {}: строки после ({}, {}) до ({}, {})", base.getId(),
+                    window.afterCreatedAt(), window.afterId(), window.untilCreatedAt(), window.untilId());
+        } else {
+            log.info("Первая дельта-выгрузка шаблона {}: все строки до ({}, {})", template.getName(),
+                    window.untilCreatedAt(), window.untilId());
+        }
+        return new Delta(base, window);
+    }
+
+    /**
+     * Завершает дельта-выгрузку: сохраняет в сессии новую отметку и формат CSV и, если запрошено,
+     * дописывает в файл строки предыдущей выгрузки
+     *
+     * @param template шаблон с параметрами файла из запроса
+     */
+    public void complete(ExportSession session, ExportRequestDto request, ExportTemplate template,
+                         Delta delta, Path file) throws IOException {
+        session.setHighWaterCreatedAt(delta.window().untilCreatedAt());
+        session.setHighWaterId(delta.window().untilId());
+        CsvFormat format = CsvFormat.of(template.getCsvDelimiter(), template.getCsvQuoteChar(),
+                template.getCsvEncoding(), template.getCsvIncludeHeader());
+        session.setCsvDelimiter(String.valueOf(format.delimiter()));
+        session.setCsvQuoteChar(String.valueOf(format.quote()));
+        session.setCsvEncoding(format.charset().name());
+        session.setCsvIncludeHeader(format.header());
+        if (Boolean.TRUE.equals(request.getMergeWithPrevious()) && delta.base() != null) {
+            mergeWithPrevious(file, format, delta.base());
+        }
+    }
+
+    /**
+     * Дописывает в файл дельта-выгрузки строки файла предыдущей выгрузки (без заголовка).
+     * Новые строки остаются в начале, как и при обычной сортировке от новых к старым.
+     * <p>
+     * Разделитель и кодировка переопределяются в запросе, поэтому предыдущий файл читается
+     * CSV-парсером в своём формате (из его сессии) и записывается в формате текущего файла.
+     * При совпадающих форматах строки получаются теми же, что у генератора: CSVWriter
+     * с теми же разделителем и кавычками
+     */
+    private void mergeWithPrevious(Path file, CsvFormat format, ExportSession base) throws IOException {
+        if (!".csv".equalsIgnoreCase(extension(file))) {
+            log.warn("Объединение с предыдущей выгрузкой поддерживается только для CSV, файл содержит только новые строки");
+            return;
+        }
+        Path previous = base.getResultFilePath() != null ? Path.of(base.getResultFilePath()) : null;
+        if (previous == null || !Files.exists(previous) || !".csv".equalsIgnoreCase(extension(previous))) {
+            log.warn("Файл предыдущей выгрузки {} недоступен, файл содержит только новые строки", previous);
+            return;
+        }
+        if (base.getCsvEncoding() == null) {
+            log.warn("Формат файла предыдущей выгрузки {} не сохранён, файл содержит только новые строки", previous);
+            return;
+        }
+        CsvFormat previousFormat = CsvFormat.of(base.getCsvDelimiter(), base.getCsvQuoteChar(),
+                base.getCsvEncoding(), base.getCsvIncludeHeader());
+
+        long appended = 0;
+        try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(
+                        Files.newInputStream(previous), previousFormat.charset()))
+                .withCSVParser(new RFC4180ParserBuilder()
+                        .withSeparator(previousFormat.delimiter())
+                        .withQuoteChar(previousFormat.quote())
+                        .build())
+                .withKeepCarriageReturn(true)
+                .build();
+             CSVWriter writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(
+                     Files.newOutputStream(file, StandardOpenOption.APPEND), format.charset())),
+                     format.delimiter(), format.quote(), format.quote(), CSVWriter.DEFAULT_LINE_END)) {
+            // Заголовок — первая запись, а не первая строка: в кавычках он может содержать перевод строки
+            if (previousFormat.header()) {
+                reader.readNext();
+            }
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                writer.writeNext(record);
+                appended++;
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Ошибка чтения файла предыдущей выгрузки " + previous + ": " + e.getMessage(), e);
+        }
+        log.info("К дельта-выгрузке добавлено {} строк из файла сессии {}", appended, base.getId());
+    }
+
+    /**
+     * Дельта-выгрузка: предыдущая выгрузка шаблона (null для первой) и окно строк
+     */
+    public record Delta(ExportSession base, ExportDataService.DeltaWindow window) {
+    }
+
+    /**
+     * Формат CSV файла; пустые параметры — значения по умолчанию генератора
+     */
+    private record CsvFormat(char delimiter, char quote, Charset charset, boolean header) {
+
+        static CsvFormat of(String delimiter, String quote, String encoding, Boolean header) {
+            Charset charset;
+            try {
+                charset = encoding == null || encoding.isBlank() ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                charset = StandardCharsets.UTF_8;
+            }
+            return new CsvFormat(delimiter == null || delimiter.isEmpty() ? ',' : delimiter.charAt(0),
+                    quote == null || quote.isEmpty() ? '"' : quote.charAt(0),
+                    charset, Boolean.TRUE.equals(header));
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot) : "";
+    }
+}
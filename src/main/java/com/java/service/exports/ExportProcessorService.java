@@ -17,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.ZonedDateTime;
@@ -24,7 +25,9 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Сервис обработки процесса экспорта
@@ -41,9 +44,17 @@ public class ExportProcessorService {
     private final FileOperationRepository fileOperationRepository;
     private final ExportStatisticsWriterService statisticsWriterService;
     private final ExportProgressService progressService;
+    private final CsvCopyExporter csvCopyExporter;
+    private final ExportResultCache resultCache;
+    private final ExportDeltaService deltaService;
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
 
+    /**
+     * Как часто (в строках) отправлять прогресс потокового экспорта
+     */
+    private static final int STREAM_PROGRESS_INTERVAL = 10_000;
+
     // Флаги отмены для каждой сессии (ConcurrentHashMap — доступ из нескольких потоков)
     private final Map<Long, AtomicBoolean> cancellationFlags = new ConcurrentHashMap<>();
 
@@ -62,6 +73,16 @@ public class ExportProcessorService {
             updateSessionStatus(session, ExportStatus.PROCESSING);
 
             ExportTemplate template = session.getTemplate();
+            ExportStrategy strategy = strategyFactory.getStrategy(template.getExportStrategy());
+
+            if (!strategy.requiresFullDataSet()) {
+                processStreamingExport(session, request, template, strategy, cancelled);
+                return;
+            }
+            if (Boolean.TRUE.equals(request.getDeltaMode())) {
+                log.warn("Стратегия {} не поддерживает дельта-выгрузку, выполняется полная",
+                        template.getExportStrategy());
+            }
 
             // 1. Загружаем данные
             log.info("Загрузка данных для экспорта");
@@ -87,17 +108,7 @@ public class ExportProcessorService {
                 log.debug("Operation IDs получены из данных: {}", loadedIds);
             }
 
-            // Обновляем sourceOperationIds в сессии с реальными ID операций после загрузки данных
-            if (request.getOperationIds() != null && !request.getOperationIds().isEmpty()) {
-                try {
-                    String sourceOperationIdsJson = objectMapper.writeValueAsString(request.getOperationIds());
-                    session.setSourceOperationIds(sourceOperationIdsJson);
-                    sessionRepository.save(session);
-                    log.debug("Обновлены sourceOperationIds в сессии {}: {}", session.getId(), sourceOperationIdsJson);
-                } catch (Exception e) {
-                    log.error("Ошибка обновления sourceOperationIds для сессии {}", session.getId(), e);
-                }
-            }
+            updateSourceOperationIds(session, request);
 
             log.debug("После загрузки получено {} строк", data.size());
             session.setTotalRows((long) data.size());
@@ -120,22 +131,7 @@ public class ExportProcessorService {
 
             // 2. Применяем стратегию обработки
             log.info("Применение стратегии: {}", template.getExportStrategy());
-            ExportStrategy strategy = strategyFactory.getStrategy(template.getExportStrategy());
-
-            Map<String, Object> context = new HashMap<>();
-            context.put("operationIds", request.getOperationIds());
-            context.put("session", session);
-            context.put("progressService", progressService);
-            context.put("maxReportAgeDays", request.getMaxReportAgeDays());
-            if (session.getFileOperation() != null && session.getFileOperation().getClient() != null) {
-                context.put("clientRegionCode", session.getFileOperation().getClient().getRegionCode());
-            }
-
-            if (template.getExportStrategy().name().equals("TASK_REPORT") &&
-                    request.getOperationIds() != null && request.getOperationIds().size() >= 2) {
-                context.put("taskOperationId", request.getOperationIds().get(0));
-                context.put("reportOperationId", request.getOperationIds().get(1));
-            }
+            Map<String, Object> context = buildStrategyContext(session, request, template);
 
             // ✅ ОБНОВЛЯЕМ ПРОГРЕСС ПЕРЕД ОБРАБОТКОЙ СТРАТЕГИИ (50%)
             progressService.sendProgressUpdate(session);
@@ -192,11 +188,10 @@ public class ExportProcessorService {
             }
 
             // 2.5. Сохраняем статистику
-            log.info("Сохранение статистики экспорта");
-            try {
-                statisticsWriterService.saveExportStatistics(session, template, processedData, context);
-            } catch (Exception e) {
-                log.error("Ошибка сохранения статистики экспорта", e);
+            ExportStatisticsAggregator statistics = statisticsWriterService.createAggregator(template);
+            if (statistics != null) {
+                processedData.forEach(statistics::accept);
+                saveStatistics(session, statistics, context);
             }
 
             // ✅ ОБНОВЛЯЕМ ПРОГРЕСС ПОСЛЕ СТАТИСТИКИ (80%)
@@ -205,16 +200,7 @@ public class ExportProcessorService {
             // 3. Генерируем файл
             log.info("Генерация файла экспорта");
             String fileName = generateFileName(template, request);
-
-            if (request.getFileFormat() != null) {
-                template.setFileFormat(request.getFileFormat());
-            }
-            if (request.getCsvDelimiter() != null) {
-                template.setCsvDelimiter(request.getCsvDelimiter());
-            }
-            if (request.getCsvEncoding() != null) {
-                template.setCsvEncoding(request.getCsvEncoding());
-            }
+            applyFormatOverrides(template, request);
 
             // ✅ ОБНОВЛЯЕМ ПРОГРЕСС ПЕРЕД ГЕНЕРАЦИЕЙ ФАЙЛА (90%)
             progressService.sendProgressUpdate(session);
@@ -225,18 +211,7 @@ public class ExportProcessorService {
                     template,
                     fileName);
 
-            session.setResultFilePath(filePath.toString());
-            session.setFileSize(Files.size(filePath));
-
-            FileOperation fileOperation = session.getFileOperation();
-            fileOperation.setFileName(fileName);
-            fileOperation.setResultFilePath(filePath.toString());
-            fileOperation.setFileSize(Files.size(filePath));
-            fileOperation.setRecordCount(processedData.size());
-            fileOperation.setTotalRecords(data.size());
-            fileOperation.markAsCompleted(processedData.size());
-
-            fileOperationRepository.save(fileOperation);
+            completeFileOperation(session, fileName, filePath, processedData.size(), data.size());
 
             // ✅ ФИНАЛЬНОЕ ОБНОВЛЕНИЕ ПРОГРЕССА (100%)
             finalizeExport(session);
@@ -249,6 +224,261 @@ public class ExportProcessorService {
         }
     }
 
+    /**
+     * Потоковый экспорт для стратегий, которым не нужен весь набор строк: строки идут
+     * из курсора БД через стратегию прямо в генератор файла, в памяти держится
+     * только окно курсора и буфер генератора. Статистика считается по ходу записи
+     */
+    private void processStreamingExport(ExportSession session, ExportRequestDto request,
+                                        ExportTemplate template, ExportStrategy strategy,
+                                        AtomicBoolean cancelled) throws Exception {
+        log.info("Потоковый экспорт, стратегия: {}", template.getExportStrategy());
+        progressService.sendProgressUpdate(session);
+
+        // Дельта-выгрузка: только строки после отметки предыдущей дельта-выгрузки шаблона
+        ExportDeltaService.Delta delta = deltaService.prepare(template, request);
+        ExportDataService.DeltaWindow window = delta != null ? delta.window() : null;
+
+        if (request.getOperationIds() == null || request.getOperationIds().isEmpty()) {
+            List<Long> foundIds = dataService.findOperationIds(template,
+                    request.getDateFrom(), request.getDateTo(), request.getAdditionalFilters(), window);
+            if (!foundIds.isEmpty()) {
+                request.setOperationIds(foundIds);
+                log.debug("Operation IDs получены по фильтрам выгрузки: {}", foundIds);
+            }
+        }
+        List<Long> operationIds = request.getOperationIds() != null
+                ? request.getOperationIds() : Collections.emptyList();
+        updateSourceOperationIds(session, request);
+
+        // Тот же экспорт по неизменившимся данным уже выполнялся — отдаём копию файла
+        ExportResultCache.Key cacheKey = resultCache.key(template, request, operationIds);
+        if (cacheKey != null) {
+            Optional<ExportResultCache.Entry> cached = resultCache.find(cacheKey);
+            if (cached.isPresent()) {
+                completeFromCache(session, request, template, cached.get());
+                return;
+            }
+        }
+
+        // Количество строк считается заранее: оно нужно для прогресса и выбора формата файла
+        long expectedRows = dataService.countExportRows(operationIds, template,
+                request.getDateFrom(), request.getDateTo(), request.getAdditionalFilters(), window);
+        Long totalPossible = dataService.countData(operationIds, template, null, null, null, window);
+        session.setTotalRows(expectedRows);
+        session.setFilteredRows(totalPossible - expectedRows);
+        sessionRepository.save(session);
+        progressService.sendProgressUpdate(session);
+
+        if (cancelled.get()) {
+            handleCancellation(session);
+            return;
+        }
+
+        Map<String, Object> context = buildStrategyContext(session, request, template);
+        String fileName = generateFileName(template, request);
+        applyFormatOverrides(template, request);
+
+        if (csvCopyExporter.canExport(template)) {
+            processCopyExport(session, request, template, operationIds, fileName, expectedRows,
+                    delta, cacheKey, cancelled);
+            return;
+        }
+
+        ExportStatisticsAggregator statistics = statisticsWriterService.createAggregator(template);
+        AtomicLong exported = new AtomicLong();
+
+        Path filePath;
+        try (Stream<Map<String, Object>> source = dataService.streamData(operationIds, template,
+                request.getDateFrom(), request.getDateTo(), request.getAdditionalFilters(), window)) {
+
+            Stream<Map<String, Object>> rows = strategy
+                    .processStream(source.takeWhile(row -> !cancelled.get()), template, context)
+                    .peek(row -> {
+                        if (statistics != null) {
+                            statistics.accept(row);
+                        }
+                        long count = exported.incrementAndGet();
+                        if (count % STREAM_PROGRESS_INTERVAL == 0) {
+                            session.setExportedRows(count);
+                            progressService.sendHeartbeat(session,
+                                    "Выгрузка строк: " + count + " из " + expectedRows);
+                        }
+                    });
+            filePath = fileGeneratorService.generateFile(rows, expectedRows, template, fileName);
+        }
+
+        if (cancelled.get()) {
+            Files.deleteIfExists(filePath);
+            handleCancellation(session);
+            return;
+        }
+
+        if (delta != null) {
+            deltaService.complete(session, request, template, delta, filePath);
+        }
+        session.setExportedRows(exported.get());
+        session.setModifiedRows(0L);
+        sessionRepository.save(session);
+        log.info("Потоковый экспорт: записано {} строк", exported.get());
+
+        if (statistics != null) {
+            saveStatistics(session, statistics, context);
+        }
+
+        completeFileOperation(session, fileName, filePath, exported.get(), exported.get());
+        cacheResult(cacheKey, session, filePath, statistics);
+        finalizeExport(session);
+    }
+
+    /**
+     * CSV экспорт через COPY TO STDOUT: файл формирует PostgreSQL, строки не проходят через JVM
+     */
+    private void processCopyExport(ExportSession session, ExportRequestDto request, ExportTemplate template,
+                                   List<Long> operationIds, String fileName, long expectedRows,
+                                   ExportDeltaService.Delta delta, ExportResultCache.Key cacheKey,
+                                   AtomicBoolean cancelled) throws Exception {
+        log.info("CSV экспорт через COPY, ожидается {} строк", expectedRows);
+        CsvCopyExporter.CopyResult result = csvCopyExporter.export(template, request, operationIds,
+                delta != null ? delta.window() : null, fileName,
+                bytes -> progressService.sendHeartbeat(session, "Выгрузка CSV: " + bytes / (1024 * 1024) + " МБ"),
+                cancelled::get);
+
+        if (result == null || cancelled.get()) {
+            if (result != null) {
+                Files.deleteIfExists(result.path());
+            }
+            handleCancellation(session);
+            return;
+        }
+
+        if (delta != null) {
+            deltaService.complete(session, request, template, delta, result.path());
+        }
+        session.setExportedRows(result.rows());
+        session.setModifiedRows(0L);
+        sessionRepository.save(session);
+
+        completeFileOperation(session, fileName, result.path(), result.rows(), result.rows());
+        cacheResult(cacheKey, session, result.path(), null);
+        finalizeExport(session);
+    }
+
+    /**
+     * Завершает экспорт готовым результатом из кеша: файл и статистика без выборки и генерации
+     */
+    private void completeFromCache(ExportSession session, ExportRequestDto request, ExportTemplate template,
+                                   ExportResultCache.Entry cached) throws Exception {
+        log.info("Результат экспорта взят из кеша: {} строк", cached.exportedRows());
+
+        String fileName = generateFileName(template, request);
+        boolean hasTemplate = template.getFilenameTemplate() != null && !template.getFilenameTemplate().trim().isEmpty();
+        Path filePath = resultCache.materialize(cached, fileName, !hasTemplate);
+
+        session.setTotalRows(cached.totalRows());
+        session.setFilteredRows(cached.filteredRows());
+        session.setExportedRows(cached.exportedRows());
+        session.setModifiedRows(0L);
+        sessionRepository.save(session);
+
+        if (cached.statistics() != null) {
+            saveStatistics(session, cached.statistics(), buildStrategyContext(session, request, template));
+        }
+
+        completeFileOperation(session, fileName, filePath, cached.exportedRows(), cached.exportedRows());
+        finalizeExport(session);
+    }
+
+    private void cacheResult(ExportResultCache.Key cacheKey, ExportSession session, Path filePath,
+                             ExportStatisticsAggregator statistics) {
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, filePath, session.getTotalRows(), session.getExportedRows(),
+                    session.getFilteredRows(), statistics);
+        }
+    }
+
+    /**
+     * Обновляет sourceOperationIds в сессии с реальными ID операций
+     */
+    private void updateSourceOperationIds(ExportSession session, ExportRequestDto request) {
+        if (request.getOperationIds() != null && !request.getOperationIds().isEmpty()) {
+            try {
+                String sourceOperationIdsJson = objectMapper.writeValueAsString(request.getOperationIds());
+                session.setSourceOperationIds(sourceOperationIdsJson);
+                sessionRepository.save(session);
+                log.debug("Обновлены sourceOperationIds в сессии {}: {}", session.getId(), sourceOperationIdsJson);
+            } catch (Exception e) {
+                log.error("Ошибка обновления sourceOperationIds для сессии {}", session.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Контекст стратегии экспорта
+     */
+    private Map<String, Object> buildStrategyContext(ExportSession session, ExportRequestDto request,
+                                                     ExportTemplate template) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("operationIds", request.getOperationIds());
+        context.put("session", session);
+        context.put("progressService", progressService);
+        context.put("maxReportAgeDays", request.getMaxReportAgeDays());
+        if (session.getFileOperation() != null && session.getFileOperation().getClient() != null) {
+            context.put("clientRegionCode", session.getFileOperation().getClient().getRegionCode());
+        }
+
+        if (template.getExportStrategy().name().equals("TASK_REPORT") &&
+                request.getOperationIds() != null && request.getOperationIds().size() >= 2) {
+            context.put("taskOperationId", request.getOperationIds().get(0));
+            context.put("reportOperationId", request.getOperationIds().get(1));
+        }
+        return context;
+    }
+
+    private void saveStatistics(ExportSession session, ExportStatisticsAggregator statistics,
+                                Map<String, Object> context) {
+        log.info("Сохранение статистики экспорта");
+        try {
+            statisticsWriterService.saveExportStatistics(session, statistics, context);
+        } catch (Exception e) {
+            log.error("Ошибка сохранения статистики экспорта", e);
+        }
+    }
+
+    /**
+     * Параметры файла из запроса переопределяют настройки шаблона
+     */
+    private void applyFormatOverrides(ExportTemplate template, ExportRequestDto request) {
+        if (request.getFileFormat() != null) {
+            template.setFileFormat(request.getFileFormat());
+        }
+        if (request.getCsvDelimiter() != null) {
+            template.setCsvDelimiter(request.getCsvDelimiter());
+        }
+        if (request.getCsvEncoding() != null) {
+            template.setCsvEncoding(request.getCsvEncoding());
+        }
+    }
+
+    /**
+     * Записывает результат в сессию и операцию
+     */
+    private void completeFileOperation(ExportSession session, String fileName, Path filePath,
+                                       long exportedRows, long totalRows) throws IOException {
+        session.setResultFilePath(filePath.toString());
+        session.setFileSize(Files.size(filePath));
+
+        FileOperation fileOperation = session.getFileOperation();
+        fileOperation.setFileName(fileName);
+        fileOperation.setResultFilePath(filePath.toString());
+        fileOperation.setFileSize(Files.size(filePath));
+        fileOperation.setRecordCount((int) exportedRows);
+        fileOperation.setTotalRecords((int) totalRows);
+        fileOperation.markAsCompleted((int) exportedRows);
+
+        fileOperationRepository.save(fileOperation);
+    }
+
     /**
      * Генерирует имя файла
      */
@@ -1,5 +1,6 @@
 package com.java.service.exports;
 
+import com.java.config.MemoryMonitor;
 import com.java.controller.ExportProgressController;
 import com.java.dto.ExportProgressDto;
 import com.java.model.FileOperation;
@@ -15,11 +16,14 @@ import org.springframework.stereotype.Service;
 public class ExportProgressService extends BaseProgressService<ExportSession, ExportProgressDto> {
 
     private final ExportProgressController progressController;
+    private final MemoryMonitor memoryMonitor;
 
     public ExportProgressService(FileOperationRepository fileOperationRepository, 
-                               ExportProgressController progressController) {
+                               ExportProgressController progressController,
+                               MemoryMonitor memoryMonitor) {
         super(fileOperationRepository);
         this.progressController = progressController;
+        this.memoryMonitor = memoryMonitor;
     }
 
     // Реализация абстрактных методов BaseProgressService
@@ -37,6 +41,8 @@ public class ExportProgressService extends BaseProgressService<ExportSession, Ex
                 .timestamp(System.currentTimeMillis())
                 .updateType("PROGRESS")
                 .currentOperation(getCurrentOperation(session))
+                .memoryUsagePercent((int) Math.round(memoryMonitor.getHeapUsage() * 100))
+                .memoryDecision(memoryMonitor.getLastExportDecision())
                 .build();
     }
 
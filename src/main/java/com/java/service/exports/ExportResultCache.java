@@ -0,0 +1,316 @@
+package com.java.service.exports;
+
+import com.java.dto.ExportRequestDto;
+import com.java.dto.ExportTemplateFilterDto;
+import com.java.model.entity.ExportTemplate;
+import com.java.model.entity.ExportTemplateField;
+import com.java.model.enums.EntityType;
+import com.java.model.enums.ExportStrategy;
+import com.java.util.PathResolver;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Кеш результатов экспорта: повторный запуск того же шаблона с теми же параметрами
+ * по неизменившимся данным получает копию готового файла вместо выборки, стратегии и генерации.
+ * <p>
+ * Ключ — отпечаток всего, что влияет на содержимое файла (настройки шаблона, поля, фильтры,
+ * операции, период, переопределения формата), и версия данных: количество строк av_data
+ * выбранных операций и их наибольший id. Строки av_data не обновляются, только добавляются
+ * и удаляются: добавление увеличивает id, удаление уменьшает количество, поэтому удаление N строк
+ * с добавлением N новых тоже меняет версию. Удаление операции целиком дополнительно сбрасывает
+ * её записи через {@link #invalidateOperation}.
+ * <p>
+ * Кеш держит собственную жёсткую ссылку на файл (или копию, если ссылки не поддерживаются),
+ * поэтому очистка файлов сессий его не ломает. Размер ограничен по байтам и количеству
+ * записей, вытесняются давно не использованные (LRU).
+ * Кешируются только потоковые стратегии по av_data: TASK_REPORT зависит от заданий других
+ * операций, справочника и текущей даты. Дельта-выгрузки не кешируются: их окно сдвигается
+ * с каждой выгрузкой
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExportResultCache {
+
+    private static final String CACHE_DIR = "export-cache";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PathResolver pathResolver;
+
+    @Value("${export.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${export.cache.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    @Value("${export.cache.max-entries:100}")
+    private int maxEntries;
+
+    /**
+     * Записи в порядке доступа: первая — давно не использованная
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Ключ кеша: отпечаток параметров экспорта и версия данных его операций
+     */
+    public record Key(String fingerprint, DataVersion dataVersion, Set<Long> operationIds) {
+    }
+
+    /**
+     * Версия данных операций: количество строк и наибольший id
+     */
+    public record DataVersion(long rows, long maxId) {
+    }
+
+    /**
+     * Готовый результат экспорта
+     *
+     * @param statistics статистика, посчитанная при записи файла (null, если отключена)
+     */
+    public record Entry(Key key, Path file, long size, long totalRows, long exportedRows, long filteredRows,
+                        ExportStatisticsAggregator statistics) {
+    }
+
+    /**
+     * Файлы кеша не переживают перезапуск: записи хранятся только в памяти
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            FileSystemUtils.deleteRecursively(cacheDir());
+        } catch (IOException e) {
+            log.warn("Не удалось очистить директорию кеша экспорта: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ключ кеша для экспорта или null, если результат нельзя переиспользовать
+     */
+    public Key key(ExportTemplate template, ExportRequestDto request, List<Long> operationIds) {
+        String fingerprint = fingerprint(template, request, operationIds);
+        if (fingerprint == null) {
+            return null;
+        }
+        return new Key(fingerprint, dataVersion(operationIds), Set.copyOf(operationIds));
+    }
+
+    /**
+     * Отпечаток экспорта или null, если результат нельзя переиспользовать
+     */
+    private String fingerprint(ExportTemplate template, ExportRequestDto request, List<Long> operationIds) {
+        if (!enabled || operationIds.isEmpty() || Boolean.TRUE.equals(request.getDeltaMode())
+                || template.getEntityType() != EntityType.AV_DATA
+                || template.getExportStrategy() == ExportStrategy.TASK_REPORT) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(512);
+        append(key, template.getId(), template.getUpdatedAt(), template.getEntityType(), template.getExportStrategy(),
+                template.getFileFormat(), template.getCsvDelimiter(), template.getCsvEncoding(),
+                template.getCsvQuoteChar(), template.getCsvIncludeHeader(), template.getXlsxSheetName(),
+                template.getXlsxAutoSizeColumns(), template.getMaxRowsPerFile(), template.getEnableStatistics(),
+                template.getStatisticsCountFields(), template.getStatisticsGroupField(),
+                template.getStatisticsFilterFields());
+
+        template.getFields().stream()
+                .sorted(Comparator.comparing(ExportTemplateField::getFieldOrder, Comparator.nullsLast(Integer::compare))
+                        .thenComparing(ExportTemplateField::getEntityFieldName, Comparator.nullsLast(String::compareTo)))
+                .forEach(f -> append(key.append("|field"), f.getEntityFieldName(), f.getExportColumnName(),
+                        f.getFieldOrder(), f.getIsIncluded(), f.getDataFormat(), f.getTransformationRule(),
+                        f.getNormalizationType(), f.getNormalizationRule()));
+
+        template.getFilters().stream()
+                .map(f -> String.join("\u0001", String.valueOf(f.getFieldName()), String.valueOf(f.getFilterType()),
+                        String.valueOf(f.getFilterValue()), String.valueOf(f.getIsActive())))
+                .sorted()
+                .forEach(f -> key.append("|filter").append(f));
+
+        append(key.append("|request"), operationIds.stream().sorted().toList(),
+                instant(request.getDateFrom()), instant(request.getDateTo()),
+                request.getFileFormat(), request.getCsvDelimiter(), request.getCsvEncoding());
+        if (request.getAdditionalFilters() != null) {
+            for (ExportTemplateFilterDto f : request.getAdditionalFilters()) {
+                append(key.append("|additional"), f.getFieldName(), f.getFilterType(), f.getFilterValue(), f.getIsActive());
+            }
+        }
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Версия данных операций. Оба агрегата считаются по индексу (operation_id, id)
+     * без чтения строк таблицы
+     */
+    private DataVersion dataVersion(List<Long> operationIds) {
+        String placeholders = String.join(", ", Collections.nCopies(operationIds.size(), "?"));
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM av_data WHERE operation_id IN (" + placeholders + ")",
+                (rs, rowNum) -> new DataVersion(rs.getLong(1), rs.getLong(2)), operationIds.toArray());
+    }
+
+    /**
+     * Готовый результат для ключа
+     */
+    public synchronized Optional<Entry> find(Key key) {
+        Entry entry = entries.get(key.fingerprint());
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!entry.key().dataVersion().equals(key.dataVersion()) || !Files.exists(entry.file())) {
+            log.debug("Запись кеша экспорта {} устарела", key.fingerprint());
+            remove(key.fingerprint());
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    /**
+     * Создаёт в директории экспорта файл с содержимым из кеша
+     *
+     * @param addUuid добавлять ли UUID к имени файла
+     */
+    public Path materialize(Entry entry, String fileName, boolean addUuid) throws IOException {
+        Path tempFile = pathResolver.getAbsoluteTempDir().resolve("export_" + UUID.randomUUID() + extension(entry.file()));
+        linkOrCopy(entry.file(), tempFile);
+        try {
+            return pathResolver.moveFromTempToExport(tempFile, fileName, addUuid);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Сохраняет результат экспорта
+     */
+    public void put(Key key, Path resultFile, long totalRows, long exportedRows, long filteredRows,
+                    ExportStatisticsAggregator statistics) {
+        String fingerprint = key.fingerprint();
+        try {
+            long size = Files.size(resultFile);
+            if (size > maxSizeMb * 1024 * 1024) {
+                log.debug("Результат экспорта {} КБ больше кеша, не кешируется", size / 1024);
+                return;
+            }
+            Files.createDirectories(cacheDir());
+            Path cached = cacheDir().resolve(fingerprint + "_" + UUID.randomUUID() + extension(resultFile));
+            linkOrCopy(resultFile, cached);
+
+            Entry entry = new Entry(key, cached, size, totalRows, exportedRows, filteredRows, statistics);
+            synchronized (this) {
+                remove(fingerprint);
+                entries.put(fingerprint, entry);
+                totalBytes += size;
+                evict();
+            }
+            log.debug("Результат экспорта сохранён в кеше: {} ({} КБ)", fingerprint, size / 1024);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить результат экспорта в кеше: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает результаты, построенные по данным операции
+     */
+    public synchronized void invalidateOperation(Long operationId) {
+        List<String> stale = entries.values().stream()
+                .map(Entry::key)
+                .filter(k -> k.operationIds().contains(operationId))
+                .map(Key::fingerprint)
+                .toList();
+        stale.forEach(this::remove);
+        if (!stale.isEmpty()) {
+            log.debug("Сброшено {} записей кеша экспорта по операции {}", stale.size(), operationId);
+        }
+    }
+
+    private void evict() {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((totalBytes > maxBytes || entries.size() > maxEntries) && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            totalBytes -= eldest.size();
+            deleteQuietly(eldest.file());
+        }
+    }
+
+    private void remove(String fingerprint) {
+        Entry entry = entries.remove(fingerprint);
+        if (entry != null) {
+            totalBytes -= entry.size();
+            deleteQuietly(entry.file());
+        }
+    }
+
+    private Path cacheDir() {
+        return pathResolver.getAbsoluteTempDir().resolve(CACHE_DIR);
+    }
+
+    /**
+     * Жёсткая ссылка: мгновенно и без второй копии на диске; копия, если ссылки не поддерживаются
+     */
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл кеша экспорта {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot) : "";
+    }
+
+    private static Object instant(ZonedDateTime value) {
+        return value != null ? value.toInstant() : null;
+    }
+
+    private static void append(StringBuilder key, Object... values) {
+        for (Object value : values) {
+            key.append('\u0001').append(Objects.toString(value));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.java.service.exports;
+
+import com.java.model.entity.ExportSession;
+import com.java.model.entity.ExportStatistics;
+import com.java.service.exports.row.ColumnLookup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика экспорта за один проход по строкам.
+ * <p>
+ * Каждая строка, записанная в файл, обновляет счётчики своей группы: общие и для каждого
+ * значения каждого поля фильтрации. Строки не сохраняются, поэтому стоимость — O(строк)
+ * при любых настройках статистики, а память — O(групп × значений фильтров).
+ * Поле фильтрации, у которого значений больше лимита, пропускается целиком, как и раньше.
+ * <p>
+ * Создаётся через {@link ExportStatisticsWriterService#createAggregator}, рассчитан на один поток
+ */
+@Slf4j
+public final class ExportStatisticsAggregator {
+
+    private static final String ALL = "ALL";
+    private static final int COUNT_OFFSET = 1;
+
+    private final String groupField;
+    private final List<String> countFields;
+    private final List<String> filterFields;
+    private final int maxFilterValues;
+
+    /**
+     * Колонки строки: [группировка, поля подсчёта..., поля фильтрации...]
+     */
+    private final ColumnLookup columns;
+    private final int filterOffset;
+    private final boolean[] nonEmpty;
+
+    private final Map<String, GroupCounters> groups = new LinkedHashMap<>();
+    private final List<Map<String, Map<String, GroupCounters>>> filterGroups = new ArrayList<>();
+    private final boolean[] filterOverflow;
+    private long rows;
+
+    ExportStatisticsAggregator(String groupField, String groupColumn,
+                               List<String> countFields, List<String> countColumns,
+                               List<String> filterFields, List<String> filterColumns,
+                               int maxFilterValues) {
+        this.groupField = groupField;
+        this.countFields = List.copyOf(countFields);
+        this.filterFields = List.copyOf(filterFields);
+        this.maxFilterValues = maxFilterValues;
+
+        List<String> names = new ArrayList<>(1 + countColumns.size() + filterColumns.size());
+        names.add(groupColumn);
+        names.addAll(countColumns);
+        names.addAll(filterColumns);
+        this.columns = new ColumnLookup(names);
+        this.filterOffset = COUNT_OFFSET + countColumns.size();
+        this.nonEmpty = new boolean[countColumns.size()];
+
+        for (int i = 0; i < filterFields.size(); i++) {
+            filterGroups.add(new LinkedHashMap<>());
+        }
+        this.filterOverflow = new boolean[filterFields.size()];
+    }
+
+    /**
+     * Учитывает строку, записанную в файл
+     */
+    public void accept(Map<String, Object> row) {
+        if (rows++ == 0) {
+            warnMissingCountColumns(row);
+        }
+
+        String group = valueOf(row, 0);
+        for (int i = 0; i < nonEmpty.length; i++) {
+            nonEmpty[i] = isNotEmpty(columns.get(row, COUNT_OFFSET + i));
+        }
+
+        add(groups, group);
+
+        for (int f = 0; f < filterFields.size(); f++) {
+            if (filterOverflow[f]) {
+                continue;
+            }
+            Map<String, Map<String, GroupCounters>> byValue = filterGroups.get(f);
+            String filterValue = valueOf(row, filterOffset + f);
+            Map<String, GroupCounters> valueGroups = byValue.get(filterValue);
+            if (valueGroups == null) {
+                if (byValue.size() >= maxFilterValues) {
+                    // Высококардинальное поле не попадает в статистику: счётчики больше не нужны
+                    filterOverflow[f] = true;
+                    byValue.clear();
+                    continue;
+                }
+                valueGroups = new LinkedHashMap<>();
+                byValue.put(filterValue, valueGroups);
+            }
+            add(valueGroups, group);
+        }
+    }
+
+    /**
+     * Количество учтённых строк
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Записи статистики: общие (без фильтра) и для каждого значения каждого поля фильтрации
+     *
+     * @param dateModificationsByGroup количество изменённых дат по группам (может быть null)
+     */
+    List<ExportStatistics> build(ExportSession session, Map<String, Integer> dateModificationsByGroup) {
+        List<ExportStatistics> statistics = new ArrayList<>();
+        addStatistics(statistics, session, groups, null, null, dateModificationsByGroup);
+
+        for (int f = 0; f < filterFields.size(); f++) {
+            String filterField = filterFields.get(f);
+            if (filterOverflow[f]) {
+                log.warn("Поле фильтрации '{}' имеет больше {} уникальных значений. " +
+                                "Фильтрация пропущена для предотвращения взрывного роста данных.",
+                        filterField, maxFilterValues);
+                continue;
+            }
+            Map<String, Map<String, GroupCounters>> byValue = filterGroups.get(f);
+            log.debug("Поле фильтрации '{}' (колонка '{}'): {} уникальных значений",
+                    filterField, columns.name(filterOffset + f), byValue.size());
+            for (Map.Entry<String, Map<String, GroupCounters>> entry : byValue.entrySet()) {
+                addStatistics(statistics, session, entry.getValue(), filterField, entry.getKey(),
+                        dateModificationsByGroup);
+            }
+        }
+        return statistics;
+    }
+
+    private void addStatistics(List<ExportStatistics> statistics, ExportSession session,
+                               Map<String, GroupCounters> groupCounters,
+                               String filterFieldName, String filterFieldValue,
+                               Map<String, Integer> dateModificationsByGroup) {
+
+        for (Map.Entry<String, GroupCounters> groupEntry : groupCounters.entrySet()) {
+            String groupValue = groupEntry.getKey();
+            GroupCounters counters = groupEntry.getValue();
+
+            // Статистика по полям подсчета
+            for (int i = 0; i < countFields.size(); i++) {
+                statistics.add(ExportStatistics.builder()
+                        .exportSession(session)
+                        .groupFieldName(groupField)
+                        .groupFieldValue(groupValue)
+                        .countFieldName(countFields.get(i))
+                        .countValue(counters.nonEmpty[i])
+                        .totalRecordsCount(counters.total)
+                        .filterFieldName(filterFieldName)
+                        .filterFieldValue(filterFieldValue)
+                        .dateModificationsCount(0L)
+                        .modificationType("STANDARD")
+                        .build());
+            }
+
+            // Статистика изменений дат (если есть)
+            Integer modificationsCount = dateModificationsByGroup != null
+                    ? dateModificationsByGroup.get(groupValue) : null;
+            if (modificationsCount != null && modificationsCount > 0) {
+                statistics.add(ExportStatistics.builder()
+                        .exportSession(session)
+                        .groupFieldName(groupField)
+                        .groupFieldValue(groupValue)
+                        .countFieldName("DATE_MODIFICATIONS")
+                        .countValue(modificationsCount.longValue())
+                        .totalRecordsCount(counters.total)
+                        .filterFieldName(filterFieldName)
+                        .filterFieldValue(filterFieldValue)
+                        .dateModificationsCount(modificationsCount.longValue())
+                        .modificationType("DATE_ADJUSTMENT")
+                        .build());
+            }
+        }
+    }
+
+    private void add(Map<String, GroupCounters> groupCounters, String group) {
+        GroupCounters counters = groupCounters.computeIfAbsent(group, g -> new GroupCounters(nonEmpty.length));
+        counters.total++;
+        for (int i = 0; i < nonEmpty.length; i++) {
+            if (nonEmpty[i]) {
+                counters.nonEmpty[i]++;
+            }
+        }
+    }
+
+    /**
+     * Значение группировки или фильтра: ALL, NULL, EMPTY или строка без пробелов по краям
+     */
+    private String valueOf(Map<String, Object> row, int column) {
+        if (ALL.equals(columns.name(column))) {
+            return ALL;
+        }
+
+        Object value = columns.get(row, column);
+        if (value == null) {
+            return "NULL";
+        }
+
+        String stringValue = value.toString().trim();
+        return stringValue.isEmpty() ? "EMPTY" : stringValue;
+    }
+
+    private static boolean isNotEmpty(Object value) {
+        if (value == null) {
+            return false;
+        }
+
+        String stringValue = value.toString().trim();
+        return !stringValue.isEmpty() && !"null".equalsIgnoreCase(stringValue);
+    }
+
+    private void warnMissingCountColumns(Map<String, Object> row) {
+        for (int i = 0; i < countFields.size(); i++) {
+            if (!columns.contains(row, COUNT_OFFSET + i)) {
+                log.warn("Поле '{}' не найдено в экспортных данных. Доступные поля: {}",
+                        columns.name(COUNT_OFFSET + i), row.keySet());
+            }
+        }
+    }
+
+    /**
+     * Счётчики одной группы
+     */
+    private static final class GroupCounters {
+
+        private long total;
+        private final long[] nonEmpty;
+
+        GroupCounters(int countFields) {
+            this.nonEmpty = new long[countFields];
+        }
+    }
+}
@@ -28,22 +28,16 @@ public class ExportStatisticsWriterService {
     private final ObjectMapper objectMapper;
 
     /**
-     * Сохраняет статистику по данным экспорта
+     * Создаёт агрегатор статистики для шаблона
      *
-     * @param session сессия экспорта
      * @param template шаблон экспорта с настройками статистики
-     * @param exportedData данные, которые были экспортированы в файл
-     * @param context контекст операции экспорта с дополнительными данными
+     * @return агрегатор или null, если статистика отключена
      */
-    @Transactional
-    public void saveExportStatistics(ExportSession session, ExportTemplate template,
-                                     List<Map<String, Object>> exportedData, 
-                                     Map<String, Object> context) {
-
+    public ExportStatisticsAggregator createAggregator(ExportTemplate template) {
         // Проверяем, включена ли статистика для шаблона
         if (!Boolean.TRUE.equals(template.getEnableStatistics())) {
             log.debug("Статистика отключена для шаблона ID: {}", template.getId());
-            return;
+            return null;
         }
 
         // Получаем настройки статистики из шаблона
@@ -53,7 +47,7 @@ public class ExportStatisticsWriterService {
 
         if (countFields.isEmpty()) {
             log.warn("Нет полей для подсчета в шаблоне ID: {}", template.getId());
-            return;
+            return null;
         }
 
         // Если поле группировки не указано, используем константу
@@ -64,82 +58,60 @@ public class ExportStatisticsWriterService {
 
         // Создаем маппинг entity field -> export column
         Map<String, String> fieldMapping = createFieldMapping(template);
-
-        log.info("Сохранение статистики для сессии ID: {}, группировка: {}, подсчет: {}, фильтрация: {}",
-                session.getId(), groupField, countFields.size(), filterFields.size());
         log.debug("Маппинг полей: {}", fieldMapping);
-        log.debug("Доступные поля в первой строке данных: {}",
-                exportedData.isEmpty() ? "нет данных" : exportedData.get(0).keySet());
-
-        // Удаляем старую статистику для этой сессии (если есть)
-        statisticsRepository.deleteByExportSessionId(session.getId());
 
-        // Получаем название колонки группировки в экспортных данных
-        String groupColumnName = getExportColumnName(groupField, fieldMapping);
+        return new ExportStatisticsAggregator(
+                groupField, getExportColumnName(groupField, fieldMapping),
+                countFields, countFields.stream().map(f -> getExportColumnName(f, fieldMapping)).toList(),
+                filterFields, filterFields.stream().map(f -> getExportColumnName(f, fieldMapping)).toList(),
+                MAX_FILTER_VALUES);
+    }
 
-        // Группируем данные по значению поля группировки
-        Map<String, List<Map<String, Object>>> groupedData = groupDataByField(exportedData, groupColumnName);
+    /**
+     * Сохраняет статистику, накопленную агрегатором во время записи файла
+     *
+     * @param session сессия экспорта
+     * @param aggregator агрегатор, через который прошли все строки файла
+     * @param context контекст операции экспорта с дополнительными данными
+     */
+    @Transactional
+    public void saveExportStatistics(ExportSession session, ExportStatisticsAggregator aggregator,
+                                     Map<String, Object> context) {
+        log.info("Сохранение статистики для сессии ID: {}, строк: {}", session.getId(), aggregator.getRowCount());
 
-        log.debug("Данные сгруппированы на {} групп по колонке '{}'", groupedData.size(), groupColumnName);
+        // Удаляем старую статистику для этой сессии (если есть)
+        statisticsRepository.deleteByExportSessionId(session.getId());
 
         // Получаем статистику изменений дат из контекста (если есть)
+        @SuppressWarnings("unchecked")
         Map<String, Integer> dateModificationsByGroup = (Map<String, Integer>) context.get("dateModificationsByGroup");
 
-        // Для каждой группы подсчитываем статистику
-        List<ExportStatistics> statisticsToSave = new ArrayList<>();
-
-        // 1. СОХРАНЯЕМ ОБЩУЮ СТАТИСТИКУ (filter = NULL)
-        log.debug("Сохранение общей статистики без фильтра");
-        statisticsToSave.addAll(calculateStatistics(session, template, groupedData,
-                groupField, countFields, fieldMapping,
-                null, null, dateModificationsByGroup));
-
-        // 2. СОХРАНЯЕМ СТАТИСТИКУ ДЛЯ КАЖДОГО ФИЛЬТРА
-        for (String filterField : filterFields) {
-            String filterColumnName = getExportColumnName(filterField, fieldMapping);
-
-            // Получаем уникальные значения фильтра
-            Set<String> uniqueValues = getUniqueFilterValues(exportedData, filterColumnName);
-
-            // Валидация: проверка на высококардинальность
-            if (uniqueValues.size() > MAX_FILTER_VALUES) {
-                log.warn("Поле фильтрации '{}' имеет {} уникальных значений (макс {}). " +
-                        "Фильтрация пропущена для предотвращения взрывного роста данных.",
-                        filterField, uniqueValues.size(), MAX_FILTER_VALUES);
-                continue; // Пропускаем это поле фильтрации
-            }
-
-            log.debug("Поле фильтрации '{}' (колонка '{}'): {} уникальных значений",
-                    filterField, filterColumnName, uniqueValues.size());
-
-            // Для каждого значения фильтра
-            for (String filterValue : uniqueValues) {
-                // Фильтруем данные по значению
-                List<Map<String, Object>> filteredData = filterDataByValue(exportedData,
-                        filterColumnName,
-                        filterValue);
-
-                // Группируем отфильтрованные данные
-                Map<String, List<Map<String, Object>>> filteredGroupedData =
-                        groupDataByField(filteredData, groupColumnName);
-
-                log.debug("Фильтр '{}={}': отфильтровано {} записей, {} групп",
-                        filterField, filterValue, filteredData.size(), filteredGroupedData.size());
-
-                // Пересчитываем метрики для отфильтрованных данных
-                statisticsToSave.addAll(calculateStatistics(session, template, filteredGroupedData,
-                        groupField, countFields, fieldMapping,
-                        filterField, filterValue,
-                        dateModificationsByGroup));
-            }
-        }
-
-        // Сохраняем всю статистику
+        List<ExportStatistics> statisticsToSave = aggregator.build(session, dateModificationsByGroup);
         statisticsRepository.saveAll(statisticsToSave);
 
         log.info("Сохранено {} записей статистики для сессии ID: {}", statisticsToSave.size(), session.getId());
     }
 
+    /**
+     * Сохраняет статистику по данным экспорта
+     *
+     * @param session сессия экспорта
+     * @param template шаблон экспорта с настройками статистики
+     * @param exportedData данные, которые были экспортированы в файл
+     * @param context контекст операции экспорта с дополнительными данными
+     */
+    @Transactional
+    public void saveExportStatistics(ExportSession session, ExportTemplate template,
+                                     List<Map<String, Object>> exportedData, 
+                                     Map<String, Object> context) {
+        ExportStatisticsAggregator aggregator = createAggregator(template);
+        if (aggregator == null) {
+            return;
+        }
+        exportedData.forEach(aggregator::accept);
+        saveExportStatistics(session, aggregator, context);
+    }
+
     /**
      * Сохраняет статистику по данным экспорта (версия без контекста для обратной совместимости)
      *
@@ -188,167 +160,4 @@ public class ExportStatisticsWriterService {
         log.warn("Поле '{}' не найдено в маппинге шаблона, используется исходное название", entityFieldName);
         return entityFieldName;
     }
-
-    /**
-     * Группирует данные по значению указанного поля
-     */
-    private Map<String, List<Map<String, Object>>> groupDataByField(
-            List<Map<String, Object>> data, String groupField) {
-
-        Map<String, List<Map<String, Object>>> groups = new HashMap<>();
-
-        for (Map<String, Object> row : data) {
-            // Получаем значение поля группировки
-            String groupValue = getGroupValue(row, groupField);
-
-            // Добавляем строку в соответствующую группу
-            groups.computeIfAbsent(groupValue, k -> new ArrayList<>()).add(row);
-        }
-
-        return groups;
-    }
-
-    /**
-     * Получает значение поля группировки из строки данных
-     */
-    private String getGroupValue(Map<String, Object> row, String groupColumnName) {
-        if ("ALL".equals(groupColumnName)) {
-            return "ALL";
-        }
-
-        Object value = row.get(groupColumnName);
-        if (value == null) {
-            return "NULL";
-        }
-
-        String stringValue = value.toString().trim();
-        return stringValue.isEmpty() ? "EMPTY" : stringValue;
-    }
-
-    /**
-     * Подсчитывает количество непустых значений для указанного поля
-     */
-    private long countNonEmptyValues(List<Map<String, Object>> rows, String fieldName) {
-        log.debug("Подсчет значений для поля '{}' в {} строках", fieldName, rows.size());
-        if (!rows.isEmpty()) {
-            log.debug("Поле '{}' существует в данных: {}", fieldName, rows.get(0).containsKey(fieldName));
-        }
-        if (rows.isEmpty()) {
-            return 0L;
-        }
-
-        // Проверяем, есть ли такое поле в данных
-        boolean fieldExists = rows.get(0).containsKey(fieldName);
-        if (!fieldExists) {
-            log.warn("Поле '{}' не найдено в экспортных данных. Доступные поля: {}",
-                    fieldName, rows.get(0).keySet());
-            return 0L;
-        }
-
-        return rows.stream()
-                .map(row -> row.get(fieldName))
-                .filter(this::isNotEmpty)
-                .count();
-    }
-
-    /**
-     * Проверяет, что значение не пустое
-     */
-    private boolean isNotEmpty(Object value) {
-        if (value == null) {
-            return false;
-        }
-
-        String stringValue = value.toString().trim();
-        return !stringValue.isEmpty() && !"null".equalsIgnoreCase(stringValue);
-    }
-
-
-    /**
-     * Получает уникальные значения для указанного поля фильтрации
-     */
-    private Set<String> getUniqueFilterValues(List<Map<String, Object>> data, String filterColumnName) {
-        return data.stream()
-                .map(row -> getGroupValue(row, filterColumnName))
-                .collect(java.util.stream.Collectors.toSet());
-    }
-
-    /**
-     * Фильтрует данные по значению указанного поля
-     */
-    private List<Map<String, Object>> filterDataByValue(List<Map<String, Object>> data,
-                                                         String filterColumnName,
-                                                         String filterValue) {
-        return data.stream()
-                .filter(row -> {
-                    String value = getGroupValue(row, filterColumnName);
-                    return value.equals(filterValue);
-                })
-                .collect(java.util.stream.Collectors.toList());
-    }
-
-    /**
-     * Вычисляет статистику для группированных данных
-     */
-    private List<ExportStatistics> calculateStatistics(ExportSession session,
-                                                       ExportTemplate template,
-                                                       Map<String, List<Map<String, Object>>> groupedData,
-                                                       String groupField,
-                                                       List<String> countFields,
-                                                       Map<String, String> fieldMapping,
-                                                       String filterFieldName,
-                                                       String filterFieldValue,
-                                                       Map<String, Integer> dateModificationsByGroup) {
-
-        List<ExportStatistics> statistics = new ArrayList<>();
-
-        for (Map.Entry<String, List<Map<String, Object>>> groupEntry : groupedData.entrySet()) {
-            String groupValue = groupEntry.getKey();
-            List<Map<String, Object>> groupRows = groupEntry.getValue();
-
-            // Статистика по полям подсчета
-            for (String countField : countFields) {
-                String countColumnName = getExportColumnName(countField, fieldMapping);
-                long countValue = countNonEmptyValues(groupRows, countColumnName);
-
-                ExportStatistics stat = ExportStatistics.builder()
-                        .exportSession(session)
-                        .groupFieldName(groupField)
-                        .groupFieldValue(groupValue)
-                        .countFieldName(countField)
-                        .countValue(countValue)
-                        .totalRecordsCount((long) groupRows.size())
-                        .filterFieldName(filterFieldName)
-                        .filterFieldValue(filterFieldValue)
-                        .dateModificationsCount(0L)
-                        .modificationType("STANDARD")
-                        .build();
-
-                statistics.add(stat);
-            }
-
-            // Статистика изменений дат (если есть)
-            if (dateModificationsByGroup != null && dateModificationsByGroup.containsKey(groupValue)) {
-                Integer modificationsCount = dateModificationsByGroup.get(groupValue);
-                if (modificationsCount != null && modificationsCount > 0) {
-                    ExportStatistics dateModStats = ExportStatistics.builder()
-                            .exportSession(session)
-                            .groupFieldName(groupField)
-                            .groupFieldValue(groupValue)
-                            .countFieldName("DATE_MODIFICATIONS")
-                            .countValue(modificationsCount.longValue())
-                            .totalRecordsCount((long) groupRows.size())
-                            .filterFieldName(filterFieldName)
-                            .filterFieldValue(filterFieldValue)
-                            .dateModificationsCount(modificationsCount.longValue())
-                            .modificationType("DATE_ADJUSTMENT")
-                            .build();
-
-                    statistics.add(dateModStats);
-                }
-            }
-        }
-
-        return statistics;
-    }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import com.java.exception.FileOperationException;
 import com.java.exception.ImportQuotaExceededException;
 import com.java.model.entity.ExportTemplate;
 import com.java.service.exports.generator.FileGenerator;
+import com.java.service.exports.generator.XlsxFileGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,6 +28,9 @@ public class FileGeneratorService {
     @Value("${export.xlsx.max-rows:1048576}")
     private int xlsxMaxRows;
 
+    @Value("${export.xlsx.max-sheets:16}")
+    private int xlsxMaxSheets;
+
     @Value("${export.enable-auto-format-switch:true}")
     private boolean enableAutoFormatSwitch;
 
@@ -138,11 +142,14 @@ public class FileGeneratorService {
                                    String operationId) {
         String format = template.getFileFormat().toUpperCase();
 
-        // Автоматическое переключение на CSV при превышении лимита XLSX
-        if ("XLSX".equals(format) && dataSize > xlsxMaxRows) {
+        // Строки сверх лимита листа переносятся на следующие листы; на CSV переключаемся,
+        // только если не хватает и максимального числа листов. Ёмкость листа — как у генератора
+        // (заголовок есть всегда: шаблон без включённых полей отклонён выше)
+        long xlsxMaxTotalRows = (long) XlsxFileGenerator.rowsPerSheet(xlsxMaxRows, true) * xlsxMaxSheets;
+        if ("XLSX".equals(format) && dataSize > xlsxMaxTotalRows) {
             if (enableAutoFormatSwitch) {
                 log.warn("Data size {} exceeds XLSX limit {}, switching to CSV. OperationId: {}",
-                        dataSize, xlsxMaxRows, operationId);
+                        dataSize, xlsxMaxTotalRows, operationId);
                 template.setFileFormat("CSV");
                 return "CSV";
             } else {
@@ -150,9 +157,9 @@ public class FileGeneratorService {
                 throw new ImportQuotaExceededException(
                         ErrorMessages.format(
                                 "Data size %d exceeds XLSX maximum of %d rows",
-                                dataSize, xlsxMaxRows
+                                dataSize, xlsxMaxTotalRows
                         ),
-                        xlsxMaxRows,
+                        (int) Math.min(xlsxMaxTotalRows, Integer.MAX_VALUE),
                         (int) dataSize
                 );
             }
@@ -0,0 +1,115 @@
+package com.java.service.exports.formatter;
+
+import com.java.model.entity.ExportTemplateField;
+import com.java.service.normalization.NormalizationService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.function.UnaryOperator;
+
+/**
+ * Преобразование значения поля шаблона: нормализация (normalizationType) и формат данных (dataFormat).
+ * <p>
+ * Собирается один раз на выгрузку: нормализатор подбирается заранее, шаблон даты
+ * разбирается в DateTimeFormatter один раз, а не для каждой ячейки, шаблон числа
+ * заранее переводится в формат String.format. Результат тот же, что у прежнего
+ * преобразования по ячейкам. Рассчитан на поток, обрабатывающий выгрузку
+ */
+@Slf4j
+public final class FieldFormat {
+
+    private static final FieldFormat NONE = new FieldFormat(null, null, null, null, null);
+
+    private final String fieldName;
+    private final UnaryOperator<Object> normalizer;
+    private final DateTimeFormatter dateFormatter;
+    private final IllegalArgumentException dateFormatError;
+    private final String numberFormat;
+    private boolean dateFormatErrorLogged;
+
+    private FieldFormat(String fieldName, UnaryOperator<Object> normalizer, DateTimeFormatter dateFormatter,
+                        IllegalArgumentException dateFormatError, String numberFormat) {
+        this.fieldName = fieldName;
+        this.normalizer = normalizer;
+        this.dateFormatter = dateFormatter;
+        this.dateFormatError = dateFormatError;
+        this.numberFormat = numberFormat;
+    }
+
+    /**
+     * Преобразование для поля шаблона
+     *
+     * @param normalizationService сервис нормализации (нужен, только если у поля задан тип нормализации)
+     */
+    public static FieldFormat compile(ExportTemplateField field, NormalizationService normalizationService) {
+        String format = field.getDataFormat();
+        if (field.getNormalizationType() == null && format == null) {
+            return NONE;
+        }
+
+        UnaryOperator<Object> normalizer = field.getNormalizationType() != null
+                ? normalizationService.compile(field.getNormalizationType(), field.getNormalizationRule())
+                : null;
+
+        DateTimeFormatter dateFormatter = null;
+        IllegalArgumentException dateFormatError = null;
+        String numberFormat = null;
+        if (format != null) {
+            try {
+                dateFormatter = DateTimeFormatter.ofPattern(format);
+            } catch (IllegalArgumentException e) {
+                // Шаблон числа (#,##0.00) не разбирается как шаблон даты — ошибка важна, только если придёт дата
+                dateFormatError = e;
+            }
+            if (format.contains("#")) {
+                numberFormat = format.replace("#", "%");
+            }
+        }
+        return new FieldFormat(field.getEntityFieldName(), normalizer, dateFormatter, dateFormatError, numberFormat);
+    }
+
+    /**
+     * Преобразованное значение; null остаётся null
+     */
+    public Object apply(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (normalizer != null) {
+            try {
+                value = normalizer.apply(value);
+            } catch (Exception e) {
+                log.warn("Ошибка нормализации поля '{}': {}", fieldName, e.getMessage());
+            }
+            if (value == null) {
+                return null;
+            }
+        }
+        return format(value);
+    }
+
+    private Object format(Object value) {
+        try {
+            if (value instanceof LocalDateTime || value instanceof ZonedDateTime) {
+                if (dateFormatter != null) {
+                    return dateFormatter.format((TemporalAccessor) value);
+                }
+                if (dateFormatError != null && !dateFormatErrorLogged) {
+                    dateFormatErrorLogged = true;
+                    log.warn("Ошибка форматирования значения: {}", dateFormatError.getMessage());
+                }
+                return value;
+            }
+            if (value instanceof Number && numberFormat != null) {
+                // Простое форматирование чисел
+                return String.format(numberFormat, value);
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка форматирования значения: {}", e.getMessage());
+        }
+        return value;
+    }
+}
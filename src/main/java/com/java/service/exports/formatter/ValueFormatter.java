@@ -1,28 +1,142 @@
 package com.java.service.exports.formatter;
 
 import org.springframework.stereotype.Component;
+
+import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import java.text.SimpleDateFormat;
+import java.util.TimeZone;
 
+/**
+ * Текст значения ячейки экспорта: даты в формате dd.MM.yyyy HH:mm:ss, остальное — toString().
+ * <p>
+ * Без изменяемого состояния, поэтому один экземпляр обслуживает параллельные выгрузки
+ * (общий SimpleDateFormat портил даты при одновременной записи). Генераторы пишут
+ * значения через {@link #formatTo} в переиспользуемый буфер: даты и числа печатаются
+ * по цифрам, без промежуточных строк и объектов
+ */
 @Component
 public class ValueFormatter {
-    private static final DateTimeFormatter DATE_TIME_FORMATTER =
-            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
-    private static final SimpleDateFormat DATE_FORMAT =
-            new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+
+    private static final String DATE_TIME_PATTERN = "dd.MM.yyyy HH:mm:ss";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_PATTERN);
+
+    /**
+     * Начало 1583 года: раньше SimpleDateFormat считает по юлианскому календарю,
+     * такие даты печатаются через него
+     */
+    private static final long GREGORIAN_FROM_MILLIS = -12_212_553_600_000L;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /**
+     * Часовой пояс дат java.util.Date — как у SimpleDateFormat, созданного при запуске
+     */
+    private final TimeZone zone;
+
+    public ValueFormatter() {
+        this(TimeZone.getDefault());
+    }
+
+    ValueFormatter(TimeZone zone) {
+        this.zone = zone;
+    }
 
     public String format(Object value) {
         if (value == null) {
             return "";
         }
-        if (value instanceof LocalDateTime) {
-            return ((LocalDateTime) value).format(DATE_TIME_FORMATTER);
+        if (value instanceof String string) {
+            return string;
+        }
+        StringBuilder out = new StringBuilder(24);
+        formatTo(value, out);
+        return out.toString();
+    }
+
+    /**
+     * Дописывает текст значения в буфер; null — пустая строка
+     */
+    public void formatTo(Object value, StringBuilder out) {
+        if (value == null) {
+            return;
         }
-        if (value instanceof Date) {
-            return DATE_FORMAT.format((Date) value);
+        if (value instanceof String string) {
+            out.append(string);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            out.append(((Number) value).longValue());
+        } else if (value instanceof Double d) {
+            out.append(d.doubleValue());
+        } else if (value instanceof Boolean b) {
+            out.append(b.booleanValue());
+        } else if (value instanceof LocalDateTime dateTime) {
+            formatLocalDateTime(dateTime, out);
+        } else if (value instanceof Date date) {
+            formatDate(date, out);
+        } else {
+            out.append(value);
         }
-        return value.toString();
     }
-}
\ No newline at end of file
+
+    private static void formatLocalDateTime(LocalDateTime value, StringBuilder out) {
+        int year = value.getYear();
+        if (year < 1 || year > 9999) {
+            // Знак и год эры печатает только DateTimeFormatter
+            DATE_TIME_FORMATTER.formatTo(value, out);
+            return;
+        }
+        appendDateTime(out, year, value.getMonthValue(), value.getDayOfMonth(),
+                value.getHour(), value.getMinute(), value.getSecond());
+    }
+
+    private void formatDate(Date value, StringBuilder out) {
+        long millis = value.getTime();
+        long local = millis + zone.getOffset(millis);
+        if (local < GREGORIAN_FROM_MILLIS) {
+            SimpleDateFormat julian = new SimpleDateFormat(DATE_TIME_PATTERN);
+            julian.setTimeZone(zone);
+            out.append(julian.format(value));
+            return;
+        }
+
+        long epochDay = Math.floorDiv(local, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(local, MILLIS_PER_DAY) / 1000);
+
+        // Дата по номеру дня от 1970-01-01 (алгоритм civil_from_days, Howard Hinnant)
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendDateTime(out, year, month, day, secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    private static void appendDateTime(StringBuilder out, long year, int month, int day,
+                                       int hour, int minute, int second) {
+        append2(out, day);
+        out.append('.');
+        append2(out, month);
+        out.append('.');
+        if (year < 1000) {
+            out.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        out.append(year);
+        out.append(' ');
+        append2(out, hour);
+        out.append(':');
+        append2(out, minute);
+        out.append(':');
+        append2(out, second);
+    }
+
+    private static void append2(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
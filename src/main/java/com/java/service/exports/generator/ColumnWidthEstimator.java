@@ -0,0 +1,91 @@
+package com.java.service.exports.generator;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Ширина колонок листа по ходу записи, без второго прохода по данным и без autoSizeColumn.
+ * <p>
+ * Для каждой колонки хранится равномерная выборка длин значений (reservoir sampling,
+ * алгоритм R) фиксированного размера; ширина колонки — 95-й перцентиль длины по выборке,
+ * но не меньше заголовка. Редкие очень длинные значения не растягивают колонку,
+ * а память не зависит от количества строк.
+ * <p>
+ * Рассчитан на один поток — поток, который пишет лист
+ */
+final class ColumnWidthEstimator {
+
+    private static final int RESERVOIR_SIZE = 1024;
+    private static final double PERCENTILE = 0.95;
+
+    /**
+     * Запас на кнопку автофильтра в заголовке
+     */
+    private static final int HEADER_PADDING = 3;
+    private static final int VALUE_PADDING = 2;
+    private static final int MIN_WIDTH_CHARS = 8;
+    private static final int MAX_WIDTH_CHARS = 60;
+
+    /**
+     * Единица ширины колонки в POI — 1/256 символа
+     */
+    private static final int CHAR_WIDTH = 256;
+
+    private final int[] headerLengths;
+    private final int[][] samples;
+    private final long[] seen;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    ColumnWidthEstimator(List<String> headers) {
+        int columns = headers.size();
+        this.headerLengths = new int[columns];
+        this.samples = new int[columns][RESERVOIR_SIZE];
+        this.seen = new long[columns];
+        for (int i = 0; i < columns; i++) {
+            headerLengths[i] = headers.get(i) != null ? headers.get(i).length() : 0;
+        }
+    }
+
+    /**
+     * Учитывает длину значения ячейки (в символах)
+     */
+    void record(int column, int length) {
+        long n = seen[column]++;
+        if (n < RESERVOIR_SIZE) {
+            samples[column][(int) n] = length;
+            return;
+        }
+        long j = random.nextLong(n + 1);
+        if (j < RESERVOIR_SIZE) {
+            samples[column][(int) j] = length;
+        }
+    }
+
+    /**
+     * Ширина колонки в символах
+     */
+    int widthChars(int column) {
+        int width = headerLengths[column] + HEADER_PADDING;
+
+        int size = (int) Math.min(seen[column], RESERVOIR_SIZE);
+        if (size > 0) {
+            int[] sorted = Arrays.copyOf(samples[column], size);
+            Arrays.sort(sorted);
+            int p95 = sorted[Math.min(size - 1, (int) Math.ceil(size * PERCENTILE) - 1)];
+            width = Math.max(width, p95 + VALUE_PADDING);
+        }
+        return Math.max(MIN_WIDTH_CHARS, Math.min(MAX_WIDTH_CHARS, width));
+    }
+
+    /**
+     * Выставляет ширину всех колонок листа
+     */
+    void apply(Sheet sheet) {
+        for (int i = 0; i < headerLengths.length; i++) {
+            sheet.setColumnWidth(i, widthChars(i) * CHAR_WIDTH);
+        }
+    }
+}
@@ -6,8 +6,8 @@ import com.java.exception.FileProcessingException;
 import com.java.model.entity.ExportTemplate;
 import com.java.model.entity.ExportTemplateField;
 import com.java.service.exports.formatter.ValueFormatter;
+import com.java.service.exports.row.ColumnLookup;
 import com.java.util.PathResolver;
-import com.opencsv.CSVWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -87,11 +87,11 @@ public class CsvFileGenerator extends AbstractFileGenerator {
         List<String> headers = extractHeaders(fields);
         Charset charset = getCharset(template, fileName);
 
-        try (Writer writer = Files.newBufferedWriter(tempFile, charset);
-             CSVWriter csvWriter = createCsvWriter(writer, template)) {
+        try (Writer writer = Files.newBufferedWriter(tempFile, charset)) {
+            CsvRowWriter csvWriter = createCsvWriter(writer, template);
 
             writeHeaders(csvWriter, headers, template);
-            writeDataBatch(csvWriter, data, fields, headers, fileName);
+            writeDataBatch(csvWriter, data, headers, fileName);
 
         } catch (IOException e) {
             throw new FileProcessingException(
@@ -116,7 +116,7 @@ public class CsvFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private CSVWriter createCsvWriter(Writer writer, ExportTemplate template) {
+    private CsvRowWriter createCsvWriter(Writer writer, ExportTemplate template) {
         // Валидация параметров CSV
         String delimiter = template.getCsvDelimiter();
         String quoteChar = template.getCsvQuoteChar();
@@ -128,27 +128,20 @@ public class CsvFileGenerator extends AbstractFileGenerator {
             quoteChar = "\"";
         }
 
-        return new CSVWriter(
-                writer,
-                delimiter.charAt(0),
-                quoteChar.charAt(0),
-                quoteChar.charAt(0),
-                CSVWriter.DEFAULT_LINE_END
-        );
+        return new CsvRowWriter(writer, delimiter.charAt(0), quoteChar.charAt(0), valueFormatter);
     }
 
-    private void writeHeaders(CSVWriter csvWriter,
+    private void writeHeaders(CsvRowWriter csvWriter,
                               List<String> headers,
                               ExportTemplate template) throws IOException {
         if (Boolean.TRUE.equals(template.getCsvIncludeHeader()) && !headers.isEmpty()) {
-            csvWriter.writeNext(headers.toArray(new String[0]));
+            csvWriter.writeHeader(headers);
             log.debug("Written {} headers", headers.size());
         }
     }
 
-    private void writeDataBatch(CSVWriter csvWriter,
+    private void writeDataBatch(CsvRowWriter csvWriter,
                                 Stream<Map<String, Object>> data,
-                                List<ExportTemplateField> fields,
                                 List<String> headers,
                                 String fileName) throws IOException {
         Iterator<Map<String, Object>> iterator = data.iterator();
@@ -157,7 +150,7 @@ public class CsvFileGenerator extends AbstractFileGenerator {
             return;
         }
 
-        List<String[]> batch = new ArrayList<>();
+        ColumnLookup columns = new ColumnLookup(headers);
         int processed = 0;
         long rowNumber = 1; // 1 for header row
 
@@ -165,22 +158,14 @@ public class CsvFileGenerator extends AbstractFileGenerator {
             while (iterator.hasNext()) {
                 Map<String, Object> row = iterator.next();
                 rowNumber++;
-                String[] values = extractRowValues(row, fields, headers, rowNumber, fileName);
-                batch.add(values);
+                csvWriter.writeRow(row, columns, rowNumber);
                 processed++;
 
-                if (batch.size() >= batchSize) {
-                    csvWriter.writeAll(batch);
-                    batch.clear();
+                if (processed % batchSize == 0) {
                     log.debug("Written batch of {} rows, total processed: {}", batchSize, processed);
                 }
             }
 
-            if (!batch.isEmpty()) {
-                csvWriter.writeAll(batch);
-                log.debug("Written final batch of {} rows", batch.size());
-            }
-
             log.info("Successfully written {} rows to CSV", processed);
 
         } catch (Exception e) {
@@ -192,29 +177,6 @@ public class CsvFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private String[] extractRowValues(Map<String, Object> row,
-                                      List<ExportTemplateField> fields,
-                                      List<String> headers,
-                                      long rowNumber,
-                                      String fileName) {
-        String[] values = new String[headers.size()];
-        int i = 0;
-
-        for (ExportTemplateField field : fields) {
-            try {
-                Object value = row.get(field.getExportColumnName());
-                values[i] = valueFormatter.format(value);
-            } catch (Exception e) {
-                log.warn("Failed to format value for field {} at row {}: {}",
-                        field.getExportColumnName(), rowNumber, e.getMessage());
-                values[i] = "";
-            }
-            i++;
-        }
-
-        return values;
-    }
-
     @Override
     public boolean supports(String format) {
         return "CSV".equalsIgnoreCase(format);
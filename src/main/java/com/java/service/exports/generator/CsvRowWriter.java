@@ -0,0 +1,102 @@
+package com.java.service.exports.generator;
+
+import com.java.service.exports.formatter.ValueFormatter;
+import com.java.service.exports.row.ColumnLookup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись строк CSV без промежуточного String[] и строк значений: каждое значение
+ * форматируется сразу в буфер ячейки, из него с экранированием — в буфер записи,
+ * который уходит в Writer массивом символов. Буферы переиспользуются для всех строк.
+ * <p>
+ * Результат совпадает с CSVWriter, которым файлы писались раньше: все значения в кавычках,
+ * кавычка внутри значения удваивается, строки разделяются \n.
+ * Рассчитан на один поток — поток, который пишет файл
+ */
+@Slf4j
+final class CsvRowWriter {
+
+    private static final char LINE_END = '\n';
+
+    private final Writer writer;
+    private final char separator;
+    private final char quote;
+    private final ValueFormatter formatter;
+
+    private final StringBuilder cell = new StringBuilder(64);
+    private final StringBuilder line = new StringBuilder(1024);
+    private char[] chars = new char[1024];
+
+    CsvRowWriter(Writer writer, char separator, char quote, ValueFormatter formatter) {
+        this.writer = writer;
+        this.separator = separator;
+        this.quote = quote;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Записывает строку заголовка
+     */
+    void writeHeader(List<String> headers) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < headers.size(); i++) {
+            cell.setLength(0);
+            if (headers.get(i) != null) {
+                cell.append(headers.get(i));
+            }
+            appendCell(i);
+        }
+        flushLine();
+    }
+
+    /**
+     * Записывает строку данных: колонки в порядке columns
+     *
+     * @param rowNumber номер строки файла (для сообщений об ошибках)
+     */
+    void writeRow(Map<String, Object> row, ColumnLookup columns, long rowNumber) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < columns.size(); i++) {
+            cell.setLength(0);
+            try {
+                formatter.formatTo(columns.get(row, i), cell);
+            } catch (Exception e) {
+                log.warn("Failed to format value for column {} at row {}: {}",
+                        columns.name(i), rowNumber, e.getMessage());
+                cell.setLength(0);
+            }
+            appendCell(i);
+        }
+        flushLine();
+    }
+
+    private void appendCell(int index) {
+        if (index > 0) {
+            line.append(separator);
+        }
+        line.append(quote);
+        for (int i = 0; i < cell.length(); i++) {
+            char c = cell.charAt(i);
+            if (c == quote) {
+                line.append(quote);
+            }
+            line.append(c);
+        }
+        line.append(quote);
+    }
+
+    private void flushLine() throws IOException {
+        line.append(LINE_END);
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
+}
@@ -1,5 +1,6 @@
 package com.java.service.exports.generator;
 
+import com.java.config.MemoryMonitor;
 import com.java.exception.ErrorMessages;
 import com.java.exception.FileOperationException;
 import com.java.exception.FileProcessingException;
@@ -7,6 +8,7 @@ import com.java.exception.ImportQuotaExceededException;
 import com.java.model.entity.ExportTemplate;
 import com.java.model.entity.ExportTemplateField;
 import com.java.service.exports.formatter.ValueFormatter;
+import com.java.service.exports.row.ColumnLookup;
 import com.java.service.exports.style.ExcelStyleFactory;
 import com.java.service.exports.style.ExcelStyles;
 import com.java.util.PathResolver;
@@ -14,7 +16,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -22,6 +26,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,12 +42,32 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
 
     private final ValueFormatter valueFormatter;
     private final ExcelStyleFactory styleFactory;
+    private final MemoryMonitor memoryMonitor;
+    private final Executor sheetExecutor;
+
+    /**
+     * Максимум строк листа Excel (включая заголовок)
+     */
+    private static final int EXCEL_MAX_ROWS = 1_048_576;
+
+    /**
+     * Сколько пакетов строк может ждать записи в очереди одного листа
+     */
+    private static final int SHEET_QUEUE_BATCHES = 4;
+
+    /**
+     * Длина даты в формате стиля дат "dd.mm.yyyy"
+     */
+    private static final int DATE_FORMAT_LENGTH = 10;
 
     public XlsxFileGenerator(PathResolver pathResolver, ValueFormatter valueFormatter, 
-                           ExcelStyleFactory styleFactory) {
+                           ExcelStyleFactory styleFactory, MemoryMonitor memoryMonitor,
+                           @Qualifier("xlsxSheetExecutor") Executor sheetExecutor) {
         super(pathResolver);
         this.valueFormatter = valueFormatter;
         this.styleFactory = styleFactory;
+        this.memoryMonitor = memoryMonitor;
+        this.sheetExecutor = sheetExecutor;
     }
 
     @Value("${export.batch-size:1000}")
@@ -45,23 +76,23 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
     @Value("${export.xlsx.max-rows:1048576}")
     private int xlsxMaxRows;
 
+    @Value("${export.xlsx.max-sheets:16}")
+    private int xlsxMaxSheets;
+
     @Override
     public Path generate(Stream<Map<String, Object>> data,
                          ExportTemplate template,
                          String fileName) throws FileOperationException {
 
-        List<Map<String, Object>> dataList = data.toList();
-
         String operationId = UUID.randomUUID().toString();
-        log.info("Starting XLSX generation. OperationId: {}, FileName: {}, Records: {}",
-                operationId, fileName, dataList.size());
+        log.info("Starting XLSX generation. OperationId: {}, FileName: {}",
+                operationId, fileName);
 
         try {
-            validateInputs(dataList, template, fileName);
-            checkDataSizeLimit(dataList.size(), fileName);
+            validateInputs(data, template, fileName);
 
             Path tempFile = pathResolver.createTempFile("export_", ".xlsx");
-            writeXlsxFile(tempFile, dataList, template, fileName, operationId);
+            writeXlsxFile(tempFile, data, template, fileName, operationId);
 
             Path resultPath = moveToExportDirectory(tempFile, fileName, template);
             log.info("XLSX generation completed. OperationId: {}, Path: {}", operationId, resultPath);
@@ -85,21 +116,30 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private void checkDataSizeLimit(int dataSize, String fileName) {
-        if (dataSize > xlsxMaxRows) {
+    /**
+     * Строк данных на листе: лимит export.xlsx.max-rows, но не больше, чем помещается
+     * в лист Excel вместе с заголовком. По нему же FileGeneratorService считает ёмкость книги
+     */
+    public static int rowsPerSheet(int maxRows, boolean withHeader) {
+        return Math.min(maxRows, EXCEL_MAX_ROWS - (withHeader ? 1 : 0));
+    }
+
+    private void checkSheetLimit(int sheets, long rowsPerSheet) {
+        if (sheets >= xlsxMaxSheets) {
+            long maxRows = rowsPerSheet * xlsxMaxSheets;
             throw new ImportQuotaExceededException(
                     ErrorMessages.format(
-                            "Data size %d exceeds XLSX limit of %d rows. Please use CSV format for large exports.",
-                            dataSize, xlsxMaxRows
+                            "Data size exceeds XLSX limit of %d rows (%d sheets). Please use CSV format for large exports.",
+                            maxRows, xlsxMaxSheets
                     ),
-                    xlsxMaxRows,
-                    dataSize
+                    (int) Math.min(maxRows, Integer.MAX_VALUE),
+                    (int) Math.min(maxRows + 1, Integer.MAX_VALUE)
             );
         }
     }
 
     private void writeXlsxFile(Path tempFile,
-                               List<Map<String, Object>> data,
+                               Stream<Map<String, Object>> data,
                                ExportTemplate template,
                                String fileName,
                                String operationId) throws FileOperationException {
@@ -113,35 +153,36 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
 
         List<String> headers = extractHeaders(fields);
 
-        // SXSSFWorkbook(rowAccessWindowSize = batchSize)
-        try (SXSSFWorkbook workbook = new SXSSFWorkbook(batchSize);
+        // SXSSFWorkbook(rowAccessWindowSize): batchSize, уменьшенный при нехватке памяти.
+        // Временные файлы SXSSF сжимаются (рекомендуется для больших выгрузок); строки пишутся
+        // inline, без SharedStringsTable — она общая для книги и не потокобезопасна
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(null, memoryMonitor.recommendExportWindow(batchSize),
+                true, false);
              FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
 
-            // Сжимаем временные файлы SXSSF (рекомендуется для больших выгрузок)
-            workbook.setCompressTempFiles(true);
-
-            Sheet sheet = createSheet(workbook, template);
+            // Все стили создаются до запуска потоков листов: потоки только ссылаются на них
             ExcelStyles styles = styleFactory.createStyles(workbook);
+            List<SheetWriter> sheets = writeSheets(workbook, data.iterator(), template, headers, styles, fileName);
 
-            int headerRowIndex = writeHeaders(sheet, headers, styles);
-            int lastDataRow = writeData(sheet, data, fields, styles, headerRowIndex + 1, fileName);
+            long writtenRows = 0;
+            for (SheetWriter sheetWriter : sheets) {
+                writtenRows += sheetWriter.written;
 
-            // Автофильтр
-            if (headerRowIndex >= 0 && !data.isEmpty()) {
-                applyAutoFilter(sheet, headerRowIndex, headers.size(), lastDataRow);
-            }
+                // Автофильтр
+                if (sheetWriter.headerRowIndex >= 0 && sheetWriter.written > 0) {
+                    applyAutoFilter(sheetWriter.sheet, sheetWriter.headerRowIndex, headers.size(),
+                            sheetWriter.nextRow - 1);
+                }
 
-            // Подбор ширины колонок: в SXSSF лучше избегать полного autoSize
-            if (shouldAutoSizeColumns(template, headers.size())) {
-                // Варианты:
-                // 1) ограничить анализ первыми N строками
-                // 2) выставить ширину по заголовкам + небольшой запас
-                // 3) полностью отключить при больших наборах
-                adjustColumnWidthsSafely(sheet, headers);
+                // Ширина колонок по длинам значений, собранным при записи (без autoSizeColumn)
+                if (shouldAutoSizeColumns(template)) {
+                    sheetWriter.widths.apply(sheetWriter.sheet);
+                }
             }
 
+            // SXSSF собирает XML листов из их временных файлов в итоговый пакет
             workbook.write(fos);
-            log.info("Successfully written {} rows to XLSX", data.size());
+            log.info("Successfully written {} rows to XLSX, sheets: {}", writtenRows, sheets.size());
 
             // Явно удаляем временные файлы SXSSF
             workbook.dispose();
@@ -158,30 +199,107 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private void adjustColumnWidthsSafely(Sheet sheet, List<String> headers) {
-        // Простая эвристика: ширина = длина заголовка + запас
-        final int charWidth = 256;  // единица измерения ширины колонки в POI
-        for (int i = 0; i < headers.size(); i++) {
-            int len = Math.max(10, headers.get(i) != null ? headers.get(i).length() : 10);
-            int width = Math.min(255, len + 5) * charWidth;
-            sheet.setColumnWidth(i, width);
+    /**
+     * Раскладывает строки по листам: при достижении лимита строк листа начинается новый.
+     * Поток читает данные (курсор, стратегия) и отдаёт строки пакетами; XML каждого листа
+     * формирует свой поток из xlsxSheetExecutor, так что чтение и запись идут параллельно,
+     * а лист, заполненный до лимита, дописывается одновременно со следующим
+     *
+     * @return листы в порядке создания, все строки уже записаны
+     */
+    private List<SheetWriter> writeSheets(SXSSFWorkbook workbook,
+                                          Iterator<Map<String, Object>> data,
+                                          ExportTemplate template,
+                                          List<String> headers,
+                                          ExcelStyles styles,
+                                          String fileName) {
+        int rowsPerSheet = rowsPerSheet(xlsxMaxRows, !headers.isEmpty());
+        String baseSheetName = getSheetName(template);
+
+        List<SheetWriter> sheets = new ArrayList<>();
+        try {
+            SheetWriter current = startSheet(workbook, baseSheetName, 1, headers, styles, fileName);
+            sheets.add(current);
+
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            long processedRows = 0;
+            while (data.hasNext()) {
+                Map<String, Object> row = data.next();
+
+                if (current.assigned == rowsPerSheet) {
+                    current.submit(batch);
+                    batch = new ArrayList<>(batchSize);
+                    current.finish();
+
+                    checkSheetLimit(sheets.size(), rowsPerSheet);
+                    current = startSheet(workbook, baseSheetName, sheets.size() + 1, headers, styles, fileName);
+                    sheets.add(current);
+                    log.info("XLSX sheet limit of {} rows reached, continuing on sheet '{}'",
+                            rowsPerSheet, current.sheet.getSheetName());
+                }
+
+                batch.add(row);
+                current.assigned++;
+                processedRows++;
+
+                if (batch.size() == batchSize) {
+                    current.submit(batch);
+                    batch = new ArrayList<>(batchSize);
+                    if (processedRows % (batchSize * 10L) == 0) {
+                        log.debug("Processed {} rows", processedRows);
+                    }
+                }
+            }
+            current.submit(batch);
+            current.finish();
+
+            for (SheetWriter sheetWriter : sheets) {
+                sheetWriter.await();
+            }
+            return sheets;
+
+        } catch (Throwable e) {
+            // Книга закрывается после выхода отсюда: потоки листов не должны писать в неё после этого
+            sheets.forEach(SheetWriter::abort);
+            sheets.forEach(SheetWriter::awaitStopped);
+            throw e;
         }
     }
 
-    private Sheet createSheet(SXSSFWorkbook workbook, ExportTemplate template) {
+    private SheetWriter startSheet(SXSSFWorkbook workbook, String baseName, int number,
+                                   List<String> headers, ExcelStyles styles, String fileName) {
+        Sheet sheet = createSheet(workbook, baseName, number);
+        int headerRowIndex = writeHeaders(sheet, headers, styles);
+        SheetWriter sheetWriter = new SheetWriter(sheet, headerRowIndex, headers, styles, fileName);
+        sheetWriter.start();
+        return sheetWriter;
+    }
+
+    private String getSheetName(ExportTemplate template) {
         String sheetName = template.getXlsxSheetName();
         if (sheetName == null || sheetName.trim().isEmpty()) {
             sheetName = "Export";
         }
 
         // Валидация имени листа (Excel ограничения)
-        sheetName = validateSheetName(sheetName);
+        return validateSheetName(sheetName);
+    }
+
+    /**
+     * Создаёт лист: первый с именем шаблона, следующие с номером — "Export (2)"
+     */
+    private Sheet createSheet(SXSSFWorkbook workbook, String baseName, int number) {
+        String sheetName = baseName;
+        if (number > 1) {
+            String suffix = " (" + number + ")";
+            sheetName = baseName.substring(0, Math.min(baseName.length(), 31 - suffix.length())) + suffix;
+        }
 
         try {
             return workbook.createSheet(sheetName);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid sheet name '{}', using default", sheetName);
-            return workbook.createSheet("Export");
+            return workbook.createSheet(number > 1 ? "Export (" + number + ")" : "Export");
         }
     }
 
@@ -243,55 +361,20 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private int writeData(Sheet sheet,
-                          List<Map<String, Object>> data,
-                          List<ExportTemplateField> fields,
-                          ExcelStyles styles,
-                          int startRow,
-                          String fileName) {
-        int rowIndex = startRow;
-        long processedRows = 0;
-
-        try {
-            for (Map<String, Object> rowData : data) {
-                Row row = sheet.createRow(rowIndex);
-                writeRowData(row, rowData, fields, styles, rowIndex, fileName);
-
-                rowIndex++;
-                processedRows++;
-
-                if (processedRows % batchSize == 0) {
-                    log.debug("Processed {} rows", processedRows);
-
-                    // Флашим именно лист (SXSSFSheet), оставляя в памяти последние 100 строк
-                    if (processedRows % (batchSize * 10L) == 0 && sheet instanceof org.apache.poi.xssf.streaming.SXSSFSheet s) {
-                        s.flushRows(100);
-                    }
-                }
-            }
-            return rowIndex - 1;
-        } catch (Exception e) {
-            throw new FileProcessingException(
-                    ErrorMessages.format("Error at row %d: %s", processedRows + 1, e.getMessage()),
-                    fileName,
-                    processedRows + 1
-            );
-        }
-    }
-
     private void writeRowData(Row row,
                               Map<String, Object> rowData,
-                              List<ExportTemplateField> fields,
+                              ColumnLookup columns,
                               ExcelStyles styles,
+                              ColumnWidthEstimator widths,
                               int rowNumber,
                               String fileName) {
         int colIndex = 0;
 
-        for (ExportTemplateField field : fields) {
+        for (int i = 0; i < columns.size(); i++) {
             try {
                 Cell cell = row.createCell(colIndex);
-                Object value = rowData.get(field.getExportColumnName());
-                setCellValue(cell, value, styles);
+                Object value = columns.get(rowData, i);
+                widths.record(colIndex, setCellValue(cell, value, styles));
                 colIndex++;
             } catch (Exception e) {
                 log.warn("Failed to write cell at row {}, column {}: {}",
@@ -302,26 +385,39 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
         }
     }
 
-    private void setCellValue(Cell cell, Object value, ExcelStyles styles) {
+    /**
+     * Записывает значение в ячейку
+     *
+     * @return длина отображаемого значения в символах (для ширины колонки)
+     */
+    private int setCellValue(Cell cell, Object value, ExcelStyles styles) {
         if (value == null) {
             cell.setBlank();
+            return 0;
         } else if (value instanceof Number) {
             double numValue = ((Number) value).doubleValue();
             // Для цен: если значение = 0, оставляем пустую ячейку
             if (numValue == 0.0) {
                 cell.setBlank();
+                return 0;
             } else {
                 cell.setCellValue(numValue);
                 cell.setCellStyle(styles.getNumberStyle());
+                return numberFormatLength(numValue);
             }
         } else if (value instanceof Date) {
-            cell.setCellValue((Date) value);
+            // Число даты считается без обращения к книге (cell.setCellValue(Date) читает её настройки
+            // из workbook.xml, который поток экспорта меняет при создании листа); новая книга — система 1900
+            cell.setCellValue(DateUtil.getExcelDate((Date) value));
             cell.setCellStyle(styles.getDateStyle());
+            return DATE_FORMAT_LENGTH;
         } else if (value instanceof java.time.LocalDateTime) {
-            cell.setCellValue(java.sql.Timestamp.valueOf((java.time.LocalDateTime) value));
+            cell.setCellValue(DateUtil.getExcelDate((java.time.LocalDateTime) value));
             cell.setCellStyle(styles.getDateStyle());
+            return DATE_FORMAT_LENGTH;
         } else if (value instanceof Boolean) {
             cell.setCellValue((Boolean) value);
+            return (Boolean) value ? 4 : 5;
         } else {
             String stringValue = valueFormatter.format(value);
             // Excel имеет лимит в 32767 символов на ячейку
@@ -338,57 +434,197 @@ public class XlsxFileGenerator extends AbstractFileGenerator {
             } else {
                 cell.setCellValue(stringValue);
             }
+            return stringValue.length();
         }
     }
 
-    private boolean shouldAutoSizeColumns(ExportTemplate template, int columnCount) {
-        // Не делаем автоподбор для большого количества колонок (производительность)
-        return Boolean.TRUE.equals(template.getXlsxAutoSizeColumns()) && columnCount < 50;
+    /**
+     * Длина числа в формате стиля чисел "#,##0.00" без построения строки
+     */
+    private static int numberFormatLength(double value) {
+        double abs = Math.abs(value);
+        int digits = abs < 10 ? 1 : (int) Math.min(Math.floor(Math.log10(abs)) + 1, 309);
+        return digits + (digits - 1) / 3 + 3 + (value < 0 ? 1 : 0);
     }
 
-    private void adjustColumnWidths(Sheet sheet,
-                                    List<String> headers,
-                                    List<Map<String, Object>> data,
-                                    List<ExportTemplateField> fields) {
-        try {
-            Map<Integer, Integer> maxWidths = calculateMaxWidths(headers, data, fields);
+    private boolean shouldAutoSizeColumns(ExportTemplate template) {
+        // Ширина считается по ходу записи, поэтому размер выгрузки и число колонок не важны
+        return Boolean.TRUE.equals(template.getXlsxAutoSizeColumns());
+    }
+
+    /**
+     * Запись одного листа. Строки приходят пакетами через ограниченную очередь и пишутся
+     * отдельным потоком; если свободного потока нет, пакеты пишутся сразу в вызывающем потоке.
+     * Поток листа меняет только свой лист и его временный файл: строки пишутся inline, стили
+     * созданы заранее, даты переводятся в числа без книги. Общие для книги действия
+     * (новый лист, автофильтр, запись файла) выполняет поток экспорта
+     */
+    private final class SheetWriter {
+
+        private static final List<Map<String, Object>> END_OF_SHEET = new ArrayList<>(0);
+
+        private final Sheet sheet;
+        private final int headerRowIndex;
+        private final ColumnLookup columns;
+        private final ExcelStyles styles;
+        private final ColumnWidthEstimator widths;
+        private final String fileName;
+        private final BlockingQueue<List<Map<String, Object>>> queue = new ArrayBlockingQueue<>(SHEET_QUEUE_BATCHES);
+
+        /**
+         * Строк отдано листу (поток чтения)
+         */
+        private long assigned;
+        /**
+         * Строк записано (поток листа; читается после await)
+         */
+        private long written;
+        private int nextRow;
+        private CompletableFuture<Void> worker;
+        private volatile boolean aborted;
+
+        SheetWriter(Sheet sheet, int headerRowIndex, List<String> headers, ExcelStyles styles, String fileName) {
+            this.sheet = sheet;
+            this.headerRowIndex = headerRowIndex;
+            this.columns = new ColumnLookup(headers);
+            this.styles = styles;
+            this.widths = new ColumnWidthEstimator(headers);
+            this.fileName = fileName;
+            this.nextRow = headerRowIndex + 1;
+        }
 
-            for (Map.Entry<Integer, Integer> entry : maxWidths.entrySet()) {
-                int width = Math.min((entry.getValue() + 2) * 256, 255 * 256);
-                sheet.setColumnWidth(entry.getKey(), width);
+        void start() {
+            try {
+                worker = CompletableFuture.runAsync(this::drain, sheetExecutor);
+            } catch (RejectedExecutionException e) {
+                log.debug("No free XLSX writer thread, sheet '{}' is written synchronously", sheet.getSheetName());
+            }
+        }
+
+        void submit(List<Map<String, Object>> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (worker == null) {
+                writeRows(batch);
+            } else {
+                put(batch);
             }
-        } catch (Exception e) {
-            // Не критичная ошибка
-            log.warn("Failed to adjust column widths: {}", e.getMessage());
         }
-    }
 
-    private Map<Integer, Integer> calculateMaxWidths(List<String> headers,
-                                                     List<Map<String, Object>> data,
-                                                     List<ExportTemplateField> fields) {
-        Map<Integer, Integer> maxWidths = new HashMap<>();
+        void finish() {
+            if (worker != null) {
+                put(END_OF_SHEET);
+            }
+        }
 
-        // Учитываем заголовки
-        for (int i = 0; i < headers.size(); i++) {
-            maxWidths.put(i, headers.get(i).length());
+        /**
+         * Ждёт окончания записи листа; ошибка потока листа пробрасывается вызывающему
+         */
+        void await() {
+            if (worker == null) {
+                return;
+            }
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileProcessingException(ErrorMessages.PROCESSING_FAILED, fileName, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new FileProcessingException(ErrorMessages.PROCESSING_FAILED, fileName, e.getCause());
+            }
         }
 
-        // Учитываем данные (берем sample для оптимизации)
-        int sampleSize = Math.min(data.size(), 100);
-        for (int i = 0; i < sampleSize; i++) {
-            Map<String, Object> row = data.get(i);
-            int colIndex = 0;
-
-            for (ExportTemplateField field : fields) {
-                Object value = row.get(field.getExportColumnName());
-                String formatted = valueFormatter.format(value);
-                int length = formatted != null ? Math.min(formatted.length(), 50) : 0;
-                maxWidths.merge(colIndex, length, Math::max);
-                colIndex++;
+        /**
+         * Ждёт остановки потока листа после {@link #abort()}; его ошибки уже не важны —
+         * наружу уходит исходная ошибка
+         */
+        void awaitStopped() {
+            if (worker == null) {
+                return;
+            }
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.debug("XLSX sheet writer '{}' stopped with error: {}", sheet.getSheetName(),
+                        e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
             }
         }
 
-        return maxWidths;
+        void abort() {
+            aborted = true;
+            if (worker != null) {
+                queue.clear();
+                queue.offer(END_OF_SHEET);
+            }
+        }
+
+        private void put(List<Map<String, Object>> batch) {
+            try {
+                while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+                    if (worker.isDone()) {
+                        // Поток листа завершился с ошибкой и очередь больше не разбирается
+                        await();
+                        throw new IllegalStateException("XLSX sheet writer stopped unexpectedly");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileProcessingException(ErrorMessages.PROCESSING_FAILED, fileName, e);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<Map<String, Object>> batch;
+                while ((batch = queue.take()) != END_OF_SHEET) {
+                    if (!aborted) {
+                        writeRows(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileProcessingException(ErrorMessages.PROCESSING_FAILED, fileName, e);
+            }
+        }
+
+        private void writeRows(List<Map<String, Object>> batch) {
+            for (Map<String, Object> rowData : batch) {
+                try {
+                    Row row = sheet.createRow(nextRow);
+                    writeRowData(row, rowData, columns, styles, widths, nextRow, fileName);
+                } catch (Exception e) {
+                    throw new FileProcessingException(
+                            ErrorMessages.format("Error at row %d of sheet '%s': %s",
+                                    nextRow + 1, sheet.getSheetName(), e.getMessage()),
+                            fileName,
+                            (long) nextRow + 1
+                    );
+                }
+                nextRow++;
+                written++;
+
+                // Флашим именно лист (SXSSFSheet), оставляя в памяти последние 100 строк
+                if (written % (batchSize * 10L) == 0 && sheet instanceof SXSSFSheet s) {
+                    try {
+                        s.flushRows(100);
+                    } catch (IOException e) {
+                        throw new FileProcessingException(
+                                ErrorMessages.format("%s: %s", ErrorMessages.PROCESSING_FAILED, e.getMessage()),
+                                fileName, e
+                        );
+                    }
+                }
+            }
+        }
     }
 
     @Override
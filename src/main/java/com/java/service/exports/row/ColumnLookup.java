@@ -0,0 +1,65 @@
+package com.java.service.exports.row;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение заданных колонок из строк экспорта. Для {@link ExportRow} индексы колонок
+ * ищутся в схеме один раз и запоминаются; строки других типов читаются по имени.
+ * <p>
+ * Рассчитан на один поток обработки выгрузки
+ */
+public final class ColumnLookup {
+
+    private final List<String> names;
+    private ExportSchema schema;
+    private int[] indexes;
+
+    public ColumnLookup(List<String> names) {
+        this.names = List.copyOf(names);
+    }
+
+    public static ColumnLookup of(String name) {
+        return new ColumnLookup(List.of(name));
+    }
+
+    /**
+     * Значение колонки с номером column из списка имён
+     */
+    public Object get(Map<String, Object> row, int column) {
+        if (row instanceof ExportRow exportRow) {
+            int index = resolve(exportRow)[column];
+            if (index >= 0) {
+                return exportRow.get(index);
+            }
+        }
+        return row.get(names.get(column));
+    }
+
+    /**
+     * Колонка есть в строке (значение может быть null)
+     */
+    public boolean contains(Map<String, Object> row, int column) {
+        if (row instanceof ExportRow exportRow && resolve(exportRow)[column] >= 0) {
+            return true;
+        }
+        return row.containsKey(names.get(column));
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public String name(int column) {
+        return names.get(column);
+    }
+
+    private int[] resolve(ExportRow row) {
+        ExportSchema rowSchema = row.schema();
+        if (rowSchema != schema) {
+            schema = rowSchema;
+            indexes = rowSchema.indexesOf(names);
+        }
+        return indexes;
+    }
+}
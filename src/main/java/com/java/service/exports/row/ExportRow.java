@@ -0,0 +1,187 @@
+package com.java.service.exports.row;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Строка экспорта: общий {@link ExportSchema} и массив значений.
+ * <p>
+ * Вместо LinkedHashMap на каждую строку (узел с ключом и хешем на каждую колонку) строка
+ * хранит только Object[]. Горячий путь (стратегии, генераторы файлов, статистика) читает
+ * значения по индексу, заранее найденному в схеме; для остального кода строка остаётся
+ * {@code Map<String, Object>}. Ключи вне схемы (их добавляют стратегии) хранятся
+ * в отдельной карте, которая создаётся только при необходимости.
+ * <p>
+ * Удаление ключей не поддерживается.
+ */
+public final class ExportRow extends AbstractMap<String, Object> {
+
+    private final ExportSchema schema;
+    private final Object[] values;
+    private Map<String, Object> extra;
+
+    public ExportRow(ExportSchema schema) {
+        this(schema, new Object[schema.size()]);
+    }
+
+    public ExportRow(ExportSchema schema, Object[] values) {
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("Количество значений " + values.length +
+                    " не совпадает с количеством колонок " + schema.size());
+        }
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public ExportSchema schema() {
+        return schema;
+    }
+
+    /**
+     * Значение колонки схемы по индексу
+     */
+    public Object get(int column) {
+        return values[column];
+    }
+
+    public void set(int column, Object value) {
+        values[column] = value;
+    }
+
+    /**
+     * Есть значения вне схемы — чтение по индексу схемы не видит их
+     */
+    public boolean hasExtraColumns() {
+        return extra != null && !extra.isEmpty();
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = schema.indexOf(key);
+        if (i >= 0) {
+            return values[i];
+        }
+        return extra != null ? extra.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return schema.indexOf(key) >= 0 || (extra != null && extra.containsKey(key));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int i = schema.indexOf(key);
+        if (i >= 0) {
+            Object previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        if (extra == null) {
+            extra = new LinkedHashMap<>();
+        }
+        return extra.put(key, value);
+    }
+
+    @Override
+    public int size() {
+        return values.length + (extra != null ? extra.size() : 0);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ExportRow.this.size();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ExportRow" + schema.columns() + Arrays.toString(values) + (extra != null ? extra : "");
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next;
+        private Iterator<Entry<String, Object>> extraIterator;
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (extra == null) {
+                return false;
+            }
+            if (extraIterator == null) {
+                extraIterator = extra.entrySet().iterator();
+            }
+            return extraIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (next < values.length) {
+                int i = next++;
+                return new ColumnEntry(i);
+            }
+            return extraIterator.next();
+        }
+    }
+
+    private final class ColumnEntry implements Entry<String, Object> {
+
+        private final int column;
+
+        ColumnEntry(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.name(column);
+        }
+
+        @Override
+        public Object getValue() {
+            return values[column];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object previous = values[column];
+            values[column] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry<?, ?> e
+                    && getKey().equals(e.getKey())
+                    && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.java.service.exports.row;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Читает строки ResultSet в {@link ExportRow}. Схема строится по метаданным первой строки
+ * и используется для всех строк запроса; значения читаются так же, как в ColumnMapRowMapper.
+ * <p>
+ * Экземпляр относится к одному запросу и не потокобезопасен
+ */
+public class ExportRowMapper implements RowMapper<ExportRow> {
+
+    private ExportSchema schema;
+
+    @Override
+    public ExportRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (schema == null) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(JdbcUtils.lookupColumnName(metaData, i));
+            }
+            schema = new ExportSchema(columns);
+        }
+
+        Object[] values = new Object[schema.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+        }
+        return new ExportRow(schema, values);
+    }
+
+    /**
+     * Схема прочитанных строк или null, если строк не было
+     */
+    public ExportSchema getSchema() {
+        return schema;
+    }
+}
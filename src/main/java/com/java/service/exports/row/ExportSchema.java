@@ -0,0 +1,67 @@
+package com.java.service.exports.row;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Набор колонок строк экспорта. Один экземпляр разделяют все строки выгрузки,
+ * поэтому имена и индексы колонок хранятся один раз, а не в каждой строке.
+ * <p>
+ * Поиск по имени регистронезависим, как у строк ColumnMapRowMapper
+ */
+public final class ExportSchema {
+
+    private final List<String> columns;
+    private final Map<String, Integer> index;
+    private final Map<String, Integer> caseInsensitiveIndex;
+
+    public ExportSchema(List<String> columns) {
+        this.columns = List.copyOf(columns);
+        this.index = new HashMap<>(columns.size() * 2);
+        this.caseInsensitiveIndex = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < this.columns.size(); i++) {
+            index.putIfAbsent(this.columns.get(i), i);
+            caseInsensitiveIndex.putIfAbsent(this.columns.get(i), i);
+        }
+    }
+
+    /**
+     * Индекс колонки или -1, если колонки нет
+     */
+    public int indexOf(Object name) {
+        if (!(name instanceof String key)) {
+            return -1;
+        }
+        Integer i = index.get(key);
+        if (i == null) {
+            i = caseInsensitiveIndex.get(key);
+        }
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Индексы колонок по именам; -1 для отсутствующих
+     */
+    public int[] indexesOf(List<String> names) {
+        int[] result = new int[names.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indexOf(names.get(i));
+        }
+        return result;
+    }
+
+    public String name(int i) {
+        return columns.get(i);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    public List<String> columns() {
+        return Collections.unmodifiableList(columns);
+    }
+}
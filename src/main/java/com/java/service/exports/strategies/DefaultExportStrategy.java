@@ -2,15 +2,17 @@ package com.java.service.exports.strategies;
 
 import com.java.model.entity.ExportTemplate;
 import com.java.model.entity.ExportTemplateField;
+import com.java.service.exports.formatter.FieldFormat;
+import com.java.service.exports.row.ColumnLookup;
+import com.java.service.exports.row.ExportRow;
+import com.java.service.exports.row.ExportSchema;
 import com.java.service.normalization.NormalizationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Стратегия экспорта по умолчанию - без дополнительной обработки
@@ -42,43 +44,13 @@ public class DefaultExportStrategy implements ExportStrategy {
         }
 
         // Получаем список полей для экспорта
-        List<ExportTemplateField> includedFields = template.getFields().stream()
-                .filter(ExportTemplateField::getIsIncluded)
-                .sorted(Comparator.comparing(ExportTemplateField::getFieldOrder))
-                .toList();
+        RowProjection projection = new RowProjection(getIncludedFields(template));
 
         // Обрабатываем каждую запись
-        List<Map<String, Object>> processedData = new ArrayList<>();
+        List<Map<String, Object>> processedData = new ArrayList<>(data.size());
 
         for (Map<String, Object> row : data) {
-            Map<String, Object> processedRow = new LinkedHashMap<>();
-
-            for (ExportTemplateField field : includedFields) {
-                String entityFieldName = field.getEntityFieldName();
-                String exportColumnName = field.getExportColumnName();
-
-                // Пытаемся получить значение по имени поля как в шаблоне,
-                // а при отсутствии пробуем его в формате snake_case
-                Object value = row.get(entityFieldName);
-                if (value == null) {
-                    value = row.get(toSnakeCase(entityFieldName));
-                }
-
-                // Применяем нормализацию если указано
-                if (value != null && field.getNormalizationType() != null) {
-                    value = normalizeValue(value, field);
-                }
-                
-                // Применяем форматирование если указано
-                if (value != null && field.getDataFormat() != null) {
-                    value = formatValue(value, field.getDataFormat());
-                }
-
-                // Используем название колонки для экспорта
-                processedRow.put(exportColumnName, value);
-            }
-
-            processedData.add(processedRow);
+            processedData.add(processRow(row, projection));
         }
 
         log.debug("Обработано {} записей", processedData.size());
@@ -88,49 +60,80 @@ public class DefaultExportStrategy implements ExportStrategy {
         return processedData;
     }
 
+    @Override
+    public boolean requiresFullDataSet() {
+        return false;
+    }
+
+    @Override
+    public Stream<Map<String, Object>> processStream(
+            Stream<Map<String, Object>> data,
+            ExportTemplate template,
+            Map<String, Object> context) {
+        RowProjection projection = new RowProjection(getIncludedFields(template));
+        return data.map(row -> processRow(row, projection));
+    }
+
+    private List<ExportTemplateField> getIncludedFields(ExportTemplate template) {
+        return template.getFields().stream()
+                .filter(ExportTemplateField::getIsIncluded)
+                .sorted(Comparator.comparing(ExportTemplateField::getFieldOrder))
+                .toList();
+    }
+
     /**
-     * Преобразует camelCase в snake_case для соответствия именам колонок БД
+     * Формирует строку экспорта: колонки шаблона с нормализацией и форматированием
      */
-    private String toSnakeCase(String value) {
-        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    private Map<String, Object> processRow(Map<String, Object> row, RowProjection projection) {
+        ExportRow processedRow = new ExportRow(projection.target);
+        for (int i = 0; i < projection.formats.length; i++) {
+            // Пытаемся получить значение по имени поля как в шаблоне,
+            // а при отсутствии пробуем его в формате snake_case
+            Object value = projection.entityColumns.get(row, i);
+            if (value == null) {
+                value = projection.snakeColumns.get(row, i);
+            }
+
+            // Нормализация и форматирование, если указаны
+            value = projection.formats[i].apply(value);
+
+            // Используем название колонки для экспорта
+            processedRow.set(projection.targetIndexes[i], value);
+        }
+        return processedRow;
     }
 
     /**
-     * Нормализация значения согласно правилам поля
+     * Соответствие полей шаблона колонкам исходной и результирующей строки,
+     * строится один раз на выгрузку
      */
-    private Object normalizeValue(Object value, ExportTemplateField field) {
-        if (value == null || field.getNormalizationType() == null) {
-            return value;
-        }
-        
-        try {
-            return normalizationService.normalize(value, field.getNormalizationType(), field.getNormalizationRule());
-        } catch (Exception e) {
-            log.warn("Ошибка нормализации поля '{}': {}", field.getEntityFieldName(), e.getMessage());
-            return value; // Возвращаем исходное значение в случае ошибки
+    private final class RowProjection {
+
+        private final FieldFormat[] formats;
+        private final ColumnLookup entityColumns;
+        private final ColumnLookup snakeColumns;
+        private final ExportSchema target;
+        private final int[] targetIndexes;
+
+        RowProjection(List<ExportTemplateField> fields) {
+            this.formats = fields.stream()
+                    .map(f -> FieldFormat.compile(f, normalizationService))
+                    .toArray(FieldFormat[]::new);
+            this.entityColumns = new ColumnLookup(fields.stream()
+                    .map(ExportTemplateField::getEntityFieldName).toList());
+            this.snakeColumns = new ColumnLookup(fields.stream()
+                    .map(f -> toSnakeCase(f.getEntityFieldName())).toList());
+            // Одинаковые названия колонок экспорта схлопываются в одну колонку, как ключи Map
+            List<String> exportColumns = fields.stream().map(ExportTemplateField::getExportColumnName).toList();
+            this.target = new ExportSchema(new ArrayList<>(new LinkedHashSet<>(exportColumns)));
+            this.targetIndexes = target.indexesOf(exportColumns);
         }
     }
-    
+
     /**
-     * Форматирование значения согласно указанному формату
+     * Преобразует camelCase в snake_case для соответствия именам колонок БД
      */
-    private Object formatValue(Object value, String format) {
-        try {
-            if (value instanceof LocalDateTime) {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-                return ((LocalDateTime) value).format(formatter);
-            }
-            if (value instanceof ZonedDateTime) {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-                return ((ZonedDateTime) value).format(formatter);
-            }
-            if (value instanceof Number && format.contains("#")) {
-                // Простое форматирование чисел
-                return String.format(format.replace("#", "%"), value);
-            }
-        } catch (Exception e) {
-            log.warn("Ошибка форматирования значения: {}", e.getMessage());
-        }
-        return value;
+    private String toSnakeCase(String value) {
+        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
     }
-}
\ No newline at end of file
+}
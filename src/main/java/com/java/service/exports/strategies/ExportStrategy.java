@@ -4,6 +4,7 @@ import com.java.model.entity.ExportTemplate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Интерфейс стратегии обработки данных при экспорте
@@ -29,6 +30,31 @@ public interface ExportStrategy {
             Map<String, Object> context
     );
 
+    /**
+     * Стратегии нужен весь набор строк сразу (сопоставление строк между собой,
+     * пересортировка). Такая стратегия получает загруженный список через processData,
+     * остальные обрабатывают строки потоком через processStream
+     */
+    default boolean requiresFullDataSet() {
+        return true;
+    }
+
+    /**
+     * Обработать поток строк; вызывается, только если requiresFullDataSet() == false.
+     * Строки обрабатываются по одной по мере чтения из БД и записи в файл
+     *
+     * @param data поток исходных строк
+     * @param template шаблон экспорта
+     * @param context контекст с дополнительными параметрами
+     * @return поток обработанных строк
+     */
+    default Stream<Map<String, Object>> processStream(
+            Stream<Map<String, Object>> data,
+            ExportTemplate template,
+            Map<String, Object> context) {
+        return processData(data.toList(), template, context).stream();
+    }
+
     /**
      * Валидация возможности применения стратегии
      */
@@ -0,0 +1,76 @@
+package com.java.service.exports.strategies;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Индекс справочника av_handbook для одного сайта: код региона → запись справочника.
+ * <p>
+ * Загружается одним запросом на выгрузку, после чего обогащение строки отчёта —
+ * поиск в HashMap вместо отдельного запроса к БД на каждую строку. Правила поиска
+ * те же, что у прежних запросов: точный код региона без ведущих нулей или он же
+ * с ведущим нулём, без региона — любая запись сайта
+ */
+@Slf4j
+final class HandbookIndex {
+
+    private static final String SQL = "SELECT handbook_retail_network_code, handbook_retail_network, " +
+            "handbook_region_code, handbook_physical_address FROM av_handbook " +
+            "WHERE handbook_web_site = ? ORDER BY id";
+
+    private final Map<String, Map<String, Object>> byRegion;
+    private final Map<String, Object> anyRecord;
+
+    private HandbookIndex(Map<String, Map<String, Object>> byRegion, Map<String, Object> anyRecord) {
+        this.byRegion = byRegion;
+        this.anyRecord = anyRecord;
+    }
+
+    /**
+     * Загружает записи справочника сайта
+     */
+    static HandbookIndex load(JdbcTemplate jdbcTemplate, String webSite) {
+        Map<String, Map<String, Object>> byRegion = new HashMap<>();
+        AtomicReference<Map<String, Object>> first = new AtomicReference<>();
+        jdbcTemplate.query(SQL, rs -> {
+            Map<String, Object> record = new LinkedHashMap<>(8);
+            record.put("handbook_retail_network_code", rs.getString("handbook_retail_network_code"));
+            record.put("handbook_retail_network", rs.getString("handbook_retail_network"));
+            record.put("handbook_region_code", rs.getString("handbook_region_code"));
+            record.put("handbook_physical_address", rs.getString("handbook_physical_address"));
+            Map<String, Object> unmodifiable = Collections.unmodifiableMap(record);
+            first.compareAndSet(null, unmodifiable);
+            String region = rs.getString("handbook_region_code");
+            if (region != null) {
+                byRegion.putIfAbsent(region, unmodifiable);
+            }
+        }, webSite);
+        log.debug("Индекс справочника для {}: {} регионов", webSite, byRegion.size());
+        return new HandbookIndex(byRegion, first.get());
+    }
+
+    /**
+     * Запись справочника для кода региона или null
+     *
+     * @param regionCode код региона; пустой — любая запись сайта
+     */
+    Map<String, Object> find(String regionCode) {
+        if (regionCode == null || regionCode.trim().isEmpty()) {
+            return anyRecord;
+        }
+
+        String normalizedRegion = regionCode.trim().replaceFirst("^0+(?!$)", "");
+        Map<String, Object> record = byRegion.get(normalizedRegion);
+        if (record == null && (normalizedRegion.length() == 1
+                || (normalizedRegion.length() == 2 && !normalizedRegion.startsWith("0")))) {
+            record = byRegion.get("0" + normalizedRegion);
+        }
+        return record;
+    }
+}
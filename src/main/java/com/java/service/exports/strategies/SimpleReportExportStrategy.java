@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Стратегия экспорта "Simple report"
@@ -44,20 +45,41 @@ public class SimpleReportExportStrategy implements ExportStrategy {
 
         log.info("Применение стратегии Simple report");
 
-        for (Map<String, Object> row : data) {
-            Object nameObj = row.get("competitorName");
-            if (nameObj == null) {
-                nameObj = row.get("competitor_name");
-            }
-            if (nameObj != null) {
-                String competitorName = nameObj.toString().toLowerCase();
-                if (BLOCKED_COMPETITORS.contains(competitorName)) {
-                    row.put("competitorWebCacheUrl", null);
-                    row.put("competitor_web_cache_url", null);
-                }
-            }
-        }
+        data.forEach(SimpleReportExportStrategy::clearBlockedWebCacheUrl);
 
         return defaultStrategy.processData(data, template, context);
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean requiresFullDataSet() {
+        return false;
+    }
+
+    @Override
+    public Stream<Map<String, Object>> processStream(
+            Stream<Map<String, Object>> data,
+            ExportTemplate template,
+            Map<String, Object> context) {
+
+        log.info("Применение стратегии Simple report (потоковый режим)");
+        return defaultStrategy.processStream(
+                data.peek(SimpleReportExportStrategy::clearBlockedWebCacheUrl), template, context);
+    }
+
+    /**
+     * Очищает ссылку на веб-кеш для конкурентов из списка
+     */
+    private static void clearBlockedWebCacheUrl(Map<String, Object> row) {
+        Object nameObj = row.get("competitorName");
+        if (nameObj == null) {
+            nameObj = row.get("competitor_name");
+        }
+        if (nameObj != null) {
+            String competitorName = nameObj.toString().toLowerCase();
+            if (BLOCKED_COMPETITORS.contains(competitorName)) {
+                row.put("competitorWebCacheUrl", null);
+                row.put("competitor_web_cache_url", null);
+            }
+        }
+    }
+}
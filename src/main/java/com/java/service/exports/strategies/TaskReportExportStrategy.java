@@ -7,10 +7,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Component("taskReportExportStrategy")
@@ -23,14 +27,30 @@ public class TaskReportExportStrategy implements ExportStrategy {
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final int DEFAULT_MAX_REPORT_AGE_DAYS = 3;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
     private record TaskNetworkKey(String number, String network) {}
 
+    /**
+     * Пары номер задания + код сети без нормализации: ключ строится только в buildKey,
+     * чтобы ключи заданий и строк отчёта совпадали символ в символ
+     */
+    private static final String TASK_PAIRS_SQL = "SELECT DISTINCT product_additional1, competitor_additional " +
+            "FROM av_data WHERE data_source = 'TASK' AND competitor_additional IS NOT NULL ";
+
     @Override
     public String getName() {
         return "TASK_REPORT";
     }
 
+    /**
+     * Строки отчёта сопоставляются с заданием по всему набору данных
+     */
+    @Override
+    public boolean requiresFullDataSet() {
+        return true;
+    }
+
     @Override
     public List<Map<String, Object>> processData(
             List<Map<String, Object>> data,
@@ -156,6 +176,8 @@ public class TaskReportExportStrategy implements ExportStrategy {
         Map<TaskNetworkKey, Integer> missingKeyCounts = new HashMap<>();
         int total = reportData.size();
         int progressStep = Math.max(1, total / 20); // обновлять каждые 5%
+        // Справочник загружается один раз при первой строке, которую нужно обогатить
+        HandbookIndex handbookIndex = null;
 
         for (int rowIdx = 0; rowIdx < total; rowIdx++) {
             Map<String, Object> reportRow = reportData.get(rowIdx);
@@ -169,7 +191,10 @@ public class TaskReportExportStrategy implements ExportStrategy {
 
             // 5.1. Обогащаем данными из справочника если нужно (только для market.yandex.ru)
             if (needsEnrichment(workingRow)) {
-                boolean wasEnriched = enrichWithHandbookData(workingRow, clientRegionCode);
+                if (handbookIndex == null) {
+                    handbookIndex = HandbookIndex.load(jdbcTemplate, "market.yandex.ru");
+                }
+                boolean wasEnriched = enrichWithHandbookData(workingRow, clientRegionCode, handbookIndex);
                 if (wasEnriched) {
                     enriched++;
                 }
@@ -260,7 +285,8 @@ public class TaskReportExportStrategy implements ExportStrategy {
     /**
      * Обогащает строку данными из справочника
      */
-    private boolean enrichWithHandbookData(Map<String, Object> row, String clientRegionCode) {
+    private boolean enrichWithHandbookData(Map<String, Object> row, String clientRegionCode,
+                                           HandbookIndex handbookIndex) {
         String competitorUrl = Objects.toString(row.get("competitor_url"), "");
         if (!competitorUrl.contains("market.yandex.ru")) {
             return false;
@@ -275,7 +301,7 @@ public class TaskReportExportStrategy implements ExportStrategy {
         log.debug("Попытка обогащения для market.yandex.ru, регион: {}", regionToSearch);
 
         // Ищем в справочнике
-        Map<String, Object> handbook = findHandbook("market.yandex.ru", regionToSearch);
+        Map<String, Object> handbook = handbookIndex.find(regionToSearch);
         if (handbook == null) {
             log.debug("Справочник для market.yandex.ru и региона {} не найден", regionToSearch);
             return false;
@@ -310,46 +336,6 @@ public class TaskReportExportStrategy implements ExportStrategy {
         return wasEnriched;
     }
 
-    /**
-     * Ищет запись в справочнике
-     */
-    private Map<String, Object> findHandbook(String webSite, String regionCode) {
-        log.debug("Поиск в справочнике: webSite={}, regionCode={}", webSite, regionCode);
-
-        if (isBlank(regionCode)) {
-            String sql = "SELECT * FROM av_handbook WHERE handbook_web_site = ? LIMIT 1";
-            log.debug("SQL без региона: {}, параметр: {}", sql, webSite);
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, webSite);
-            log.debug("Найдено записей без региона: {}", results.size());
-            return results.isEmpty() ? null : results.get(0);
-        }
-
-        String normalizedRegion = normalizeRegionCode(regionCode);
-        String altRegion = null;
-        if (normalizedRegion.length() == 1) {
-            altRegion = "0" + normalizedRegion;
-        } else if (normalizedRegion.length() == 2 && !normalizedRegion.startsWith("0")) {
-            altRegion = "0" + normalizedRegion;
-        }
-
-        if (altRegion != null) {
-            String sql = "SELECT * FROM av_handbook WHERE handbook_web_site = ? " +
-                    "AND (handbook_region_code = ? OR handbook_region_code = ?) LIMIT 1";
-            log.debug("SQL с альтернативным регионом: {}, параметры: {}, {}, {}",
-                    sql, webSite, normalizedRegion, altRegion);
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, webSite, normalizedRegion, altRegion);
-            log.debug("Найдено записей с альтернативным регионом: {}", results.size());
-            return results.isEmpty() ? null : results.get(0);
-        } else {
-            String sql = "SELECT * FROM av_handbook WHERE handbook_web_site = ? " +
-                    "AND handbook_region_code = ? LIMIT 1";
-            log.debug("SQL с точным регионом: {}, параметры: {}, {}", sql, webSite, normalizedRegion);
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, webSite, normalizedRegion);
-            log.debug("Найдено записей с точным регионом: {}", results.size());
-            return results.isEmpty() ? null : results.get(0);
-        }
-    }
-
     /**
      * Корректирует дату мониторинга если она слишком старая
      * @return true если дата была изменена
@@ -406,7 +392,7 @@ public class TaskReportExportStrategy implements ExportStrategy {
         }
 
         // ИСПРАВЛЕНИЕ: Нормализуем код сети - убираем лишние пробелы и приводим к верхнему регистру
-        String normalizedCode = codeStr.replaceAll("\\s+", "").toUpperCase();
+        String normalizedCode = WHITESPACE.matcher(codeStr).replaceAll("").toUpperCase(Locale.ROOT);
         String key = taskStr + "|" + normalizedCode;
         log.trace("buildKey: taskStr='{}', codeStr='{}' -> normalizedCode='{}' -> key='{}'", 
             taskStr, codeStr, normalizedCode, key);
@@ -423,40 +409,21 @@ public class TaskReportExportStrategy implements ExportStrategy {
             return Collections.emptySet();
         }
 
+        updateProgress(progressSession, 10,
+                String.format("Загрузка ключей заданий из БД (%d номеров)...", taskNumbers.size()));
+
+        // Номера передаются одним массивом (индекс idx_av_data_task_pairs)
+        String sql = TASK_PAIRS_SQL + "AND product_additional1 = ANY(?)";
+        log.debug("SQL для поиска заданий: {}", sql);
+
         Set<String> allowed = new HashSet<>();
-        List<String> numbers = new ArrayList<>(taskNumbers);
-        int batchSize = 1000;
-        int totalBatches = (numbers.size() + batchSize - 1) / batchSize;
-
-        for (int i = 0; i < numbers.size(); i += batchSize) {
-            int batchNum = i / batchSize;
-            // Прогресс 10-65% равномерно по батчам
-            updateProgress(progressSession, 10 + batchNum * 55 / Math.max(1, totalBatches),
-                    String.format("Загрузка ключей заданий из БД... (пакет %d из %d)", batchNum + 1, totalBatches));
-
-            List<String> batch = numbers.subList(i, Math.min(i + batchSize, numbers.size()));
-            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
-            String sql = "SELECT product_additional1, competitor_additional FROM av_data WHERE data_source = 'TASK' " +
-                    "AND product_additional1 IN (" + placeholders + ")";
-
-            log.debug("SQL для поиска заданий: {}", sql);
-            log.debug("Параметры поиска: {}", batch);
-
-            jdbcTemplate.query(sql, batch.toArray(), rs -> {
-                String taskNum = rs.getString("product_additional1");
-                String networkCode = rs.getString("competitor_additional");
-                log.debug("Найдена запись задания: taskNum='{}', networkCode='{}' (исходный)", taskNum, networkCode);
-
-                String key = buildKey(taskNum, networkCode);
-                if (key != null) {
-                    allowed.add(key);
-                    log.debug("Добавлен допустимый ключ: '{}' (после обработки buildKey)", key);
-                } else {
-                    log.debug("Пропущена запись задания с null ключом: taskNum='{}', networkCode='{}'",
-                            taskNum, networkCode);
-                }
-            });
-        }
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("text", taskNumbers.toArray()));
+            return ps;
+        }, rs -> {
+            addTaskKey(allowed, rs);
+        });
 
         log.debug("=== Итого загружено {} допустимых ключей ===", allowed.size());
         if (log.isDebugEnabled() && !allowed.isEmpty()) {
@@ -540,45 +507,31 @@ public class TaskReportExportStrategy implements ExportStrategy {
     private Set<String> loadAllTaskKeysWithFlexibleMatching() {
         log.debug("=== РАСШИРЕННЫЙ ПОИСК: Загрузка всех доступных ключей заданий ===");
         
-        Set<String> allowed = new HashSet<>();
-        String sql = """
-            SELECT product_additional1, competitor_additional 
-            FROM av_data 
-            WHERE data_source = 'TASK' 
-            AND product_additional1 IS NOT NULL 
-            AND competitor_additional IS NOT NULL
-            """;
-        
+        String sql = TASK_PAIRS_SQL + "AND product_additional1 IS NOT NULL";
         log.debug("SQL для расширенного поиска: {}", sql);
-        
+
+        Set<String> allowed = new HashSet<>();
         jdbcTemplate.query(sql, rs -> {
-            String taskNum = rs.getString("product_additional1");
-            String networkCode = rs.getString("competitor_additional");
-            String key = buildKey(taskNum, networkCode);
-            if (key != null) {
-                allowed.add(key);
-            }
+            addTaskKey(allowed, rs);
         });
         
         log.debug("=== РАСШИРЕННЫЙ ПОИСК: Итого {} ключей ===", allowed.size());
         return allowed;
     }
 
+    private void addTaskKey(Set<String> keys, ResultSet rs) throws SQLException {
+        String key = buildKey(rs.getString("product_additional1"), rs.getString("competitor_additional"));
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
     /**
      * Проверяет, пустое ли значение
      */
     private boolean isBlank(Object value) {
         return value == null || value.toString().trim().isEmpty();
     }
-
-    /**
-     * Нормализует код региона (убирает ведущие нули)
-     */
-    private String normalizeRegionCode(String code) {
-        if (code == null) return null;
-        String trimmed = code.trim();
-        return trimmed.replaceFirst("^0+(?!$)", "");
-    }
     
     /**
      * Определяет ключ группировки для записи на основе настроек шаблона экспорта
@@ -2,6 +2,8 @@ package com.java.service.file;
 
 import com.java.config.ImportConfig;
 import com.java.model.entity.FileMetadata;
+import com.java.util.CompressedFiles;
+import com.java.util.IngestInputStream;
 import com.java.util.PathResolver;
 import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
@@ -12,7 +14,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.util.IOUtils;
-import org.mozilla.universalchardet.UniversalDetector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,9 +25,6 @@ import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -39,6 +37,7 @@ public class FileAnalyzerService {
 
     private final PathResolver pathResolver;
     private final ImportConfig.ImportSettings importSettings;
+    private final UploadStore uploadStore;
 
     private static final List<Character> COMMON_DELIMITERS = Arrays.asList(',', ';', '\t', '|');
     private static final List<Character> COMMON_QUOTES = Arrays.asList('"', '\'');
@@ -46,20 +45,22 @@ public class FileAnalyzerService {
     // Константы для улучшения читаемости
     private static final int ENCODING_BUFFER_SIZE = 4096;
     private static final int CSV_SAMPLE_LINES = 10;
-    private static final int HASH_BUFFER_SIZE = 8192;
+    private static final int COMPRESSED_SAMPLE_BYTES = 64 * 1024;
     private static final char DEFAULT_ESCAPE_CHAR = CSVParser.NULL_CHARACTER;
 
     /**
-     * Анализирует файл и извлекает метаданные, сохраняя его под указанным префиксом
+     * Анализирует файл и извлекает метаданные, сохраняя его под указанным префиксом.
+     * Файл читается один раз: при записи на диск считаются хеш, кодировка и начало файла
      */
     public FileMetadata analyzeFile(MultipartFile file, String prefix) throws IOException {
         log.info("Начало анализа файла: {}", file.getOriginalFilename());
 
         // Сохраняем файл во временную директорию
-        Path tempFile = pathResolver.saveToTempFile(file, prefix);
+        UploadStore.StoredUpload upload = uploadStore.store(file, prefix);
+        Path tempFile = upload.path();
 
         try {
-            return performFileAnalysis(tempFile, file.getOriginalFilename(), file.getSize());
+            return performFileAnalysis(tempFile, file.getOriginalFilename(), upload.ingest());
         } catch (Exception e) {
             // Удаляем временный файл при ошибке
             pathResolver.deleteFile(tempFile);
@@ -84,29 +85,43 @@ public class FileAnalyzerService {
         log.info("Начало анализа файла по пути: {}", filePath);
 
         try {
-            long fileSize = pathResolver.getFileSize(filePath);
-            return performFileAnalysis(filePath, originalFilename, fileSize);
+            return performFileAnalysis(filePath, originalFilename, uploadStore.scan(filePath));
         } catch (Exception e) {
             throw new IOException("Ошибка анализа файла: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Выполняет основной анализ файла
+     * Выполняет основной анализ файла. Если файл с тем же содержимым уже анализировался,
+     * результаты берутся из предыдущего анализа
+     *
+     * @param ingest результат однопроходного чтения файла: хеш, кодировка, начало файла.
+     *               Для .gz/.zip формат, кодировка и начало определяются по распакованной первой части
      */
-    private FileMetadata performFileAnalysis(Path filePath, String originalFilename, long fileSize)
+    private FileMetadata performFileAnalysis(Path filePath, String originalFilename, IngestInputStream ingest)
             throws IOException {
         FileMetadata metadata = new FileMetadata();
         metadata.setOriginalFilename(originalFilename);
-        metadata.setFileSize(fileSize);
+        metadata.setFileSize(ingest.getSize());
         metadata.setTempFilePath(filePath.toString());
 
-        String fileFormat = detectFileFormat(originalFilename);
+        String fileFormat = detectFileFormat(CompressedFiles.contentFilename(filePath, originalFilename));
         metadata.setFileFormat(fileFormat);
-        metadata.setFileHash(calculateFileHash(filePath));
+        metadata.setFileHash(ingest.getHash());
+
+        Optional<FileMetadata> previous = uploadStore.findAnalysis(ingest.getHash(), fileFormat);
+        if (previous.isPresent()) {
+            UploadStore.copyAnalysis(previous.get(), metadata);
+            log.info("Файл {} уже анализировался, используются сохранённые метаданные", originalFilename);
+            return metadata;
+        }
+
+        if (CompressedFiles.isCompressed(originalFilename)) {
+            ingest = sampleCompressedContent(filePath, originalFilename);
+        }
 
         if ("CSV".equalsIgnoreCase(fileFormat) || "TXT".equalsIgnoreCase(fileFormat)) {
-            analyzeCsvFile(filePath, metadata);
+            analyzeCsvFile(filePath, metadata, ingest);
         } else if ("XLSX".equalsIgnoreCase(fileFormat) || "XLS".equalsIgnoreCase(fileFormat)) {
             analyzeExcelFile(filePath, metadata);
         } else {
@@ -118,19 +133,43 @@ public class FileAnalyzerService {
                 metadata.getDetectedDelimiter(),
                 metadata.getTotalColumns());
 
+        uploadStore.rememberAnalysis(metadata);
         return metadata;
     }
 
+    /**
+     * Распаковывает начало первой части сжатого файла: кодировка и образец строк для анализа
+     */
+    private IngestInputStream sampleCompressedContent(Path filePath, String originalFilename) throws IOException {
+        try (IngestInputStream content = new IngestInputStream(
+                CompressedFiles.openFirst(filePath, originalFilename), COMPRESSED_SAMPLE_BYTES)) {
+            byte[] buffer = new byte[8192];
+            while (content.getSize() <= COMPRESSED_SAMPLE_BYTES && content.read(buffer, 0, buffer.length) >= 0) {
+                // Читаем только начало, остальное распаковывается при импорте
+            }
+            return content.finish();
+        }
+    }
+
+    /**
+     * Открывает содержимое файла (для .gz/.zip — распакованную первую часть)
+     */
+    private BufferedReader openContentReader(Path filePath, FileMetadata metadata, Charset charset)
+            throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                CompressedFiles.openFirst(filePath, metadata.getOriginalFilename()), charset));
+    }
+
     /**
      * Анализирует CSV файл
      */
-    private void analyzeCsvFile(Path filePath, FileMetadata metadata) throws IOException {
+    private void analyzeCsvFile(Path filePath, FileMetadata metadata, IngestInputStream ingest) throws IOException {
         // Определяем кодировку
-        String encoding = detectEncoding(filePath);
+        String encoding = detectEncoding(ingest);
         metadata.setDetectedEncoding(encoding);
 
         // Определяем разделитель и кавычки
-        CsvFormat format = detectCsvFormat(filePath, encoding);
+        CsvFormat format = detectCsvFormat(filePath, metadata, encoding, ingest);
         metadata.setDetectedDelimiter(String.valueOf(format.delimiter));
         metadata.setDetectedQuoteChar(String.valueOf(format.quoteChar));
         // Сохраняем escape символ, если он не NULL_CHARACTER
@@ -141,7 +180,7 @@ public class FileAnalyzerService {
         }
 
         // Читаем заголовки и примеры данных
-        try (Reader reader = Files.newBufferedReader(filePath, Charset.forName(encoding))) {
+        try (Reader reader = openContentReader(filePath, metadata, Charset.forName(encoding))) {
             CSVParser parser = new CSVParserBuilder()
                     .withSeparator(format.delimiter)
                     .withQuoteChar(format.quoteChar)
@@ -188,7 +227,9 @@ public class FileAnalyzerService {
         metadata.setDetectedEncoding("UTF-8"); // Excel внутренне использует UTF-8
 
         IOUtils.setByteArrayMaxOverride(Integer.MAX_VALUE);
-        try (Workbook workbook = WorkbookFactory.create(filePath.toFile())) {
+        try (Workbook workbook = CompressedFiles.isCompressed(metadata.getOriginalFilename())
+                ? WorkbookFactory.create(CompressedFiles.openFirst(filePath, metadata.getOriginalFilename()))
+                : WorkbookFactory.create(filePath.toFile())) {
             Sheet sheet = workbook.getSheetAt(0);
 
             if (sheet != null && sheet.getPhysicalNumberOfRows() > 0) {
@@ -241,33 +282,20 @@ public class FileAnalyzerService {
     }
 
     /**
-     * Определяет кодировку файла
+     * Определяет кодировку файла по результату juniversalchardet, полученному при чтении файла
      */
-    private String detectEncoding(Path filePath) throws IOException {
-        byte[] buf = new byte[ENCODING_BUFFER_SIZE];
-
-        try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
-            UniversalDetector detector = new UniversalDetector(null);
-
-            int nread;
-            while ((nread = fis.read(buf)) > 0 && !detector.isDone()) {
-                detector.handleData(buf, 0, nread);
-            }
-            detector.dataEnd();
-
-            String encoding = detector.getDetectedCharset();
-            detector.reset();
-
-            if (encoding == null) {
-                encoding = detectFallbackEncoding(filePath);
-                log.warn("juniversalchardet не определил кодировку, используем fallback: {}", encoding);
-            } else {
-                encoding = normalizeEncoding(encoding);
-                log.debug("Определена кодировка: {}", encoding);
-            }
+    private String detectEncoding(IngestInputStream ingest) {
+        String encoding = ingest.getDetectedCharset();
 
-            return encoding;
+        if (encoding == null) {
+            encoding = detectFallbackEncoding(ingest.getHead());
+            log.warn("juniversalchardet не определил кодировку, используем fallback: {}", encoding);
+        } else {
+            encoding = normalizeEncoding(encoding);
+            log.debug("Определена кодировка: {}", encoding);
         }
+
+        return encoding;
     }
 
     /**
@@ -292,12 +320,9 @@ public class FileAnalyzerService {
      * Fallback-определение кодировки: если файл не является валидным UTF-8 — возвращает windows-1251.
      * Покрывает случай когда juniversalchardet возвращает null для Windows-1251 файлов.
      */
-    private String detectFallbackEncoding(Path filePath) throws IOException {
-        byte[] sample = new byte[ENCODING_BUFFER_SIZE];
-        int bytesRead;
-        try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
-            bytesRead = fis.read(sample);
-        }
+    private String detectFallbackEncoding(byte[] head) {
+        int bytesRead = Math.min(head.length, ENCODING_BUFFER_SIZE);
+        byte[] sample = head;
         if (bytesRead <= 0) {
             return StandardCharsets.UTF_8.name();
         }
@@ -314,19 +339,18 @@ public class FileAnalyzerService {
     }
 
     /**
-     * Определяет формат CSV файла (разделитель, кавычки)
+     * Определяет формат CSV файла (разделитель, кавычки). Строки берутся из сохранённого
+     * начала файла; файл перечитывается, только если в нём не хватило строк
      */
-    private CsvFormat detectCsvFormat(Path filePath, String encoding) throws IOException {
-        List<String> lines = new ArrayList<>();
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath, Charset.forName(encoding))) {
-            String line;
-            int count = 0;
-            while ((line = reader.readLine()) != null && count < CSV_SAMPLE_LINES) {
-                if (!line.trim().isEmpty()) {
-                    lines.add(line);
-                    count++;
-                }
+    private CsvFormat detectCsvFormat(Path filePath, FileMetadata metadata, String encoding,
+                                      IngestInputStream ingest) throws IOException {
+        Charset charset = Charset.forName(encoding);
+        List<String> lines = readSampleLines(new InputStreamReader(
+                new ByteArrayInputStream(ingest.getHead()), charset), !ingest.isHeadComplete());
+
+        if (lines.size() < CSV_SAMPLE_LINES && !ingest.isHeadComplete()) {
+            try (BufferedReader reader = openContentReader(filePath, metadata, charset)) {
+                lines = readSampleLines(reader, false);
             }
         }
 
@@ -350,6 +374,31 @@ public class FileAnalyzerService {
         return new CsvFormat(confirmedDelimiter, detectedQuote, DEFAULT_ESCAPE_CHAR);
     }
 
+    /**
+     * Читает до CSV_SAMPLE_LINES непустых строк
+     *
+     * @param truncated источник обрезан — последняя строка может быть неполной и отбрасывается
+     */
+    private List<String> readSampleLines(Reader source, boolean truncated) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+        String line;
+        boolean complete = false;
+        while ((line = reader.readLine()) != null) {
+            if (lines.size() >= CSV_SAMPLE_LINES) {
+                complete = true;
+                break;
+            }
+            if (!line.trim().isEmpty()) {
+                lines.add(line);
+            }
+        }
+        if (truncated && !complete && !lines.isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
+
     /**
      * Определяет разделитель по количеству вхождений
      */
@@ -496,41 +545,6 @@ public class FileAnalyzerService {
         }
     }
 
-    /**
-     * Вычисляет MD5 хеш файла
-     */
-    private String calculateFileHash(Path filePath) throws IOException {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            try (InputStream is = Files.newInputStream(filePath);
-                 DigestInputStream dis = new DigestInputStream(is, md)) {
-
-                byte[] buffer = new byte[HASH_BUFFER_SIZE];
-                while (dis.read(buffer) != -1) {
-                    // Читаем файл для вычисления хеша
-                }
-            }
-
-            byte[] digest = md.digest();
-            return bytesToHex(digest);
-
-        } catch (NoSuchAlgorithmException e) {
-            log.error("MD5 алгоритм не найден", e);
-            throw new IOException("Ошибка инициализации алгоритма хеширования", e);
-        }
-    }
-
-    /**
-     * Конвертирует байты в hex строку
-     */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
-        }
-        return result.toString();
-    }
-
     /**
      * Получает значение ячейки Excel как строку
      */
@@ -0,0 +1,175 @@
+package com.java.service.file;
+
+import com.java.model.entity.FileMetadata;
+import com.java.repository.FileMetadataRepository;
+import com.java.util.IngestInputStream;
+import com.java.util.PathResolver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Хранилище загруженных файлов с адресацией по содержимому.
+ * <p>
+ * Файл записывается на диск за один проход, одновременно считаются SHA-256, кодировка и
+ * начало файла ({@link IngestInputStream}). Содержимое хранится один раз в
+ * {@code <temp>/upload-store/<sha256>}, а вызывающий код получает собственный путь —
+ * жёсткую ссылку на него (или копию, если ФС не поддерживает ссылки), поэтому удаление
+ * одной загрузки не затрагивает другие. Хранилище очищается вместе с временной директорией.
+ * <p>
+ * Результаты анализа запоминаются по хешу и формату: повторно загруженный файл
+ * не анализируется заново.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UploadStore {
+
+    private static final String STORE_DIR = "upload-store";
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int ANALYSIS_CACHE_SIZE = 256;
+
+    private final PathResolver pathResolver;
+    private final FileMetadataRepository metadataRepository;
+
+    private final Map<String, FileMetadata> recentAnalyses = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FileMetadata> eldest) {
+                    return size() > ANALYSIS_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Сохраняет загруженный файл за один проход
+     *
+     * @param prefix префикс имени файла во временной директории
+     */
+    public StoredUpload store(MultipartFile file, String prefix) throws IOException {
+        Path storeDir = pathResolver.getAbsoluteTempDir().resolve(STORE_DIR);
+        Files.createDirectories(storeDir);
+        Path incoming = storeDir.resolve(".incoming-" + UUID.randomUUID());
+
+        IngestInputStream ingest;
+        try (InputStream input = file.getInputStream()) {
+            ingest = new IngestInputStream(input, HEAD_BYTES);
+            Files.copy(ingest, incoming);
+            ingest.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(incoming);
+            throw e;
+        }
+
+        Path target = pathResolver.newTempFilePath(prefix, file.getOriginalFilename());
+        linkToStore(storeDir.resolve(ingest.getHash()), incoming, target);
+        log.debug("Сохранен файл {} ({} байт, sha256 {})", target.getFileName(), ingest.getSize(), ingest.getHash());
+        return new StoredUpload(target, ingest);
+    }
+
+    /**
+     * Читает уже сохранённый файл один раз: хеш, кодировка и начало файла
+     */
+    public IngestInputStream scan(Path file) throws IOException {
+        try (IngestInputStream ingest = new IngestInputStream(Files.newInputStream(file), HEAD_BYTES)) {
+            ingest.drain();
+            return ingest.finish();
+        }
+    }
+
+    /**
+     * Ранее выполненный анализ файла с тем же содержимым и форматом
+     */
+    public Optional<FileMetadata> findAnalysis(String fileHash, String fileFormat) {
+        FileMetadata cached = recentAnalyses.get(cacheKey(fileHash, fileFormat));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<FileMetadata> stored = metadataRepository
+                .findFirstByFileHashAndFileFormatOrderByIdDesc(fileHash, fileFormat);
+        stored.ifPresent(this::rememberAnalysis);
+        return stored;
+    }
+
+    /**
+     * Запоминает результат анализа для повторных загрузок того же файла
+     */
+    public void rememberAnalysis(FileMetadata metadata) {
+        if (metadata.getFileHash() == null) {
+            return;
+        }
+        FileMetadata snapshot = new FileMetadata();
+        copyAnalysis(metadata, snapshot);
+        recentAnalyses.put(cacheKey(metadata.getFileHash(), metadata.getFileFormat()), snapshot);
+    }
+
+    /**
+     * Переносит результаты анализа (кодировка, формат CSV, заголовки, примеры) в новые метаданные
+     */
+    public static void copyAnalysis(FileMetadata source, FileMetadata target) {
+        target.setFileHash(source.getFileHash());
+        target.setFileFormat(source.getFileFormat());
+        target.setDetectedEncoding(source.getDetectedEncoding());
+        target.setDetectedDelimiter(source.getDetectedDelimiter());
+        target.setDetectedQuoteChar(source.getDetectedQuoteChar());
+        target.setDetectedEscapeChar(source.getDetectedEscapeChar());
+        target.setTotalColumns(source.getTotalColumns());
+        target.setColumnHeaders(source.getColumnHeaders());
+        target.setSampleData(source.getSampleData());
+        target.setHasHeader(source.getHasHeader());
+    }
+
+    /**
+     * Переносит новый файл в хранилище (или удаляет, если такое содержимое уже есть)
+     * и создаёт для вызывающего кода отдельный путь к нему
+     */
+    private synchronized void linkToStore(Path blob, Path incoming, Path target) throws IOException {
+        try {
+            if (Files.exists(blob)) {
+                Files.delete(incoming);
+                // Продлеваем жизнь содержимого при очистке временной директории
+                Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+                log.info("Файл {} уже загружался, используется сохранённая копия", target.getFileName());
+            } else {
+                Files.move(incoming, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            // Содержимое удалили или создали параллельно — сохраняем новый файл как есть
+            Files.move(incoming, blob, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Жёсткая ссылка не создана ({}), файл копируется", e.getMessage());
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String cacheKey(String fileHash, String fileFormat) {
+        return fileHash + ":" + fileFormat;
+    }
+
+    /**
+     * Сохранённая загрузка
+     *
+     * @param path   путь к файлу для вызывающего кода
+     * @param ingest хеш, кодировка и начало файла
+     */
+    public record StoredUpload(Path path, IngestInputStream ingest) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.java.service.imports;
 
+import com.java.config.ImportConfig;
 import com.java.config.MemoryMonitor;
 import com.java.dto.ImportRequestDto;
 import com.java.model.Client;
@@ -13,23 +14,34 @@ import com.java.service.error.DatabaseErrorMessageParser;
 import com.java.service.error.ErrorMessageFormatter;
 import com.java.service.error.ParsedDatabaseError;
 import com.java.service.file.FileAnalyzerService;
+import com.java.service.imports.handlers.StagingTableService;
 import com.java.service.notification.NotificationService;
-import com.java.util.PathResolver;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Сервис для асинхронного выполнения импорта
@@ -39,6 +51,13 @@ import java.util.concurrent.Executor;
 @RequiredArgsConstructor
 public class AsyncImportService {
 
+    /**
+     * Статусы выполняющегося импорта: после перезапуска такие сессии никто не выполняет
+     */
+    private static final List<ImportStatus> RUNNING_STATUSES = List.of(
+            ImportStatus.INITIALIZING, ImportStatus.ANALYZING, ImportStatus.VALIDATING,
+            ImportStatus.PROCESSING, ImportStatus.COMPLETING);
+
     private final ImportTemplateRepository templateRepository;
     private final ImportSessionRepository sessionRepository;
     private final FileOperationRepository fileOperationRepository;
@@ -49,15 +68,39 @@ public class AsyncImportService {
     private final ImportProcessorService processorService;
     private final ImportProgressService progressService;
     private final MemoryMonitor memoryMonitor;
-    private final PathResolver pathResolver;
     private final NotificationService notificationService;
     private final DatabaseErrorMessageParser errorParser;
     private final ErrorMessageFormatter errorFormatter;
+    private final ImportConfig.ImportSettings importSettings;
+    private final StagingTableService stagingTableService;
+    private final ImportJobScheduler jobScheduler;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     @Qualifier("importTaskExecutor")
     private Executor taskExecutor;
 
+    /**
+     * Идентификатор экземпляра приложения (пусто — имя хоста). При запуске экземпляр
+     * восстанавливает только свои импорты, поэтому на каждом экземпляре он свой и не
+     * меняется при перезапуске
+     */
+    @Value("${import.instance-id:}")
+    private String instanceId;
+
+    @PostConstruct
+    void resolveInstanceId() {
+        if (instanceId == null || instanceId.isBlank()) {
+            try {
+                instanceId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                log.warn("Не удалось определить имя хоста, идентификатор экземпляра: local");
+                instanceId = "local";
+            }
+        }
+        log.info("Идентификатор экземпляра для импортов: {}", instanceId);
+    }
+
     /**
      * Запускает асинхронный импорт файла
      */
@@ -100,26 +143,35 @@ public class AsyncImportService {
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                 @Override
                 public void afterCommit() {
-                    CompletableFuture.runAsync(() -> {
-                        ImportSession managed = null;
-                        try {
-                            // Загружаем свежую сущность внутри новой транзакции
-                            managed = sessionRepository.findById(finalSession.getId())
-                                    .orElseThrow(() -> new RuntimeException("Сессия импорта не найдена"));
-
-                            // Сначала анализируем файл и настраиваем метаданные
-                            setupSessionMetadata(managed, request);
-                            sessionRepository.save(managed);
-
-                            log.info("Начало фоновой обработки импорта для сессии: {}", managed.getId());
-                            processorService.processImport(managed);
-                        } catch (Exception e) {
-                            log.error("Ошибка фоновой обработки импорта", e);
-                            // Используем managed сессию если есть (содержит актуальное сообщение об ошибке из памяти)
-                            // Иначе используем finalSession
-                            handleAsyncImportError(managed != null ? managed : finalSession, e);
-                        }
-                    }, taskExecutor);
+                    try {
+                        CompletableFuture.runAsync(() -> {
+                            ImportSession managed = null;
+                            try {
+                                // Загружаем свежую сущность внутри новой транзакции
+                                managed = sessionRepository.findById(finalSession.getId())
+                                        .orElseThrow(() -> new RuntimeException("Сессия импорта не найдена"));
+
+                                // Сначала анализируем файл и настраиваем метаданные
+                                setupSessionMetadata(managed, request);
+                                if (managed.getStatus() == ImportStatus.FAILED) {
+                                    throw new IllegalStateException(managed.getErrorMessage());
+                                }
+
+                                // Обработка запускается планировщиком в порядке честной очереди
+                                ImportSession analyzed = managed;
+                                transactionTemplate.executeWithoutResult(status -> enqueueImport(analyzed));
+                            } catch (Exception e) {
+                                log.error("Ошибка фоновой обработки импорта", e);
+                                // Используем managed сессию если есть (содержит актуальное сообщение об ошибке из памяти)
+                                // Иначе используем finalSession
+                                handleAsyncImportError(managed != null ? managed : finalSession, e);
+                            }
+                        }, taskExecutor);
+                    } catch (RejectedExecutionException e) {
+                        // Пул анализа переполнен — не выполняем работу в HTTP-потоке
+                        finalSession.setErrorMessage("Очередь импорта переполнена, повторите загрузку позже");
+                        handleAsyncImportError(finalSession, e);
+                    }
                 }
             });
 
@@ -141,14 +193,10 @@ public class AsyncImportService {
             if (request.getMetadata() != null) {
                 metadata = request.getMetadata();
             } else {
-                Path tempFilePath = request.getSavedFilePath() != null
-                        ? request.getSavedFilePath()
-                        : pathResolver.saveToTempFile(request.getFile(), "import_temp");
-
-                metadata = fileAnalyzerService.analyzeFile(
-                        tempFilePath,
-                        request.getFile().getOriginalFilename()
-                );
+                metadata = request.getSavedFilePath() != null
+                        ? fileAnalyzerService.analyzeFile(request.getSavedFilePath(),
+                                request.getFile().getOriginalFilename())
+                        : fileAnalyzerService.analyzeFile(request.getFile(), "import_temp");
             }
             metadata.setImportSession(session);
             metadata = metadataRepository.save(metadata);
@@ -261,6 +309,7 @@ public class AsyncImportService {
                 .errorRows(0L)
                 .duplicateRows(0L)
                 .startedAt(ZonedDateTime.now())
+                .ownerInstance(instanceId)
                 .build();
     }
 
@@ -308,6 +357,32 @@ public class AsyncImportService {
 
         return sessionRepository.findById(sessionId)
                 .map(session -> {
+                    ImportJobScheduler.CancelResult queued = session.getStatus() == ImportStatus.QUEUED
+                            ? jobScheduler.cancel(sessionId) : ImportJobScheduler.CancelResult.UNKNOWN;
+
+                    // Ещё не запущенный импорт просто убирается из очереди
+                    if (queued == ImportJobScheduler.CancelResult.DEQUEUED) {
+                        session.setStatus(ImportStatus.CANCELLED);
+                        session.setIsCancelled(true);
+                        session.setCompletedAt(ZonedDateTime.now());
+                        sessionRepository.save(session);
+
+                        FileOperation fileOperation = session.getFileOperation();
+                        fileOperation.setStatus(FileOperation.OperationStatus.FAILED);
+                        fileOperation.setErrorMessage("Импорт отменён до запуска");
+                        fileOperation.setCompletedAt(ZonedDateTime.now());
+                        fileOperationRepository.save(fileOperation);
+
+                        progressService.sendProgressUpdate(session);
+                        return true;
+                    }
+
+                    // Воркер уже взял задание, но сессия ещё не переведена в PROCESSING
+                    if (queued == ImportJobScheduler.CancelResult.STARTED) {
+                        processorService.cancelBeforeStart(sessionId);
+                        return true;
+                    }
+
                     if (session.getStatus() == ImportStatus.PROCESSING ||
                             session.getStatus() == ImportStatus.INITIALIZING ||
                             session.getStatus() == ImportStatus.ANALYZING) {
@@ -321,4 +396,143 @@ public class AsyncImportService {
                 })
                 .orElse(false);
     }
+    /**
+     * Проверяет, можно ли продолжить импорт сессии с контрольной точки
+     */
+    @Transactional(readOnly = true)
+    public boolean isResumable(Long sessionId) {
+        return sessionRepository.findById(sessionId)
+                .map(processorService::isResumable)
+                .orElse(false);
+    }
+
+    /**
+     * Продолжает прерванный импорт с последней контрольной точки.
+     * Уже записанные строки не перечитываются и не записываются повторно.
+     */
+    @Transactional
+    public void resumeImport(Long sessionId) {
+        ImportSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Сессия импорта не найдена"));
+
+        if (!processorService.isResumable(session)) {
+            throw new IllegalStateException("Импорт нельзя продолжить: нет контрольной точки или исходного файла");
+        }
+
+        log.info("Продолжение импорта сессии ID: {} со строки {}", sessionId, session.getCheckpointRow() + 1);
+
+        session.setErrorMessage(null);
+        session.setCompletedAt(null);
+
+        FileOperation fileOperation = session.getFileOperation();
+        fileOperation.setStatus(FileOperation.OperationStatus.PROCESSING);
+        fileOperation.setErrorMessage(null);
+        fileOperation.setCompletedAt(null);
+        fileOperationRepository.save(fileOperation);
+
+        enqueueImport(session);
+    }
+
+    /**
+     * Переводит сессию в статус QUEUED и передаёт импорт планировщику.
+     * Вызывается внутри транзакции
+     */
+    private void enqueueImport(ImportSession session) {
+        session.setStatus(ImportStatus.QUEUED);
+        session.setQueuedAt(ZonedDateTime.now());
+        session.setOwnerInstance(instanceId);
+        ImportSession saved = sessionRepository.save(session);
+        progressService.sendProgressUpdate(saved);
+
+        FileOperation fileOperation = saved.getFileOperation();
+        Long sessionId = saved.getId();
+        Long clientId = fileOperation.getClient().getId();
+        long fileSize = fileOperation.getFileSize() != null ? fileOperation.getFileSize() : 0;
+
+        // Задание ставится в очередь только после коммита статуса QUEUED
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                jobScheduler.submit(sessionId, clientId, fileSize, () -> runQueuedImport(sessionId));
+            }
+        });
+    }
+
+    /**
+     * Выполняет импорт, запущенный планировщиком
+     */
+    private void runQueuedImport(Long sessionId) {
+        ImportSession managed = null;
+        try {
+            managed = sessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new RuntimeException("Сессия импорта не найдена"));
+            if (managed.getStatus() != ImportStatus.QUEUED) {
+                log.info("Импорт сессии {} пропущен: статус {}", sessionId, managed.getStatus());
+                return;
+            }
+
+            log.info("Начало фоновой обработки импорта для сессии: {}", sessionId);
+            if (importSettings.isPipelineEnabled()) {
+                processorService.processImportPipelined(managed);
+            } else if (importSettings.isCheckpointEnabled()) {
+                processorService.processImportCheckpointed(managed);
+            } else {
+                processorService.processImport(managed);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка фоновой обработки импорта", e);
+            if (managed != null) {
+                handleAsyncImportError(managed, e);
+            }
+        } finally {
+            // Отмена до запуска оставляет флаг, если обработка так и не началась
+            processorService.releaseCancellation(sessionId);
+        }
+    }
+
+    /**
+     * После перезапуска приложения незавершённые импорты этого экземпляра (PROCESSING и другие
+     * статусы выполнения) никто не выполняет — переводим их в FAILED, чтобы их можно было продолжить
+     * с контрольной точки и чтобы они не задерживали дельта-выгрузку.
+     * Импорты из очереди (QUEUED) с сохранённым файлом снова ставятся в очередь.
+     * Импорты других экземпляров не трогаем: они выполняются там. Сессии без экземпляра
+     * (созданные до появления import.instance-id) восстанавливаются, как раньше
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recoverInterruptedImports() {
+        for (ImportSession session : sessionRepository.findOwnedByStatus(ImportStatus.QUEUED, instanceId)) {
+            FileMetadata metadata = session.getFileMetadata();
+            if (metadata != null && metadata.getTempFilePath() != null
+                    && Files.exists(Path.of(metadata.getTempFilePath()))) {
+                log.info("Восстановление импорта сессии {} в очереди", session.getId());
+                enqueueImport(session);
+            } else {
+                session.setStatus(ImportStatus.PROCESSING);
+            }
+        }
+
+        List<ImportSession> interrupted = new ArrayList<>();
+        for (ImportStatus status : RUNNING_STATUSES) {
+            interrupted.addAll(sessionRepository.findOwnedByStatus(status, instanceId));
+        }
+        if (interrupted.isEmpty()) {
+            return;
+        }
+
+        log.warn("Обнаружено {} импортов, прерванных перезапуском приложения", interrupted.size());
+        for (ImportSession session : interrupted) {
+            session.setStatus(ImportStatus.FAILED);
+            session.setErrorMessage("Импорт прерван перезапуском приложения");
+            session.setCompletedAt(ZonedDateTime.now());
+            sessionRepository.save(session);
+            stagingTableService.drop(session.getId());
+
+            FileOperation fileOperation = session.getFileOperation();
+            if (fileOperation != null) {
+                fileOperation.markAsFailed("Импорт прерван перезапуском приложения");
+                fileOperationRepository.save(fileOperation);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.java.service.imports;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик импортов с честным разделением между клиентами.
+ * <p>
+ * Одновременно выполняется не больше {@link #getMaxConcurrent()} импортов — значение
+ * рассчитывается из размера пула соединений БД. Очередь упорядочена по схеме
+ * start-time fair queueing: у каждого клиента есть виртуальное время, которое растёт на
+ * стоимость запущенного задания (1 + размер файла в МБ). Следующим запускается задание
+ * с минимальным временем окончания, поэтому мелкие файлы одного клиента не ждут
+ * завершения многогигабайтного файла другого. Внутри клиента первыми идут задания
+ * меньшей стоимости; ожидание снижает стоимость, чтобы крупные файлы не голодали.
+ * <p>
+ * Очередь хранится в памяти, состояние сессий — в БД (статус QUEUED), после
+ * перезапуска задания восстанавливает {@link AsyncImportService}. Сессия остаётся QUEUED
+ * и после выбора задания, пока импорт не переведёт её в PROCESSING, — {@link #cancel}
+ * различает эти состояния.
+ * <p>
+ * Позиции в очереди пересчитываются проигрыванием выбора заданий только после изменения
+ * очереди (и раз в минуту — ожидание меняет стоимость), запросы прогресса читают готовые.
+ */
+@Service
+@Slf4j
+public class ImportJobScheduler {
+
+    private static final long BYTES_PER_COST_UNIT = 1024 * 1024;
+
+    private final int maxConcurrent;
+    private final ExecutorService workers;
+
+    private final Map<Long, List<QueuedJob>> queuedByClient = new LinkedHashMap<>();
+    private final Map<Long, Double> clientFinishTags = new HashMap<>();
+    // Задания, отданные воркерам; из них started — уже начали выполняться
+    private final Set<Long> runningSessions = new HashSet<>();
+    private final Set<Long> startedSessions = new HashSet<>();
+    // Отданы воркеру, но отменены до начала выполнения
+    private final Set<Long> cancelledBeforeStart = new HashSet<>();
+    private double virtualTime;
+    private long sequence;
+
+    // Позиции в очереди на момент positionsComputedAt; null — очередь изменилась
+    private Map<Long, Integer> positions;
+    private Instant positionsComputedAt;
+
+    /**
+     * Результат отмены задания планировщиком
+     */
+    public enum CancelResult {
+        /**
+         * Задание убрано из очереди или отменено до начала выполнения — импорт не запустится
+         */
+        DEQUEUED,
+        /**
+         * Задание уже выполняется воркером; отменять нужно сам импорт
+         */
+        STARTED,
+        /**
+         * Планировщик не знает сессию (импорт завершён или поставлен другим экземпляром)
+         */
+        UNKNOWN
+    }
+
+    public ImportJobScheduler(DataSource dataSource,
+                              @Value("${import.scheduler.max-concurrent:0}") int configuredConcurrency,
+                              @Value("${import.scheduler.reserved-connections:4}") int reservedConnections,
+                              @Value("${import.scheduler.connections-per-import:2}") int connectionsPerImport) {
+        this.maxConcurrent = resolveConcurrency(dataSource, configuredConcurrency,
+                reservedConnections, connectionsPerImport);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+            Thread thread = new Thread(runnable, "ImportWorker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Планировщик импорта: одновременно до {} импортов", maxConcurrent);
+    }
+
+    /**
+     * Ставит импорт в очередь
+     *
+     * @param sessionId сессия импорта
+     * @param clientId  клиент — единица честного разделения
+     * @param fileSize  размер файла в байтах (стоимость задания)
+     * @param job       выполнение импорта
+     */
+    public synchronized void submit(Long sessionId, Long clientId, long fileSize, Runnable job) {
+        double cost = 1 + (double) Math.max(0, fileSize) / BYTES_PER_COST_UNIT;
+        queuedByClient.computeIfAbsent(clientId, id -> new ArrayList<>())
+                .add(new QueuedJob(sessionId, clientId, cost, Instant.now(), sequence++, job));
+        positions = null;
+        log.info("Импорт сессии {} (клиент {}, стоимость {}) поставлен в очередь, позиция {}",
+                sessionId, clientId, Math.round(cost), getQueuePosition(sessionId));
+        dispatch();
+    }
+
+    /**
+     * Отменяет задание, если оно ещё не начало выполняться: убирает из очереди или,
+     * если задание уже отдано воркеру, не даёт ему запуститься
+     */
+    public synchronized CancelResult cancel(Long sessionId) {
+        for (Iterator<List<QueuedJob>> it = queuedByClient.values().iterator(); it.hasNext(); ) {
+            List<QueuedJob> jobs = it.next();
+            if (jobs.removeIf(job -> job.sessionId().equals(sessionId))) {
+                if (jobs.isEmpty()) it.remove();
+                positions = null;
+                log.info("Импорт сессии {} удалён из очереди", sessionId);
+                return CancelResult.DEQUEUED;
+            }
+        }
+        if (!runningSessions.contains(sessionId)) {
+            return CancelResult.UNKNOWN;
+        }
+        if (startedSessions.contains(sessionId)) {
+            return CancelResult.STARTED;
+        }
+        cancelledBeforeStart.add(sessionId);
+        log.info("Импорт сессии {} отменён до начала выполнения", sessionId);
+        return CancelResult.DEQUEUED;
+    }
+
+    /**
+     * Позиция в очереди (1 — запустится следующим) или null, если сессия не в очереди
+     */
+    public synchronized Integer getQueuePosition(Long sessionId) {
+        Instant now = Instant.now();
+        if (positions == null || Duration.between(positionsComputedAt, now).toMinutes() >= 1) {
+            positions = computePositions(now);
+            positionsComputedAt = now;
+        }
+        return positions.get(sessionId);
+    }
+
+    /**
+     * Проигрывает выбор заданий на копии состояния очереди
+     */
+    private Map<Long, Integer> computePositions(Instant now) {
+        Map<Long, List<QueuedJob>> queued = new LinkedHashMap<>();
+        queuedByClient.forEach((client, jobs) -> queued.put(client, new ArrayList<>(jobs)));
+        Map<Long, Double> finishTags = new HashMap<>(clientFinishTags);
+        double[] vt = {virtualTime};
+
+        Map<Long, Integer> result = new HashMap<>();
+        int position = 0;
+        while (!queued.isEmpty()) {
+            result.put(pickNext(queued, finishTags, vt, now).sessionId(), ++position);
+        }
+        return result;
+    }
+
+    public boolean isQueued(Long sessionId) {
+        return getQueuePosition(sessionId) != null;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queuedByClient.values().stream().mapToInt(List::size).sum();
+    }
+
+    public synchronized int getRunningCount() {
+        return runningSessions.size();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        while (runningSessions.size() < maxConcurrent && !queuedByClient.isEmpty()) {
+            double[] vt = {virtualTime};
+            QueuedJob job = pickNext(queuedByClient, clientFinishTags, vt, Instant.now());
+            virtualTime = vt[0];
+            positions = null;
+
+            runningSessions.add(job.sessionId());
+            log.info("Запуск импорта сессии {} (клиент {}), выполняется {}/{}",
+                    job.sessionId(), job.clientId(), runningSessions.size(), maxConcurrent);
+
+            workers.execute(() -> {
+                try {
+                    if (claimStart(job.sessionId())) {
+                        job.job().run();
+                    }
+                } catch (Exception e) {
+                    log.error("Необработанная ошибка импорта сессии {}", job.sessionId(), e);
+                } finally {
+                    completed(job);
+                }
+            });
+        }
+    }
+
+    /**
+     * Воркер начинает выполнение; false — задание отменено, пока ждало воркера
+     */
+    private synchronized boolean claimStart(Long sessionId) {
+        if (cancelledBeforeStart.remove(sessionId)) {
+            log.info("Импорт сессии {} не запущен: отменён", sessionId);
+            return false;
+        }
+        startedSessions.add(sessionId);
+        return true;
+    }
+
+    private synchronized void completed(QueuedJob job) {
+        runningSessions.remove(job.sessionId());
+        startedSessions.remove(job.sessionId());
+        dispatch();
+    }
+
+    /**
+     * Выбирает и удаляет из очереди задание с минимальным временем окончания
+     */
+    private static QueuedJob pickNext(Map<Long, List<QueuedJob>> queued, Map<Long, Double> finishTags,
+                                      double[] virtualTime, Instant now) {
+        QueuedJob best = null;
+        double bestStart = 0;
+        double bestFinish = Double.MAX_VALUE;
+
+        for (List<QueuedJob> jobs : queued.values()) {
+            QueuedJob candidate = jobs.stream()
+                    .min(Comparator.comparingDouble((QueuedJob job) -> job.effectiveCost(now))
+                            .thenComparingLong(QueuedJob::sequence))
+                    .orElseThrow();
+            double start = Math.max(virtualTime[0], finishTags.getOrDefault(candidate.clientId(), 0.0));
+            double finish = start + candidate.cost();
+            if (finish < bestFinish || (finish == bestFinish && candidate.sequence() < best.sequence())) {
+                best = candidate;
+                bestStart = start;
+                bestFinish = finish;
+            }
+        }
+
+        List<QueuedJob> clientJobs = queued.get(best.clientId());
+        clientJobs.remove(best);
+        if (clientJobs.isEmpty()) {
+            queued.remove(best.clientId());
+        }
+        finishTags.put(best.clientId(), bestFinish);
+        virtualTime[0] = bestStart;
+        return best;
+    }
+
+    private static int resolveConcurrency(DataSource dataSource, int configured,
+                                          int reservedConnections, int connectionsPerImport) {
+        if (configured > 0) {
+            return configured;
+        }
+        int poolSize = 10;
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (Exception e) {
+            log.warn("Не удалось определить размер пула соединений, используется {}", poolSize);
+        }
+        int byPool = (poolSize - reservedConnections) / Math.max(1, connectionsPerImport);
+        int byCpu = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(byPool, byCpu));
+    }
+
+    /**
+     * Задание в очереди; ожидание уменьшает стоимость при выборе внутри клиента
+     */
+    private record QueuedJob(Long sessionId, Long clientId, double cost, Instant queuedAt,
+                             long sequence, Runnable job) {
+
+        double effectiveCost(Instant now) {
+            long waitedMinutes = Duration.between(queuedAt, now).toMinutes();
+            return cost / (1 + waitedMinutes);
+        }
+    }
+}
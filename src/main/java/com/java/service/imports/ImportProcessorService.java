@@ -1,6 +1,7 @@
 package com.java.service.imports;
 
 import com.java.config.ImportConfig;
+import com.java.config.AdaptiveBatchController;
 import com.java.config.MemoryMonitor;
 import com.java.exception.ImportException;
 import com.java.model.FileOperation;
@@ -14,7 +15,16 @@ import com.java.service.error.ParsedDatabaseError;
 import com.java.service.imports.handlers.DataTransformationService;
 import com.java.service.imports.handlers.DuplicateCheckService;
 import com.java.service.imports.handlers.EntityPersistenceService;
+import com.java.service.imports.handlers.ImportErrorSink;
+import com.java.service.imports.handlers.ImportTemplatePlan;
+import com.java.service.imports.handlers.StagingTableService;
+import com.java.service.imports.pipeline.ImportPipeline;
+import com.java.service.imports.pipeline.ImportPipelineMonitor;
 import com.java.service.notification.NotificationService;
+import com.java.util.CompressedFiles;
+import com.java.util.CountingLineReader;
+import com.java.util.CsvRecordCounter;
+import com.java.util.FileReaderUtils;
 import com.java.util.PathResolver;
 import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
@@ -23,16 +33,23 @@ import com.opencsv.CSVReaderBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.UnexpectedRollbackException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,8 +57,12 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -53,7 +74,6 @@ import java.util.stream.Stream;
 public class ImportProcessorService {
 
     private final ImportSessionRepository sessionRepository;
-    private final ImportErrorRepository errorRepository;
     private final FileMetadataRepository metadataRepository;
     private final ImportTemplateRepository templateRepository;
     private final FileOperationRepository fileOperationRepository;
@@ -69,19 +89,26 @@ public class ImportProcessorService {
     private final ImportConfig.ImportSettings importSettings;
     private final MemoryMonitor memoryMonitor;
     private final PathResolver pathResolver;
+    private final FileReaderUtils fileReaderUtils;
+    private final ImportPipelineMonitor pipelineMonitor;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportErrorSink errorSink;
+    @Qualifier("fileAnalysisExecutor")
+    private final Executor fileAnalysisExecutor;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     // Хранилище для отмены операций
-    private final Map<Long, AtomicBoolean> cancellationFlags = new HashMap<>();
+    private final Map<Long, AtomicBoolean> cancellationFlags = new ConcurrentHashMap<>();
 
     // ThreadLocal для хранения первого сообщения об ошибке в рамках одной сессии импорта
     // Используется для сохранения правильного сообщения при STOP_ON_ERROR стратегии
     private final ThreadLocal<String> firstErrorMessage = new ThreadLocal<>();
 
     /**
-     * Обрабатывает импорт файла
+     * Обрабатывает импорт файла в одной транзакции: при ошибке откатывается весь импорт
+     * вместе с контрольными точками. Используется при import.checkpoint.enabled=false
      */
     @Transactional
     public void processImport(ImportSession session) {
@@ -96,9 +123,9 @@ public class ImportProcessorService {
         // Очищаем ThreadLocal для новой сессии импорта
         firstErrorMessage.remove();
 
-        // Регистрируем флаг отмены
-        AtomicBoolean cancelled = new AtomicBoolean(false);
-        cancellationFlags.put(session.getId(), cancelled);
+        // Регистрируем флаг отмены (отмена могла прийти до запуска — см. cancelBeforeStart)
+        AtomicBoolean cancelled = cancellationFlags.computeIfAbsent(session.getId(), id -> new AtomicBoolean());
+        memoryMonitor.startImportBatching(session.getId());
 
         try {
             // Обновляем статус
@@ -115,23 +142,13 @@ public class ImportProcessorService {
             ImportTemplate template = templateRepository.findByIdWithFields(session.getTemplate().getId())
                     .orElseThrow(() -> new RuntimeException("Шаблон не найден"));
 
-            // Определяем обработчик по типу файла
-            if ("CSV".equalsIgnoreCase(metadata.getFileFormat()) ||
-                    "TXT".equalsIgnoreCase(metadata.getFileFormat())) {
-                processCsvFile(session, template, metadata, cancelled);
-            } else if ("XLSX".equalsIgnoreCase(metadata.getFileFormat()) ||
-                    "XLS".equalsIgnoreCase(metadata.getFileFormat())) {
-                processExcelFile(session, template, metadata, cancelled);
-            } else {
-                throw new UnsupportedOperationException("Неподдерживаемый формат файла: " +
-                        metadata.getFileFormat());
-            }
+            readFile(session, ResumePoint.of(session), template, metadata, cancelled, directSink(session, template));
 
             // Финализация
             if (cancelled.get()) {
                 handleCancellation(session);
             } else {
-                finalizeImport(session);
+                finalizeImport(session, template);
             }
 
         } catch (Exception e) {
@@ -139,72 +156,464 @@ public class ImportProcessorService {
                     e.getClass().getSimpleName(), e.getMessage(), e);
             handleImportError(session, e);
         } finally {
-            // Удаляем флаг отмены
+            // Удаляем флаг отмены и состояние проверки дубликатов
             cancellationFlags.remove(session.getId());
+            memoryMonitor.stopImportBatching(session.getId());
+            errorSink.discard(session.getId());
+            duplicateCheckService.releaseSession(session.getId());
             // Очищаем ThreadLocal после завершения обработки
             firstErrorMessage.remove();
         }
     }
 
     /**
-     * Обрабатывает CSV файл
+     * Конвейерный импорт: чтение файла, трансформация строк (несколько потоков)
+     * и запись в БД выполняются параллельно.
+     * <p>
+     * Каждый батч записывается в отдельной транзакции, поэтому метод не транзакционный:
+     * при ошибке уже записанные батчи остаются в БД, при отмене удаляются через rollbackImport.
      */
-    private void processCsvFile(ImportSession session, ImportTemplate template,
-                                FileMetadata metadata, AtomicBoolean cancelled) throws Exception {
-        Path filePath = Paths.get(metadata.getTempFilePath());
+    public void processImportPipelined(ImportSession session) {
+        processImportPerBatch(session, true);
+    }
 
-        // БЫСТРАЯ оценка количества строк (не загружаем весь файл в память)
-        long estimatedRows = estimateRowCount(filePath, metadata);
-        session.setTotalRows(estimatedRows);
-        session.setIsEstimated(true); // Добавим флаг что это оценка
-        sessionRepository.save(session);
+    /**
+     * Последовательный импорт с коммитом на каждый батч: чтение, трансформация и запись
+     * в текущем потоке, как в processImport, но контрольная точка фиксируется вместе
+     * с данными батча и не откатывается при ошибке — импорт можно продолжить с неё
+     */
+    public void processImportCheckpointed(ImportSession session) {
+        processImportPerBatch(session, false);
+    }
 
-        try (Reader reader = Files.newBufferedReader(filePath,
-                Charset.forName(metadata.getDetectedEncoding()))) {
+    private void processImportPerBatch(ImportSession session, boolean pipelined) {
+        ImportContext context = transactionTemplate.execute(status -> loadImportContext(session.getId()));
+        ImportSession detached = context.session();
+        ImportTemplate template = context.template();
+        if (pipelined) {
+            log.info("Начало конвейерной обработки импорта, сессия ID: {}, потоков трансформации: {}",
+                    detached.getId(), importSettings.getPipelineWorkers());
+        } else {
+            log.info("Начало обработки импорта с коммитом на каждый батч, сессия ID: {}", detached.getId());
+        }
 
-            CSVParser parser = new CSVParserBuilder()
-                    .withSeparator(metadata.getDetectedDelimiter().charAt(0))
-                    .withQuoteChar(metadata.getDetectedQuoteChar() != null ?
-                            metadata.getDetectedQuoteChar().charAt(0) : '"')
-                    .withEscapeChar(metadata.getDetectedEscapeChar() != null ?
-                            metadata.getDetectedEscapeChar().charAt(0) : CSVParser.NULL_CHARACTER)
-                    .build();
+        firstErrorMessage.remove();
+
+        AtomicBoolean cancelled = cancellationFlags.computeIfAbsent(detached.getId(), id -> new AtomicBoolean());
+        memoryMonitor.startImportBatching(detached.getId());
+
+        ImportPipeline<RowBatch, TransformedBatch> pipeline = pipelined ? new ImportPipeline<>(
+                "import-" + detached.getId(),
+                importSettings.getPipelineWorkers(),
+                importSettings.getPipelineQueueCapacity(),
+                cancelled,
+                batch -> transformBatch(batch.plan(), batch.rows(), batch.firstRowNumber(), batch.byteOffset()))
+                : null;
+        if (pipeline != null) {
+            pipelineMonitor.register(detached.getId(), pipeline);
+        }
+
+        try {
+            inTransaction(() -> updateSessionStatus(detached, ImportStatus.PROCESSING));
+            ResumePoint resume = ResumePoint.of(detached);
+
+            if (pipeline != null) {
+                // Сессию меняет и сохраняет только стадия записи: изменения из потока чтения
+                // выполняются в ней между батчами, сохраняются вместе со следующим батчем
+                BatchSink pipelineSink = new BatchSink() {
+                    @Override
+                    public void accept(List<String[]> batch, ImportTemplatePlan plan,
+                                       AtomicLong currentRow, Long byteOffset) throws Exception {
+                        pipeline.submit(new RowBatch(new ArrayList<>(batch), plan,
+                                currentRow.get() - batch.size() + 1, byteOffset), batch.size());
+                    }
+
+                    @Override
+                    public void updateSession(Consumer<ImportSession> update) {
+                        pipeline.update(() -> update.accept(detached));
+                    }
+                };
+
+                pipeline.startReader(() -> readFile(detached, resume, template, context.metadata(), cancelled,
+                        pipelineSink));
+                pipeline.drain(transformed -> persistInTransaction(detached, template, transformed));
+            } else {
+                // Изменения сессии сохраняются вместе со следующим батчем
+                BatchSink committingSink = new BatchSink() {
+                    @Override
+                    public void accept(List<String[]> batch, ImportTemplatePlan plan,
+                                       AtomicLong currentRow, Long byteOffset) {
+                        persistInTransaction(detached, template, transformBatch(plan, batch,
+                                currentRow.get() - batch.size() + 1, byteOffset));
+                    }
+
+                    @Override
+                    public void updateSession(Consumer<ImportSession> update) {
+                        update.accept(detached);
+                    }
+                };
+                readFile(detached, resume, template, context.metadata(), cancelled, committingSink);
+            }
+
+            if (cancelled.get()) {
+                inTransaction(() -> handleCancellation(detached));
+            } else {
+                inTransaction(() -> finalizeImport(detached, template));
+            }
+
+        } catch (Exception e) {
+            log.error("Ошибка импорта, сессия ID: {}: {}", detached.getId(), e.getMessage(), e);
+            inTransaction(() -> handleImportError(detached, e));
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+                pipelineMonitor.unregister(detached.getId());
+            }
+            cancellationFlags.remove(detached.getId());
+            memoryMonitor.stopImportBatching(detached.getId());
+            errorSink.discard(detached.getId());
+            duplicateCheckService.releaseSession(detached.getId());
+            firstErrorMessage.remove();
+        }
+    }
+
+    /**
+     * Загружает сессию, шаблон и метаданные со всеми связями, нужными вне транзакции
+     */
+    private ImportContext loadImportContext(Long sessionId) {
+        ImportSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Сессия импорта не найдена"));
+
+        FileMetadata metadata = metadataRepository.findByImportSession(session)
+                .orElse(session.getFileMetadata());
+        if (metadata == null) {
+            throw new RuntimeException("Метаданные файла не найдены");
+        }
+
+        ImportTemplate template = templateRepository.findByIdWithFields(session.getTemplate().getId())
+                .orElseThrow(() -> new RuntimeException("Шаблон не найден"));
+
+        Hibernate.initialize(session.getFileOperation());
+        Hibernate.initialize(session.getFileOperation().getClient());
+        Hibernate.initialize(session.getTemplate());
+
+        return new ImportContext(session, template, metadata);
+    }
+
+    /**
+     * Записывает батч в отдельной транзакции.
+     * <p>
+     * persistBatch меняет сессию и выборку ошибок до коммита. Если транзакция не зафиксирована,
+     * они возвращаются к состоянию до батча, чтобы в БД не попали счётчики и контрольная точка
+     * откатившихся строк. Откат транзакции (ошибка записи при SKIP_ERROR) не останавливает импорт:
+     * все строки батча записываются ошибками в новой транзакции вместе с контрольной точкой после
+     * батча — продолжение импорта их не повторяет, но и не теряет молча.
+     * Ключи дубликатов записанных строк запоминаются только после коммита
+     */
+    private void persistInTransaction(ImportSession session, ImportTemplate template, TransformedBatch batch) {
+        SessionProgress progress = SessionProgress.of(session);
+        ImportErrorSink.Snapshot errors = errorSink.snapshot(session.getId());
+        try {
+            Set<String> savedKeys = transactionTemplate.execute(status -> persistBatch(session, template, batch));
+            duplicateCheckService.saveDuplicateKeys(savedKeys, session);
+        } catch (UnexpectedRollbackException e) {
+            log.warn("Транзакция батча со строки {} откатилась: {}", batch.firstRowNumber(), e.getMessage());
+            progress.restoreTo(session);
+            errorSink.restore(session.getId(), errors);
+            inTransaction(() -> recordRolledBackBatch(session, template, batch));
+        } catch (RuntimeException e) {
+            progress.restoreTo(session);
+            errorSink.restore(session.getId(), errors);
+            throw e;
+        }
+    }
+
+    /**
+     * Учитывает строки откатившегося батча как ошибки и фиксирует контрольную точку после него
+     */
+    private void recordRolledBackBatch(ImportSession session, ImportTemplate template, TransformedBatch batch) {
+        String message = String.format("Строки %d–%d не сохранены: транзакция батча откатилась",
+                batch.firstRowNumber(), batch.firstRowNumber() + batch.size() - 1);
+        for (RowResult row : batch.results()) {
+            recordError(session, row.rowNumber(), null, null, ErrorType.SYSTEM_ERROR, message);
+        }
+        completeBatch(session, batch, persistenceService.isStaged(session, template.getEntityType()));
+    }
+
+    private void inTransaction(Runnable action) {
+        transactionTemplate.executeWithoutResult(status -> action.run());
+    }
+
+    /**
+     * Читает файл подходящим обработчиком и передаёт батчи строк в sink.
+     * Сессию читатель меняет только через sink: в конвейере её одновременно меняет стадия записи
+     *
+     * @param resume контрольная точка на момент запуска импорта
+     */
+    private void readFile(ImportSession session, ResumePoint resume, ImportTemplate template, FileMetadata metadata,
+                          AtomicBoolean cancelled, BatchSink sink) throws Exception {
+        if ("CSV".equalsIgnoreCase(metadata.getFileFormat()) ||
+                "TXT".equalsIgnoreCase(metadata.getFileFormat())) {
+            recordReadMode(session, ImportReadMode.CSV_STREAM, sink);
+            processCsvFile(session, resume, template, metadata, cancelled, sink);
+        } else if ("XLSX".equalsIgnoreCase(metadata.getFileFormat()) &&
+                importSettings.isXlsxStreamingEnabled()) {
+            recordReadMode(session, ImportReadMode.XLSX_STREAM, sink);
+            processXlsxStreaming(session, resume, template, metadata, cancelled, sink);
+        } else if ("XLSX".equalsIgnoreCase(metadata.getFileFormat()) ||
+                "XLS".equalsIgnoreCase(metadata.getFileFormat())) {
+            recordReadMode(session, ImportReadMode.EXCEL_DOM, sink);
+            processExcelFile(session, resume, template, metadata, cancelled, sink);
+        } else {
+            throw new UnsupportedOperationException("Неподдерживаемый формат файла: " +
+                    metadata.getFileFormat());
+        }
+    }
+
+    /**
+     * Sink последовательного режима: батч обрабатывается сразу в текущей транзакции
+     */
+    private BatchSink directSink(ImportSession session, ImportTemplate template) {
+        return new BatchSink() {
+            @Override
+            public void accept(List<String[]> batch, ImportTemplatePlan plan,
+                               AtomicLong currentRow, Long byteOffset) {
+                processBatch(session, template, plan, batch, currentRow, byteOffset);
+            }
+
+            @Override
+            public void updateSession(Consumer<ImportSession> update) {
+                update.accept(session);
+                sessionRepository.save(session);
+            }
+        };
+    }
+
+    /**
+     * Обрабатывает CSV файл. При продолжении с контрольной точки файл открывается
+     * сразу с сохранённой байтовой позиции, заголовок читается из начала файла
+     */
+    private void processCsvFile(ImportSession session, ResumePoint resume, ImportTemplate template,
+                                FileMetadata metadata, AtomicBoolean cancelled, BatchSink sink) throws Exception {
+        Path filePath = Paths.get(metadata.getTempFilePath());
+        Charset charset = Charset.forName(metadata.getDetectedEncoding());
+
+        // БЫСТРАЯ оценка количества строк (не загружаем весь файл в память),
+        // точное значение считается параллельно с разбором файла
+        long estimatedRows = Math.max(estimateRowCount(filePath, metadata),
+                resume.row() != null ? resume.row() : 0);
+        sink.updateSession(s -> {
+            s.setTotalRows(estimatedRows);
+            s.setIsEstimated(true); // Добавим флаг что это оценка
+        });
+
+        int skippedRecords = Math.max(Boolean.TRUE.equals(metadata.getHasHeader()) ? 1 : 0,
+                template.getSkipHeaderRows());
+        if (CompressedFiles.isCompressed(metadata.getOriginalFilename())) {
+            processCompressedCsv(session, resume, template, metadata, charset, skippedRecords, cancelled, sink);
+            return;
+        }
+        RecordCount recordCount = startRecordCount(filePath, charset, metadata, skippedRecords, cancelled);
+
+        try (CountingLineReader reader = new CountingLineReader(
+                Files.newBufferedReader(filePath, charset), charset, 0)) {
 
             CSVReader csvReader = new CSVReaderBuilder(reader)
-                    .withCSVParser(parser)
+                    .withCSVParser(buildCsvParser(metadata))
                     .build();
 
-            String[] headers = null;
-            int skippedRows = 0;
+            String[] headers = readCsvHeaders(csvReader::readNext, metadata, template);
+
+            Long resumeRow = resume.row();
+            Long resumeOffset = resume.byteOffset();
+            if (resumeRow != null && resumeOffset != null && reader.isPositionSupported()) {
+                log.info("Продолжение импорта сессии {} со строки {} (позиция {} байт)",
+                        session.getId(), resumeRow + 1, resumeOffset);
+                try (CountingLineReader resumed = openCsvAt(filePath, charset, resumeOffset)) {
+                    CSVReader resumedCsv = new CSVReaderBuilder(resumed)
+                            .withCSVParser(buildCsvParser(metadata))
+                            .build();
+                    processBatchesWithProgressCorrection(session, template, resumedCsv::readNext, resumed, headers,
+                            resumeRow, true, recordCount, cancelled, sink);
+                }
+                return;
+            }
+
+            // Обработка с корректировкой прогресса
+            processBatchesWithProgressCorrection(session, template, csvReader::readNext, reader, headers,
+                    resumeRow, false, recordCount, cancelled, sink);
+        }
+    }
 
-            if (metadata.getHasHeader()) {
-                headers = csvReader.readNext();
-                skippedRows++;
+    /**
+     * Сжатый CSV (.gz, .zip) читается потоком прямо из архива. Части .zip идут подряд
+     * как один файл, заголовок повторных частей пропускается. Байтовых позиций и точного
+     * подсчёта записей здесь нет: продолжение с контрольной точки пропускает строки,
+     * количество строк оценивается и уточняется по ходу чтения
+     */
+    private void processCompressedCsv(ImportSession session, ResumePoint resume, ImportTemplate template,
+                                      FileMetadata metadata,
+                                      Charset charset, int skippedRecords, AtomicBoolean cancelled,
+                                      BatchSink sink) throws Exception {
+        Path filePath = Paths.get(metadata.getTempFilePath());
+        try (CompressedFiles.Parts parts = CompressedFiles.openParts(filePath, metadata.getOriginalFilename())) {
+            CsvPartsSource rows = new CsvPartsSource(parts, charset, buildCsvParser(metadata), skippedRecords);
+            String[] headers = readCsvHeaders(rows, metadata, template);
+            if (resume.row() != null) {
+                log.info("Продолжение импорта сессии {} со строки {} (сжатый файл читается с начала)",
+                        session.getId(), resume.row() + 1);
             }
+            processBatchesWithProgressCorrection(session, template, rows, null, headers,
+                    resume.row(), false, RecordCount.NONE, cancelled, sink);
+        }
+    }
 
-            while (skippedRows < template.getSkipHeaderRows()) {
-                csvReader.readNext();
-                skippedRows++;
+    /**
+     * Читает заголовок и пропускаемые строки в начале CSV
+     */
+    private String[] readCsvHeaders(RowSource rows, FileMetadata metadata, ImportTemplate template) throws Exception {
+        String[] headers = null;
+        int skippedRows = 0;
+
+        if (metadata.getHasHeader()) {
+            headers = rows.readNext();
+            skippedRows++;
+        }
+
+        while (skippedRows < template.getSkipHeaderRows()) {
+            rows.readNext();
+            skippedRows++;
+        }
+        return headers;
+    }
+
+    /**
+     * Источник записей CSV для обработки батчами
+     */
+    @FunctionalInterface
+    private interface RowSource {
+        String[] readNext() throws Exception;
+    }
+
+    /**
+     * Записи всех частей сжатого файла подряд; в частях после первой пропускаются
+     * строки заголовка
+     */
+    private static final class CsvPartsSource implements RowSource {
+
+        private final CompressedFiles.Parts parts;
+        private final Charset charset;
+        private final CSVParser parser;
+        private final int skipPerPart;
+        private CSVReader current;
+
+        CsvPartsSource(CompressedFiles.Parts parts, Charset charset, CSVParser parser, int skipPerPart) {
+            this.parts = parts;
+            this.charset = charset;
+            this.parser = parser;
+            this.skipPerPart = skipPerPart;
+        }
+
+        @Override
+        public String[] readNext() throws Exception {
+            while (true) {
+                if (current == null) {
+                    InputStream content = parts.next();
+                    if (content == null) {
+                        return null;
+                    }
+                    current = new CSVReaderBuilder(new InputStreamReader(content, charset))
+                            .withCSVParser(parser)
+                            .build();
+                    if (parts.index() > 0) {
+                        log.info("Чтение части {} архива: {}", parts.index() + 1, parts.name());
+                        for (int i = 0; i < skipPerPart && current.readNext() != null; i++) {
+                            // Заголовок части
+                        }
+                    }
+                }
+                String[] row = current.readNext();
+                if (row != null) {
+                    return row;
+                }
+                // Поток части закрывается при переходе к следующей
+                current = null;
             }
+        }
+    }
 
-            // Обработка с корректировкой прогресса
-            processBatchesWithProgressCorrection(session, template, csvReader, headers, cancelled);
+    private CSVParser buildCsvParser(FileMetadata metadata) {
+        return new CSVParserBuilder()
+                .withSeparator(metadata.getDetectedDelimiter().charAt(0))
+                .withQuoteChar(metadata.getDetectedQuoteChar() != null ?
+                        metadata.getDetectedQuoteChar().charAt(0) : '"')
+                .withEscapeChar(metadata.getDetectedEscapeChar() != null ?
+                        metadata.getDetectedEscapeChar().charAt(0) : CSVParser.NULL_CHARACTER)
+                .build();
+    }
+
+    /**
+     * Открывает CSV файл с указанной байтовой позиции
+     */
+    private CountingLineReader openCsvAt(Path filePath, Charset charset, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(filePath);
+        try {
+            channel.position(offset);
+            return new CountingLineReader(
+                    new InputStreamReader(Channels.newInputStream(channel), charset.newDecoder()), charset, offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
         }
     }
 
+    /**
+     * Запускает точный подсчёт записей CSV в фоне. Файл отображается в память и сканируется
+     * параллельно с учётом переводов строк внутри кавычек
+     *
+     * @param skippedRecords записей заголовка, не входящих в количество строк данных
+     */
+    private RecordCount startRecordCount(Path filePath, Charset charset, FileMetadata metadata,
+                                         int skippedRecords, AtomicBoolean cancelled) {
+        if (!CsvRecordCounter.isSupported(charset)) {
+            return RecordCount.NONE;
+        }
+
+        char quote = metadata.getDetectedQuoteChar() != null ? metadata.getDetectedQuoteChar().charAt(0) : '"';
+        char escape = metadata.getDetectedEscapeChar() != null ?
+                metadata.getDetectedEscapeChar().charAt(0) : CsvRecordCounter.NO_ESCAPE;
+        long started = System.nanoTime();
+
+        CompletableFuture<Long> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                long records = CsvRecordCounter.countRecords(filePath, quote, escape, cancelled::get);
+                if (records >= 0) {
+                    log.debug("Точный подсчёт записей {}: {} за {} мс", filePath.getFileName(), records,
+                            (System.nanoTime() - started) / 1_000_000);
+                }
+                return records < 0 ? null : Math.max(0, records - skippedRecords);
+            } catch (IOException e) {
+                log.warn("Не удалось подсчитать записи в {}: {}", filePath.getFileName(), e.getMessage());
+                return null;
+            }
+        }, fileAnalysisExecutor);
+        return new RecordCount(future);
+    }
+
     /**
      * Быстрая оценка количества строк без загрузки всего файла в память
      */
     private long estimateRowCount(Path filePath, FileMetadata metadata) throws IOException {
-        long fileSize = Files.size(filePath);
+        long fileSize = CompressedFiles.estimateContentSize(filePath, metadata.getOriginalFilename());
 
         // Читаем только первые N строк для оценки средней длины
         final int SAMPLE_SIZE = 100;
         long totalSampleLength = 0;
         int linesRead = 0;
 
-        try (BufferedReader reader = Files.newBufferedReader(filePath,
-                Charset.forName(metadata.getDetectedEncoding()))) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                CompressedFiles.openFirst(filePath, metadata.getOriginalFilename()),
+                Charset.forName(metadata.getDetectedEncoding())))) {
             String line;
             while ((line = reader.readLine()) != null && linesRead < SAMPLE_SIZE) {
                 totalSampleLength += line.getBytes(metadata.getDetectedEncoding()).length + 2; // +2 для \r\n
@@ -225,224 +634,435 @@ public class ImportProcessorService {
         return Math.max(1, estimatedRows);
     }
 
+    /**
+     * Читает записи CSV батчами.
+     *
+     * @param resumeRow последняя зафиксированная строка или null для импорта с начала
+     * @param positionReader источник байтовых позиций для контрольных точек или null
+     * @param seeked    reader уже открыт с позиции после resumeRow; иначе строки до неё пропускаются
+     */
     private void processBatchesWithProgressCorrection(ImportSession session, ImportTemplate template,
-                                                      CSVReader csvReader, String[] headers,
-                                                      AtomicBoolean cancelled) throws Exception {
-        List<Map<String, String>> batch = new ArrayList<>();
+                                                      RowSource rows, CountingLineReader positionReader,
+                                                      String[] headers, Long resumeRow, boolean seeked,
+                                                      RecordCount recordCount, AtomicBoolean cancelled,
+                                                      BatchSink sink) throws Exception {
+        ImportTemplatePlan plan = transformationService.compile(template, headers);
+        List<String[]> batch = new ArrayList<>();
         String[] row;
         AtomicLong rowNumber = new AtomicLong(template.getSkipHeaderRows());
         long actualRowsProcessed = 0;
         long lastProgressUpdate = 0;
+        long skipUntilRow = resumeRow != null ? resumeRow : 0;
+        AdaptiveBatchController batching = batching(session);
 
-        while ((row = csvReader.readNext()) != null && !cancelled.get()) {
+        if (seeked) {
+            rowNumber.set(resumeRow);
+            actualRowsProcessed = resumeRow - template.getSkipHeaderRows();
+            lastProgressUpdate = actualRowsProcessed;
+        }
+
+        while ((row = rows.readNext()) != null && !cancelled.get()) {
             rowNumber.incrementAndGet();
             actualRowsProcessed++;
 
-            // Проверяем память каждые 100 строк
-            if (actualRowsProcessed % 100 == 0 && !memoryMonitor.isMemoryAvailable()) {
-                log.warn("Недостаточно памяти, ожидание...");
-                Thread.sleep(2000);
-                System.gc();
+            // Строки до контрольной точки уже записаны
+            if (rowNumber.get() <= skipUntilRow) {
+                continue;
             }
 
-            Map<String, String> rowData = new HashMap<>();
-            for (int i = 0; i < row.length; i++) {
-                rowData.put(String.valueOf(i), row[i]);
-                if (headers != null && i < headers.length && headers[i] != null) {
-                    rowData.put(headers[i], row[i]);
-                }
+            // Проверяем память каждые 100 строк
+            if (actualRowsProcessed % 100 == 0) {
+                batching.awaitHeadroom(cancelled::get);
             }
 
-            batch.add(rowData);
+            batch.add(row);
 
-            if (batch.size() >= importSettings.getBatchSize()) {
-                processBatch(session, template, batch, rowNumber);
+            if (batch.size() >= batching.getBatchSize()) {
+                recordCount.applyTo(session, sink);
+                sink.accept(batch, plan, rowNumber, bytePosition(positionReader));
                 batch.clear();
 
-                // КОРРЕКТИРУЕМ оценку каждые 10 батчей
-                if (actualRowsProcessed - lastProgressUpdate > importSettings.getBatchSize() * 10) {
-                    correctTotalRowsEstimate(session, actualRowsProcessed);
+                // КОРРЕКТИРУЕМ оценку каждые 10 батчей, пока нет точного количества
+                if (!recordCount.isApplied()
+                        && actualRowsProcessed - lastProgressUpdate > importSettings.getBatchSize() * 10) {
+                    correctTotalRowsEstimate(actualRowsProcessed, sink);
                     lastProgressUpdate = actualRowsProcessed;
                 }
             }
         }
 
         if (!batch.isEmpty() && !cancelled.get()) {
-            processBatch(session, template, batch, rowNumber);
+            sink.accept(batch, plan, rowNumber, bytePosition(positionReader));
         }
 
         // Финальная корректировка
-        session.setTotalRows(actualRowsProcessed);
-        session.setIsEstimated(false); // Теперь точное значение
-        sessionRepository.save(session);
+        recordCount.cancel();
+        long totalRows = actualRowsProcessed;
+        sink.updateSession(s -> {
+            s.setTotalRows(totalRows);
+            s.setIsEstimated(false); // Теперь точное значение
+        });
     }
 
     /**
-     * Корректирует оценку общего количества строк на основе текущего прогресса
+     * Фоновый подсчёт записей; результат применяется к сессии в потоке чтения файла
      */
-    private void correctTotalRowsEstimate(ImportSession session, long actualProcessed) {
-        if (session.getTotalRows() == null || session.getTotalRows() == 0) return;
+    private static final class RecordCount {
+
+        static final RecordCount NONE = new RecordCount(CompletableFuture.completedFuture(null));
+
+        private final CompletableFuture<Long> future;
+        private boolean applied;
 
-        long currentEstimate = session.getTotalRows();
+        RecordCount(CompletableFuture<Long> future) {
+            this.future = future;
+        }
+
+        boolean isApplied() {
+            return applied;
+        }
 
-        // Если обработали больше чем оценивали, увеличиваем оценку
-        if (actualProcessed > currentEstimate * 0.8) {
-            long newEstimate = (long)(actualProcessed * 1.25); // +25% запас
-            session.setTotalRows(newEstimate);
-            sessionRepository.save(session);
-            log.debug("Скорректирована оценка строк: {} -> {} (обработано {})",
-                    currentEstimate, newEstimate, actualProcessed);
+        void applyTo(ImportSession session, BatchSink sink) {
+            if (applied || !future.isDone() || future.isCompletedExceptionally()) {
+                return;
+            }
+            Long total = future.join();
+            if (total == null) {
+                return;
+            }
+            applied = true;
+            sink.updateSession(s -> {
+                s.setTotalRows(total);
+                s.setIsEstimated(false);
+            });
+            log.info("Точное количество строк сессии {}: {}", session.getId(), total);
         }
+
+        void cancel() {
+            future.cancel(false);
+        }
+    }
+
+    private Long bytePosition(CountingLineReader reader) {
+        return reader != null && reader.isPositionSupported() ? reader.getBytePosition() : null;
     }
 
     /**
-     * Обрабатывает Excel файл
+     * Контроллер размера батча сессии; вне processImport создаётся по требованию
      */
-    private void processExcelFile(ImportSession session, ImportTemplate template,
-                                  FileMetadata metadata, AtomicBoolean cancelled) throws Exception {
+    private AdaptiveBatchController batching(ImportSession session) {
+        return memoryMonitor.findImportBatching(session.getId())
+                .orElseGet(() -> memoryMonitor.startImportBatching(session.getId()));
+    }
+
+    /**
+     * Корректирует оценку общего количества строк на основе текущего прогресса
+     */
+    private void correctTotalRowsEstimate(long actualProcessed, BatchSink sink) {
+        sink.updateSession(session -> {
+            if (session.getTotalRows() == null || session.getTotalRows() == 0) return;
+
+            long currentEstimate = session.getTotalRows();
+
+            // Если обработали больше чем оценивали, увеличиваем оценку
+            if (actualProcessed > currentEstimate * 0.8) {
+                long newEstimate = (long)(actualProcessed * 1.25); // +25% запас
+                session.setTotalRows(newEstimate);
+                log.debug("Скорректирована оценка строк: {} -> {} (обработано {})",
+                        currentEstimate, newEstimate, actualProcessed);
+            }
+        });
+    }
+
+    /**
+     * Обрабатывает Excel файл. Книги из .zip архива читаются по очереди,
+     * нумерация строк продолжается от предыдущей книги
+     */
+    private void processExcelFile(ImportSession session, ResumePoint resume, ImportTemplate template,
+                                  FileMetadata metadata, AtomicBoolean cancelled, BatchSink sink) throws Exception {
         Path filePath = Paths.get(metadata.getTempFilePath());
 
-        try (Workbook workbook = WorkbookFactory.create(filePath.toFile())) {
-            Sheet sheet = workbook.getSheetAt(0);
-
-            // Пропускаем строки заголовка
-            int startRow = template.getSkipHeaderRows();
-
-            // Читаем заголовки если есть
-            String[] headers = null;
-            if (metadata.getHasHeader() && startRow > 0) {
-                Row headerRow = sheet.getRow(startRow - 1);
-                if (headerRow != null) {
-                    headers = new String[headerRow.getLastCellNum()];
-                    for (int i = 0; i < headers.length; i++) {
-                        Cell cell = headerRow.getCell(i);
-                        headers[i] = cell != null ? getCellValueAsString(cell) : "";
-                    }
+        if (!CompressedFiles.isCompressed(metadata.getOriginalFilename())) {
+            try (Workbook workbook = WorkbookFactory.create(filePath.toFile())) {
+                processExcelWorkbook(session, resume, template, metadata, workbook, 0, cancelled, sink);
+            }
+            return;
+        }
+
+        long rowOffset = 0;
+        try (CompressedFiles.Parts parts = CompressedFiles.openParts(filePath, metadata.getOriginalFilename())) {
+            InputStream content;
+            while ((content = parts.next()) != null && !cancelled.get()) {
+                try (Workbook workbook = WorkbookFactory.create(content)) {
+                    rowOffset = processExcelWorkbook(session, resume, template, metadata, workbook, rowOffset,
+                            cancelled, sink);
                 }
             }
+        }
+    }
 
-            // Подсчитываем общее количество строк
-            long totalRows = sheet.getLastRowNum() - startRow + 1;
-            session.setTotalRows(totalRows);
-            sessionRepository.save(session);
+    /**
+     * Обрабатывает первый лист книги
+     *
+     * @param rowOffset строк данных в предыдущих книгах
+     * @return строк данных с учётом этой книги
+     */
+    private long processExcelWorkbook(ImportSession session, ResumePoint resume, ImportTemplate template,
+                                      FileMetadata metadata, Workbook workbook, long rowOffset,
+                                      AtomicBoolean cancelled,
+                                      BatchSink sink) throws Exception {
+        Sheet sheet = workbook.getSheetAt(0);
+
+        // Пропускаем строки заголовка
+        int startRow = template.getSkipHeaderRows();
+
+        // Читаем заголовки если есть
+        String[] headers = null;
+        if (metadata.getHasHeader() && startRow > 0) {
+            Row headerRow = sheet.getRow(startRow - 1);
+            if (headerRow != null) {
+                headers = new String[headerRow.getLastCellNum()];
+                for (int i = 0; i < headers.length; i++) {
+                    Cell cell = headerRow.getCell(i);
+                    headers[i] = cell != null ? getCellValueAsString(cell) : "";
+                }
+            }
+        }
 
-            // Обрабатываем строки батчами
-            List<Map<String, String>> batch = new ArrayList<>();
-            AtomicLong rowNumber = new AtomicLong(startRow);
+        // Подсчитываем общее количество строк
+        long sheetRows = Math.max(0, sheet.getLastRowNum() - startRow + 1);
+        sink.updateSession(s -> s.setTotalRows(rowOffset + sheetRows));
 
-            for (int i = startRow; i <= sheet.getLastRowNum(); i++) {
-                if (cancelled.get()) break;
+        // Обрабатываем строки батчами
+        ImportTemplatePlan plan = transformationService.compile(template, headers);
+        List<String[]> batch = new ArrayList<>();
+        AtomicLong rowNumber = new AtomicLong(rowOffset + startRow);
 
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
+        long skipUntilRow = resume.row() != null ? resume.row() : 0;
+        AdaptiveBatchController batching = batching(session);
 
-                // Конвертируем строку в Map
-                Map<String, String> rowData = new HashMap<>();
-                for (int j = 0; j < row.getLastCellNum(); j++) {
-                    Cell cell = row.getCell(j);
-                    String value = cell != null ? getCellValueAsString(cell) : "";
+        for (int i = startRow; i <= sheet.getLastRowNum(); i++) {
+            if (cancelled.get()) break;
 
-                    // Добавляем по индексу
-                    rowData.put(String.valueOf(j), value);
+            Row row = sheet.getRow(i);
+            if (row == null) continue;
 
-                    // Добавляем по имени заголовка если есть
-                    if (headers != null && j < headers.length && headers[j] != null) {
-                        rowData.put(headers[j], value);
-                    }
-                }
+            // Номер строки файла (1-based), строки до контрольной точки уже записаны
+            long number = rowOffset + i + 1L;
+            // Номера строк батча отсчитываются от последней — после пустых строк начинается новый батч
+            if (!batch.isEmpty() && number != rowNumber.get() + 1) {
+                sink.accept(batch, plan, rowNumber, null);
+                batch.clear();
+            }
+            rowNumber.set(number);
+            if (rowNumber.get() <= skipUntilRow) continue;
+
+            // Конвертируем строку в массив значений по индексам колонок
+            String[] cells = new String[Math.max(0, row.getLastCellNum())];
+            for (int j = 0; j < cells.length; j++) {
+                Cell cell = row.getCell(j);
+                cells[j] = cell != null ? getCellValueAsString(cell) : "";
+            }
 
-                batch.add(rowData);
+            batch.add(cells);
 
-                // Обрабатываем батч
-                if (batch.size() >= importSettings.getBatchSize()) {
-                    processBatch(session, template, batch, rowNumber);
-                    batch.clear();
-                }
+            // Обрабатываем батч
+            if (batch.size() >= batching.getBatchSize()) {
+                batching.awaitHeadroom(cancelled::get);
+                sink.accept(batch, plan, rowNumber, null);
+                batch.clear();
             }
+        }
 
-            // Обрабатываем оставшиеся записи
-            if (!batch.isEmpty() && !cancelled.get()) {
-                processBatch(session, template, batch, rowNumber);
-            }
+        // Обрабатываем оставшиеся записи
+        if (!batch.isEmpty() && !cancelled.get()) {
+            sink.accept(batch, plan, rowNumber, null);
         }
+        return rowOffset + sheetRows;
     }
 
     /**
-     * Обрабатывает данные батчами из CSV
+     * Потоковая обработка XLSX через SAX: строки уходят в sink по мере чтения,
+     * workbook целиком в память не загружается.
+     * Семантика заголовка и пропуска строк совпадает с processExcelFile.
      */
-    private void processBatches(ImportSession session, ImportTemplate template,
-                                CSVReader csvReader, String[] headers,
-                                AtomicBoolean cancelled) throws Exception {
-        List<Map<String, String>> batch = new ArrayList<>();
-        String[] row;
-        AtomicLong rowNumber = new AtomicLong(template.getSkipHeaderRows());
+    private void processXlsxStreaming(ImportSession session, ResumePoint resume, ImportTemplate template,
+                                      FileMetadata metadata, AtomicBoolean cancelled, BatchSink sink) throws Exception {
+        Path filePath = Paths.get(metadata.getTempFilePath());
 
-        while ((row = csvReader.readNext()) != null && !cancelled.get()) {
-            rowNumber.incrementAndGet();
+        // Пока лист не сообщил размер — оценка по размеру файла, уточняется по ходу чтения
+        sink.updateSession(s -> s.setIsEstimated(true));
+
+        int startRow = template.getSkipHeaderRows();
+        // В архиве размер известен только для текущей книги — остаёмся на оценке
+        boolean singleWorkbook = !CompressedFiles.isCompressed(metadata.getOriginalFilename());
+        boolean[] exactTotal = new boolean[1];
+        boolean readHeader = metadata.getHasHeader() && startRow > 0;
+
+        List<String[]> batch = new ArrayList<>();
+        AtomicLong rowNumber = new AtomicLong(startRow);
+        // [0] — строк данных в предыдущих книгах архива, [1] — последний индекс строки текущей книги
+        long[] parts = {0, -1};
+        String[][] headers = new String[1][];
+        // План компилируется по первой строке данных, когда заголовок уже прочитан
+        ImportTemplatePlan[] plan = new ImportTemplatePlan[1];
+        long[] counters = new long[2]; // [0] — обработано строк, [1] — на момент последней корректировки
+        long skipUntilRow = resume.row() != null ? resume.row() : 0;
+        AdaptiveBatchController batching = batching(session);
+
+        fileReaderUtils.streamExcelRows(filePath, metadata.getOriginalFilename(), lastRowIndex -> {
+            if (!singleWorkbook) {
+                return;
+            }
+            // Строк данных по <dimension> листа: до конца чтения можно ошибиться только
+            // на пустые строки, которые не попали в XML
+            long total = Math.max(0, lastRowIndex + 1L - startRow);
+            exactTotal[0] = true;
+            sink.updateSession(s -> {
+                s.setTotalRows(total);
+                s.setIsEstimated(false);
+            });
+        }, (rowIndex, cells) -> {
+            if (cancelled.get()) {
+                return false;
+            }
+            // Индекс строки начинается заново — следующая книга архива, смещение как у DOM-чтения
+            if (rowIndex <= parts[1]) {
+                parts[0] += Math.max(0, parts[1] + 1L - startRow);
+            }
+            parts[1] = rowIndex;
+            if (rowIndex < startRow) {
+                if (readHeader && rowIndex == startRow - 1) {
+                    headers[0] = cells;
+                }
+                return true;
+            }
 
-            // Проверяем доступность памяти
-            if (!memoryMonitor.isMemoryAvailable()) {
-                log.warn("Недостаточно памяти, ожидание освобождения...");
-                Thread.sleep(5000);
-                System.gc();
+            // Номер строки файла (1-based) по индексу SAX: пустые строки в XML не попадают,
+            // но нумерацию не сдвигают — как в DOM-чтении
+            long number = parts[0] + rowIndex + 1L;
+            if (!batch.isEmpty() && number != rowNumber.get() + 1) {
+                sink.accept(batch, plan[0], rowNumber, null);
+                batch.clear();
             }
+            rowNumber.set(number);
+            counters[0]++;
 
-            // Конвертируем массив в Map для удобства
-            Map<String, String> rowData = new HashMap<>();
-            for (int i = 0; i < row.length; i++) {
-                // Добавляем по индексу
-                rowData.put(String.valueOf(i), row[i]);
+            // Строки до контрольной точки уже записаны
+            if (rowNumber.get() <= skipUntilRow) {
+                return true;
+            }
 
-                // Добавляем по имени заголовка если есть
-                if (headers != null && i < headers.length && headers[i] != null) {
-                    rowData.put(headers[i], row[i]);
-                }
+            if (counters[0] % 100 == 0) {
+                batching.awaitHeadroom(cancelled::get);
             }
 
-            batch.add(rowData);
+            if (plan[0] == null) {
+                plan[0] = transformationService.compile(template, headers[0]);
+            }
+            batch.add(cells);
 
-            // Обрабатываем батч
-            if (batch.size() >= importSettings.getBatchSize()) {
-                processBatch(session, template, batch, rowNumber);
+            if (batch.size() >= batching.getBatchSize()) {
+                sink.accept(batch, plan[0], rowNumber, null);
                 batch.clear();
+
+                if (!exactTotal[0] && counters[0] - counters[1] > importSettings.getBatchSize() * 10L) {
+                    correctTotalRowsEstimate(counters[0], sink);
+                    counters[1] = counters[0];
+                }
             }
-        }
+            return true;
+        });
 
-        // Обрабатываем оставшиеся записи
         if (!batch.isEmpty() && !cancelled.get()) {
-            processBatch(session, template, batch, rowNumber);
+            sink.accept(batch, plan[0], rowNumber, null);
         }
+
+        long totalRows = counters[0];
+        sink.updateSession(s -> {
+            s.setTotalRows(totalRows);
+            s.setIsEstimated(false);
+        });
     }
 
     /**
      * Обрабатывает батч записей
      */
     @Transactional
-    public void processBatch(ImportSession session, ImportTemplate template,
-                             List<Map<String, String>> batch, AtomicLong currentRow) {
+    public void processBatch(ImportSession session, ImportTemplate template, ImportTemplatePlan plan,
+                             List<String[]> batch, AtomicLong currentRow, Long byteOffset) {
+        Set<String> savedKeys = persistBatch(session, template,
+                transformBatch(plan, batch, currentRow.get() - batch.size() + 1, byteOffset));
+        duplicateCheckService.saveDuplicateKeys(savedKeys, session);
+    }
+
+    /**
+     * Трансформирует строки батча по скомпилированному плану шаблона.
+     * Не обращается к БД и не меняет сессию — может выполняться в любом потоке
+     */
+    private TransformedBatch transformBatch(ImportTemplatePlan plan, List<String[]> batch,
+                                            long firstRowNumber, Long byteOffset) {
+        List<RowResult> results = new ArrayList<>(batch.size());
+        long rowNumber = firstRowNumber;
+
+        for (String[] row : batch) {
+            try {
+                results.add(new RowResult(rowNumber, plan.transform(row, rowNumber), null));
+            } catch (Exception e) {
+                results.add(new RowResult(rowNumber, null, e));
+            }
+            rowNumber++;
+        }
+
+        return new TransformedBatch(batch.size(), firstRowNumber, byteOffset, results);
+    }
+
+    /**
+     * Проверяет дубликаты, сохраняет трансформированный батч и обновляет прогресс сессии.
+     * Ошибки трансформации учитываются здесь, в порядке строк файла
+     *
+     * @return ключи дубликатов записанных строк; вызывающий запоминает их в состоянии сессии,
+     * когда запись батча зафиксирована
+     */
+    private Set<String> persistBatch(ImportSession session, ImportTemplate template, TransformedBatch batch) {
         log.debug("=== Обработка батча из {} записей, сессия ID: {} ===", batch.size(), session.getId());
 
         List<Map<String, Object>> transformedBatch = new ArrayList<>();
         Set<String> batchDuplicateKeys = new HashSet<>();
 
-        for (Map<String, String> rowData : batch) {
-            long rowNumber = currentRow.get() - batch.size() + batch.indexOf(rowData) + 1;
-            log.trace("Обработка строки {}", rowNumber);
+        // Ключи дубликатов батча проверяются в БД одним запросом до разбора строк.
+        // В staging-режиме дубликаты удаляются одним запросом при переносе в av_data
+        boolean staged = persistenceService.isStaged(session, template.getEntityType());
+        boolean checkDuplicates = template.getDuplicateStrategy() == DuplicateStrategy.SKIP_DUPLICATES && !staged;
+        String[] duplicateKeys = new String[batch.results().size()];
+        Set<String> existingKeys = Collections.emptySet();
+        if (checkDuplicates) {
+            Set<String> candidateKeys = new LinkedHashSet<>();
+            for (int i = 0; i < duplicateKeys.length; i++) {
+                RowResult row = batch.results().get(i);
+                if (row.error() == null) {
+                    duplicateKeys[i] = duplicateCheckService.generateDuplicateKey(row.data(), template);
+                    candidateKeys.add(duplicateKeys[i]);
+                }
+            }
+            existingKeys = duplicateCheckService.findDuplicates(candidateKeys, template, session);
+        }
+
+        for (int index = 0; index < duplicateKeys.length; index++) {
+            RowResult row = batch.results().get(index);
+            long rowNumber = row.rowNumber();
 
             try {
-                // Трансформируем данные согласно маппингу
-                Map<String, Object> transformedData = transformationService.transformRow(
-                        rowData, template, rowNumber
-                );
+                if (row.error() != null) {
+                    throw row.error();
+                }
+                Map<String, Object> transformedData = row.data();
 
                 // Проверяем на дубликаты если нужно
-                if (template.getDuplicateStrategy() == DuplicateStrategy.SKIP_DUPLICATES) {
-                    String duplicateKey = duplicateCheckService.generateDuplicateKey(
-                            transformedData, template
-                    );
+                if (checkDuplicates) {
+                    String duplicateKey = duplicateKeys[index];
 
-                    if (batchDuplicateKeys.contains(duplicateKey) ||
-                            duplicateCheckService.isDuplicate(duplicateKey, template)) {
+                    if (batchDuplicateKeys.contains(duplicateKey) || existingKeys.contains(duplicateKey)) {
 
                         session.setDuplicateRows(session.getDuplicateRows() + 1);
                         recordError(session, rowNumber, null, null,
@@ -456,9 +1076,17 @@ public class ImportProcessorService {
                 transformedBatch.add(transformedData);
 
             } catch (Exception e) {
-                log.error("Ошибка обработки строки {}: {}", rowNumber, e.getMessage());
-                recordError(session, rowNumber, null, null,
-                        ErrorType.TRANSFORMATION_ERROR, e.getMessage());
+                // Колонка ошибки трансформации — ключ выборки: у каждой колонки свои образцы
+                String columnName = null;
+                String fieldValue = null;
+                if (e instanceof DataTransformationService.TransformationException te) {
+                    columnName = te.getColumnName();
+                    fieldValue = te.getValue();
+                }
+                if (recordError(session, rowNumber, columnName, fieldValue,
+                        ErrorType.TRANSFORMATION_ERROR, e.getMessage())) {
+                    log.error("Ошибка обработки строки {}: {}", rowNumber, e.getMessage());
+                }
 
                 // Проверяем стратегию обработки ошибок
                 if (template.getErrorStrategy() == ErrorStrategy.STOP_ON_ERROR) {
@@ -468,19 +1096,18 @@ public class ImportProcessorService {
         }
 
         // Сохраняем батч в БД
+        Set<String> savedKeys = Collections.emptySet();
         if (!transformedBatch.isEmpty()) {
             try {
+                long started = System.nanoTime();
                 int saved = persistenceService.saveBatch(
                         transformedBatch,
                         template.getEntityType(),
                         session);
+                batching(session).onBatchCompleted(transformedBatch.size(), System.nanoTime() - started);
                 session.setSuccessRows(session.getSuccessRows() + saved);
                 log.debug("Сохранено {} записей в БД", saved);
-
-                // Сохраняем ключи дубликатов
-                if (template.getDuplicateStrategy() == DuplicateStrategy.SKIP_DUPLICATES) {
-                    duplicateCheckService.saveDuplicateKeys(batchDuplicateKeys, template.getEntityType());
-                }
+                savedKeys = batchDuplicateKeys;
 
             } catch (Exception e) {
                 // Парсим и форматируем ошибку для пользователя
@@ -523,7 +1150,7 @@ public class ImportProcessorService {
 
                 // Только при SKIP_ERROR пытаемся записать детали ошибки
                 if (parsedError.getRowNumber() != null) {
-                    Long startRowNumber = currentRow.get() - batch.size() + 1;
+                    Long startRowNumber = batch.firstRowNumber();
                     Long actualRowNumber = startRowNumber + parsedError.getRowNumber() - 1;
                     try {
                         recordError(
@@ -543,21 +1170,44 @@ public class ImportProcessorService {
             }
         }
 
+        completeBatch(session, batch, staged);
+        return savedKeys;
+    }
+
+    /**
+     * Обновляет прогресс и контрольную точку после батча, записывает ошибки батча и сохраняет сессию
+     */
+    private void completeBatch(ImportSession session, TransformedBatch batch, boolean staged) {
         // Обновляем прогресс
         long oldProcessedRows = session.getProcessedRows();
         session.setProcessedRows(session.getProcessedRows() + batch.size());
         log.debug("Прогресс обновлен: {} -> {} (обработано +{} записей)",
                 oldProcessedRows, session.getProcessedRows(), batch.size());
 
+        // Контрольная точка фиксируется в той же транзакции, что и данные батча.
+        // Staging-таблица удаляется при ошибке, поэтому продолжать в staging-режиме не с чего
+        if (!staged) {
+            session.setCheckpointRow(batch.firstRowNumber() + batch.size() - 1);
+            session.setCheckpointByteOffset(batch.byteOffset());
+            session.setCheckpointAt(ZonedDateTime.now());
+        }
+
+        // Ошибки батча записываются в той же транзакции, что и контрольная точка
+        try {
+            errorSink.flush(session.getId());
+        } catch (Exception e) {
+            log.warn("Не удалось записать ошибки батча: {}", e.getMessage());
+        }
+
         // ПРИНУДИТЕЛЬНО СОХРАНЯЕМ В ТРАНЗАКЦИИ
         // Если транзакция прервана (rollback-only), skip сохранение
         try {
-            session = sessionRepository.saveAndFlush(session);
-            log.debug("Сессия сохранена в БД с прогрессом {}%", session.getProgressPercentage());
+            ImportSession saved = sessionRepository.saveAndFlush(session);
+            log.debug("Сессия сохранена в БД с прогрессом {}%", saved.getProgressPercentage());
 
             // Отправляем обновление прогресса
             try {
-                progressService.sendProgressUpdate(session);
+                progressService.sendProgressUpdate(saved);
                 log.debug("WebSocket обновление прогресса отправлено");
             } catch (Exception e) {
                 log.error("Ошибка отправки WebSocket обновления", e);
@@ -569,29 +1219,27 @@ public class ImportProcessorService {
     }
 
     /**
-     * Записывает ошибку импорта
+     * Учитывает ошибку импорта; запись в БД — пачкой через {@link ImportErrorSink}
+     *
+     * @return true, если ошибка попала в выборку и сохранится дословно
      */
-    private void recordError(ImportSession session, Long rowNumber, String columnName,
-                             String fieldValue, ErrorType errorType, String errorMessage) {
-        ImportError error = ImportError.builder()
-                .importSession(session)
-                .rowNumber(rowNumber)
-                .columnName(columnName)
-                .fieldValue(fieldValue)
-                .errorType(errorType)
-                .errorMessage(errorMessage)
-                .build();
-
-        errorRepository.save(error);
+    private boolean recordError(ImportSession session, Long rowNumber, String columnName,
+                                String fieldValue, ErrorType errorType, String errorMessage) {
         session.setErrorRows(session.getErrorRows() + 1);
+        return errorSink.record(session.getId(), rowNumber, columnName, fieldValue, errorType, errorMessage);
     }
 
     /**
      * Финализирует импорт
      */
-    private void finalizeImport(ImportSession session) {
+    private void finalizeImport(ImportSession session, ImportTemplate template) {
         log.info("Финализация импорта, сессия ID: {}", session.getId());
 
+        if (persistenceService.isStaged(session, template.getEntityType())) {
+            promoteStaging(session, template);
+        }
+        errorSink.complete(session.getId());
+
         session.setStatus(ImportStatus.COMPLETING);
         session.setCompletedAt(ZonedDateTime.now());
 
@@ -617,6 +1265,7 @@ public class ImportProcessorService {
         session.setProcessedRows(session.getTotalRows());
 
         sessionRepository.save(session);
+        fileOperationRepository.save(fileOperation);
 
         // Отправляем финальное обновление (без throttle, чтобы статус-страница перезагрузилась)
         progressService.sendCompletionNotification(session);
@@ -633,6 +1282,27 @@ public class ImportProcessorService {
                 session.getSuccessRows(), session.getErrorRows(), session.getDuplicateRows());
     }
 
+    /**
+     * Переносит staging-таблицу в av_data и пересчитывает итоги сессии:
+     * успешными считаются только перенесённые строки
+     */
+    private void promoteStaging(ImportSession session, ImportTemplate template) {
+        StagingTableService.PromotionResult result = persistenceService.promoteStaging(session, template);
+
+        session.setSuccessRows(result.promoted());
+        session.setDuplicateRows(session.getDuplicateRows() + result.duplicates());
+        session.setErrorRows(session.getErrorRows() + result.invalid() + result.duplicates());
+
+        for (StagingTableService.ErrorSample sample : result.errorSamples()) {
+            errorSink.record(session.getId(), ImportErrorSink.SUMMARY_ROW, sample.columnName(), sample.value(),
+                    ErrorType.VALIDATION_ERROR, sample.message());
+        }
+        if (result.duplicates() > 0) {
+            errorSink.record(session.getId(), ImportErrorSink.SUMMARY_ROW, null, null,
+                    ErrorType.DUPLICATE_ERROR, "Пропущено дубликатов: " + result.duplicates());
+        }
+    }
+
     /**
      * Обрабатывает отмену импорта
      */
@@ -642,6 +1312,10 @@ public class ImportProcessorService {
         session.setStatus(ImportStatus.CANCELLED);
         session.setCompletedAt(ZonedDateTime.now());
         session.setIsCancelled(true);
+        // Записанные строки удаляются — продолжать с контрольной точки нельзя
+        session.setCheckpointRow(null);
+        session.setCheckpointByteOffset(null);
+        errorSink.complete(session.getId());
 
         // Откатываем изменения если нужно
         if (session.getSuccessRows() > 0) {
@@ -672,12 +1346,30 @@ public class ImportProcessorService {
         session.setCompletedAt(ZonedDateTime.now());
         session.setErrorMessage(errorMessage);
 
+        // Ошибки строк до сбоя сохраняем для диагностики
+        try {
+            errorSink.complete(session.getId());
+        } catch (Exception sinkError) {
+            log.warn("Не удалось записать ошибки строк сессии {}: {}", session.getId(), sinkError.getMessage());
+        }
+
+        // В staging-режиме в av_data ничего не записано — удаляем только staging-таблицу
+        if (session.getTemplate() != null
+                && persistenceService.isStaged(session, session.getTemplate().getEntityType())) {
+            try {
+                persistenceService.discardStaging(session);
+            } catch (Exception dropError) {
+                log.error("Не удалось удалить staging-таблицу сессии {}", session.getId(), dropError);
+            }
+        }
+
         FileOperation fileOperation = session.getFileOperation();
         fileOperation.setStatus(FileOperation.OperationStatus.FAILED);
         fileOperation.setErrorMessage(errorMessage);
         fileOperation.setCompletedAt(ZonedDateTime.now());
 
         sessionRepository.save(session);
+        fileOperationRepository.save(fileOperation);
         progressService.sendProgressUpdate(session);
     }
 
@@ -692,6 +1384,52 @@ public class ImportProcessorService {
         }
     }
 
+    /**
+     * Отменяет импорт, который воркер уже взял из очереди, но ещё не начал обрабатывать:
+     * флаг регистрируется заранее, и импорт завершится отменой сразу после запуска
+     */
+    public void cancelBeforeStart(Long sessionId) {
+        cancellationFlags.computeIfAbsent(sessionId, id -> new AtomicBoolean()).set(true);
+        log.info("Запрошена отмена импорта сессии ID: {} до начала обработки", sessionId);
+    }
+
+    /**
+     * Снимает флаг отмены, если импорт так и не начал обработку
+     */
+    public void releaseCancellation(Long sessionId) {
+        cancellationFlags.remove(sessionId);
+    }
+
+    /**
+     * Проверяет, выполняется ли импорт сессии в этом экземпляре приложения
+     */
+    public boolean isRunning(Long sessionId) {
+        return cancellationFlags.containsKey(sessionId);
+    }
+
+    /**
+     * Импорт можно продолжить, если он прерван (ошибка или перезапуск приложения),
+     * есть контрольная точка и исходный файл ещё на месте
+     */
+    public boolean isResumable(ImportSession session) {
+        boolean interrupted = session.getStatus() == ImportStatus.FAILED ||
+                (session.getStatus() == ImportStatus.PROCESSING && !isRunning(session.getId()));
+        FileMetadata metadata = session.getFileMetadata();
+        return interrupted
+                && session.getCheckpointRow() != null
+                && metadata != null
+                && metadata.getTempFilePath() != null
+                && Files.exists(Paths.get(metadata.getTempFilePath()));
+    }
+
+    /**
+     * Фиксирует в сессии режим чтения файла
+     */
+    private void recordReadMode(ImportSession session, ImportReadMode readMode, BatchSink sink) {
+        sink.updateSession(s -> s.setReadMode(readMode));
+        log.info("Режим чтения файла для сессии {}: {}", session.getId(), readMode);
+    }
+
     /**
      * Обновляет статус сессии
      */
@@ -764,4 +1502,60 @@ public class ImportProcessorService {
                 return "";
         }
     }
+
+    /**
+     * Приёмник батчей прочитанных строк: последовательная обработка или конвейер
+     */
+    private interface BatchSink {
+        void accept(List<String[]> batch, ImportTemplatePlan plan, AtomicLong currentRow,
+                    Long byteOffset) throws Exception;
+
+        /**
+         * Меняет сессию. В конвейере изменение выполняет стадия записи — единственный поток,
+         * который меняет и сохраняет сессию
+         */
+        void updateSession(Consumer<ImportSession> update);
+    }
+
+    /**
+     * Контрольная точка на момент запуска импорта: читатель не обращается к полям сессии,
+     * которые стадия записи меняет по ходу импорта
+     */
+    private record ResumePoint(Long row, Long byteOffset) {
+
+        static ResumePoint of(ImportSession session) {
+            return new ResumePoint(session.getCheckpointRow(), session.getCheckpointByteOffset());
+        }
+    }
+
+    /**
+     * Счётчики и контрольная точка сессии до записи батча
+     */
+    private record SessionProgress(Long processedRows, Long successRows, Long errorRows, Long duplicateRows,
+                                   Long checkpointRow, Long checkpointByteOffset, ZonedDateTime checkpointAt) {
+
+        static SessionProgress of(ImportSession session) {
+            return new SessionProgress(session.getProcessedRows(), session.getSuccessRows(),
+                    session.getErrorRows(), session.getDuplicateRows(), session.getCheckpointRow(),
+                    session.getCheckpointByteOffset(), session.getCheckpointAt());
+        }
+
+        void restoreTo(ImportSession session) {
+            session.setProcessedRows(processedRows);
+            session.setSuccessRows(successRows);
+            session.setErrorRows(errorRows);
+            session.setDuplicateRows(duplicateRows);
+            session.setCheckpointRow(checkpointRow);
+            session.setCheckpointByteOffset(checkpointByteOffset);
+            session.setCheckpointAt(checkpointAt);
+        }
+    }
+
+    private record ImportContext(ImportSession session, ImportTemplate template, FileMetadata metadata) {}
+
+    private record RowBatch(List<String[]> rows, ImportTemplatePlan plan, long firstRowNumber, Long byteOffset) {}
+
+    private record RowResult(long rowNumber, Map<String, Object> data, Exception error) {}
+
+    private record TransformedBatch(int size, long firstRowNumber, Long byteOffset, List<RowResult> results) {}
 }
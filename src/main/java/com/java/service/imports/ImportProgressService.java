@@ -1,11 +1,13 @@
 package com.java.service.imports;
 
+import com.java.config.MemoryMonitor;
 import com.java.controller.ImportProgressController;
 import com.java.dto.ImportProgressDto;
 import com.java.model.FileOperation;
 import com.java.model.entity.ImportSession;
 import com.java.model.enums.ImportStatus;
 import com.java.repository.FileOperationRepository;
+import com.java.service.imports.pipeline.ImportPipelineMonitor;
 import com.java.service.progress.BaseProgressService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -21,11 +23,20 @@ import java.time.ZonedDateTime;
 public class ImportProgressService extends BaseProgressService<ImportSession, ImportProgressDto> {
 
     private final ImportProgressController progressController;
+    private final ImportPipelineMonitor pipelineMonitor;
+    private final MemoryMonitor memoryMonitor;
+    private final ImportJobScheduler jobScheduler;
 
     public ImportProgressService(FileOperationRepository fileOperationRepository,
-                               ImportProgressController progressController) {
+                               ImportProgressController progressController,
+                               ImportPipelineMonitor pipelineMonitor,
+                               MemoryMonitor memoryMonitor,
+                               ImportJobScheduler jobScheduler) {
         super(fileOperationRepository);
         this.progressController = progressController;
+        this.pipelineMonitor = pipelineMonitor;
+        this.memoryMonitor = memoryMonitor;
+        this.jobScheduler = jobScheduler;
     }
 
     // Реализация абстрактных методов BaseProgressService
@@ -51,6 +62,27 @@ public class ImportProgressService extends BaseProgressService<ImportSession, Im
             dto.setEstimatedTimeRemaining(calculateRemainingTime(session));
         }
 
+        pipelineMonitor.find(session.getId()).ifPresent(pipeline -> {
+            dto.setReadRowsPerSecond(pipeline.getReadRowsPerSecond());
+            dto.setTransformRowsPerSecond(pipeline.getTransformRowsPerSecond());
+            dto.setPersistRowsPerSecond(pipeline.getPersistRowsPerSecond());
+            dto.setTransformQueueDepth(pipeline.getTransformQueueDepth());
+            dto.setPersistQueueDepth(pipeline.getPersistQueueDepth());
+        });
+
+        if (session.getStatus() == ImportStatus.QUEUED) {
+            dto.setQueuePosition(jobScheduler.getQueuePosition(session.getId()));
+            if (dto.getQueuePosition() != null) {
+                dto.setCurrentOperation("В очереди, позиция " + dto.getQueuePosition());
+            }
+        }
+
+        memoryMonitor.findImportBatching(session.getId()).ifPresent(batching -> {
+            dto.setBatchSize(batching.getBatchSize());
+            dto.setMemoryUsagePercent((int) Math.round(memoryMonitor.getHeapUsage() * 100));
+            dto.setMemoryDecision(batching.getLastDecision());
+        });
+
         return dto;
     }
 
@@ -133,7 +165,7 @@ public class ImportProgressService extends BaseProgressService<ImportSession, Im
      * Вычисляет прогресс с учетом того, что totalRows может быть оценкой
      */
     private Integer calculateProgressPercentage(ImportSession session) {
-        if (session.getStatus() == ImportStatus.INITIALIZING) {
+        if (session.getStatus() == ImportStatus.INITIALIZING || session.getStatus() == ImportStatus.QUEUED) {
             return 5; // Явная фаза инициализации — симметрично с ExportProgressService
         }
         if (session.getTotalRows() == null || session.getProcessedRows() == null) {
@@ -160,6 +192,8 @@ public class ImportProgressService extends BaseProgressService<ImportSession, Im
         switch (session.getStatus()) {
             case INITIALIZING:
                 return "Инициализация импорта...";
+            case QUEUED:
+                return "Ожидание в очереди импорта...";
             case ANALYZING:
                 return "Анализ файла...";
             case VALIDATING:
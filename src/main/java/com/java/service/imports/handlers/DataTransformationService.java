@@ -23,7 +23,16 @@ import java.util.regex.Pattern;
 public class DataTransformationService {
 
     /**
-     * Трансформирует строку данных согласно правилам шаблона
+     * Компилирует шаблон в план трансформации для файла с указанными заголовками.
+     * План строится один раз на сессию импорта и используется для всех строк
+     */
+    public ImportTemplatePlan compile(ImportTemplate template, String[] headers) {
+        return ImportTemplatePlan.compile(template, headers);
+    }
+
+    /**
+     * Трансформирует строку данных согласно правилам шаблона.
+     * Разбирает шаблон заново на каждую строку — для импорта файлов используется {@link #compile}
      */
     public Map<String, Object> transformRow(Map<String, String> rowData,
                                             ImportTemplate template,
@@ -48,9 +57,10 @@ public class DataTransformationService {
             log.debug("Поле: columnName='{}', columnIndex={}, isRequired={}",
                     field.getColumnName(), field.getColumnIndex(), field.getIsRequired());
 
+            String rawValue = null;
             try {
                 // Получаем значение из строки
-                String rawValue = getFieldValue(rowData, field);
+                rawValue = getFieldValue(rowData, field);
                 log.debug("Получено значение: '{}'", rawValue);
 
                 // Применяем значение по умолчанию если пусто
@@ -94,7 +104,7 @@ public class DataTransformationService {
                 log.error("Ошибка обработки поля '{}': {}", field.getEntityFieldName(), e.getMessage(), e);
                 String message = String.format("Ошибка в поле '%s': %s",
                         field.getEntityFieldName(), e.getMessage());
-                throw new TransformationException(message, field.getColumnName(), rowNumber, e);
+                throw new TransformationException(message, field.getColumnName(), rawValue, rowNumber, e);
             }
         }
 
@@ -381,15 +391,23 @@ public class DataTransformationService {
      */
     public static class TransformationException extends Exception {
         private final String columnName;
+        private final String value;
         private final long rowNumber;
 
         public TransformationException(String message, String columnName, long rowNumber, Throwable cause) {
+            this(message, columnName, null, rowNumber, cause);
+        }
+
+        public TransformationException(String message, String columnName, String value, long rowNumber,
+                                       Throwable cause) {
             super(message, cause);
             this.columnName = columnName;
+            this.value = value;
             this.rowNumber = rowNumber;
         }
 
         public String getColumnName() { return columnName; }
+        public String getValue() { return value; }
         public long getRowNumber() { return rowNumber; }
     }
 
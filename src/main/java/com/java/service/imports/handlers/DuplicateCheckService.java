@@ -1,5 +1,6 @@
 package com.java.service.imports.handlers;
 
+import com.java.model.entity.ImportSession;
 import com.java.model.entity.ImportTemplate;
 import com.java.model.entity.ImportTemplateField;
 import com.java.model.enums.EntityType;
@@ -8,29 +9,45 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.sql.Array;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
- * Сервис проверки дубликатов при импорте
+ * Сервис проверки дубликатов при импорте.
+ * <p>
+ * Проверка идёт батчами: ключи, уже записанные в текущей сессии, отсекаются по
+ * множеству 64-битных отпечатков (см. {@link KeyFingerprintSet}, возможны редкие ложные
+ * совпадения), остальные проверяются в БД одним запросом через unnest массивов значений
+ * уникальных полей. Значения приводятся к типу колонки, а не колонка к тексту: текстовое
+ * представление даты или числа в PostgreSQL не совпадает с Java-строкой
+ * (2024-03-15 10:00:00 против 2024-03-15T10:00). Состояние сессии освобождается
+ * в {@link #releaseSession(Long)}.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class DuplicateCheckService {
 
+    private static final Set<String> TEXT_TYPES = Set.of("character varying", "text", "character");
+    // Типы, в которые приводится строковое значение ключа (toString значений после трансформации)
+    private static final Set<String> TYPED_TYPES = Set.of("smallint", "integer", "bigint", "numeric", "real",
+            "double precision", "boolean", "date", "timestamp without time zone", "timestamp with time zone", "uuid");
+
     private final JdbcTemplate jdbcTemplate;
-    // Если Redis не используется, можно использовать in-memory кеш
-    private final Map<String, Set<String>> inMemoryCache = new HashMap<>();
+
+    // Ключи, записанные в рамках сессии импорта
+    private final Map<Long, KeyFingerprintSet> sessionKeys = new ConcurrentHashMap<>();
+    // Типы колонок целевых таблиц: имя колонки -> data_type
+    private final Map<String, Map<String, String>> columnTypes = new ConcurrentHashMap<>();
 
     /**
      * Генерирует ключ для проверки дубликатов
      */
     public String generateDuplicateKey(Map<String, Object> data, ImportTemplate template) {
         // Находим уникальные поля
-        List<ImportTemplateField> uniqueFields = template.getFields().stream()
-                .filter(ImportTemplateField::getIsUnique)
-                .collect(Collectors.toList());
+        List<ImportTemplateField> uniqueFields = getUniqueFields(template);
 
         if (uniqueFields.isEmpty()) {
             // Если уникальные поля не заданы, используем все поля
@@ -46,63 +63,173 @@ public class DuplicateCheckService {
     }
 
     /**
-     * Проверяет, является ли запись дубликатом
+     * Возвращает ключи батча, которые уже есть в БД или были записаны ранее в этой сессии
      */
-    public boolean isDuplicate(String key, ImportTemplate template) {
-        EntityType entityType = template.getEntityType();
-        String cacheKey = entityType.name() + ":" + key;
+    public Set<String> findDuplicates(Collection<String> keys, ImportTemplate template, ImportSession session) {
+        if (keys.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-        // Проверяем в кеше
-        Set<String> typeCache = inMemoryCache.computeIfAbsent(entityType.name(), k -> new HashSet<>());
-        if (typeCache.contains(key)) {
-            return true;
+        Set<String> duplicates = new HashSet<>();
+        List<String> toCheck = new ArrayList<>(keys.size());
+
+        KeyFingerprintSet seen = sessionKeys.get(session.getId());
+        if (seen != null) {
+            synchronized (seen) {
+                for (String key : keys) {
+                    if (seen.contains(key)) {
+                        duplicates.add(key);
+                    } else {
+                        toCheck.add(key);
+                    }
+                }
+            }
+        } else {
+            toCheck.addAll(keys);
         }
 
-        // Проверяем в БД
-        return checkInDatabase(key, template);
+        if (!toCheck.isEmpty()) {
+            duplicates.addAll(findInDatabase(toCheck, template));
+        }
+        return duplicates;
     }
 
     /**
-     * Сохраняет ключи в кеш
+     * Запоминает ключи записанного батча в состоянии сессии
      */
-    public void saveDuplicateKeys(Set<String> keys, EntityType entityType) {
-        Set<String> typeCache = inMemoryCache.computeIfAbsent(entityType.name(), k -> new HashSet<>());
-        typeCache.addAll(keys);
+    public void saveDuplicateKeys(Set<String> keys, ImportSession session) {
+        if (keys.isEmpty()) return;
+
+        KeyFingerprintSet seen = sessionKeys.computeIfAbsent(session.getId(),
+                id -> new KeyFingerprintSet());
+        synchronized (seen) {
+            for (String key : keys) {
+                seen.add(key);
+            }
+        }
     }
 
     /**
-     * Проверяет наличие дубликата в базе данных
+     * Освобождает состояние проверки дубликатов сессии импорта
      */
-    private boolean checkInDatabase(String key, ImportTemplate template) {
-        EntityType entityType = template.getEntityType();
-        // Реализация зависит от структуры БД
-        // Это примерная реализация
+    public void releaseSession(Long sessionId) {
+        KeyFingerprintSet removed = sessionKeys.remove(sessionId);
+        if (removed != null) {
+            log.debug("Освобождено состояние дубликатов сессии {}: {} ключей", sessionId, removed.size());
+        }
+    }
 
-        String tableName = getTableName(entityType);
-        String[] keyParts = key.split("\\|", -1);
+    /**
+     * Проверяет ключи в БД одним запросом. Ключи с пустыми значениями уникальных полей
+     * (сравнение через IS NULL) проверяются по одному
+     */
+    private Set<String> findInDatabase(List<String> keys, ImportTemplate template) {
+        List<ImportTemplateField> uniqueFields = getUniqueFields(template);
+        if (uniqueFields.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-        // Получаем уникальные поля в том же порядке, что и для формирования ключа
-        List<ImportTemplateField> uniqueFields = template.getFields().stream()
-                .filter(ImportTemplateField::getIsUnique)
+        String tableName = getTableName(template.getEntityType());
+        List<String> columns = uniqueFields.stream()
+                .map(field -> toSnakeCase(field.getEntityFieldName()))
                 .collect(Collectors.toList());
 
-        if (uniqueFields.isEmpty()) {
-            return false;
+        List<String> fullKeys = new ArrayList<>(keys.size());
+        String[][] values = new String[columns.size()][keys.size()];
+        Set<String> duplicates = new HashSet<>();
+
+        for (String key : keys) {
+            String[] keyParts = key.split("\\|", -1);
+            boolean hasNull = false;
+            for (int i = 0; i < columns.size(); i++) {
+                String value = i < keyParts.length ? keyParts[i] : null;
+                if (value == null || value.equals("null") || value.isEmpty()) {
+                    hasNull = true;
+                    break;
+                }
+                values[i][fullKeys.size()] = value;
+            }
+
+            if (hasNull) {
+                if (checkInDatabase(keyParts, tableName, columns)) {
+                    duplicates.add(key);
+                }
+            } else {
+                fullKeys.add(key);
+            }
+        }
+
+        if (!fullKeys.isEmpty()) {
+            duplicates.addAll(queryExistingKeys(tableName, columns, fullKeys, values));
+        }
+        return duplicates;
+    }
+
+    private List<String> queryExistingKeys(String tableName, List<String> columns,
+                                           List<String> keys, String[][] values) {
+        Map<String, String> types;
+        try {
+            types = getColumnTypes(tableName);
+        } catch (Exception e) {
+            log.error("Не удалось получить типы колонок таблицы {}", tableName, e);
+            return Collections.emptyList();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT k.key FROM unnest(?::text[]");
+        for (String column : columns) {
+            sql.append(", ?::").append(valueType(types.get(column))).append("[]");
+        }
+        sql.append(") AS k(key");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(", c").append(i);
         }
+        sql.append(") WHERE EXISTS (SELECT 1 FROM ").append(tableName).append(" t WHERE ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append(columnExpression("t." + columns.get(i), types.get(columns.get(i))))
+                    .append(" = k.c").append(i);
+        }
+        sql.append(")");
 
+        int size = keys.size();
+        try {
+            return jdbcTemplate.query(sql.toString(), ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("text", keys.toArray()));
+                for (int i = 0; i < columns.size(); i++) {
+                    Array array = ps.getConnection().createArrayOf("text", Arrays.copyOf(values[i], size));
+                    ps.setArray(i + 2, array);
+                }
+            }, (rs, rowNum) -> rs.getString(1));
+        } catch (Exception e) {
+            log.error("Ошибка пакетной проверки дубликатов в БД ({} ключей)", size, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Проверяет наличие одного ключа в базе данных
+     */
+    private boolean checkInDatabase(String[] keyParts, String tableName, List<String> columns) {
+        Map<String, String> types;
+        try {
+            types = getColumnTypes(tableName);
+        } catch (Exception e) {
+            log.error("Не удалось получить типы колонок таблицы {}", tableName, e);
+            return false;
+        }
         StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM ")
                 .append(tableName).append(" WHERE 1=1");
         List<Object> params = new ArrayList<>();
 
-        for (int i = 0; i < uniqueFields.size(); i++) {
-            String fieldName = uniqueFields.get(i).getEntityFieldName();
-            String columnName = toSnakeCase(fieldName);
+        for (int i = 0; i < columns.size(); i++) {
+            String columnName = columns.get(i);
             String value = i < keyParts.length ? keyParts[i] : null;
 
             if (value == null || value.equals("null") || value.isEmpty()) {
                 query.append(" AND ").append(columnName).append(" IS NULL");
             } else {
-                query.append(" AND ").append(columnName).append(" = ?");
+                query.append(" AND ").append(columnExpression(columnName, types.get(columnName)))
+                        .append(" = ?::").append(valueType(types.get(columnName)));
                 params.add(value);
             }
         }
@@ -116,15 +243,43 @@ public class DuplicateCheckService {
         }
     }
 
-    private String toSnakeCase(String value) {
-        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    /**
+     * Тип, к которому приводится значение ключа: тип колонки, если значение в него разбирается,
+     * иначе text
+     */
+    private static String valueType(String columnType) {
+        return TYPED_TYPES.contains(columnType) ? columnType : "text";
     }
 
     /**
-     * Очищает кеш дубликатов
+     * Колонка в сравнении: текстовые и типизированные напрямую (работают индексы),
+     * остальные — по текстовому представлению
      */
-    public void clearCache(EntityType entityType) {
-        inMemoryCache.remove(entityType.name());
+    private static String columnExpression(String column, String columnType) {
+        return TEXT_TYPES.contains(columnType) || TYPED_TYPES.contains(columnType) ? column : column + "::text";
+    }
+
+    private Map<String, String> getColumnTypes(String tableName) {
+        return columnTypes.computeIfAbsent(tableName, table -> {
+            Map<String, String> types = new HashMap<>();
+            jdbcTemplate.query(
+                    "SELECT column_name, data_type FROM information_schema.columns " +
+                            "WHERE table_schema = current_schema() AND table_name = ?",
+                    rs -> {
+                        types.put(rs.getString(1), rs.getString(2));
+                    }, table);
+            return types;
+        });
+    }
+
+    private List<ImportTemplateField> getUniqueFields(ImportTemplate template) {
+        return template.getFields().stream()
+                .filter(field -> Boolean.TRUE.equals(field.getIsUnique()))
+                .collect(Collectors.toList());
+    }
+
+    private String toSnakeCase(String value) {
+        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
     }
 
     /**
@@ -140,4 +295,4 @@ public class DuplicateCheckService {
                 throw new IllegalArgumentException("Неизвестный тип сущности: " + entityType);
         }
     }
-}
\ No newline at end of file
+}
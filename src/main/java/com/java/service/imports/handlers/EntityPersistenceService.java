@@ -1,11 +1,17 @@
 package com.java.service.imports.handlers;
 
+import com.java.config.ImportConfig;
 import com.java.model.entity.ImportSession;
+import com.java.model.entity.ImportTemplate;
+import com.java.model.entity.ImportTemplateField;
 import com.java.model.enums.DataSourceType;
+import com.java.model.enums.DuplicateStrategy;
 import com.java.model.enums.EntityType;
+import com.java.model.enums.PersistenceEngine;
 import com.java.service.handbook.BarcodeHandbookService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -32,6 +38,9 @@ public class EntityPersistenceService {
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final JdbcTemplate jdbcTemplate;
     private final BarcodeHandbookService barcodeHandbookService;
+    private final PgCopyWriter copyWriter;
+    private final StagingTableService stagingTableService;
+    private final ImportConfig.ImportSettings importSettings;
 
     // Трекинг сессий для однократной очистки AV_HANDBOOK
     private final Set<Long> clearedSessionsForHandbook = ConcurrentHashMap.newKeySet();
@@ -71,6 +80,10 @@ public class EntityPersistenceService {
             "handbookRetailNetworkCode", "handbookRetailNetwork", "handbookPhysicalAddress", "handbookPriceZoneCode", "handbookWebSite", "handbookRegionCode", "handbookRegionName", "createdAt", "updatedAt"
     );
 
+    // Колонки для COPY в порядке параметров (productCategory1 -> product_category1)
+    private static final List<String> AV_DATA_COLUMNS = toColumns(AV_DATA_PARAMS);
+    private static final List<String> AV_HANDBOOK_COLUMNS = toColumns(AV_HANDBOOK_PARAMS);
+
 
     /**
      * Сохраняет батч записей в БД
@@ -99,6 +112,22 @@ public class EntityPersistenceService {
      * Сохраняет продукты
      */
     private int saveAvData(List<Map<String, Object>> batch, ImportSession session) {
+        fillAvDataDefaults(batch, session);
+
+        PersistenceEngine engine = resolveEngine(session);
+        if (engine == PersistenceEngine.STAGING) {
+            return stagingTableService.stage(session.getId(), "av_data", AV_DATA_COLUMNS, AV_DATA_PARAMS, batch);
+        }
+
+        if (engine == PersistenceEngine.COPY) {
+            try {
+                return copyWriter.copyRows("av_data", AV_DATA_COLUMNS, AV_DATA_PARAMS, batch);
+            } catch (DataAccessException e) {
+                log.warn("COPY в av_data не удался (session={}): {}. Повтор батча через INSERT для диагностики",
+                        session.getId(), e.getMostSpecificCause().getMessage());
+            }
+        }
+
         String sql = "INSERT INTO av_data (data_source, operation_id, client_id, product_id, product_name, product_brand, product_bar, product_description, product_url, product_category1, product_category2, product_category3," +
                 " product_price, product_analog, product_additional1, product_additional2, product_additional3, product_additional4, product_additional5, product_additional6, product_additional7, product_additional8, product_additional9, product_additional10," +
                 " region, region_Address, competitor_Name, competitor_Price," +
@@ -126,7 +155,16 @@ public class EntityPersistenceService {
                 " :zmsId," +
                 " :created_at, :updated_at)";
 
-        // Добавляем системные поля
+        SqlParameterSource[] batchParams = SqlParameterSourceUtils.createBatch(batch);
+        int[] updateCounts = namedParameterJdbcTemplate.batchUpdate(sql, batchParams);
+
+        return Arrays.stream(updateCounts).sum();
+    }
+
+    /**
+     * Заполняет системные поля и значения по умолчанию для av_data
+     */
+    private void fillAvDataDefaults(List<Map<String, Object>> batch, ImportSession session) {
         LocalDateTime now = LocalDateTime.now();
         Long operationId = session.getFileOperation().getId();
         Long clientId = session.getFileOperation().getClient() != null
@@ -151,11 +189,6 @@ public class EntityPersistenceService {
             // Преобразуем null значения в дефолтные
             avData.putIfAbsent("productPrice", 0.0);
         });
-
-        SqlParameterSource[] batchParams = SqlParameterSourceUtils.createBatch(batch);
-        int[] updateCounts = namedParameterJdbcTemplate.batchUpdate(sql, batchParams);
-
-        return Arrays.stream(updateCounts).sum();
     }
 
     /**
@@ -170,11 +203,6 @@ public class EntityPersistenceService {
             }
         }
 
-        String sql = "INSERT INTO av_handbook (handbook_retail_network_code, handbook_retail_network, handbook_physical_address, handbook_price_zone_code, handbook_web_site, " +
-                "handbook_region_code, handbook_region_name, created_at, updated_at) " +
-                "VALUES (:handbookRetailNetworkCode, :handbookRetailNetwork, :handbookPhysicalAddress, :handbookPriceZoneCode, :handbookWebSite, " +
-                ":handbookRegionCode, :handbookRegionName, :createdAt, :updatedAt)";
-
         // Добавляем системные поля
         LocalDateTime now = LocalDateTime.now();
         batch.forEach(av_handbook -> {
@@ -186,12 +214,72 @@ public class EntityPersistenceService {
             av_handbook.putIfAbsent("updatedAt", now);
         });
 
+        // av_handbook заменяется целиком, staging для неё не нужен — пишем через COPY
+        if (resolveEngine(session) != PersistenceEngine.BATCH_INSERT) {
+            try {
+                return copyWriter.copyRows("av_handbook", AV_HANDBOOK_COLUMNS, AV_HANDBOOK_PARAMS, batch);
+            } catch (DataAccessException e) {
+                log.warn("COPY в av_handbook не удался (session={}): {}. Повтор батча через INSERT для диагностики",
+                        session.getId(), e.getMostSpecificCause().getMessage());
+            }
+        }
+
+        String sql = "INSERT INTO av_handbook (handbook_retail_network_code, handbook_retail_network, handbook_physical_address, handbook_price_zone_code, handbook_web_site, " +
+                "handbook_region_code, handbook_region_name, created_at, updated_at) " +
+                "VALUES (:handbookRetailNetworkCode, :handbookRetailNetwork, :handbookPhysicalAddress, :handbookPriceZoneCode, :handbookWebSite, " +
+                ":handbookRegionCode, :handbookRegionName, :createdAt, :updatedAt)";
+
         SqlParameterSource[] batchParams = SqlParameterSourceUtils.createBatch(batch);
         int[] updateCounts = namedParameterJdbcTemplate.batchUpdate(sql, batchParams);
 
         return Arrays.stream(updateCounts).sum();
     }
 
+    /**
+     * Способ записи: настройка шаблона, иначе глобальная import.persistence.engine
+     */
+    private PersistenceEngine resolveEngine(ImportSession session) {
+        if (session.getTemplate() != null && session.getTemplate().getPersistenceEngine() != null) {
+            return session.getTemplate().getPersistenceEngine();
+        }
+        return importSettings.getPersistenceEngine();
+    }
+
+    /**
+     * Пишутся ли строки сессии в staging-таблицу (только av_data)
+     */
+    public boolean isStaged(ImportSession session, EntityType entityType) {
+        return entityType == EntityType.AV_DATA && resolveEngine(session) == PersistenceEngine.STAGING;
+    }
+
+    /**
+     * Переносит staging-таблицу сессии в av_data. Дубликаты удаляются по уникальным
+     * полям шаблона, если выбрана стратегия SKIP_DUPLICATES
+     */
+    @Transactional
+    public StagingTableService.PromotionResult promoteStaging(ImportSession session, ImportTemplate template) {
+        List<String> uniqueColumns = template.getDuplicateStrategy() == DuplicateStrategy.SKIP_DUPLICATES
+                ? toColumns(template.getFields().stream()
+                        .filter(field -> Boolean.TRUE.equals(field.getIsUnique()))
+                        .map(ImportTemplateField::getEntityFieldName)
+                        .toList())
+                : List.of();
+        return stagingTableService.promote(session.getId(), "av_data", AV_DATA_COLUMNS, uniqueColumns);
+    }
+
+    /**
+     * Удаляет staging-таблицу сессии (ошибка или отмена импорта)
+     */
+    public void discardStaging(ImportSession session) {
+        stagingTableService.drop(session.getId());
+    }
+
+    private static List<String> toColumns(List<String> params) {
+        return params.stream()
+                .map(param -> param.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase())
+                .toList();
+    }
+
     /**
      * Полная очистка таблицы av_handbook перед импортом.
      *
@@ -230,6 +318,9 @@ public class EntityPersistenceService {
         // Очищаем флаг очистки при откате
         clearedSessionsForHandbook.remove(session.getId());
 
+        // Строки staging-режима ещё не попали в av_data — достаточно удалить staging-таблицу
+        discardStaging(session);
+
         // Это упрощенная версия
         // В реальности нужно отслеживать ID импортированных записей
         // и удалять только их
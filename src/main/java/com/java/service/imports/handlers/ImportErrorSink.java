@@ -0,0 +1,242 @@
+package com.java.service.imports.handlers;
+
+import com.java.config.ImportConfig;
+import com.java.model.enums.ErrorType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Буферизованная запись ошибок импорта в import_errors.
+ * <p>
+ * Ошибки копятся в памяти и записываются пачкой через COPY (при сбое — JDBC batch) в конце
+ * каждого батча данных, в той же транзакции. Для каждой пары «тип ошибки + колонка» дословно
+ * сохраняются первые N ошибок, остальные только считаются; по завершении импорта счётчики
+ * записываются сводными строками. Persistence context Hibernate при этом не используется.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ImportErrorSink {
+
+    private static final String TABLE = "import_errors";
+    private static final List<String> COLUMNS = List.of(
+            "import_session_id", "row_number", "column_name", "field_value", "error_type", "error_message");
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE + " (" + String.join(", ", COLUMNS) + ") " +
+            "VALUES (:import_session_id, :row_number, :column_name, :field_value, :error_type, :error_message)";
+
+    /**
+     * Номер строки для сводных записей, не относящихся к конкретной строке файла
+     */
+    public static final long SUMMARY_ROW = 0L;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final PgCopyWriter copyWriter;
+    private final ImportConfig.ImportSettings importSettings;
+
+    private final Map<Long, SessionErrors> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Учитывает ошибку строки
+     *
+     * @return true, если ошибка сохранится дословно; false — только учтена в счётчике
+     */
+    public boolean record(Long sessionId, long rowNumber, String columnName, String fieldValue,
+                          ErrorType errorType, String errorMessage) {
+        SessionErrors errors = sessions.computeIfAbsent(sessionId, id -> new SessionErrors());
+        int limit = importSettings.getErrorSamplePerType();
+        boolean sampled;
+        boolean full;
+        synchronized (errors) {
+            SampleCounter counter = errors.counters.computeIfAbsent(
+                    new SampleKey(errorType, columnName), key -> new SampleCounter());
+            sampled = limit <= 0 || counter.sampled < limit;
+            if (sampled) {
+                counter.sampled++;
+                errors.buffer.add(row(sessionId, rowNumber, columnName, fieldValue, errorType, errorMessage));
+            } else {
+                counter.suppressed++;
+            }
+            full = errors.buffer.size() >= importSettings.getErrorFlushSize();
+        }
+
+        if (full) {
+            try {
+                flush(sessionId);
+            } catch (DataAccessException e) {
+                // Ошибки остались в буфере и будут записаны при следующем flush
+                log.warn("Не удалось записать ошибки импорта сессии {}: {}", sessionId, e.getMessage());
+            }
+        }
+        return sampled;
+    }
+
+    /**
+     * Записывает накопленные ошибки сессии
+     *
+     * @return количество записанных строк
+     */
+    public int flush(Long sessionId) {
+        SessionErrors errors = sessions.get(sessionId);
+        if (errors == null) {
+            return 0;
+        }
+
+        List<Map<String, Object>> rows;
+        synchronized (errors) {
+            if (errors.buffer.isEmpty()) {
+                return 0;
+            }
+            rows = new ArrayList<>(errors.buffer);
+            errors.buffer.clear();
+        }
+        try {
+            return write(rows);
+        } catch (RuntimeException e) {
+            synchronized (errors) {
+                errors.buffer.addAll(0, rows);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Записывает оставшиеся ошибки и сводные строки по ошибкам сверх выборки, освобождает состояние сессии
+     *
+     * @return количество ошибок, учтённых только счётчиком
+     */
+    public long complete(Long sessionId) {
+        SessionErrors errors = sessions.remove(sessionId);
+        if (errors == null) {
+            return 0;
+        }
+
+        long suppressed = 0;
+        List<Map<String, Object>> rows;
+        synchronized (errors) {
+            rows = new ArrayList<>(errors.buffer);
+            for (Map.Entry<SampleKey, SampleCounter> entry : errors.counters.entrySet()) {
+                long count = entry.getValue().suppressed;
+                if (count == 0) continue;
+                suppressed += count;
+                SampleKey key = entry.getKey();
+                rows.add(row(sessionId, SUMMARY_ROW, key.columnName(), null, key.errorType(),
+                        String.format("Ещё %d ошибок типа «%s»%s не сохранены подробно",
+                                count, key.errorType().getDisplayName(),
+                                key.columnName() != null ? " в колонке " + key.columnName() : "")));
+            }
+        }
+
+        write(rows);
+        if (suppressed > 0) {
+            log.info("Сессия {}: {} ошибок учтены только в сводных записях", sessionId, suppressed);
+        }
+        return suppressed;
+    }
+
+    /**
+     * Копия буфера и счётчиков выборки сессии — состояние до батча, к которому можно вернуться,
+     * если транзакция батча откатится вместе с записанными в ней ошибками
+     */
+    public Snapshot snapshot(Long sessionId) {
+        SessionErrors errors = sessions.get(sessionId);
+        if (errors == null) {
+            return new Snapshot(null);
+        }
+        synchronized (errors) {
+            return new Snapshot(errors.copy());
+        }
+    }
+
+    /**
+     * Возвращает ошибки сессии к состоянию снимка
+     */
+    public void restore(Long sessionId, Snapshot snapshot) {
+        if (snapshot.errors == null) {
+            sessions.remove(sessionId);
+        } else {
+            sessions.put(sessionId, snapshot.errors.copy());
+        }
+    }
+
+    /**
+     * Отбрасывает накопленные ошибки сессии без записи
+     */
+    public void discard(Long sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    private int write(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            return copyWriter.copyRows(TABLE, COLUMNS, COLUMNS, rows);
+        } catch (DataAccessException e) {
+            log.warn("COPY ошибок импорта не удался: {}. Запись через INSERT",
+                    e.getMostSpecificCause().getMessage());
+        }
+        int[] counts = namedParameterJdbcTemplate.batchUpdate(INSERT_SQL, SqlParameterSourceUtils.createBatch(rows));
+        return counts.length;
+    }
+
+    private static Map<String, Object> row(Long sessionId, long rowNumber, String columnName, String fieldValue,
+                                           ErrorType errorType, String errorMessage) {
+        Map<String, Object> row = new HashMap<>(8);
+        row.put("import_session_id", sessionId);
+        row.put("row_number", rowNumber);
+        row.put("column_name", columnName);
+        row.put("field_value", fieldValue);
+        row.put("error_type", errorType.name());
+        row.put("error_message", errorMessage != null ? errorMessage : errorType.getDisplayName());
+        return row;
+    }
+
+    /**
+     * Снимок ошибок сессии, см. {@link #snapshot}
+     */
+    public static final class Snapshot {
+        private final SessionErrors errors;
+
+        private Snapshot(SessionErrors errors) {
+            this.errors = errors;
+        }
+    }
+
+    private static final class SessionErrors {
+        private final List<Map<String, Object>> buffer = new ArrayList<>();
+        private final Map<SampleKey, SampleCounter> counters = new LinkedHashMap<>();
+
+        private SessionErrors copy() {
+            SessionErrors copy = new SessionErrors();
+            copy.buffer.addAll(buffer);
+            counters.forEach((key, counter) -> copy.counters.put(key, counter.copy()));
+            return copy;
+        }
+    }
+
+    private static final class SampleCounter {
+        private int sampled;
+        private long suppressed;
+
+        private SampleCounter copy() {
+            SampleCounter copy = new SampleCounter();
+            copy.sampled = sampled;
+            copy.suppressed = suppressed;
+            return copy;
+        }
+    }
+
+    private record SampleKey(ErrorType errorType, String columnName) {
+    }
+}
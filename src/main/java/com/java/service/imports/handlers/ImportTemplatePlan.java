@@ -0,0 +1,357 @@
+package com.java.service.imports.handlers;
+
+import com.java.model.entity.ImportTemplate;
+import com.java.model.entity.ImportTemplateField;
+import com.java.model.enums.FieldType;
+import com.java.service.imports.handlers.DataTransformationService.TransformationException;
+import com.java.service.imports.handlers.DataTransformationService.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Скомпилированный план трансформации строк по шаблону импорта.
+ * <p>
+ * Строится один раз на сессию: колонки разрешены в индексы по заголовкам файла,
+ * регулярные выражения и форматы дат скомпилированы, конвертеры выбраны по типу поля.
+ * Строки читаются как {@code String[]} без промежуточной Map.
+ * План неизменяем и может использоваться несколькими потоками одновременно.
+ * Семантика совпадает с {@link DataTransformationService#transformRow}.
+ */
+@Slf4j
+public final class ImportTemplatePlan {
+
+    private static final DateTimeFormatter[] ALTERNATIVE_DATE_FORMATS = {
+            DateTimeFormatter.ofPattern("dd.MM.yyyy"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy")
+    };
+
+    private static final String DATE_ONLY_FORMAT = "dd.MM.yyyy";
+    private static final String[] DEFAULT_DATETIME_FORMATS = {
+            "dd.MM.yyyy HH:mm:ss",
+            "dd.MM.yyyy HH:mm",
+            DATE_ONLY_FORMAT
+    };
+
+    private final CompiledField[] fields;
+
+    private ImportTemplatePlan(CompiledField[] fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Компилирует шаблон под заголовки конкретного файла
+     *
+     * @param template шаблон с загруженными полями
+     * @param headers  заголовки файла или null, если заголовка нет
+     */
+    public static ImportTemplatePlan compile(ImportTemplate template, String[] headers) {
+        List<CompiledField> compiled = new ArrayList<>(template.getFields().size());
+        for (ImportTemplateField field : template.getFields()) {
+            compiled.add(compileField(field, headers));
+        }
+        log.debug("Скомпилирован план шаблона '{}': {} полей", template.getName(), compiled.size());
+        return new ImportTemplatePlan(compiled.toArray(new CompiledField[0]));
+    }
+
+    /**
+     * Трансформирует строку файла
+     *
+     * @param row       значения ячеек по индексам колонок
+     * @param rowNumber номер строки для сообщений об ошибках
+     */
+    public Map<String, Object> transform(String[] row, long rowNumber) throws TransformationException {
+        Map<String, Object> result = new HashMap<>(fields.length * 4 / 3 + 1);
+
+        for (CompiledField field : fields) {
+            String rawValue = null;
+            try {
+                rawValue = field.valueFrom(row);
+
+                if (isBlank(rawValue) && field.defaultValue != null) {
+                    rawValue = field.defaultValue;
+                }
+
+                if (isBlank(rawValue)) {
+                    if (field.required) {
+                        throw new ValidationException("Обязательное поле пустое");
+                    }
+                    continue;
+                }
+
+                field.validate(rawValue);
+                result.put(field.entityFieldName, field.converter.convert(rawValue.trim()));
+
+            } catch (Exception e) {
+                log.debug("Ошибка обработки поля '{}' в строке {}: {}",
+                        field.entityFieldName, rowNumber, e.getMessage());
+                String message = String.format("Ошибка в поле '%s': %s",
+                        field.entityFieldName, e.getMessage());
+                throw new TransformationException(message, field.columnName, rawValue, rowNumber, e);
+            }
+        }
+
+        return result;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    // Компиляция полей
+
+    private static CompiledField compileField(ImportTemplateField field, String[] headers) {
+        Pattern pattern = null;
+        String invalidRegex = null;
+        String regex = field.getValidationRegex();
+        if (regex != null && !regex.isEmpty()) {
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                log.warn("Некорректное регулярное выражение поля '{}': {}", field.getEntityFieldName(), regex);
+                invalidRegex = regex;
+            }
+        }
+
+        return new CompiledField(
+                field.getEntityFieldName(),
+                field.getColumnName(),
+                resolveNameIndex(field.getColumnName(), headers),
+                field.getColumnIndex() != null ? field.getColumnIndex() : -1,
+                Boolean.TRUE.equals(field.getIsRequired()),
+                field.getDefaultValue(),
+                pattern,
+                invalidRegex,
+                field.getValidationMessage(),
+                compileConverter(field));
+    }
+
+    /**
+     * Индекс колонки по имени: точное совпадение (последнее, как при записи в Map),
+     * затем без учёта регистра; числовое имя без совпадений трактуется как индекс
+     */
+    private static int resolveNameIndex(String columnName, String[] headers) {
+        if (columnName == null || columnName.isEmpty()) {
+            return -1;
+        }
+        if (headers != null) {
+            for (int i = headers.length - 1; i >= 0; i--) {
+                if (columnName.equals(headers[i])) return i;
+            }
+            for (int i = 0; i < headers.length; i++) {
+                if (columnName.equalsIgnoreCase(headers[i])) return i;
+            }
+        }
+        try {
+            int index = Integer.parseInt(columnName.trim());
+            return index >= 0 ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ValueConverter compileConverter(ImportTemplateField field) {
+        FieldType type = field.getFieldType() != null ? field.getFieldType() : FieldType.STRING;
+        return switch (type) {
+            case STRING -> compileStringConverter(field.getTransformationRule());
+            case INTEGER -> ImportTemplatePlan::toInteger;
+            case DECIMAL -> ImportTemplatePlan::toDecimal;
+            case DATE -> compileDateConverter(field.getDateFormat());
+            case DATETIME -> compileDateTimeConverter(field.getDateFormat());
+            case BOOLEAN -> ImportTemplatePlan::toBoolean;
+        };
+    }
+
+    private static ValueConverter compileStringConverter(String rule) {
+        if (rule == null) {
+            return value -> value;
+        }
+        boolean upper = rule.contains("uppercase");
+        boolean lower = !upper && rule.contains("lowercase");
+        boolean trim = rule.contains("trim");
+        return value -> {
+            String result = upper ? value.toUpperCase() : lower ? value.toLowerCase() : value;
+            return trim ? result.trim() : result;
+        };
+    }
+
+    private static ValueConverter compileDateConverter(String dateFormat) {
+        if (dateFormat == null || dateFormat.isEmpty()) {
+            return value -> {
+                throw new ValidationException("Формат даты не указан");
+            };
+        }
+        DateTimeFormatter primary = ofPatternOrNull(dateFormat);
+        return value -> {
+            if (primary != null) {
+                try {
+                    return LocalDate.parse(value, primary);
+                } catch (Exception ignored) {
+                    // Пробуем альтернативные форматы
+                }
+            }
+            for (DateTimeFormatter formatter : ALTERNATIVE_DATE_FORMATS) {
+                try {
+                    return LocalDate.parse(value, formatter);
+                } catch (Exception ignored) {
+                    // Пробуем следующий формат
+                }
+            }
+            throw new ValidationException("Некорректный формат даты: " + value);
+        };
+    }
+
+    private static ValueConverter compileDateTimeConverter(String dateFormat) {
+        List<String> patterns = new ArrayList<>();
+        if (dateFormat != null && !dateFormat.isEmpty()) {
+            patterns.add(dateFormat);
+        }
+        patterns.addAll(List.of(DEFAULT_DATETIME_FORMATS));
+
+        List<DateTimeFormatter> formatters = new ArrayList<>();
+        List<Boolean> dateOnly = new ArrayList<>();
+        for (String pattern : patterns) {
+            DateTimeFormatter formatter = ofPatternOrNull(pattern);
+            if (formatter != null) {
+                formatters.add(formatter);
+                dateOnly.add(DATE_ONLY_FORMAT.equals(pattern));
+            }
+        }
+        DateTimeFormatter[] formatterArray = formatters.toArray(new DateTimeFormatter[0]);
+        boolean[] dateOnlyArray = new boolean[formatterArray.length];
+        for (int i = 0; i < dateOnlyArray.length; i++) {
+            dateOnlyArray[i] = dateOnly.get(i);
+        }
+
+        return value -> {
+            for (int i = 0; i < formatterArray.length; i++) {
+                try {
+                    return dateOnlyArray[i]
+                            ? LocalDate.parse(value, formatterArray[i]).atStartOfDay()
+                            : LocalDateTime.parse(value, formatterArray[i]);
+                } catch (Exception ignored) {
+                    // Пробуем следующий формат
+                }
+            }
+            throw new ValidationException("Некорректный формат даты/времени: " + value +
+                    " (ожидается один из: dd.MM.yyyy HH:mm:ss, dd.MM.yyyy HH:mm, dd.MM.yyyy)");
+        };
+    }
+
+    private static DateTimeFormatter ofPatternOrNull(String pattern) {
+        try {
+            return DateTimeFormatter.ofPattern(pattern);
+        } catch (IllegalArgumentException e) {
+            log.warn("Некорректный формат даты в шаблоне: {}", pattern);
+            return null;
+        }
+    }
+
+    // Конвертеры без состояния
+
+    private static Object toInteger(String value) {
+        String digits = strip(value, true);
+        try {
+            if (digits.indexOf('.') >= 0) {
+                return (int) Math.round(Double.parseDouble(digits));
+            }
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный формат числа: " + digits);
+        }
+    }
+
+    private static Object toDecimal(String value) {
+        String digits = strip(value.replace(',', '.'), false);
+        try {
+            return new BigDecimal(digits);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный формат десятичного числа: " + digits);
+        }
+    }
+
+    private static Object toBoolean(String value) {
+        return switch (value.toLowerCase()) {
+            case "true", "1", "yes", "y", "да", "истина" -> true;
+            case "false", "0", "no", "n", "нет", "ложь" -> false;
+            default -> throw new ValidationException("Некорректное булево значение: " + value);
+        };
+    }
+
+    /**
+     * Удаляет пробельные символы (как {@code \s} в регулярных выражениях) и, при необходимости, запятые
+     */
+    private static String strip(String value, boolean commas) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean skip = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+                    || (commas && c == ',');
+            if (skip && sb == null) {
+                sb = new StringBuilder(value.length()).append(value, 0, i);
+            } else if (!skip && sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+
+    /**
+     * Пустое значение в смысле {@code value.trim().isEmpty()}, без создания новой строки
+     */
+    private static boolean isBlank(String value) {
+        if (value == null) return true;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface ValueConverter {
+        Object convert(String trimmedValue) throws Exception;
+    }
+
+    private record CompiledField(String entityFieldName,
+                                 String columnName,
+                                 int nameIndex,
+                                 int columnIndex,
+                                 boolean required,
+                                 String defaultValue,
+                                 Pattern pattern,
+                                 String invalidRegex,
+                                 String validationMessage,
+                                 ValueConverter converter) {
+
+        String valueFrom(String[] row) {
+            if (nameIndex >= 0 && nameIndex < row.length && row[nameIndex] != null) {
+                return row[nameIndex];
+            }
+            if (columnIndex >= 0 && columnIndex < row.length) {
+                return row[columnIndex];
+            }
+            return null;
+        }
+
+        void validate(String rawValue) {
+            if (invalidRegex != null) {
+                throw new ValidationException("Некорректное регулярное выражение: " + invalidRegex);
+            }
+            if (pattern != null && !pattern.matcher(rawValue).matches()) {
+                throw new ValidationException(validationMessage != null ?
+                        validationMessage : "Значение не соответствует формату");
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.java.service.imports.handlers;
+
+/**
+ * Компактное множество 64-битных отпечатков ключей дубликатов (открытая адресация, long[]).
+ * <p>
+ * Хранит ~8–16 байт на ключ вместо строки с HashSet-обёрткой. Это множество хешей, а не ключей:
+ * при совпадении 64-битных отпечатков двух разных ключей {@link #contains} вернёт true
+ * и уникальная строка будет принята за дубликат. Вероятность — порядка n²/2⁶⁵
+ * (около 3·10⁻⁶ на 10 млн ключей), в отличие от bloom-фильтра она не растёт с заполнением.
+ * Таблица начинается с небольшого размера и удваивается при заполнении наполовину.
+ * Не потокобезопасно — синхронизация на стороне вызывающего.
+ */
+final class KeyFingerprintSet {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] table;
+    private int size;
+    private boolean containsZero;
+
+    KeyFingerprintSet() {
+        this.table = new long[INITIAL_CAPACITY];
+    }
+
+    boolean add(String key) {
+        return addFingerprint(fingerprint(key));
+    }
+
+    boolean contains(String key) {
+        long fp = fingerprint(key);
+        if (fp == EMPTY) return containsZero;
+        int mask = table.length - 1;
+        for (int i = mix(fp) & mask; ; i = (i + 1) & mask) {
+            long current = table[i];
+            if (current == EMPTY) return false;
+            if (current == fp) return true;
+        }
+    }
+
+    int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    private boolean addFingerprint(long fp) {
+        if (fp == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int mask = table.length - 1;
+        int i = mix(fp) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == fp) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = fp;
+        if (++size > table.length * LOAD_FACTOR) {
+            resize();
+        }
+        return true;
+    }
+
+    private void resize() {
+        long[] old = table;
+        table = new long[old.length << 1];
+        int mask = table.length - 1;
+        for (long fp : old) {
+            if (fp == EMPTY) continue;
+            int i = mix(fp) & mask;
+            while (table[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            table[i] = fp;
+        }
+    }
+
+    /**
+     * FNV-1a по символам строки с финальным перемешиванием
+     */
+    static long fingerprint(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int mix(long fp) {
+        return (int) (fp ^ (fp >>> 32));
+    }
+}
@@ -0,0 +1,126 @@
+package com.java.service.imports.handlers;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковая запись строк в таблицу через PostgreSQL COPY FROM STDIN (CSV).
+ * Работает на соединении текущей транзакции; внутри транзакции COPY выполняется
+ * под savepoint, чтобы ошибка не прерывала транзакцию и вызывающий код мог
+ * повторить батч другим способом.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PgCopyWriter {
+
+    private static final int FLUSH_THRESHOLD_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Копирует строки в таблицу
+     *
+     * @param table   имя таблицы
+     * @param columns колонки таблицы
+     * @param keys    ключи значений в строках, в том же порядке что и columns
+     * @param rows    строки для записи
+     * @return количество записанных строк
+     */
+    public int copyRows(String table, List<String> columns, List<String> keys, List<Map<String, Object>> rows) {
+        String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            Savepoint savepoint = con.getAutoCommit() ? null : con.setSavepoint();
+            try {
+                long count = writeRows(con.unwrap(PGConnection.class), sql, keys, rows);
+                if (savepoint != null) {
+                    con.releaseSavepoint(savepoint);
+                }
+                return count;
+            } catch (SQLException | RuntimeException e) {
+                if (savepoint != null) {
+                    con.rollback(savepoint);
+                }
+                throw e;
+            }
+        });
+
+        log.debug("COPY {}: записано {} строк", table, copied);
+        return copied != null ? copied.intValue() : 0;
+    }
+
+    private long writeRows(PGConnection pgConnection, String sql, List<String> keys,
+                           List<Map<String, Object>> rows) throws SQLException {
+        CopyIn copyIn = pgConnection.getCopyAPI().copyIn(sql);
+        try {
+            StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD_CHARS + 4096);
+            for (Map<String, Object> row : rows) {
+                for (int i = 0; i < keys.size(); i++) {
+                    if (i > 0) {
+                        buffer.append(',');
+                    }
+                    appendValue(buffer, row.get(keys.get(i)));
+                }
+                buffer.append('\n');
+
+                if (buffer.length() >= FLUSH_THRESHOLD_CHARS) {
+                    flush(copyIn, buffer);
+                }
+            }
+            flush(copyIn, buffer);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Значение в формате CSV для COPY: null — пустое поле без кавычек,
+     * остальное — в кавычках с удвоением внутренних кавычек
+     */
+    private void appendValue(StringBuilder buffer, Object value) {
+        if (value == null) return;
+
+        String text;
+        if (value instanceof BigDecimal decimal) {
+            text = decimal.toPlainString();
+        } else if (value instanceof ZonedDateTime zoned) {
+            text = zoned.toOffsetDateTime().toString();
+        } else {
+            text = value.toString();
+        }
+
+        buffer.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+}
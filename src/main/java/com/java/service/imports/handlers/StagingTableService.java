@@ -0,0 +1,343 @@
+package com.java.service.imports.handlers;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Промежуточные (staging) таблицы импорта.
+ * <p>
+ * Строки сессии пишутся через COPY в UNLOGGED-таблицу {@code import_staging_<sessionId>}
+ * со структурой целевой таблицы. Записываемые varchar-, числовые колонки и колонки дат
+ * заменены на text, чтобы слишком длинное или не приводимое к типу значение не обрывало батч.
+ * В конце импорта проверки длин и приведения типов и удаление дубликатов выполняются
+ * запросами над всей таблицей, затем один {@code INSERT ... SELECT} с приведением типов
+ * переносит строки в целевую таблицу. Приведение проверяется pg_input_is_valid (PostgreSQL 16+),
+ * на более старых версиях — по формату значения: значение верного формата, но вне диапазона
+ * (13-й месяц, переполнение bigint), по-прежнему обрывает перенос.
+ * При ошибке или отмене staging-таблица просто удаляется; таблицы прерванных импортов
+ * удаляет восстановление сессий при запуске ({@link com.java.service.imports.AsyncImportService}).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StagingTableService {
+
+    private static final String TABLE_PREFIX = "import_staging_";
+    private static final String ROW_ID = "staging_row_id";
+    /**
+     * Сколько некорректных значений каждой колонки возвращается в JVM
+     */
+    private static final int ERROR_SAMPLE_LIMIT = 100;
+    private static final int PG_INPUT_IS_VALID_VERSION = 160000;
+
+    private static final Set<String> INTEGER_TYPES = Set.of("smallint", "integer", "bigint");
+    private static final Set<String> DECIMAL_TYPES = Set.of("real", "double precision", "numeric");
+    private static final Set<String> DATE_TYPES = Set.of("date", "timestamp without time zone",
+            "timestamp with time zone");
+
+    // Проверки формата для PostgreSQL до 16 (без pg_input_is_valid)
+    private static final String INTEGER_FORMAT = "^\\s*[+-]?[0-9]+\\s*$";
+    private static final String DECIMAL_FORMAT =
+            "^\\s*([+-]?([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][+-]?[0-9]+)?|[+-]?(NaN|Infinity))\\s*$";
+    private static final String DATE_FORMAT = "^\\s*[0-9]{4}-[0-9]{2}-[0-9]{2}"
+            + "([ T][0-9]{2}:[0-9]{2}(:[0-9]{2}(\\.[0-9]+)?)?)?([+-][0-9]{2}(:?[0-9]{2})?|Z)?\\s*$";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final PgCopyWriter copyWriter;
+
+    public static String tableName(Long sessionId) {
+        return TABLE_PREFIX + sessionId;
+    }
+
+    /**
+     * Записывает батч в staging-таблицу сессии, создавая её при первом вызове
+     *
+     * @return количество записанных строк
+     */
+    public int stage(Long sessionId, String targetTable, List<String> columns, List<String> keys,
+                     List<Map<String, Object>> rows) {
+        String staging = tableName(sessionId);
+        createIfAbsent(staging, targetTable, columns);
+
+        try {
+            return copyWriter.copyRows(staging, columns, keys, rows);
+        } catch (DataAccessException e) {
+            log.warn("COPY в {} не удался: {}. Повтор батча через INSERT для диагностики",
+                    staging, e.getMostSpecificCause().getMessage());
+        }
+
+        String sql = "INSERT INTO " + staging + " (" + String.join(", ", columns) + ") VALUES (" +
+                keys.stream().map(key -> ":" + key).collect(Collectors.joining(", ")) + ")";
+        int[] counts = namedParameterJdbcTemplate.batchUpdate(sql, SqlParameterSourceUtils.createBatch(rows));
+        return Arrays.stream(counts).sum();
+    }
+
+    /**
+     * Проверяет строки staging-таблицы, удаляет дубликаты и переносит результат в целевую таблицу.
+     * Staging-таблица удаляется после переноса.
+     *
+     * @param uniqueColumns колонки ключа дубликатов; пустой список — без проверки дубликатов
+     */
+    public PromotionResult promote(Long sessionId, String targetTable, List<String> columns,
+                                   List<String> uniqueColumns) {
+        String staging = tableName(sessionId);
+        if (!exists(staging)) {
+            return new PromotionResult(0, 0, 0, List.of());
+        }
+
+        // Колонки, которые в staging хранятся текстом и приводятся к типу целевой таблицы
+        Map<String, String> typed = getTypedColumns(targetTable);
+        typed.keySet().retainAll(getTextColumns(staging));
+
+        List<ErrorSample> errorSamples = new ArrayList<>();
+        long invalid = removeOverlongValues(staging, targetTable, errorSamples)
+                + removeUncastableValues(staging, typed, errorSamples);
+
+        long duplicates = 0;
+        if (!uniqueColumns.isEmpty()) {
+            duplicates = removeDuplicates(staging, targetTable, uniqueColumns, typed);
+        }
+
+        String columnList = String.join(", ", columns);
+        String selectList = columns.stream()
+                .map(column -> cast(column, typed))
+                .collect(Collectors.joining(", "));
+        long promoted = jdbcTemplate.update("INSERT INTO " + targetTable + " (" + columnList + ") " +
+                "SELECT " + selectList + " FROM " + staging + " ORDER BY " + ROW_ID);
+        drop(sessionId);
+
+        log.info("Staging {} перенесён в {}: {} строк, некорректных {}, дубликатов {}",
+                staging, targetTable, promoted, invalid, duplicates);
+        return new PromotionResult(promoted, invalid, duplicates, errorSamples);
+    }
+
+    /**
+     * Удаляет staging-таблицу сессии
+     */
+    public void drop(Long sessionId) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + tableName(sessionId));
+    }
+
+    private void createIfAbsent(String staging, String targetTable, List<String> columns) {
+        if (exists(staging)) {
+            return;
+        }
+
+        Set<String> textColumns = new LinkedHashSet<>(getVarcharColumns(targetTable).keySet());
+        getTypedColumns(targetTable).keySet().stream()
+                .filter(columns::contains)
+                .forEach(textColumns::add);
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE " + staging + " (LIKE " + targetTable + " INCLUDING DEFAULTS)");
+        jdbcTemplate.execute("ALTER TABLE " + staging + " DROP COLUMN IF EXISTS id, ADD COLUMN " + ROW_ID + " BIGSERIAL"
+                + textColumns.stream()
+                .map(column -> ", ALTER COLUMN " + column + " TYPE text")
+                .collect(Collectors.joining()));
+        log.debug("Создана staging-таблица {} для {}", staging, targetTable);
+    }
+
+    /**
+     * Удаляет строки со значениями длиннее колонок целевой таблицы одним проходом
+     */
+    private long removeOverlongValues(String staging, String targetTable, List<ErrorSample> errorSamples) {
+        Map<String, Integer> limits = getVarcharColumns(targetTable);
+        Map<String, String> conditions = new LinkedHashMap<>();
+        Map<String, String> messages = new LinkedHashMap<>();
+        limits.forEach((column, limit) -> {
+            conditions.put(column, "length(" + column + ") > " + limit);
+            messages.put(column, "Значение длиннее допустимого (макс. " + limit + ")");
+        });
+        return removeInvalidRows(staging, conditions, messages, errorSamples);
+    }
+
+    /**
+     * Удаляет строки со значениями, которые не приводятся к типу колонки целевой таблицы, одним проходом
+     */
+    private long removeUncastableValues(String staging, Map<String, String> typed, List<ErrorSample> errorSamples) {
+        if (typed.isEmpty()) {
+            return 0;
+        }
+
+        boolean exact = serverVersion() >= PG_INPUT_IS_VALID_VERSION;
+        Map<String, String> conditions = new LinkedHashMap<>();
+        Map<String, String> messages = new LinkedHashMap<>();
+        typed.forEach((column, type) -> {
+            conditions.put(column, "(" + column + " IS NOT NULL AND "
+                    + (exact ? "NOT pg_input_is_valid(" + column + ", '" + type + "')"
+                             : column + " !~ '" + format(type) + "'") + ")");
+            messages.put(column, "Значение не приводится к типу колонки (" + type + ")");
+        });
+        return removeInvalidRows(staging, conditions, messages, errorSamples);
+    }
+
+    /**
+     * Удаляет строки, в которых хотя бы одна колонка нарушает своё условие, одним DELETE.
+     * Удалённые строки остаются в БД: в JVM возвращаются только первые ERROR_SAMPLE_LIMIT
+     * значений каждой колонки, остальные нарушения считаются count(*) и дают одну сводную запись
+     *
+     * @param conditions колонка -> условие нарушения
+     * @param messages   колонка -> сообщение об ошибке
+     * @return количество удалённых строк
+     */
+    private long removeInvalidRows(String staging, Map<String, String> conditions, Map<String, String> messages,
+                                   List<ErrorSample> errorSamples) {
+        if (conditions.isEmpty()) {
+            return 0;
+        }
+
+        List<String> columns = new ArrayList<>(conditions.keySet());
+        StringBuilder sql = new StringBuilder("WITH removed AS (DELETE FROM " + staging + " WHERE "
+                + String.join(" OR ", conditions.values()) + " RETURNING *) "
+                + "SELECT -1 AS col, NULL::text AS value, count(*) AS total FROM removed");
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            String condition = conditions.get(column);
+            sql.append(" UNION ALL SELECT ").append(i).append(", NULL, count(*) FROM removed WHERE ")
+                    .append(condition)
+                    .append(" UNION ALL (SELECT ").append(i).append(", ").append(column).append("::text, NULL")
+                    .append(" FROM removed WHERE ").append(condition)
+                    .append(" ORDER BY ").append(ROW_ID).append(" LIMIT ").append(ERROR_SAMPLE_LIMIT).append(")");
+        }
+
+        long[] removed = new long[1];
+        long[] violations = new long[columns.size()];
+        List<List<String>> values = new ArrayList<>();
+        columns.forEach(column -> values.add(new ArrayList<>()));
+        jdbcTemplate.query(sql.toString(), rs -> {
+            int column = rs.getInt("col");
+            if (rs.getObject("total") == null) {
+                values.get(column).add(rs.getString("value"));
+            } else if (column < 0) {
+                removed[0] = rs.getLong("total");
+            } else {
+                violations[column] = rs.getLong("total");
+            }
+        });
+
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            String message = messages.get(column);
+            values.get(i).forEach(value -> errorSamples.add(new ErrorSample(column, value, message)));
+            long rest = violations[i] - values.get(i).size();
+            if (rest > 0) {
+                errorSamples.add(new ErrorSample(column, null,
+                        String.format("%s — ещё %d строк не сохранены подробно", message, rest)));
+            }
+        }
+        return removed[0];
+    }
+
+    /**
+     * Удаляет повторы внутри файла (остаётся первая строка) и строки, уже существующие в целевой таблице.
+     * Текстовые значения типизированных колонок сравниваются после приведения: 1.0 и 1 — один ключ
+     */
+    private long removeDuplicates(String staging, String targetTable, List<String> uniqueColumns,
+                                  Map<String, String> typed) {
+        String partition = uniqueColumns.stream()
+                .map(column -> cast(column, typed))
+                .collect(Collectors.joining(", "));
+        int inFile = jdbcTemplate.update("DELETE FROM " + staging + " WHERE " + ROW_ID + " IN (" +
+                "SELECT " + ROW_ID + " FROM (SELECT " + ROW_ID + ", row_number() OVER (PARTITION BY " + partition +
+                " ORDER BY " + ROW_ID + ") AS rn FROM " + staging + ") d WHERE d.rn > 1)");
+
+        String match = uniqueColumns.stream()
+                .map(column -> cast("s." + column, typed.get(column)) + " = t." + column)
+                .collect(Collectors.joining(" AND "));
+        int existing = jdbcTemplate.update("DELETE FROM " + staging + " s USING " + targetTable + " t WHERE " + match);
+
+        return inFile + existing;
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private static String cast(String column, Map<String, String> typed) {
+        return cast(column, typed.get(column));
+    }
+
+    private static String cast(String column, String type) {
+        return type != null ? column + "::" + type : column;
+    }
+
+    private static String format(String type) {
+        if (INTEGER_TYPES.contains(type)) {
+            return INTEGER_FORMAT;
+        }
+        return DECIMAL_TYPES.contains(type) ? DECIMAL_FORMAT : DATE_FORMAT;
+    }
+
+    private int serverVersion() {
+        Integer version = jdbcTemplate.queryForObject("SELECT current_setting('server_version_num')::int",
+                Integer.class);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Числовые колонки и колонки дат таблицы: имя колонки -> data_type
+     */
+    private Map<String, String> getTypedColumns(String table) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT column_name, data_type FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? ORDER BY ordinal_position",
+                rs -> {
+                    String type = rs.getString(2);
+                    if (INTEGER_TYPES.contains(type) || DECIMAL_TYPES.contains(type) || DATE_TYPES.contains(type)) {
+                        columns.put(rs.getString(1), type);
+                    }
+                }, table);
+        return columns;
+    }
+
+    private Set<String> getTextColumns(String table) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? AND data_type = 'text'",
+                String.class, table));
+    }
+
+    private Map<String, Integer> getVarcharColumns(String table) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT column_name, character_maximum_length FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? " +
+                        "AND data_type = 'character varying' AND character_maximum_length IS NOT NULL " +
+                        "ORDER BY ordinal_position",
+                rs -> {
+                    columns.put(rs.getString(1), rs.getInt(2));
+                }, table);
+        return columns;
+    }
+
+    /**
+     * Итог переноса staging-таблицы
+     *
+     * @param promoted     перенесено строк
+     * @param invalid      удалено строк с некорректными значениями
+     * @param duplicates   удалено дубликатов
+     * @param errorSamples первые некорректные значения каждой колонки и сводки по остальным
+     */
+    public record PromotionResult(long promoted, long invalid, long duplicates, List<ErrorSample> errorSamples) {}
+
+    /**
+     * Некорректное значение колонки; без значения — сводка по строкам сверх ERROR_SAMPLE_LIMIT
+     */
+    public record ErrorSample(String columnName, String value, String message) {}
+}
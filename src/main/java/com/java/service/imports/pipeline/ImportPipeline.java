@@ -0,0 +1,278 @@
+package com.java.service.imports.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конвейер импорта: чтение → трансформация (N потоков) → запись.
+ * <p>
+ * Чтение выполняется в отдельном потоке и кладёт батчи в ограниченную очередь,
+ * трансформеры обрабатывают их параллельно, запись идёт в вызывающем потоке
+ * строго в порядке чтения — номера строк и порядок проверки дубликатов
+ * совпадают с последовательным режимом.
+ * <p>
+ * Батчей между чтением и записью не больше queueCapacity + workerCount: очередь
+ * трансформации, результаты в очереди записи и в буфере упорядочивания вместе.
+ * Когда запись отстаёт или один батч трансформируется долго, чтение ждёт.
+ * Общее состояние импорта меняет только стадия записи: изменения из других стадий
+ * передаются через {@link #update} и выполняются между батчами.
+ *
+ * @param <T> батч на входе трансформации
+ * @param <R> результат трансформации
+ */
+@Slf4j
+public class ImportPipeline<T, R> implements AutoCloseable {
+
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    private final String name;
+    private final int workerCount;
+    private final Transformer<T, R> transformer;
+    private final AtomicBoolean cancelled;
+
+    private final BlockingQueue<Task<T>> transformQueue;
+    private final BlockingQueue<Task<R>> persistQueue;
+    private final AtomicInteger reorderBufferSize = new AtomicInteger();
+    private final Semaphore inFlight;
+    private final Queue<Runnable> updates = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final ExecutorService executor;
+
+    private final long startedAtNanos = System.nanoTime();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsTransformed = new LongAdder();
+    private final LongAdder rowsPersisted = new LongAdder();
+
+    private long submittedBatches; // только поток чтения
+    private volatile long totalBatches = -1;
+
+    public ImportPipeline(String name, int workerCount, int queueCapacity,
+                          AtomicBoolean cancelled, Transformer<T, R> transformer) {
+        this.name = name;
+        this.workerCount = Math.max(1, workerCount);
+        this.transformer = transformer;
+        this.cancelled = cancelled;
+        this.transformQueue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        int maxInFlight = Math.max(1, queueCapacity) + this.workerCount;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.persistQueue = new LinkedBlockingQueue<>(maxInFlight);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workerCount + 1, r -> {
+            Thread t = new Thread(r, name + "-" + threadCounter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < this.workerCount; i++) {
+            executor.execute(this::transformLoop);
+        }
+    }
+
+    /**
+     * Запускает стадию чтения в отдельном потоке. По завершении (или ошибке) вход закрывается.
+     */
+    public void startReader(Reader reader) {
+        executor.execute(() -> {
+            try {
+                reader.read();
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                closeInput();
+            }
+        });
+    }
+
+    /**
+     * Передаёт батч на трансформацию; блокируется, пока в конвейере максимум батчей
+     */
+    public void submit(T batch, int rows) throws InterruptedException {
+        while (!inFlight.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+            if (cancelled.get()) return;
+        }
+        Task<T> task = new Task<>(submittedBatches, rows, batch);
+        while (!transformQueue.offer(task, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+            if (cancelled.get()) {
+                inFlight.release();
+                return;
+            }
+        }
+        checkFailure();
+        submittedBatches++;
+        rowsRead.add(rows);
+    }
+
+    /**
+     * Передаёт изменение общего состояния стадии записи: оно выполняется в её потоке
+     * перед следующим батчем, изменения — в порядке передачи
+     */
+    public void update(Runnable action) {
+        updates.add(action);
+    }
+
+    /**
+     * Выполняет стадию записи в текущем потоке, пока не будут записаны все прочитанные батчи,
+     * импорт не будет отменён или одна из стадий не упадёт
+     */
+    public void drain(Persister<R> persister) throws Exception {
+        TreeMap<Long, Task<R>> reorderBuffer = new TreeMap<>();
+        long nextSeq = 0;
+
+        while (!cancelled.get()) {
+            rethrowFailure();
+            // totalBatches выставляется после последнего изменения из потока чтения
+            long total = totalBatches;
+            applyUpdates();
+            if (total >= 0 && nextSeq >= total) {
+                return;
+            }
+
+            Task<R> task = persistQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (task == null) continue;
+            reorderBuffer.put(task.seq(), task);
+
+            Task<R> next;
+            while (!cancelled.get() && (next = reorderBuffer.remove(nextSeq)) != null) {
+                applyUpdates();
+                try {
+                    persister.persist(next.payload());
+                } catch (Exception e) {
+                    fail(e);
+                    throw e;
+                }
+                inFlight.release();
+                rowsPersisted.add(next.rows());
+                nextSeq++;
+            }
+            reorderBufferSize.set(reorderBuffer.size());
+        }
+    }
+
+    /**
+     * Останавливает конвейер с ошибкой: чтение и трансформация прекращаются
+     */
+    public void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            log.debug("Конвейер {} остановлен: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Метрики стадий
+
+    public double getReadRowsPerSecond() {
+        return perSecond(rowsRead.sum());
+    }
+
+    public double getTransformRowsPerSecond() {
+        return perSecond(rowsTransformed.sum());
+    }
+
+    public double getPersistRowsPerSecond() {
+        return perSecond(rowsPersisted.sum());
+    }
+
+    public int getTransformQueueDepth() {
+        return transformQueue.size();
+    }
+
+    public int getPersistQueueDepth() {
+        return persistQueue.size() + reorderBufferSize.get();
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    private void transformLoop() {
+        try {
+            while (true) {
+                Task<T> task = transformQueue.take();
+                if (task.payload() == null) {
+                    return; // сигнал конца входа
+                }
+                R result = transformer.transform(task.payload());
+                persistQueue.put(new Task<>(task.seq(), task.rows(), result));
+                rowsTransformed.add(task.rows());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void applyUpdates() {
+        Runnable update;
+        while ((update = updates.poll()) != null) {
+            update.run();
+        }
+    }
+
+    private void closeInput() {
+        totalBatches = submittedBatches;
+        for (int i = 0; i < workerCount; i++) {
+            try {
+                while (!transformQueue.offer(new Task<>(-1, 0, null), POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null || cancelled.get()) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure.get() != null) {
+            throw new IllegalStateException("Конвейер импорта остановлен", failure.get());
+        }
+    }
+
+    private void rethrowFailure() throws Exception {
+        Throwable e = failure.get();
+        if (e instanceof Exception ex) throw ex;
+        if (e instanceof Error err) throw err;
+    }
+
+    private double perSecond(long rows) {
+        double seconds = (System.nanoTime() - startedAtNanos) / 1_000_000_000.0;
+        return seconds > 0 ? rows / seconds : 0;
+    }
+
+    private record Task<V>(long seq, int rows, V payload) {}
+
+    @FunctionalInterface
+    public interface Reader {
+        void read() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Transformer<T, R> {
+        R transform(T batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Persister<R> {
+        void persist(R result) throws Exception;
+    }
+}
@@ -0,0 +1,28 @@
+package com.java.service.imports.pipeline;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр активных конвейеров импорта — источник метрик стадий для прогресса
+ */
+@Component
+public class ImportPipelineMonitor {
+
+    private final Map<Long, ImportPipeline<?, ?>> activePipelines = new ConcurrentHashMap<>();
+
+    public void register(Long sessionId, ImportPipeline<?, ?> pipeline) {
+        activePipelines.put(sessionId, pipeline);
+    }
+
+    public void unregister(Long sessionId) {
+        activePipelines.remove(sessionId);
+    }
+
+    public Optional<ImportPipeline<?, ?>> find(Long sessionId) {
+        return Optional.ofNullable(activePipelines.get(sessionId));
+    }
+}
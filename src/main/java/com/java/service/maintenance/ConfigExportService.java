@@ -145,6 +145,7 @@ public class ConfigExportService {
                 .dataSourceType(t.getDataSourceType() != null ? t.getDataSourceType().name() : null)
                 .duplicateStrategy(t.getDuplicateStrategy() != null ? t.getDuplicateStrategy().name() : null)
                 .errorStrategy(t.getErrorStrategy() != null ? t.getErrorStrategy().name() : null)
+                .persistenceEngine(t.getPersistenceEngine() != null ? t.getPersistenceEngine().name() : null)
                 .fileType(t.getFileType())
                 .delimiter(t.getDelimiter())
                 .encoding(t.getEncoding())
@@ -281,6 +281,7 @@ public class ConfigImportService {
             template.setDataSourceType(parseEnum(DataSourceType.class, dto.getDataSourceType()));
             template.setDuplicateStrategy(parseEnum(DuplicateStrategy.class, dto.getDuplicateStrategy()));
             template.setErrorStrategy(parseEnum(ErrorStrategy.class, dto.getErrorStrategy()));
+            template.setPersistenceEngine(parseEnum(PersistenceEngine.class, dto.getPersistenceEngine()));
             template.setFileType(dto.getFileType());
             template.setDelimiter(dto.getDelimiter());
             template.setEncoding(dto.getEncoding());
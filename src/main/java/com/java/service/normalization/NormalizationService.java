@@ -2,6 +2,8 @@ package com.java.service.normalization;
 
 import com.java.model.enums.NormalizationType;
 
+import java.util.function.UnaryOperator;
+
 /**
  * Интерфейс сервиса нормализации данных
  */
@@ -15,6 +17,14 @@ public interface NormalizationService {
      * @return нормализованное значение
      */
     Object normalize(Object value, NormalizationType normalizationType, String normalizationRule);
+
+    /**
+     * Нормализация для одного типа и правила, подготовленная заранее: для поля,
+     * которое нормализуется в каждой строке выгрузки
+     */
+    default UnaryOperator<Object> compile(NormalizationType normalizationType, String normalizationRule) {
+        return value -> normalize(value, normalizationType, normalizationRule);
+    }
     
     /**
      * Проверяет, поддерживается ли тип нормализации
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Основной сервис нормализации
@@ -31,6 +32,27 @@ public class NormalizationServiceImpl implements NormalizationService {
             return value;
         }
         
+        return normalizeWith(normalizer, value, normalizationType, normalizationRule);
+    }
+
+    /**
+     * Нормализатор подбирается один раз, а не для каждого значения
+     */
+    @Override
+    public UnaryOperator<Object> compile(NormalizationType normalizationType, String normalizationRule) {
+        NormalizationService normalizer = normalizationType != null ? findNormalizer(normalizationType) : null;
+        if (normalizer == null) {
+            if (normalizationType != null) {
+                log.warn("Нормализатор для типа {} не найден", normalizationType);
+            }
+            return UnaryOperator.identity();
+        }
+        return value -> value == null ? null
+                : normalizeWith(normalizer, value, normalizationType, normalizationRule);
+    }
+
+    private Object normalizeWith(NormalizationService normalizer, Object value,
+                                 NormalizationType normalizationType, String normalizationRule) {
         try {
             Object result = normalizer.normalize(value, normalizationType, normalizationRule);
             log.debug("Нормализация {} '{}' → '{}'", normalizationType, value, result);
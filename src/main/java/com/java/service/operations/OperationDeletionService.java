@@ -1,6 +1,7 @@
 package com.java.service.operations;
 
 import com.java.repository.*;
+import com.java.service.exports.ExportResultCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -25,6 +26,7 @@ public class OperationDeletionService {
     private final FileMetadataRepository fileMetadataRepository;
     private final ExportStatisticsRepository exportStatisticsRepository;
     private final JdbcTemplate jdbcTemplate;
+    private final ExportResultCache exportResultCache;
 
     /**
      * Удаляет операцию со всеми связанными данными
@@ -52,6 +54,7 @@ public class OperationDeletionService {
                     operationId
                 );
                 log.debug("Удалено записей из av_data: {}", deletedAvData);
+                exportResultCache.invalidateOperation(operationId);
 
                 // 1.2. Удаляем данные из av_handbook (по import_session_id)
                 int deletedAvHandbook = jdbcTemplate.update(
@@ -12,7 +12,6 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -62,8 +61,7 @@ public class StatsProcessorService {
             String fmt = metadata.getFileFormat().toLowerCase();
             if ("xlsx".equals(fmt)) {
                 // SAX: читаем только нужные колонки, без загрузки всего workbook в память
-                Path filePath = Paths.get(metadata.getTempFilePath());
-                data = fileReaderUtils.readExcelColumnar(filePath, columnsToExport);
+                data = fileReaderUtils.readExcelColumnar(metadata, columnsToExport);
                 if (dto.isSourceReplace()) {
                     int srcPos = columnsToExport.indexOf(SOURCE_COLUMN_INDEX);
                     if (srcPos >= 0) {
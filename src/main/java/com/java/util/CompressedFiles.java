@@ -0,0 +1,286 @@
+package com.java.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Потоковое чтение сжатых загрузок (.gz и .zip) без распаковки во временную директорию.
+ * <p>
+ * Файл рассматривается как последовательность частей: обычный файл и .gz — одна часть,
+ * .zip — все файлы архива в порядке записи (каталоги, служебные __MACOSX и скрытые файлы
+ * пропускаются). Части распаковываются на лету при чтении.
+ */
+public final class CompressedFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Compression {
+        NONE, GZIP, ZIP
+    }
+
+    /**
+     * Обработчик части файла
+     */
+    @FunctionalInterface
+    public interface PartHandler {
+        /**
+         * @param index   номер части, с 0
+         * @param name    имя части (для .zip — имя файла в архиве)
+         * @param content распакованное содержимое; закрывается после возврата
+         * @return false — не читать следующие части
+         */
+        boolean handle(int index, String name, InputStream content) throws Exception;
+    }
+
+    private CompressedFiles() {
+    }
+
+    /**
+     * Определяет сжатие по имени загруженного файла
+     */
+    public static Compression detect(String filename) {
+        if (filename == null) {
+            return Compression.NONE;
+        }
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+            return Compression.GZIP;
+        }
+        if (lower.endsWith(".zip")) {
+            return Compression.ZIP;
+        }
+        return Compression.NONE;
+    }
+
+    public static boolean isCompressed(String filename) {
+        return detect(filename) != Compression.NONE;
+    }
+
+    /**
+     * Имя файла, по которому определяется формат содержимого: для .gz — без расширения .gz,
+     * для .zip — имя первого файла архива
+     */
+    public static String contentFilename(Path file, String filename) throws IOException {
+        return switch (detect(filename)) {
+            case NONE -> filename;
+            case GZIP -> filename.substring(0, filename.lastIndexOf('.'));
+            case ZIP -> {
+                List<String> entries = entryNames(file);
+                if (entries.isEmpty()) {
+                    throw new IOException("Архив не содержит файлов: " + filename);
+                }
+                yield entries.get(0);
+            }
+        };
+    }
+
+    /**
+     * Имена файлов архива, которые будут прочитаны
+     */
+    public static List<String> entryNames(Path zip) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : dataEntries(zipFile)) {
+                names.add(entry.getName());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Открывает распакованное содержимое первой части
+     */
+    public static InputStream openFirst(Path file, String filename) throws IOException {
+        Compression compression = detect(filename);
+        if (compression == Compression.NONE) {
+            return new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        }
+        if (compression == Compression.GZIP) {
+            return new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        }
+
+        ZipFile zipFile = new ZipFile(file.toFile());
+        try {
+            List<ZipEntry> entries = dataEntries(zipFile);
+            if (entries.isEmpty()) {
+                throw new IOException("Архив не содержит файлов: " + filename);
+            }
+            // Архив закрывается вместе с потоком записи
+            return new FilterInputStream(new BufferedInputStream(zipFile.getInputStream(entries.get(0)), BUFFER_SIZE)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Передаёт обработчику части файла по очереди
+     */
+    public static void forEachPart(Path file, String filename, PartHandler handler) throws Exception {
+        try (Parts parts = openParts(file, filename)) {
+            InputStream content;
+            while ((content = parts.next()) != null) {
+                if (!handler.handle(parts.index(), parts.name(), content)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Открывает части файла для последовательного чтения
+     */
+    public static Parts openParts(Path file, String filename) throws IOException {
+        if (detect(filename) != Compression.ZIP) {
+            return new Parts(null, List.of(), openFirst(file, filename), contentFilename(file, filename));
+        }
+        ZipFile zipFile = new ZipFile(file.toFile());
+        return new Parts(zipFile, dataEntries(zipFile), null, null);
+    }
+
+    /**
+     * Оценка размера распакованного содержимого для прогресса. Для .gz берётся размер
+     * из трейлера (по модулю 4 ГБ), поэтому результат не меньше размера сжатого файла
+     */
+    public static long estimateContentSize(Path file, String filename) throws IOException {
+        long size = Files.size(file);
+        switch (detect(filename)) {
+            case GZIP -> {
+                if (size < 4) return size;
+                try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+                    raf.seek(size - 4);
+                    long isize = Integer.toUnsignedLong(Integer.reverseBytes(raf.readInt()));
+                    return Math.max(isize, size);
+                }
+            }
+            case ZIP -> {
+                try (ZipFile zipFile = new ZipFile(file.toFile())) {
+                    long total = 0;
+                    for (ZipEntry entry : dataEntries(zipFile)) {
+                        total += entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+                    }
+                    return Math.max(total, size);
+                }
+            }
+            default -> {
+                return size;
+            }
+        }
+    }
+
+    private static List<ZipEntry> dataEntries(ZipFile zipFile) {
+        List<ZipEntry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> all = zipFile.entries();
+        for (ZipEntry entry : Collections.list(all)) {
+            String name = entry.getName();
+            String baseName = name.substring(name.lastIndexOf('/') + 1);
+            if (entry.isDirectory() || name.startsWith("__MACOSX/") || baseName.startsWith(".")) {
+                continue;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Последовательное чтение частей файла. Поток предыдущей части закрывается
+     * при переходе к следующей
+     */
+    public static final class Parts implements Closeable {
+
+        private final ZipFile zipFile;
+        private final Iterator<ZipEntry> entries;
+        private InputStream single;
+        private final String singleName;
+        private InputStream current;
+        private String currentName;
+        private int index = -1;
+
+        private Parts(ZipFile zipFile, List<ZipEntry> entries, InputStream single, String singleName) {
+            this.zipFile = zipFile;
+            this.entries = entries.iterator();
+            this.single = single;
+            this.singleName = singleName;
+        }
+
+        /**
+         * Содержимое следующей части или null, если части закончились
+         */
+        public InputStream next() throws IOException {
+            closeCurrent();
+            if (single != null) {
+                current = single;
+                currentName = singleName;
+                single = null;
+            } else if (zipFile != null && entries.hasNext()) {
+                ZipEntry entry = entries.next();
+                current = new BufferedInputStream(zipFile.getInputStream(entry), BUFFER_SIZE);
+                currentName = entry.getName();
+            } else {
+                return null;
+            }
+            index++;
+            return current;
+        }
+
+        /**
+         * Номер текущей части, с 0
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Имя текущей части
+         */
+        public String name() {
+            return currentName;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                closeCurrent();
+                if (single != null) {
+                    single.close();
+                }
+            } finally {
+                if (zipFile != null) {
+                    zipFile.close();
+                }
+            }
+        }
+
+        private void closeCurrent() throws IOException {
+            if (current != null) {
+                InputStream stream = current;
+                current = null;
+                stream.close();
+            }
+        }
+    }
+}
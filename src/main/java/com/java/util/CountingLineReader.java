@@ -0,0 +1,188 @@
+package com.java.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * BufferedReader, который считает байтовую позицию в исходном файле по прочитанным строкам.
+ * <p>
+ * CSVReader читает файл через {@link #readLine()}, поэтому после каждой записи
+ * {@link #getBytePosition()} указывает на начало следующей записи — по этой позиции
+ * импорт можно продолжить через seek. Поддерживаются UTF-8 и однобайтовые кодировки;
+ * для остальных позиция не определена ({@link #isPositionSupported()} = false).
+ * mark/reset поддерживаются: CSVReader заглядывает вперёд, чтобы проверить конец файла.
+ */
+public class CountingLineReader extends BufferedReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final boolean utf8;
+    private final boolean positionSupported;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bytePosition;
+    private int markPosition = -1;
+    private int markLimit;
+    private long markBytePosition;
+
+    /**
+     * @param reader        декодированный поток файла
+     * @param charset       кодировка файла
+     * @param startPosition байтовая позиция, с которой открыт поток
+     */
+    public CountingLineReader(Reader reader, Charset charset, long startPosition) {
+        super(reader, 1);
+        this.in = reader;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.positionSupported = utf8 || charset.newEncoder().maxBytesPerChar() == 1.0f;
+        this.bytePosition = startPosition;
+    }
+
+    public boolean isPositionSupported() {
+        return positionSupported;
+    }
+
+    /**
+     * Байтовая позиция начала следующей непрочитанной строки
+     */
+    public long getBytePosition() {
+        return bytePosition;
+    }
+
+    /**
+     * Читает строку до \n, \r или \r\n; разделитель учитывается в позиции, но не возвращается
+     */
+    @Override
+    public String readLine() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+
+        StringBuilder line = null;
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '\n' || c == '\r') {
+                    String result = append(line, start, position);
+                    position++;
+                    bytePosition++;
+                    if (c == '\r' && fill() && buffer[position] == '\n') {
+                        position++;
+                        bytePosition++;
+                    }
+                    return result;
+                }
+                bytePosition += encodedLength(c);
+                position++;
+            }
+
+            if (line == null) {
+                line = new StringBuilder(Math.max(128, position - start));
+            }
+            line.append(buffer, start, position - start);
+            if (!fill()) {
+                return line.toString();
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        char c = buffer[position++];
+        bytePosition += encodedLength(c);
+        return c;
+    }
+
+    @Override
+    public int read(char[] target, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int count = Math.min(len, limit - position);
+        for (int i = 0; i < count; i++) {
+            char c = buffer[position + i];
+            target[off + i] = c;
+            bytePosition += encodedLength(c);
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return position < limit || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) {
+        markPosition = position;
+        markLimit = readAheadLimit;
+        markBytePosition = bytePosition;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (markPosition < 0) {
+            throw new IOException("Stream not marked");
+        }
+        position = markPosition;
+        bytePosition = markBytePosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (position >= limit) {
+            int kept = 0;
+            if (markPosition >= 0 && position - markPosition >= markLimit) {
+                markPosition = -1;
+            }
+            if (markPosition >= 0) {
+                // Сохраняем данные после метки, чтобы reset() мог к ним вернуться
+                kept = limit - markPosition;
+                if (kept >= buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                System.arraycopy(buffer, markPosition, buffer, 0, kept);
+                markPosition = 0;
+            }
+            int read = in.read(buffer, kept, buffer.length - kept);
+            if (read < 0) {
+                return false;
+            }
+            position = kept;
+            limit = kept + read;
+        }
+        return true;
+    }
+
+    private String append(StringBuilder line, int start, int end) {
+        if (line == null) {
+            return new String(buffer, start, end - start);
+        }
+        return line.append(buffer, start, end - start).toString();
+    }
+
+    private int encodedLength(char c) {
+        if (!utf8 || c < 0x80) return 1;
+        if (c < 0x800) return 2;
+        // Суррогатная пара кодируется 4 байтами — по 2 на каждую половину
+        if (Character.isSurrogate(c)) return 2;
+        return 3;
+    }
+}
@@ -0,0 +1,163 @@
+package com.java.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Точный подсчёт записей CSV по файлу, отображённому в память.
+ * <p>
+ * Файл делится на куски, которые сканируются параллельно. Кусок не знает, начинается ли он
+ * внутри кавычек, поэтому при сканировании считаются переводы строк для обоих случаев
+ * (по чётности встреченных кавычек). Затем куски объединяются по порядку: состояние на конце
+ * предыдущего куска выбирает нужный счётчик следующего. Переводы строк внутри кавычек
+ * не считаются — так же, как их склеивает CSVReader.
+ * <p>
+ * Поддерживаются UTF-8 и однобайтовые кодировки: в них байты кавычки и перевода строки
+ * не встречаются внутри многобайтовых символов.
+ */
+public final class CsvRecordCounter {
+
+    public static final char NO_ESCAPE = '\0';
+
+    private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+
+    private CsvRecordCounter() {
+    }
+
+    /**
+     * Можно ли считать записи побайтово в этой кодировке
+     */
+    public static boolean isSupported(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || charset.newEncoder().maxBytesPerChar() == 1.0f;
+    }
+
+    /**
+     * Считает записи CSV (включая заголовок)
+     *
+     * @param quote     символ кавычки
+     * @param escape    escape-символ или {@link #NO_ESCAPE}
+     * @param cancelled прерывает подсчёт между кусками
+     * @return количество записей или -1, если подсчёт прерван
+     */
+    public static long countRecords(Path file, char quote, char escape, BooleanSupplier cancelled) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, (size + parallelism - 1) / parallelism));
+            return countRecords(channel, size, chunkSize, (byte) quote, (byte) escape, cancelled);
+        }
+    }
+
+    static long countRecords(FileChannel channel, long size, long chunkSize, byte quote, byte escape,
+                             BooleanSupplier cancelled) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+
+        long[] starts = chunkStarts(channel, size, chunkSize, escape);
+        List<ChunkCount> chunks;
+        try {
+            chunks = IntStream.range(0, starts.length).parallel()
+                    .mapToObj(i -> cancelled.getAsBoolean() ? null : scan(channel, size, starts[i],
+                            i + 1 < starts.length ? starts[i + 1] : size, quote, escape))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (cancelled.getAsBoolean() || chunks.contains(null)) {
+            return -1;
+        }
+
+        long records = 0;
+        boolean inQuotes = false;
+        for (ChunkCount chunk : chunks) {
+            records += inQuotes ? chunk.newlinesIfQuoted() : chunk.newlinesIfUnquoted();
+            inQuotes ^= chunk.oddQuotes();
+        }
+
+        // Последняя запись без завершающего перевода строки
+        byte last = read(channel, size - 1);
+        if (last != '\n' && last != '\r') {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Начала кусков; граница не должна разделять escape-символ и экранируемый им символ.
+     * Escape-символы подряд экранируют друг друга парами, поэтому байт на границе экранирован,
+     * только если перед ним нечётное число escape-символов
+     */
+    private static long[] chunkStarts(FileChannel channel, long size, long chunkSize, byte escape) throws IOException {
+        int count = (int) ((size + chunkSize - 1) / chunkSize);
+        long[] starts = new long[count];
+        int actual = 0;
+        for (int i = 0; i < count; i++) {
+            long start = i * chunkSize;
+            if (escape != NO_ESCAPE && start > 0 && start < size) {
+                long run = 0;
+                while (start - run > 0 && read(channel, start - run - 1) == escape) {
+                    run++;
+                }
+                if (run % 2 == 1) {
+                    start++;
+                }
+            }
+            if (actual == 0 || start > starts[actual - 1] && start < size) {
+                starts[actual++] = start;
+            }
+        }
+        return Arrays.copyOf(starts, actual);
+    }
+
+    private static ChunkCount scan(FileChannel channel, long size, long start, long end,
+                                   byte quote, byte escape) {
+        try {
+            // Один лишний байт — чтобы распознать \r\n на границе куска
+            long mapped = Math.min(size, end + 1) - start;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+            int length = (int) (end - start);
+
+            long[] newlines = new long[2];
+            int parity = 0;
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == quote) {
+                    parity ^= 1;
+                } else if (b == escape && escape != NO_ESCAPE) {
+                    i++;
+                } else if (b == '\n') {
+                    newlines[parity]++;
+                } else if (b == '\r' && (i + 1 >= mapped || buffer.get(i + 1) != '\n')) {
+                    newlines[parity]++;
+                }
+            }
+            return new ChunkCount(newlines[0], newlines[1], parity == 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte read(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+        return buffer.get(0);
+    }
+
+    /**
+     * Переводы строк куска при чётном (вне кавычек) и нечётном числе кавычек перед ними
+     */
+    private record ChunkCount(long newlinesIfUnquoted, long newlinesIfQuoted, boolean oddQuotes) {
+    }
+}
@@ -16,7 +16,9 @@ import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandl
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -28,14 +30,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * Утилитарный класс для чтения файлов в различных форматах
- * Централизует логику чтения CSV и Excel файлов
+ * Централизует логику чтения CSV и Excel файлов.
+ * Файлы .gz и .zip читаются с распаковкой на лету ({@link CompressedFiles}); части
+ * многофайлового архива читаются подряд как один файл, заголовки частей после первой пропускаются.
  */
 @Component
 @Slf4j
@@ -67,7 +73,7 @@ public class FileReaderUtils {
         }
 
         String filename = metadata.getOriginalFilename() != null
-                ? metadata.getOriginalFilename().toLowerCase() : "";
+                ? CompressedFiles.contentFilename(filePath, metadata.getOriginalFilename()).toLowerCase() : "";
         String fileFormat = metadata.getFileFormat() != null
                 ? metadata.getFileFormat().toLowerCase() : "";
 
@@ -78,7 +84,7 @@ public class FileReaderUtils {
         if (isCsv) {
             return readCsvFile(filePath, metadata, skipHeader);
         } else if (isExcel) {
-            return readExcelFile(filePath, skipHeader);
+            return readExcelFile(filePath, metadata.getOriginalFilename(), skipHeader);
         } else {
             throw new IllegalArgumentException("Неподдерживаемый тип файла: " + metadata.getOriginalFilename());
         }
@@ -106,8 +112,19 @@ public class FileReaderUtils {
                 ? metadata.getDetectedQuoteChar().charAt(0) : '"';
 
         List<List<String>> data = new ArrayList<>();
+        Charset partCharset = charset;
 
-        try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(Files.newInputStream(filePath), charset))
+        forEachPart(filePath, metadata.getOriginalFilename(), (index, name, content) -> {
+            readCsvPart(content, partCharset, delimiter, quoteChar, skipHeader || index > 0, data);
+            return true;
+        });
+
+        return data;
+    }
+
+    private void readCsvPart(InputStream content, Charset charset, char delimiter, char quoteChar,
+                             boolean skipHeader, List<List<String>> data) throws IOException {
+        try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(content, charset))
                 .withCSVParser(new CSVParserBuilder()
                         .withSeparator(delimiter)
                         .withQuoteChar(quoteChar)
@@ -140,19 +157,27 @@ public class FileReaderUtils {
         } catch (CsvValidationException e) {
             throw new IOException("Ошибка чтения CSV файла: " + e.getMessage(), e);
         }
-
-        return data;
     }
 
     /**
      * Читает Excel файл, опционально пропуская строку заголовка.
      * Фильтрует полностью пустые строки.
      */
-    private List<List<String>> readExcelFile(Path filePath, boolean skipHeader) throws IOException {
+    private List<List<String>> readExcelFile(Path filePath, String originalFilename, boolean skipHeader)
+            throws IOException {
         List<List<String>> data = new ArrayList<>();
 
         IOUtils.setByteArrayMaxOverride(Integer.MAX_VALUE);
-        try (Workbook workbook = WorkbookFactory.create(Files.newInputStream(filePath))) {
+        forEachPart(filePath, originalFilename, (index, name, content) -> {
+            readExcelPart(content, skipHeader || index > 0, data);
+            return true;
+        });
+
+        return data;
+    }
+
+    private void readExcelPart(InputStream content, boolean skipHeader, List<List<String>> data) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(content)) {
             Sheet sheet = workbook.getSheetAt(0);
 
             boolean headerSkipped = false;
@@ -175,8 +200,39 @@ public class FileReaderUtils {
                 }
             }
         }
+    }
 
-        return data;
+    /**
+     * Читает части файла по очереди, исключения обработчика пробрасываются как IOException
+     */
+    private void forEachPart(Path filePath, String originalFilename, CompressedFiles.PartHandler handler)
+            throws IOException {
+        try {
+            CompressedFiles.forEachPart(filePath, originalFilename, handler);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * SAX streaming чтение XLSX — только нужные колонки, с распаковкой .gz/.zip на лету.
+     * Для многофайлового архива строки частей объединяются, заголовок каждой части пропускается
+     */
+    public List<List<String>> readExcelColumnar(FileMetadata metadata, List<Integer> columnIndices)
+            throws IOException {
+        Path filePath = Paths.get(metadata.getTempFilePath());
+        if (!CompressedFiles.isCompressed(metadata.getOriginalFilename())) {
+            return readExcelColumnar(filePath, columnIndices);
+        }
+
+        List<List<String>> result = new ArrayList<>();
+        forEachPart(filePath, metadata.getOriginalFilename(), (index, name, content) -> {
+            readSpilledPackage(filePath, content, pkg -> result.addAll(readExcelColumnar(pkg, columnIndices)));
+            return true;
+        });
+        return result;
     }
 
     /**
@@ -187,11 +243,22 @@ public class FileReaderUtils {
      */
     public List<List<String>> readExcelColumnar(Path filePath, List<Integer> columnIndices)
             throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(filePath.toFile(), PackageAccess.READ)) {
+            return readExcelColumnar(pkg, columnIndices);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Ошибка SAX-чтения XLSX: " + e.getMessage(), e);
+        }
+    }
+
+    private List<List<String>> readExcelColumnar(OPCPackage pkg, List<Integer> columnIndices)
+            throws IOException {
 
         int maxColIdx = columnIndices.stream().mapToInt(Integer::intValue).max().orElse(0);
         List<List<String>> result = new ArrayList<>();
 
-        try (OPCPackage pkg = OPCPackage.open(filePath.toFile(), PackageAccess.READ)) {
+        try {
             XSSFReader xssfReader = new XSSFReader(pkg);
             StylesTable styles = xssfReader.getStylesTable();
             org.apache.poi.xssf.model.SharedStringsTable sst =
@@ -254,6 +321,226 @@ public class FileReaderUtils {
         return result;
     }
 
+    /**
+     * Открывает пакет XLSX из части архива через временный файл рядом с архивом.
+     * OPCPackage.open(InputStream) распаковывает все части пакета в массивы байт
+     * в памяти (и отказывает на части больше 100 МБ), а пакет, открытый с диска,
+     * читает части из zip-файла по мере надобности — лист разбирается потоково
+     */
+    private static void readSpilledPackage(Path archive, InputStream content, PackageReader reader)
+            throws Exception {
+        Path spilled = Files.createTempFile(archive.toAbsolutePath().getParent(), "xlsx-part-", ".xlsx");
+        try {
+            Files.copy(content, spilled, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage pkg = OPCPackage.open(spilled.toFile(), PackageAccess.READ)) {
+                reader.read(pkg);
+            }
+        } finally {
+            Files.deleteIfExists(spilled);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PackageReader {
+        void read(OPCPackage pkg) throws Exception;
+    }
+
+    /**
+     * Обработчик строк для потокового чтения XLSX
+     */
+    @FunctionalInterface
+    public interface ExcelRowHandler {
+        /**
+         * @param rowIndex 0-based индекс строки на листе
+         * @param cells    значения ячеек; пропущенные ячейки заполнены пустой строкой
+         * @return false — прекратить чтение
+         */
+        boolean handle(int rowIndex, String[] cells) throws Exception;
+    }
+
+    /**
+     * SAX streaming чтение всех строк первого листа XLSX.
+     * Строки передаются в handler по мере разбора, в памяти держится только текущая строка.
+     * Числа и даты форматируются так же, как при DOM-чтении в импорте
+     * (целые без экспоненты, даты в dd.MM.yyyy[ HH:mm[:ss]]).
+     * Формулы возвращаются как закешированный результат.
+     */
+    public void streamExcelRows(Path filePath, ExcelRowHandler handler) throws IOException {
+        streamExcelRows(filePath, filePath.getFileName().toString(), handler);
+    }
+
+    /**
+     * SAX streaming чтение XLSX с распаковкой .gz/.zip на лету. Части многофайлового архива
+     * передаются в handler подряд, rowIndex в каждой части начинается с 0
+     *
+     * @param originalFilename имя загруженного файла — по нему определяется сжатие
+     */
+    public void streamExcelRows(Path filePath, String originalFilename, ExcelRowHandler handler) throws IOException {
+        streamExcelRows(filePath, originalFilename, lastRowIndex -> { }, handler);
+    }
+
+    /**
+     * SAX streaming чтение XLSX с размером листа: до первой строки в dimensionHandler передаётся
+     * 0-based индекс последней строки из &lt;dimension ref="A1:K100"/&gt;, если лист его указывает
+     * диапазоном. В архиве — для каждой книги отдельно
+     */
+    public void streamExcelRows(Path filePath, String originalFilename, IntConsumer dimensionHandler,
+                                ExcelRowHandler handler) throws IOException {
+        try {
+            if (!CompressedFiles.isCompressed(originalFilename)) {
+                try (OPCPackage pkg = OPCPackage.open(filePath.toFile(), PackageAccess.READ)) {
+                    streamExcelRows(pkg, dimensionHandler, handler);
+                }
+                return;
+            }
+            CompressedFiles.forEachPart(filePath, originalFilename, (index, name, content) -> {
+                readSpilledPackage(filePath, content, pkg -> streamExcelRows(pkg, dimensionHandler, handler));
+                return true;
+            });
+        } catch (StopReadingException e) {
+            log.debug("Потоковое чтение XLSX остановлено обработчиком: {}", filePath);
+        } catch (RowHandlerException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Ошибка обработки строки XLSX: " + cause.getMessage(), cause);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Ошибка SAX-чтения XLSX: " + e.getMessage(), e);
+        }
+    }
+
+    private void streamExcelRows(OPCPackage pkg, IntConsumer dimensionHandler, ExcelRowHandler handler)
+            throws Exception {
+        XSSFReader xssfReader = new XSSFReader(pkg);
+        StylesTable styles = xssfReader.getStylesTable();
+        org.apache.poi.xssf.model.SharedStringsTable sst =
+                (org.apache.poi.xssf.model.SharedStringsTable) xssfReader.getSharedStringsTable();
+
+        SheetContentsHandler contentsHandler = new SheetContentsHandler() {
+            final List<String> currentRow = new ArrayList<>();
+
+            @Override
+            public void startRow(int rowNum) {
+                currentRow.clear();
+            }
+
+            @Override
+            public void cell(String cellRef, String formattedValue, XSSFComment comment) {
+                int colIdx = cellRefToColIndex(cellRef);
+                while (currentRow.size() < colIdx) {
+                    currentRow.add("");
+                }
+                currentRow.add(formattedValue != null ? formattedValue : "");
+            }
+
+            @Override
+            public void endRow(int rowNum) {
+                boolean proceed;
+                try {
+                    proceed = handler.handle(rowNum, currentRow.toArray(new String[0]));
+                } catch (Exception e) {
+                    throw new RowHandlerException(e);
+                }
+                if (!proceed) {
+                    throw new StopReadingException();
+                }
+            }
+
+            @Override
+            public void headerFooter(String text, boolean isHeader, String tagName) {}
+        };
+
+        SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+        saxFactory.setNamespaceAware(true);
+        XMLReader xmlReader = saxFactory.newSAXParser().getXMLReader();
+        xmlReader.setContentHandler(new XSSFSheetXMLHandler(
+                styles, null, sst, contentsHandler, new ImportDataFormatter(), false) {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes)
+                    throws SAXException {
+                if ("dimension".equals(localName)) {
+                    int lastRowIndex = lastRowIndex(attributes.getValue("ref"));
+                    if (lastRowIndex >= 0) {
+                        dimensionHandler.accept(lastRowIndex);
+                    }
+                }
+                super.startElement(uri, localName, qName, attributes);
+            }
+        });
+        Iterator<InputStream> sheets = xssfReader.getSheetsData();
+        if (sheets.hasNext()) {
+            try (InputStream sheet = sheets.next()) {
+                xmlReader.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    /**
+     * Диапазон листа (A1:K100) → 0-based индекс последней строки; -1, если указана одна ячейка
+     * (так пишут часть генераторов вместо настоящего размера) или ссылка не разбирается
+     */
+    static int lastRowIndex(String ref) {
+        if (ref == null || ref.indexOf(':') < 0) {
+            return -1;
+        }
+        String lastCell = ref.substring(ref.indexOf(':') + 1);
+        int digits = 0;
+        while (digits < lastCell.length() && !Character.isDigit(lastCell.charAt(digits))) {
+            digits++;
+        }
+        try {
+            return Integer.parseInt(lastCell.substring(digits)) - 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Сигнал остановки SAX-разбора по запросу обработчика */
+    private static class StopReadingException extends RuntimeException {
+        StopReadingException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Обёртка исключения обработчика строки для проброса через SAX-парсер */
+    private static class RowHandlerException extends RuntimeException {
+        RowHandlerException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Форматтер значений для потокового импорта — совпадает с DOM-чтением в ImportProcessorService
+     */
+    private static class ImportDataFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                java.util.Date dateValue = DateUtil.getJavaDate(value);
+                java.util.Calendar cal = java.util.Calendar.getInstance();
+                cal.setTime(dateValue);
+                String pattern;
+                if (cal.get(java.util.Calendar.HOUR_OF_DAY) == 0 && cal.get(java.util.Calendar.MINUTE) == 0
+                        && cal.get(java.util.Calendar.SECOND) == 0) {
+                    pattern = "dd.MM.yyyy";
+                } else if (cal.get(java.util.Calendar.SECOND) == 0) {
+                    pattern = "dd.MM.yyyy HH:mm";
+                } else {
+                    pattern = "dd.MM.yyyy HH:mm:ss";
+                }
+                return new java.text.SimpleDateFormat(pattern).format(dateValue);
+            }
+            if (value == Math.floor(value) && !Double.isInfinite(value)) {
+                return new java.math.BigDecimal(value).toPlainString();
+            }
+            return String.valueOf(value);
+        }
+    }
+
     /** Ссылка на ячейку (A1, BC12) → 0-based индекс колонки */
     private static int cellRefToColIndex(String cellRef) {
         int col = 0;
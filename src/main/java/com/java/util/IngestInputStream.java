@@ -0,0 +1,161 @@
+package com.java.util;
+
+import org.mozilla.universalchardet.UniversalDetector;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Поток, который за одно чтение файла считает SHA-256, определяет кодировку
+ * (juniversalchardet) и сохраняет начало файла для анализа формата.
+ * <p>
+ * Используется при приёме загрузки: байты проходят через поток один раз по пути
+ * во временный файл, и повторно читать файл для хеша и определения кодировки не нужно.
+ */
+public class IngestInputStream extends FilterInputStream {
+
+    private final MessageDigest digest;
+    private final UniversalDetector detector = new UniversalDetector(null);
+    private final byte[] head;
+    private int headLength;
+    private long size;
+    private boolean finished;
+    private String hash;
+    private String detectedCharset;
+
+    /**
+     * @param in        исходный поток
+     * @param headBytes сколько байт начала файла сохранить
+     */
+    public IngestInputStream(InputStream in, int headBytes) {
+        super(in);
+        this.head = new byte[headBytes];
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            consume(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        int read = super.read(buffer, off, len);
+        if (read > 0) {
+            consume(buffer, off, read);
+        }
+        return read;
+    }
+
+    /**
+     * Пропуск через чтение: пропущенные байты тоже учитываются в хеше, размере и кодировке
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(buffer, 0, (int) Math.min(remaining, buffer.length));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Дочитывает поток до конца без сохранения данных
+     */
+    public void drain() throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        while (read(buffer, 0, buffer.length) >= 0) {
+            // Данные учитываются в consume
+        }
+    }
+
+    /**
+     * Завершает подсчёт; вызывать после чтения всего потока
+     */
+    public IngestInputStream finish() {
+        if (!finished) {
+            finished = true;
+            hash = HexFormat.of().formatHex(digest.digest());
+            detector.dataEnd();
+            detectedCharset = detector.getDetectedCharset();
+            detector.reset();
+        }
+        return this;
+    }
+
+    public String getHash() {
+        requireFinished();
+        return hash;
+    }
+
+    /**
+     * Кодировка по juniversalchardet или null, если не определена
+     */
+    public String getDetectedCharset() {
+        requireFinished();
+        return detectedCharset;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Начало файла (не больше headBytes байт)
+     */
+    public byte[] getHead() {
+        return Arrays.copyOf(head, headLength);
+    }
+
+    /**
+     * Файл целиком поместился в сохранённое начало
+     */
+    public boolean isHeadComplete() {
+        return size <= headLength;
+    }
+
+    private void consume(byte[] buffer, int off, int len) {
+        digest.update(buffer, off, len);
+        if (!detector.isDone()) {
+            detector.handleData(buffer, off, len);
+        }
+        if (headLength < head.length) {
+            int copy = Math.min(len, head.length - headLength);
+            System.arraycopy(buffer, off, head, headLength, copy);
+            headLength += copy;
+        }
+        size += len;
+    }
+
+    private void requireFinished() {
+        if (!finished) {
+            throw new IllegalStateException("Поток не завершён");
+        }
+    }
+}
@@ -63,21 +63,26 @@ public class PathResolver {
      * Сохраняет загруженный файл во временную директорию
      */
     public Path saveToTempFile(MultipartFile file, String prefix) throws IOException {
+        Path tempFile = newTempFilePath(prefix, file.getOriginalFilename());
+
+        // Сохраняем файл
+        Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Сохранен временный файл: {}", tempFile.toAbsolutePath());
+        return tempFile;
+    }
+
+    /**
+     * Уникальный путь во временной директории с расширением исходного файла; файл не создаётся
+     */
+    public Path newTempFilePath(String prefix, String originalFilename) throws IOException {
         // Создаем временную директорию, если не существует
         Path tempDirPath = getAbsoluteTempDir();
         Files.createDirectories(tempDirPath);
 
         // Генерируем уникальное имя файла
-        String originalFilename = file.getOriginalFilename();
         String filename = prefix + "_" + UUID.randomUUID() +
                 (originalFilename != null ? getFileExtension(originalFilename) : "");
-
-        Path tempFile = tempDirPath.resolve(filename);
-
-        // Сохраняем файл
-        Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-        log.debug("Сохранен временный файл: {}", tempFile.toAbsolutePath());
-        return tempFile;
+        return tempDirPath.resolve(filename);
     }
 
     /**
@@ -0,0 +1,3 @@
+-- V57: режим чтения файла, использованный при импорте (CSV_STREAM, XLSX_STREAM, EXCEL_DOM)
+ALTER TABLE import_sessions
+    ADD COLUMN IF NOT EXISTS read_mode VARCHAR(20);
@@ -0,0 +1,4 @@
+-- V58: способ записи строк импорта (BATCH_INSERT, COPY)
+-- NULL = использовать глобальную настройку import.persistence.engine
+ALTER TABLE import_templates
+    ADD COLUMN IF NOT EXISTS persistence_engine VARCHAR(20) DEFAULT NULL;
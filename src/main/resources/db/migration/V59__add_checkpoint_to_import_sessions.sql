@@ -0,0 +1,6 @@
+-- V59: контрольная точка импорта — последняя зафиксированная строка файла и байтовая позиция после неё.
+-- Обновляется в одной транзакции с записью батча, по ней прерванный импорт продолжается с того же места
+ALTER TABLE import_sessions
+    ADD COLUMN IF NOT EXISTS checkpoint_row BIGINT,
+    ADD COLUMN IF NOT EXISTS checkpoint_byte_offset BIGINT,
+    ADD COLUMN IF NOT EXISTS checkpoint_at TIMESTAMP WITH TIME ZONE;
@@ -0,0 +1,3 @@
+-- V60: очередь импортов — время постановки в очередь (статус QUEUED)
+ALTER TABLE import_sessions
+    ADD COLUMN IF NOT EXISTS queued_at TIMESTAMP WITH TIME ZONE;
@@ -0,0 +1,2 @@
+-- V61: поиск ранее проанализированного файла по SHA-256 содержимого при повторной загрузке
+CREATE INDEX IF NOT EXISTS idx_file_metadata_file_hash ON file_metadata(file_hash, file_format);
@@ -0,0 +1,8 @@
+-- V62: сопоставление отчётов с заданиями (TASK_REPORT) одним запросом по нормализованному ключу
+-- номер задания + код сети без пробелов в верхнем регистре, только строки заданий
+CREATE INDEX IF NOT EXISTS idx_av_data_task_key ON av_data (
+    product_additional1,
+    (upper(regexp_replace(competitor_additional, '\s+', '', 'g')))
+) WHERE data_source = 'TASK';
+
+COMMENT ON INDEX idx_av_data_task_key IS 'Ключи заданий для стратегии TASK_REPORT';
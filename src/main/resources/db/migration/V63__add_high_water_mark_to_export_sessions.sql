@@ -0,0 +1,11 @@
+-- V63: дельта-выгрузка — отметка последней выгруженной строки (created_at, id).
+-- Следующая дельта-выгрузка того же шаблона читает только строки после отметки последней завершённой
+ALTER TABLE export_sessions
+    ADD COLUMN IF NOT EXISTS high_water_created_at TIMESTAMP WITH TIME ZONE,
+    ADD COLUMN IF NOT EXISTS high_water_id BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_export_sessions_template_high_water ON export_sessions (template_id, id DESC)
+    WHERE high_water_id IS NOT NULL AND status = 'COMPLETED';
+
+COMMENT ON COLUMN export_sessions.high_water_created_at IS 'created_at последней строки дельта-выгрузки';
+COMMENT ON COLUMN export_sessions.high_water_id IS 'id последней строки дельта-выгрузки';
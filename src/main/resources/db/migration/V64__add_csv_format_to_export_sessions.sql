@@ -0,0 +1,12 @@
+-- V64: формат CSV дельта-выгрузки. Разделитель и кодировка задаются и в запросе экспорта,
+-- поэтому при объединении с предыдущей выгрузкой её файл читается в том формате, в котором записан
+ALTER TABLE export_sessions
+    ADD COLUMN IF NOT EXISTS csv_delimiter VARCHAR(5),
+    ADD COLUMN IF NOT EXISTS csv_quote_char VARCHAR(5),
+    ADD COLUMN IF NOT EXISTS csv_encoding VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS csv_include_header BOOLEAN;
+
+COMMENT ON COLUMN export_sessions.csv_delimiter IS 'Разделитель CSV файла дельта-выгрузки';
+COMMENT ON COLUMN export_sessions.csv_quote_char IS 'Символ кавычек CSV файла дельта-выгрузки';
+COMMENT ON COLUMN export_sessions.csv_encoding IS 'Кодировка CSV файла дельта-выгрузки';
+COMMENT ON COLUMN export_sessions.csv_include_header IS 'Есть ли в CSV файле дельта-выгрузки строка заголовка';
@@ -0,0 +1,8 @@
+-- V65: экземпляр приложения, который выполняет импорт.
+-- При запуске экземпляр восстанавливает только свои прерванные импорты, импорты других экземпляров не трогает
+ALTER TABLE import_sessions
+    ADD COLUMN IF NOT EXISTS owner_instance VARCHAR(255);
+
+CREATE INDEX IF NOT EXISTS idx_import_sessions_status_owner ON import_sessions (status, owner_instance);
+
+COMMENT ON COLUMN import_sessions.owner_instance IS 'Идентификатор экземпляра приложения, выполняющего импорт (import.instance-id)';
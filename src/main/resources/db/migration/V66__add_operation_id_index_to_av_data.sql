@@ -0,0 +1,8 @@
+-- V66: версия данных операций для кеша экспорта (COUNT и MAX(id) по operation_id) —
+-- index-only scan без чтения строк таблицы. Индекс покрывает и поиск по operation_id,
+-- поэтому одноколоночный индекс из V3 больше не нужен
+CREATE INDEX IF NOT EXISTS idx_av_data_operation_id_id ON av_data (operation_id, id);
+
+DROP INDEX IF EXISTS idx_av_data_operation_id;
+
+COMMENT ON INDEX idx_av_data_operation_id_id IS 'Строки операции и версия её данных для кеша экспорта';
@@ -0,0 +1,8 @@
+-- V67: ключ задания TASK_REPORT строится в Java (buildKey), из БД читаются исходные пары
+-- номер задания + код сети — выражение нормализации из V62 больше не используется
+DROP INDEX IF EXISTS idx_av_data_task_key;
+
+CREATE INDEX IF NOT EXISTS idx_av_data_task_pairs ON av_data (product_additional1, competitor_additional)
+    WHERE data_source = 'TASK';
+
+COMMENT ON INDEX idx_av_data_task_pairs IS 'Пары номер задания + код сети для стратегии TASK_REPORT';
@@ -0,0 +1,6 @@
+-- V68: время последнего сохранения сессии импорта. Дельта-выгрузка не ждёт незавершённые
+-- импорты, которые дольше export.delta.stale-import-minutes не сохраняли прогресс
+ALTER TABLE import_sessions
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE;
+
+COMMENT ON COLUMN import_sessions.updated_at IS 'Время последнего сохранения сессии импорта';
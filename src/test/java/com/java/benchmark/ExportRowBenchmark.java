@@ -0,0 +1,139 @@
+package com.java.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.java.model.entity.ExportTemplate;
+import com.java.model.entity.ExportTemplateField;
+import com.java.service.exports.row.ColumnLookup;
+import com.java.service.exports.row.ExportRow;
+import com.java.service.exports.row.ExportSchema;
+import com.java.service.exports.strategies.DefaultExportStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Строка экспорта от ResultSet до значений ячеек файла: Map на каждую строку
+ * (LinkedCaseInsensitiveMap из ColumnMapRowMapper, затем LinkedHashMap стратегии, чтение по имени)
+ * против {@link ExportRow} со схемой и чтением по индексу.
+ * Выборка из 45 колонок av_data, шаблон на 30 полей.
+ * <p>
+ * Главная метрика — gc.alloc.rate.norm (байт на операцию = на строку) профайлера GC.
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportRowBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int SOURCE_COLUMNS = 45;
+    private static final int TEMPLATE_FIELDS = 30;
+
+    private final DefaultExportStrategy strategy = new DefaultExportStrategy(null);
+
+    private ExportTemplate template;
+    private List<String> sourceColumns;
+    private List<String> exportColumns;
+    private List<String> entityFields;
+    private Object[][] resultSet;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        sourceColumns = new ArrayList<>();
+        for (int i = 0; i < SOURCE_COLUMNS; i++) {
+            sourceColumns.add("competitor_additional" + i);
+        }
+
+        List<ExportTemplateField> fields = new ArrayList<>();
+        exportColumns = new ArrayList<>();
+        entityFields = new ArrayList<>();
+        for (int i = 0; i < TEMPLATE_FIELDS; i++) {
+            String entityField = "competitorAdditional" + i;
+            String exportColumn = "Доп. поле " + i;
+            fields.add(ExportTemplateField.builder()
+                    .entityFieldName(entityField)
+                    .exportColumnName(exportColumn)
+                    .fieldOrder(i)
+                    .isIncluded(true)
+                    .build());
+            entityFields.add(entityField);
+            exportColumns.add(exportColumn);
+        }
+        template = ExportTemplate.builder().name("benchmark").fields(fields).build();
+
+        resultSet = new Object[ROWS][SOURCE_COLUMNS];
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < SOURCE_COLUMNS; c++) {
+                resultSet[r][c] = c % 3 == 0 ? (Object) (r * 1.5 + c) : "значение " + r + "-" + c;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapPerRow(Blackhole blackhole) {
+        for (Object[] values : resultSet) {
+            // ColumnMapRowMapper
+            Map<String, Object> source = new LinkedCaseInsensitiveMap<>(SOURCE_COLUMNS);
+            for (int c = 0; c < SOURCE_COLUMNS; c++) {
+                source.put(sourceColumns.get(c), values[c]);
+            }
+            // Стратегия по умолчанию до перехода на ExportRow
+            Map<String, Object> processed = new LinkedHashMap<>();
+            for (int f = 0; f < TEMPLATE_FIELDS; f++) {
+                Object value = source.get(entityFields.get(f));
+                if (value == null) {
+                    value = source.get(toSnakeCase(entityFields.get(f)));
+                }
+                processed.put(exportColumns.get(f), value);
+            }
+            // Генератор файла
+            for (String column : exportColumns) {
+                blackhole.consume(processed.get(column));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void exportRow(Blackhole blackhole) {
+        ExportSchema schema = new ExportSchema(sourceColumns);
+        ColumnLookup columns = new ColumnLookup(exportColumns);
+        Stream<Map<String, Object>> source = Stream.of(resultSet)
+                .map(values -> new ExportRow(schema, values.clone()));
+        strategy.processStream(source, template, Map.of()).forEach(row -> {
+            for (int c = 0; c < columns.size(); c++) {
+                blackhole.consume(columns.get(row, c));
+            }
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExportRowBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    private static String toSnakeCase(String value) {
+        return value.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
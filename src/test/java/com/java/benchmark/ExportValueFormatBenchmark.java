@@ -0,0 +1,118 @@
+package com.java.benchmark;
+
+import com.java.service.exports.formatter.ValueFormatter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Текст ячеек экспорта: прежний ValueFormatter (SimpleDateFormat, String на каждую ячейку
+ * и String[] на строку) против {@link ValueFormatter#formatTo} в переиспользуемый буфер.
+ * Строка из 20 колонок, как в выборке av_data: 12 строк, 4 цены, 2 целых, 2 даты (Timestamp).
+ * <p>
+ * Результат — ячеек в секунду; formatToConcurrent — то же в 4 потока на одном форматтере.
+ * У прежнего варианта SimpleDateFormat свой на поток: общий, как в старом коде, портит даты.
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportValueFormatBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int COLUMNS = 20;
+    private static final int CELLS = ROWS * COLUMNS;
+
+    private static final ValueFormatter FORMATTER = new ValueFormatter();
+
+    private final SimpleDateFormat legacyDateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+    private final StringBuilder buffer = new StringBuilder(256);
+    private Object[][] rows;
+
+    @Setup
+    public void setUp() {
+        rows = new Object[ROWS][COLUMNS];
+        long now = System.currentTimeMillis();
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLUMNS; c++) {
+                Object value;
+                if (c < 12) {
+                    value = "Товар " + r + " колонка " + c;
+                } else if (c < 16) {
+                    value = r * 10.5 + c;
+                } else if (c < 18) {
+                    value = (long) r * 1000 + c;
+                } else {
+                    value = new Timestamp(now - r * 3_600_000L - c);
+                }
+                rows[r][c] = value;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void legacyFormat(Blackhole blackhole) {
+        for (Object[] row : rows) {
+            String[] values = new String[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) {
+                values[c] = legacyFormat(row[c]);
+            }
+            blackhole.consume(values);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void formatTo(Blackhole blackhole) {
+        formatRows(blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(CELLS)
+    public void formatToConcurrent(Blackhole blackhole) {
+        formatRows(blackhole);
+    }
+
+    private void formatRows(Blackhole blackhole) {
+        for (Object[] row : rows) {
+            buffer.setLength(0);
+            for (int c = 0; c < COLUMNS; c++) {
+                FORMATTER.formatTo(row[c], buffer);
+            }
+            blackhole.consume(buffer.length());
+        }
+    }
+
+    /**
+     * ValueFormatter.format до перехода на formatTo
+     */
+    private String legacyFormat(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Date) {
+            return legacyDateFormat.format((Date) value);
+        }
+        return value.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExportValueFormatBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
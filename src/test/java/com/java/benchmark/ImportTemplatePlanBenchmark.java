@@ -0,0 +1,178 @@
+package com.java.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.java.model.entity.ImportTemplate;
+import com.java.model.entity.ImportTemplateField;
+import com.java.model.enums.EntityType;
+import com.java.model.enums.FieldType;
+import com.java.service.imports.handlers.DataTransformationService;
+import com.java.service.imports.handlers.ImportTemplatePlan;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Трансформация строк импорта: разбор шаблона на каждую строку (transformRow по Map)
+ * против скомпилированного плана (ImportTemplatePlan по String[]).
+ * Шаблон AV_DATA на 55 полей, файл на 60 колонок; результат — строк в секунду.
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportTemplatePlanBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int COLUMNS = 60;
+
+    private static final String[] STRING_FIELDS = {
+            "productId", "productName", "productBrand", "productBar", "productDescription", "productUrl",
+            "productCategory1", "productCategory2", "productCategory3", "productAnalog",
+            "productAdditional1", "productAdditional2", "productAdditional3", "productAdditional4",
+            "productAdditional5", "productAdditional6", "productAdditional7", "productAdditional8",
+            "productAdditional9", "productAdditional10", "region", "regionAddress", "competitorName",
+            "competitorTime", "competitorDate", "competitorStockStatus", "competitorCommentary",
+            "competitorProductName", "competitorAdditional", "competitorAdditional2", "competitorAdditional3",
+            "competitorAdditional4", "competitorAdditional5", "competitorAdditional6", "competitorAdditional7",
+            "competitorAdditional8", "competitorAdditional9", "competitorAdditional10", "competitorUrl",
+            "competitorWebCacheUrl", "competitorBrand", "competitorCategory1", "competitorCategory2",
+            "competitorCategory3", "competitorCategory4", "competitorProductId", "competitorBar",
+            "regionCountry", "zmsId"
+    };
+    private static final String[] DECIMAL_FIELDS = {
+            "productPrice", "competitorPrice", "competitorPromotionalPrice",
+            "competitorAdditionalPrice", "competitorOldPrice"
+    };
+    private static final String DATETIME_FIELD = "competitorLocalDateTime";
+
+    private final DataTransformationService transformationService = new DataTransformationService();
+
+    private ImportTemplate template;
+    private String[] headers;
+    private String[][] rows;
+    private ImportTemplatePlan plan;
+
+    @Setup
+    public void setUp() {
+        // В приложении уровень INFO; DEBUG-логи transformRow не должны попадать в замер
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        headers = new String[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            headers[i] = "Колонка " + (i + 1);
+        }
+
+        List<ImportTemplateField> fields = new ArrayList<>();
+        int column = 0;
+        for (String name : STRING_FIELDS) {
+            ImportTemplateField field = field(name, FieldType.STRING, column++);
+            if ("productBar".equals(name)) {
+                field.setValidationRegex("\\d{8,14}");
+            } else if ("competitorUrl".equals(name)) {
+                field.setValidationRegex("https?://.+");
+            }
+            fields.add(field);
+        }
+        for (String name : DECIMAL_FIELDS) {
+            fields.add(field(name, FieldType.DECIMAL, column++));
+        }
+        fields.add(field(DATETIME_FIELD, FieldType.DATETIME, column++));
+        // Оставшиеся колонки файла в шаблон не входят
+
+        template = ImportTemplate.builder()
+                .name("AV_DATA benchmark")
+                .entityType(EntityType.AV_DATA)
+                .fields(fields)
+                .build();
+
+        rows = new String[ROWS][];
+        for (int r = 0; r < ROWS; r++) {
+            rows[r] = row(r, fields);
+        }
+
+        plan = transformationService.compile(template, headers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perRowTemplateWalk(Blackhole blackhole) throws Exception {
+        for (int r = 0; r < ROWS; r++) {
+            blackhole.consume(transformationService.transformRow(toRowData(rows[r]), template, r + 1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void compiledPlan(Blackhole blackhole) throws Exception {
+        for (int r = 0; r < ROWS; r++) {
+            blackhole.consume(plan.transform(rows[r], r + 1));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImportTemplatePlanBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private ImportTemplateField field(String name, FieldType type, int column) {
+        return ImportTemplateField.builder()
+                .entityFieldName(name)
+                .columnName(headers[column])
+                .columnIndex(column)
+                .fieldType(type)
+                .dateFormat(type == FieldType.DATETIME ? "dd.MM.yyyy HH:mm:ss" : null)
+                .build();
+    }
+
+    private String[] row(int r, List<ImportTemplateField> fields) {
+        String[] values = new String[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            values[i] = "значение " + r + "-" + i;
+        }
+        for (ImportTemplateField field : fields) {
+            int i = field.getColumnIndex();
+            switch (field.getFieldType()) {
+                case DECIMAL -> values[i] = (1000 + r % 500) + "," + (r % 100);
+                case DATETIME -> values[i] = String.format("%02d.%02d.2025 %02d:%02d:%02d",
+                        1 + r % 28, 1 + r % 12, r % 24, r % 60, r % 60);
+                default -> {
+                    if ("productBar".equals(field.getEntityFieldName())) {
+                        values[i] = String.valueOf(4_600_000_000_000L + r);
+                    } else if ("competitorUrl".equals(field.getEntityFieldName())) {
+                        values[i] = "https://shop.example/product/" + r;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Map строки в том виде, в котором её строили читатели до компиляции шаблона
+     */
+    private Map<String, String> toRowData(String[] row) {
+        Map<String, String> rowData = new HashMap<>();
+        for (int i = 0; i < row.length; i++) {
+            rowData.put(String.valueOf(i), row[i]);
+            if (i < headers.length && headers[i] != null) {
+                rowData.put(headers[i], row[i]);
+            }
+        }
+        return rowData;
+    }
+}
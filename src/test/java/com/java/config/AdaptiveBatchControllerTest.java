@@ -0,0 +1,47 @@
+package com.java.config;
+
+import com.java.exception.ImportException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для AdaptiveBatchController: ожидание памяти при критической заполненности heap
+ */
+class AdaptiveBatchControllerTest {
+
+    private final ImportConfig.ImportSettings settings = ImportConfig.ImportSettings.builder().build();
+
+    @Test
+    void shouldFailImportWhenHeapStaysAboveCriticalMark() {
+        // Given: heap всё время выше критического порога
+        AdaptiveBatchController controller = new AdaptiveBatchController(heap(0.99), "test", 1000, 100, 5000,
+                true, 1000);
+
+        // When / Then: после максимального ожидания импорт завершается ошибкой
+        ImportException error = assertThrows(ImportException.class, () -> controller.awaitHeadroom(() -> false));
+        assertTrue(error.getMessage().startsWith("Недостаточно памяти"), error.getMessage());
+        assertEquals(100, controller.getBatchSize());
+    }
+
+    @Test
+    void shouldStopWaitingOnCancel() {
+        // Given
+        AdaptiveBatchController controller = new AdaptiveBatchController(heap(0.99), "test", 1000, 100, 5000,
+                true, 60_000);
+
+        // When / Then: отмена прерывает ожидание без ошибки
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> controller.awaitHeadroom(() -> true));
+    }
+
+    private MemoryMonitor heap(double usage) {
+        return new MemoryMonitor(settings, true) {
+            @Override
+            public double getHeapUsage() {
+                return usage;
+            }
+        };
+    }
+}
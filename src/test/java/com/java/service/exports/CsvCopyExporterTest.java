@@ -0,0 +1,117 @@
+package com.java.service.exports;
+
+import com.java.dto.ExportRequestDto;
+import com.java.model.entity.ExportTemplate;
+import com.java.model.entity.ExportTemplateField;
+import com.java.model.enums.EntityType;
+import com.java.util.PathResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тесты для CsvCopyExporter на H2: отмена COPY не должна прерывать транзакцию экспорта
+ */
+class CsvCopyExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ExportDataService dataService;
+    private PathResolver pathResolver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:copy;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE export_sessions (id BIGINT PRIMARY KEY, status VARCHAR(20))");
+
+        dataService = mock(ExportDataService.class);
+        when(dataService.tableName(any())).thenReturn("av_data");
+        when(dataService.selectedColumns(any())).thenReturn(List.of());
+        when(dataService.buildCopyQuery(anyString(), any(), any(), any(), any(), any(), any()))
+                .thenReturn("SELECT 1");
+        pathResolver = mock(PathResolver.class);
+        when(pathResolver.createTempFile(anyString(), anyString()))
+                .thenAnswer(invocation -> Files.createFile(tempDir.resolve("export.csv")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldSaveCancelledStatusAfterCancelledCopy() {
+        // Given: экспорт отменяют, пока COPY пишет файл
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CsvCopyExporter exporter = new CsvCopyExporter(dataService, jdbcTemplate, pathResolver, transactionManager) {
+            @Override
+            long copyOut(Connection con, String sql, Writer writer) throws SQLException, IOException {
+                try {
+                    writer.write("\"1\"\n");
+                    writer.flush();
+                    cancelled.set(true);
+                    writer.write("\"2\"\n");
+                    writer.flush();
+                    return 2;
+                } catch (IOException e) {
+                    // Как PostgreSQL после cancelCopy: транзакция, в которой шёл COPY, откатывается
+                    con.rollback();
+                    throw e;
+                }
+            }
+        };
+        ExportTemplate template = ExportTemplate.builder().name("copy").entityType(EntityType.AV_DATA)
+                .fileFormat("CSV").csvIncludeHeader(false)
+                .fields(List.of(ExportTemplateField.builder().entityFieldName("productName")
+                        .exportColumnName("Товар").fieldOrder(1).build()))
+                .build();
+
+        // When: в транзакции экспорта — статус сессии до COPY и после него, как в ExportProcessorService
+        CsvCopyExporter.CopyResult result = new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update("INSERT INTO export_sessions VALUES (1, 'PROCESSING')");
+            CsvCopyExporter.CopyResult copied;
+            try {
+                copied = exporter.export(template, ExportRequestDto.builder().build(), List.of(1L), null,
+                        "copy.csv", bytes -> { }, cancelled::get);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            assertEquals(1, jdbcTemplate.update("UPDATE export_sessions SET status = ? WHERE id = 1",
+                    copied == null ? "CANCELLED" : "COMPLETED"));
+            return copied;
+        });
+
+        // Then: сессия отменена, временный файл удалён
+        assertNull(result);
+        assertEquals("CANCELLED",
+                jdbcTemplate.queryForObject("SELECT status FROM export_sessions WHERE id = 1", String.class));
+        assertFalse(Files.exists(tempDir.resolve("export.csv")));
+    }
+}
@@ -0,0 +1,73 @@
+package com.java.service.exports;
+
+import com.java.dto.ExportRequestDto;
+import com.java.model.entity.ExportSession;
+import com.java.model.entity.ExportTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для объединения дельта-выгрузки с файлом предыдущей выгрузки (ExportDeltaService)
+ */
+class ExportDeltaMergeTest {
+
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    @TempDir
+    Path tempDir;
+
+    private final ExportDeltaService deltaService = new ExportDeltaService(null, null);
+
+    @Test
+    void shouldReadPreviousFileInItsOwnFormat() throws Exception {
+        // Given: предыдущий файл — windows-1251 с «;», заголовок в кавычках с переводом строки
+        Path previous = tempDir.resolve("previous.csv");
+        Files.writeString(previous, "\"Товар\nназвание\";\"Цена\"\n\"Старый \"\"А\"\"\";\"10\"\n\"Б;\r\nВ\";\"20\"\n",
+                WINDOWS_1251);
+        ExportSession base = ExportSession.builder().id(1L).resultFilePath(previous.toString())
+                .csvDelimiter(";").csvQuoteChar("\"").csvEncoding("windows-1251").csvIncludeHeader(true).build();
+
+        // Текущая выгрузка — UTF-8 с «,»
+        Path file = tempDir.resolve("delta.csv");
+        Files.writeString(file, "\"Товар\nназвание\",\"Цена\"\n\"Новый\",\"30\"\n", StandardCharsets.UTF_8);
+        ExportTemplate template = ExportTemplate.builder().csvDelimiter(",").csvEncoding("UTF-8").build();
+        ExportSession session = new ExportSession();
+
+        // When
+        deltaService.complete(session, ExportRequestDto.builder().mergeWithPrevious(true).build(), template,
+                new ExportDeltaService.Delta(base, new ExportDataService.DeltaWindow(null, null, null, 5L)), file);
+
+        // Then: заголовок пропущен целиком, строки переписаны в формате текущего файла
+        assertEquals("\"Товар\nназвание\",\"Цена\"\n\"Новый\",\"30\"\n\"Старый \"\"А\"\"\",\"10\"\n\"Б;\r\nВ\",\"20\"\n",
+                Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(",", session.getCsvDelimiter());
+        assertEquals("UTF-8", session.getCsvEncoding());
+        assertTrue(session.getCsvIncludeHeader());
+        assertEquals(5L, session.getHighWaterId());
+    }
+
+    @Test
+    void shouldNotMergeWhenPreviousFormatIsUnknown() throws Exception {
+        // Given: сессия предыдущей выгрузки без сохранённого формата
+        Path previous = tempDir.resolve("previous.csv");
+        Files.writeString(previous, "\"Товар\"\n\"Старый\"\n", StandardCharsets.UTF_8);
+        ExportSession base = ExportSession.builder().id(1L).resultFilePath(previous.toString()).build();
+        Path file = tempDir.resolve("delta.csv");
+        Files.writeString(file, "\"Товар\"\n\"Новый\"\n", StandardCharsets.UTF_8);
+
+        // When
+        deltaService.complete(new ExportSession(), ExportRequestDto.builder().mergeWithPrevious(true).build(),
+                ExportTemplate.builder().build(),
+                new ExportDeltaService.Delta(base, new ExportDataService.DeltaWindow(null, null, null, null)), file);
+
+        // Then: файл содержит только новые строки
+        assertEquals("\"Товар\"\n\"Новый\"\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+}
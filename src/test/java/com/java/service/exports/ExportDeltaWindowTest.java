@@ -0,0 +1,159 @@
+package com.java.service.exports;
+
+import com.java.model.entity.ExportTemplate;
+import com.java.model.enums.EntityType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для окна дельта-выгрузки ExportDataService на H2: два импорта пишут строки
+ * в отдельных транзакциях, выгрузка идёт между их коммитами
+ */
+class ExportDeltaWindowTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2025, 3, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ExportDataService dataService;
+    private ExportTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:delta;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE import_sessions (id BIGINT PRIMARY KEY, status VARCHAR(20), " +
+                "started_at TIMESTAMP WITH TIME ZONE, updated_at TIMESTAMP WITH TIME ZONE)");
+        jdbcTemplate.execute("CREATE TABLE av_data (id BIGINT PRIMARY KEY, operation_id BIGINT, " +
+                "created_at TIMESTAMP WITH TIME ZONE)");
+
+        dataService = new ExportDataService(jdbcTemplate, null);
+        ReflectionTestUtils.setField(dataService, "maxRows", 300_000);
+        ReflectionTestUtils.setField(dataService, "staleImportMinutes", 120L);
+        template = ExportTemplate.builder().name("delta").entityType(EntityType.AV_DATA).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldNotMoveMarkPastRowsOfRunningImport() throws Exception {
+        // Given: старые строки выгружены раньше, идут долгий импорт A и короткий импорт B
+        insertRows(null, 1, 1, 2, T0.minusHours(1));
+        ExportDataService.DeltaWindow previous = window(null);
+        assertEquals(2L, previous.untilId());
+
+        importSession(1, "PROCESSING", T0, OffsetDateTime.now());
+        importSession(2, "PROCESSING", T0.plusSeconds(1), OffsetDateTime.now());
+        try (Connection importA = dataSource.getConnection()) {
+            importA.setAutoCommit(false);
+            // id и created_at строк A раньше, чем у B, но коммит A — позже
+            insertRows(importA, 10, 3, 5, T0.plusSeconds(2));
+
+            insertRows(null, 20, 6, 7, T0.plusSeconds(3));
+            jdbcTemplate.update("UPDATE import_sessions SET status = 'COMPLETED' WHERE id = 2");
+
+            // When: дельта-выгрузка, пока A не зафиксирован
+            ExportDataService.DeltaWindow during = window(previous);
+
+            // Then: строки B ждут окончания A, отметка не уходит за начало A
+            assertEquals(0L, count(during));
+            assertEquals(2L, during.untilId());
+
+            importA.createStatement().executeUpdate("UPDATE import_sessions SET status = 'COMPLETED' WHERE id = 1");
+            importA.commit();
+
+            // When: следующая дельта-выгрузка после коммита A
+            ExportDataService.DeltaWindow after = window(during);
+
+            // Then: в неё попадают строки обоих импортов
+            assertEquals(5L, count(after));
+            assertEquals(7L, after.untilId());
+        }
+    }
+
+    @Test
+    void shouldKeepWindowBelowQueuedImportStart() {
+        // Given: импорт в очереди поставлен раньше, чем записаны строки завершённого импорта
+        importSession(1, "QUEUED", T0, OffsetDateTime.now());
+        insertRows(null, 1, 1, 2, T0.minusSeconds(5));
+        insertRows(null, 2, 3, 4, T0.plusSeconds(5));
+
+        // When
+        ExportDataService.DeltaWindow window = window(null);
+
+        // Then: окно заканчивается на строках до начала импорта в очереди
+        assertEquals(2L, count(window));
+        assertEquals(2L, window.untilId());
+        assertEquals(T0.minusSeconds(5).toInstant(), window.untilCreatedAt().toInstant());
+    }
+
+    @Test
+    void shouldIgnoreImportStuckLongerThanTimeout() {
+        // Given: импорт завис в ANALYZING и давно не сохранялся, второй импорт недавно сохранял прогресс
+        OffsetDateTime now = OffsetDateTime.now();
+        importSession(1, "ANALYZING", now.minusDays(2), now.minusDays(2));
+        importSession(2, "PROCESSING", now.minusHours(5), now.minusMinutes(1));
+        insertRows(null, 1, 1, 2, now.minusDays(1));
+        insertRows(null, 2, 3, 4, now.minusHours(4));
+
+        // When
+        ExportDataService.DeltaWindow window = window(null);
+
+        // Then: окно ограничено только живым импортом
+        assertEquals(2L, count(window));
+        assertEquals(2L, window.untilId());
+    }
+
+    private void importSession(long id, String status, OffsetDateTime startedAt, OffsetDateTime updatedAt) {
+        jdbcTemplate.update("INSERT INTO import_sessions VALUES (?, ?, ?, ?)", id, status, startedAt, updatedAt);
+    }
+
+    private ExportDataService.DeltaWindow window(ExportDataService.DeltaWindow previous) {
+        return dataService.deltaWindow(Collections.emptyList(), template, null, null, null,
+                previous != null ? previous.untilCreatedAt() : null,
+                previous != null ? previous.untilId() : null);
+    }
+
+    private long count(ExportDataService.DeltaWindow window) {
+        return dataService.countData(Collections.emptyList(), template, null, null, null, window);
+    }
+
+    /**
+     * Строки с id от fromId до toId; без соединения — в отдельной зафиксированной транзакции
+     */
+    private void insertRows(Connection connection, long operationId, long fromId, long toId,
+                            OffsetDateTime createdAt) {
+        if (connection == null) {
+            for (long id = fromId; id <= toId; id++) {
+                jdbcTemplate.update("INSERT INTO av_data VALUES (?, ?, ?)", id, operationId, createdAt);
+            }
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO av_data VALUES (?, ?, ?)")) {
+            for (long id = fromId; id <= toId; id++) {
+                ps.setLong(1, id);
+                ps.setLong(2, operationId);
+                ps.setObject(3, createdAt);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.java.service.exports.formatter;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ValueFormatter: даты печатаются так же, как SimpleDateFormat прежнего форматтера
+ */
+class ValueFormatterTest {
+
+    private static final String PATTERN = "dd.MM.yyyy HH:mm:ss";
+    private static final long MINUTE = 60_000L;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"UTC", "Europe/Moscow", "America/New_York", "Australia/Lord_Howe", "Asia/Kathmandu"})
+    void shouldFormatDatesLikeSimpleDateFormat(String zoneId) {
+        // Given: форматтер и SimpleDateFormat в одном часовом поясе
+        TimeZone zone = TimeZone.getTimeZone(zoneId);
+        ValueFormatter formatter = new ValueFormatter(zone);
+        SimpleDateFormat legacy = new SimpleDateFormat(PATTERN);
+        legacy.setTimeZone(zone);
+
+        // When / Then
+        for (long millis : samples(zone.toZoneId())) {
+            Date date = new Date(millis);
+            StringBuilder out = new StringBuilder("x");
+            formatter.formatTo(date, out);
+            assertEquals("x" + legacy.format(date), out.toString(), () -> zoneId + " " + millis);
+            assertEquals(legacy.format(date), formatter.format(new Timestamp(millis)), () -> zoneId + " " + millis);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0001-01-01T00:00:00", "0999-12-31T23:59:59", "1582-10-04T12:00:00",
+            "1970-01-01T00:00:00", "2024-02-29T07:08:09", "9999-12-31T23:59:59"})
+    void shouldFormatLocalDateTimeLikeDateTimeFormatter(String value) {
+        // Given
+        LocalDateTime dateTime = LocalDateTime.parse(value);
+
+        // When
+        String formatted = new ValueFormatter().format(dateTime);
+
+        // Then
+        assertEquals(DateTimeFormatter.ofPattern(PATTERN).format(dateTime), formatted);
+    }
+
+    /**
+     * Моменты вокруг переходов на летнее время и обратно (2000–2030), вокруг перехода
+     * на григорианский календарь (октябрь 1582 — начало 1583), до 1900 года (местное время
+     * с секундами в смещении), до 1970 года и внутри секунды
+     */
+    private static List<Long> samples(ZoneId zone) {
+        List<Long> samples = new ArrayList<>();
+        ZonedDateTime from = ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, zone);
+        ZoneOffsetTransition transition = zone.getRules().nextTransition(from.toInstant());
+        while (transition != null && transition.getInstant().getEpochSecond() < 1_900_000_000L) {
+            long at = transition.getInstant().toEpochMilli();
+            for (long delta = -90 * MINUTE; delta <= 90 * MINUTE; delta += 15 * MINUTE) {
+                samples.add(at + delta);
+                samples.add(at + delta - 1);
+            }
+            transition = zone.getRules().nextTransition(transition.getInstant());
+        }
+
+        long gregorianCutover = -12_219_292_800_000L; // 1582-10-15T00:00Z
+        long year1583 = -12_212_553_600_000L;         // 1583-01-01T00:00Z
+        for (long base : new long[]{gregorianCutover, year1583}) {
+            for (long delta = -3 * 86_400_000L; delta <= 3 * 86_400_000L; delta += 3_600_000L) {
+                samples.add(base + delta);
+                samples.add(base + delta + 999);
+                samples.add(base + delta - 1);
+            }
+        }
+
+        for (long millis = -5_000_000_000_000L; millis < 2_000_000_000_000L; millis += 7_777_777_777L) {
+            samples.add(millis);
+        }
+        samples.add(-1L);
+        samples.add(0L);
+        samples.add(-62_135_596_800_000L); // 0001-01-01T00:00Z
+        return samples;
+    }
+}
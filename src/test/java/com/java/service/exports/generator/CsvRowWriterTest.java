@@ -0,0 +1,70 @@
+package com.java.service.exports.generator;
+
+import com.java.service.exports.formatter.ValueFormatter;
+import com.java.service.exports.row.ColumnLookup;
+import com.opencsv.CSVWriter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для CsvRowWriter: вывод совпадает с CSVWriter, которым CsvFileGenerator писал файлы раньше
+ */
+class CsvRowWriterTest {
+
+    private static final List<String> HEADERS = List.of("Товар", "Цена", "Комментарий", "Пусто");
+
+    private static final List<Object[]> ROWS = List.of(
+            new Object[]{"простое значение", 10L, "", null},
+            new Object[]{"кавычка \" внутри", 12.5, "апостроф ' внутри", "\"\""},
+            new Object[]{"разделители , ; | и табуляция \t", -1, "перевод\nстроки", "возврат\r\nкаретки"},
+            new Object[]{"'в апострофах'", true, "\"в кавычках\"", "обратный \\ слеш"},
+            new Object[]{"", 0, " пробелы по краям ", "\n"}
+    );
+
+    static Stream<Arguments> formats() {
+        return Stream.of(
+                Arguments.of(',', '"'), Arguments.of(';', '"'), Arguments.of('\t', '"'), Arguments.of('|', '"'),
+                Arguments.of(',', '\''), Arguments.of(';', '\''));
+    }
+
+    @ParameterizedTest
+    @MethodSource("formats")
+    void shouldWriteSameOutputAsCsvWriter(char separator, char quote) throws Exception {
+        // Given
+        ValueFormatter formatter = new ValueFormatter();
+        StringWriter expected = new StringWriter();
+        try (CSVWriter legacy = new CSVWriter(expected, separator, quote, quote, CSVWriter.DEFAULT_LINE_END)) {
+            legacy.writeNext(HEADERS.toArray(new String[0]));
+            for (Object[] row : ROWS) {
+                legacy.writeNext(Arrays.stream(row).map(formatter::format).toArray(String[]::new));
+            }
+        }
+
+        // When
+        StringWriter actual = new StringWriter();
+        CsvRowWriter writer = new CsvRowWriter(actual, separator, quote, formatter);
+        ColumnLookup columns = new ColumnLookup(HEADERS);
+        writer.writeHeader(HEADERS);
+        long rowNumber = 1;
+        for (Object[] values : ROWS) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < HEADERS.size(); i++) {
+                row.put(HEADERS.get(i), values[i]);
+            }
+            writer.writeRow(row, columns, ++rowNumber);
+        }
+
+        // Then
+        assertEquals(expected.toString(), actual.toString());
+    }
+}
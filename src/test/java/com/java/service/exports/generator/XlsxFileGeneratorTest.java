@@ -0,0 +1,174 @@
+package com.java.service.exports.generator;
+
+import com.java.config.ImportConfig;
+import com.java.config.MemoryMonitor;
+import com.java.model.entity.ExportTemplate;
+import com.java.model.entity.ExportTemplateField;
+import com.java.service.exports.formatter.ValueFormatter;
+import com.java.service.exports.style.ExcelStyleFactory;
+import com.java.util.PathResolver;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тесты для XlsxFileGenerator: листы пишутся параллельно потоками xlsxSheetExecutor
+ */
+class XlsxFileGeneratorTest {
+
+    private static final int ROWS_PER_SHEET = 50;
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    @TempDir
+    Path tempDir;
+
+    private ThreadPoolTaskExecutor sheetExecutor;
+    private ExportTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        // Как бин xlsxSheetExecutor: без очереди, лишние листы пишутся в потоке экспорта
+        sheetExecutor = new ThreadPoolTaskExecutor();
+        sheetExecutor.setCorePoolSize(2);
+        sheetExecutor.setMaxPoolSize(4);
+        sheetExecutor.setQueueCapacity(0);
+        sheetExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        sheetExecutor.initialize();
+
+        template = ExportTemplate.builder().name("xlsx").xlsxSheetName("Данные").fields(List.of(
+                field("productName", "Товар", 1), field("competitorDate", "Дата", 2),
+                field("competitorPrice", "Цена", 3))).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sheetExecutor.shutdown();
+    }
+
+    @Test
+    void shouldWriteEverySheetInParallel() throws Exception {
+        // Given: строк на пять листов, последний заполнен не до конца
+        int total = ROWS_PER_SHEET * 4 + 30;
+
+        // When
+        Path file = generator(new ValueFormatter()).generate(rows(total), template, "export.xlsx");
+
+        // Then: каждая строка на своём листе и со своими значениями, строки записаны inline
+        try (XSSFWorkbook workbook = new XSSFWorkbook(Files.newInputStream(file))) {
+            assertEquals(5, workbook.getNumberOfSheets());
+            assertEquals("Данные (5)", workbook.getSheetName(4));
+            assertEquals(0, workbook.getSharedStringSource().getCount());
+            for (int i = 0; i < total; i++) {
+                Sheet sheet = workbook.getSheetAt(i / ROWS_PER_SHEET);
+                Row row = sheet.getRow(i % ROWS_PER_SHEET + 1);
+                assertEquals("товар " + i, row.getCell(0).getStringCellValue());
+                assertEquals(DATE.plusDays(i), row.getCell(1).getLocalDateTimeCellValue());
+                assertTrue(DateUtil.isCellDateFormatted(row.getCell(1)));
+                assertEquals(i + 1, row.getCell(2).getNumericCellValue());
+            }
+        }
+    }
+
+    @Test
+    void shouldStopAllSheetWritersWhenOneFails() throws Exception {
+        // Given: последняя строка второго листа падает с Error, а поток четвёртого листа в это время
+        // ещё пишет медленную строку. Пакеты четвёртого листа помещаются в его очередь, так что
+        // поток экспорта не ждёт медленную строку и узнаёт об ошибке второго листа раньше
+        AtomicBoolean returned = new AtomicBoolean();
+        AtomicBoolean writtenAfterReturn = new AtomicBoolean();
+        ValueFormatter formatter = new ValueFormatter() {
+            @Override
+            public String format(Object value) {
+                int index = Integer.parseInt(value.toString().substring("товар ".length()));
+                if (index == ROWS_PER_SHEET * 2 - 1) {
+                    throw new SheetFailure();
+                }
+                if (index == ROWS_PER_SHEET * 3 + 5) {
+                    sleep(500);
+                    writtenAfterReturn.set(returned.get());
+                }
+                return super.format(value);
+            }
+        };
+
+        // When
+        assertThrows(SheetFailure.class,
+                () -> generator(formatter).generate(rows(ROWS_PER_SHEET * 3 + 30), template, "export.xlsx"));
+        returned.set(true);
+        Thread.sleep(700);
+
+        // Then: наружу ушла исходная ошибка, генерация дождалась остановки всех потоков листов
+        assertFalse(writtenAfterReturn.get());
+        assertEquals(0, sheetExecutor.getActiveCount());
+    }
+
+    private XlsxFileGenerator generator(ValueFormatter formatter) throws Exception {
+        PathResolver pathResolver = mock(PathResolver.class);
+        when(pathResolver.createTempFile(anyString(), anyString()))
+                .thenAnswer(invocation -> Files.createTempFile(tempDir, "export_", ".xlsx"));
+        when(pathResolver.moveFromTempToExport(any(), anyString(), anyBoolean()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        MemoryMonitor memoryMonitor = new MemoryMonitor(ImportConfig.ImportSettings.builder().build(), false);
+
+        XlsxFileGenerator generator = new XlsxFileGenerator(pathResolver, formatter, new ExcelStyleFactory(),
+                memoryMonitor, sheetExecutor);
+        ReflectionTestUtils.setField(generator, "batchSize", 10);
+        ReflectionTestUtils.setField(generator, "xlsxMaxRows", ROWS_PER_SHEET);
+        ReflectionTestUtils.setField(generator, "xlsxMaxSheets", 16);
+        return generator;
+    }
+
+    private static Stream<Map<String, Object>> rows(int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("Товар", "товар " + i);
+            row.put("Дата", DATE.plusDays(i));
+            row.put("Цена", i + 1);
+            return row;
+        });
+    }
+
+    private static ExportTemplateField field(String entityFieldName, String exportColumnName, int order) {
+        return ExportTemplateField.builder().entityFieldName(entityFieldName).exportColumnName(exportColumnName)
+                .fieldOrder(order).isIncluded(true).build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Сбой потока листа, не являющийся RuntimeException
+     */
+    private static final class SheetFailure extends Error {
+    }
+}
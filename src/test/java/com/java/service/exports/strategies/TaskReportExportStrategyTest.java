@@ -0,0 +1,92 @@
+package com.java.service.exports.strategies;
+
+import com.java.model.entity.ExportTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тесты для TaskReportExportStrategy на H2: ключи заданий из БД и ключи строк отчёта
+ * строятся одной нормализацией
+ */
+class TaskReportExportStrategyTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TaskReportExportStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:task_report;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE av_data (data_source VARCHAR(20), product_additional1 VARCHAR(100), " +
+                "competitor_additional VARCHAR(100))");
+
+        DefaultExportStrategy defaultStrategy = mock(DefaultExportStrategy.class);
+        when(defaultStrategy.processData(anyList(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        strategy = new TaskReportExportStrategy(jdbcTemplate, defaultStrategy);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldMatchReportRowsToTasksWithTrickyValues() {
+        // Given: задания с неразрывным пробелом, \f, кириллицей и ß в номере и коде сети;
+        // строки отчёта с теми же значениями и с кодом сети в другом регистре и с пробелами
+        task("T1\f", "ab c");
+        task("T2", "сеть м");
+        task("T3", "straße");
+        task("T4", "A B C");
+        task("T5\u00A0", "x\u00A0y");
+        List<Map<String, Object>> data = List.of(
+                report("T1\f", "ab c"),
+                report("T2", "сеть м"),
+                report("T3", "straße"),
+                report("T4", "ab\tc"),
+                report("T4", "abd"),
+                report("T5\u00A0", "x\u00A0y"));
+
+        // When
+        List<Map<String, Object>> result = strategy.processData(data, ExportTemplate.builder().build(),
+                new HashMap<>());
+
+        // Then: каждая строка отчёта нашла своё задание, строка с чужим кодом сети отброшена
+        assertEquals(List.of("T1\f|ab c", "T2|сеть м", "T3|straße", "T4|ab\tc",
+                        "T5\u00A0|x\u00A0y"),
+                result.stream()
+                        .map(row -> row.get("product_additional1") + "|" + row.get("competitor_additional"))
+                        .collect(Collectors.toList()));
+    }
+
+    private void task(String number, String network) {
+        jdbcTemplate.update("INSERT INTO av_data VALUES ('TASK', ?, ?)", number, network);
+    }
+
+    private static Map<String, Object> report(String number, String network) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("data_source", "REPORT");
+        row.put("product_additional1", number);
+        row.put("competitor_additional", network);
+        row.put("competitor_url", "");
+        row.put("competitor_date", LocalDate.now().toString());
+        return row;
+    }
+}
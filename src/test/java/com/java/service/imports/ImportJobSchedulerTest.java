@@ -0,0 +1,62 @@
+package com.java.service.imports;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ImportJobScheduler: позиции в очереди и отмена в разных состояниях задания
+ */
+class ImportJobSchedulerTest {
+
+    private final ImportJobScheduler scheduler = new ImportJobScheduler(null, 1, 0, 1);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void shouldTrackPositionsAndCancelByJobState() throws Exception {
+        // Given: единственный воркер занят импортом 1 клиента 10, в очереди импорты клиентов 10 и 20
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        scheduler.submit(1L, 10L, 0, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.submit(2L, 10L, 0, secondDone::countDown);
+        scheduler.submit(3L, 20L, 0, () -> fail("Отменённый импорт не должен запускаться"));
+
+        // Клиент 20 ещё ничего не запускал — его импорт идёт первым
+        assertNull(scheduler.getQueuePosition(1L));
+        assertEquals(2, scheduler.getQueuePosition(2L));
+        assertEquals(1, scheduler.getQueuePosition(3L));
+
+        // When / Then: задание из очереди снимается, позиции пересчитываются
+        assertEquals(ImportJobScheduler.CancelResult.DEQUEUED, scheduler.cancel(3L));
+        assertEquals(1, scheduler.getQueuePosition(2L));
+
+        // Выполняющееся задание отменяет сам импорт, неизвестное — никто
+        assertEquals(ImportJobScheduler.CancelResult.STARTED, scheduler.cancel(1L));
+        assertEquals(ImportJobScheduler.CancelResult.UNKNOWN, scheduler.cancel(99L));
+
+        release.countDown();
+        assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.java.service.imports;
+
+import com.java.config.ImportConfig;
+import com.java.config.MemoryMonitor;
+import com.java.model.FileOperation;
+import com.java.model.entity.FileMetadata;
+import com.java.model.entity.ImportSession;
+import com.java.model.entity.ImportTemplate;
+import com.java.model.entity.ImportTemplateField;
+import com.java.model.enums.EntityType;
+import com.java.model.enums.FieldType;
+import com.java.model.enums.ImportStatus;
+import com.java.repository.FileMetadataRepository;
+import com.java.repository.FileOperationRepository;
+import com.java.repository.ImportSessionRepository;
+import com.java.repository.ImportTemplateRepository;
+import com.java.service.error.DatabaseErrorMessageParser;
+import com.java.service.error.ErrorMessageFormatter;
+import com.java.service.imports.handlers.DataTransformationService;
+import com.java.service.imports.handlers.DuplicateCheckService;
+import com.java.service.imports.handlers.EntityPersistenceService;
+import com.java.service.imports.handlers.ImportErrorSink;
+import com.java.service.imports.handlers.PgCopyWriter;
+import com.java.service.imports.pipeline.ImportPipelineMonitor;
+import com.java.service.notification.NotificationService;
+import com.java.util.FileReaderUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тесты для ImportProcessorService на H2: импорт CSV с коммитом на каждый батч.
+ * Строки, сессия и ошибки пишутся в таблицы H2 в транзакции батча, поэтому откат
+ * батча откатывает их так же, как в PostgreSQL
+ */
+class ImportProcessorServiceTest {
+
+    private static final long SESSION_ID = 1L;
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ImportSessionRepository sessionRepository;
+    private FileMetadataRepository metadataRepository;
+    private EntityPersistenceService persistenceService;
+    private ImportProcessorService processor;
+
+    private ImportTemplate template;
+    private FileMetadata metadata;
+    private boolean crashed;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:import;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE import_sessions (id BIGINT PRIMARY KEY, status VARCHAR(20), " +
+                "processed_rows BIGINT, success_rows BIGINT, error_rows BIGINT, " +
+                "checkpoint_row BIGINT, checkpoint_byte_offset BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE av_data (product_name VARCHAR(100))");
+        jdbcTemplate.execute("CREATE TABLE import_errors (import_session_id BIGINT, row_number BIGINT, " +
+                "column_name VARCHAR(255), field_value TEXT, error_type VARCHAR(50), error_message TEXT)");
+
+        ImportConfig.ImportSettings settings = ImportConfig.ImportSettings.builder()
+                .batchSize(2).adaptiveBatchEnabled(false).errorSamplePerType(2).xlsxStreamingEnabled(true).build();
+        PgCopyWriter copyWriter = mock(PgCopyWriter.class);
+        when(copyWriter.copyRows(anyString(), anyList(), anyList(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("COPY недоступен в H2"));
+        ImportErrorSink errorSink = new ImportErrorSink(new NamedParameterJdbcTemplate(jdbcTemplate), copyWriter,
+                settings);
+
+        sessionRepository = mock(ImportSessionRepository.class);
+        when(sessionRepository.save(any())).thenAnswer(invocation -> saveSession(invocation.getArgument(0)));
+        when(sessionRepository.saveAndFlush(any())).thenAnswer(invocation -> saveSession(invocation.getArgument(0)));
+        metadataRepository = mock(FileMetadataRepository.class);
+        ImportTemplateRepository templateRepository = mock(ImportTemplateRepository.class);
+        when(templateRepository.findByIdWithFields(any())).thenAnswer(invocation -> Optional.of(template));
+        persistenceService = mock(EntityPersistenceService.class);
+        when(persistenceService.saveBatch(anyList(), any(), any()))
+                .thenAnswer(invocation -> saveRows(invocation.getArgument(0)));
+
+        processor = new ImportProcessorService(sessionRepository, metadataRepository, templateRepository,
+                mock(FileOperationRepository.class), new DataTransformationService(),
+                mock(DuplicateCheckService.class), persistenceService, mock(ImportProgressService.class),
+                mock(NotificationService.class), new DatabaseErrorMessageParser(),
+                mock(ErrorMessageFormatter.class), settings, new MemoryMonitor(settings, true),
+                null, new FileReaderUtils(), mock(ImportPipelineMonitor.class),
+                new TransactionTemplate(transactionManager), errorSink, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldRecordRolledBackBatchAndResumeAfterIt() throws Exception {
+        // Given: строки 2–9 файла, батчи по 2 строки; запись строк 4–5 откатывает транзакцию батча,
+        // а при первом запуске процесс падает на батче строк 8–9 — после зафиксированного батча 6–7
+        template = template(field("productName", "Товар"));
+        writeCsv("Товар", IntStream.rangeClosed(2, 9)
+                .mapToObj(row -> row == 4 ? "bad" : row == 8 ? "crash" : "row" + row)
+                .toArray(String[]::new));
+
+        // When
+        assertThrows(Crash.class, () -> processor.processImportCheckpointed(session()));
+
+        // Then: откатившиеся строки записаны ошибками, контрольная точка — после последнего коммита
+        Map<String, Object> afterCrash = jdbcTemplate.queryForMap("SELECT * FROM import_sessions");
+        assertEquals(7L, afterCrash.get("CHECKPOINT_ROW"));
+        assertEquals(2L, afterCrash.get("ERROR_ROWS"));
+        assertEquals(4L, afterCrash.get("SUCCESS_ROWS"));
+        assertEquals(List.of(4L, 5L), errorRows());
+
+        // When: продолжение с контрольной точки
+        processor.processImportCheckpointed(session(afterCrash));
+
+        // Then: каждая строка файла записана ровно один раз — в av_data или ошибкой
+        assertEquals(List.of("crash", "row2", "row3", "row6", "row7", "row9"),
+                jdbcTemplate.queryForList("SELECT product_name FROM av_data ORDER BY product_name", String.class));
+        assertEquals(List.of(4L, 5L), errorRows());
+        Map<String, Object> completed = jdbcTemplate.queryForMap("SELECT * FROM import_sessions");
+        assertEquals(ImportStatus.COMPLETED.name(), completed.get("STATUS"));
+        assertEquals(6L, completed.get("SUCCESS_ROWS"));
+        assertEquals(2L, completed.get("ERROR_ROWS"));
+    }
+
+    @Test
+    void shouldSampleTransformationErrorsPerColumn() throws Exception {
+        // Given: по три нечисловых значения в двух колонках, в подробные записи попадает по 2 ошибки на колонку
+        template = template(field("productName", "Товар"),
+                field("competitorPrice", "Цена", FieldType.INTEGER),
+                field("competitorStock", "Остаток", FieldType.INTEGER));
+        writeCsv("Товар;Цена;Остаток",
+                "row2;a2;1", "row3;a3;1", "row4;a4;1",
+                "row5;1;b5", "row6;1;b6", "row7;1;b7",
+                "row8;1;1");
+
+        // When
+        processor.processImportCheckpointed(session());
+
+        // Then: у каждой колонки свои образцы с исходными значениями и своя сводная запись
+        assertEquals(List.of("2:a2", "3:a3", "0:null"), errors("Цена"));
+        assertEquals(List.of("5:b5", "6:b6", "0:null"), errors("Остаток"));
+        assertEquals(List.of("row8"),
+                jdbcTemplate.queryForList("SELECT product_name FROM av_data", String.class));
+        assertEquals(6L, jdbcTemplate.queryForMap("SELECT * FROM import_sessions").get("ERROR_ROWS"));
+    }
+
+    @Test
+    void shouldNumberXlsxRowsBySheetIndexAcrossBlankRows() throws Exception {
+        // Given: между строками 2 и 4 листа пустая строка, её нет в XML листа
+        template = template(field("productName", "Товар"), field("competitorPrice", "Цена", FieldType.INTEGER));
+        writeXlsx(new String[]{"Товар", "Цена"}, new String[]{"row2", "a2"}, null,
+                new String[]{"row4", "1"}, new String[]{"row5", "b5"});
+
+        // When
+        processor.processImportCheckpointed(session());
+
+        // Then: ошибки записаны с номерами строк листа
+        assertEquals(List.of("2:a2", "5:b5"), errors("Цена"));
+        assertEquals(5L, jdbcTemplate.queryForMap("SELECT * FROM import_sessions").get("CHECKPOINT_ROW"));
+    }
+
+    // Окружение
+
+    private ImportSession session() {
+        return session(null);
+    }
+
+    /**
+     * Сессия импорта; при продолжении — со счётчиками и контрольной точкой из БД
+     */
+    private ImportSession session(Map<String, Object> saved) {
+        FileOperation operation = FileOperation.builder().id(SESSION_ID).build();
+        ImportSession session = ImportSession.builder().id(SESSION_ID).template(template)
+                .fileOperation(operation).fileMetadata(metadata).build();
+        if (saved != null) {
+            session.setProcessedRows((Long) saved.get("PROCESSED_ROWS"));
+            session.setSuccessRows((Long) saved.get("SUCCESS_ROWS"));
+            session.setErrorRows((Long) saved.get("ERROR_ROWS"));
+            session.setCheckpointRow((Long) saved.get("CHECKPOINT_ROW"));
+            session.setCheckpointByteOffset((Long) saved.get("CHECKPOINT_BYTE_OFFSET"));
+        }
+        when(sessionRepository.findById(SESSION_ID)).thenReturn(Optional.of(session));
+        when(metadataRepository.findByImportSession(any())).thenReturn(Optional.of(metadata));
+        return session;
+    }
+
+    private ImportTemplate template(ImportTemplateField... fields) {
+        return ImportTemplate.builder().id(1L).name("test").entityType(EntityType.AV_DATA)
+                .fields(List.of(fields)).build();
+    }
+
+    private static ImportTemplateField field(String entityFieldName, String columnName) {
+        return field(entityFieldName, columnName, FieldType.STRING);
+    }
+
+    private static ImportTemplateField field(String entityFieldName, String columnName, FieldType fieldType) {
+        return ImportTemplateField.builder().entityFieldName(entityFieldName).columnName(columnName)
+                .fieldType(fieldType).build();
+    }
+
+    private void writeCsv(String header, String... rows) throws Exception {
+        Path file = tempDir.resolve("import.csv");
+        Files.writeString(file, header + "\n" + String.join("\n", rows) + "\n", StandardCharsets.UTF_8);
+        metadata = FileMetadata.builder().originalFilename("import.csv").fileFormat("CSV")
+                .detectedEncoding("UTF-8").detectedDelimiter(";").hasHeader(true)
+                .tempFilePath(file.toString()).build();
+    }
+
+    /**
+     * Лист XLSX из строк ячеек; null — пустая строка, которой нет в XML листа
+     */
+    private void writeXlsx(String[]... rows) throws Exception {
+        Path file = tempDir.resolve("import.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == null) {
+                    continue;
+                }
+                Row row = sheet.createRow(i);
+                for (int j = 0; j < rows[i].length; j++) {
+                    row.createCell(j).setCellValue(rows[i][j]);
+                }
+            }
+            workbook.write(out);
+        }
+        metadata = FileMetadata.builder().originalFilename("import.xlsx").fileFormat("XLSX").hasHeader(true)
+                .tempFilePath(file.toString()).build();
+    }
+
+    private ImportSession saveSession(ImportSession session) {
+        jdbcTemplate.update("MERGE INTO import_sessions KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                session.getId(), session.getStatus().name(), session.getProcessedRows(), session.getSuccessRows(),
+                session.getErrorRows(), session.getCheckpointRow(), session.getCheckpointByteOffset());
+        return session;
+    }
+
+    /**
+     * Запись строк в av_data. Строка «bad» откатывает транзакцию батча, как ошибка
+     * в транзакционном saveBatch; строка «crash» при первом запуске роняет импорт
+     */
+    private int saveRows(List<Map<String, Object>> rows) {
+        List<Object> names = rows.stream().map(row -> row.get("productName")).collect(Collectors.toList());
+        if (names.contains("bad")) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                throw new DataIntegrityViolationException("Некорректная строка");
+            });
+        }
+        if (names.contains("crash") && !crashed) {
+            crashed = true;
+            throw new Crash();
+        }
+        names.forEach(name -> jdbcTemplate.update("INSERT INTO av_data VALUES (?)", name));
+        return rows.size();
+    }
+
+    /**
+     * Ошибки колонки в виде «строка:значение», сводная запись — последней
+     */
+    private List<String> errors(String columnName) {
+        return jdbcTemplate.queryForList("SELECT row_number || ':' || COALESCE(field_value, 'null') " +
+                "FROM import_errors WHERE column_name = ? ORDER BY row_number = 0, row_number", String.class,
+                columnName);
+    }
+
+    private List<Long> errorRows() {
+        return jdbcTemplate.queryForList("SELECT row_number FROM import_errors ORDER BY row_number", Long.class);
+    }
+
+    /**
+     * Падение процесса посреди импорта
+     */
+    private static final class Crash extends Error {
+    }
+}
@@ -0,0 +1,89 @@
+package com.java.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для CompressedFiles
+ */
+class CompressedFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReadGzipAsSinglePartNamedWithoutExtension() throws Exception {
+        // Given: CSV, сжатый gzip
+        byte[] csv = ("a;b\n" + "1;2\n".repeat(1000)).getBytes(StandardCharsets.UTF_8);
+        Path file = tempDir.resolve("upload.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(csv);
+        }
+
+        // When
+        List<String> names = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        CompressedFiles.forEachPart(file, "data.csv.gz", (index, name, content) -> {
+            names.add(name);
+            contents.add(content.readAllBytes());
+            return true;
+        });
+
+        // Then
+        assertEquals(List.of("data.csv"), names);
+        assertArrayEquals(csv, contents.get(0));
+        assertEquals("data.csv", CompressedFiles.contentFilename(file, "data.csv.gz"));
+        assertEquals(csv.length, CompressedFiles.estimateContentSize(file, "data.csv.gz"));
+    }
+
+    @Test
+    void shouldReadZipEntriesInOrderSkippingServiceFiles() throws Exception {
+        // Given: архив с двумя файлами, каталогом и служебными записями macOS
+        Path file = tempDir.resolve("upload.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            putEntry(zip, "dir/", null);
+            putEntry(zip, "dir/part1.csv", "a;b\n1;2\n");
+            putEntry(zip, "__MACOSX/dir/._part1.csv", "xx");
+            putEntry(zip, "dir/.DS_Store", "xx");
+            putEntry(zip, "part2.csv", "a;b\n3;4\n");
+        }
+
+        // When: части читаются по очереди
+        List<String> parts = new ArrayList<>();
+        try (CompressedFiles.Parts reader = CompressedFiles.openParts(file, "upload.zip")) {
+            InputStream content;
+            while ((content = reader.next()) != null) {
+                parts.add(reader.index() + ":" + reader.name() + ":"
+                        + new String(content.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // Then
+        assertEquals(List.of("0:dir/part1.csv:a;b\n1;2\n", "1:part2.csv:a;b\n3;4\n"), parts);
+        assertEquals("dir/part1.csv", CompressedFiles.contentFilename(file, "upload.zip"));
+        try (InputStream first = CompressedFiles.openFirst(file, "upload.zip")) {
+            assertEquals("a;b\n1;2\n", new String(first.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        if (content != null) {
+            zip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        zip.closeEntry();
+    }
+}
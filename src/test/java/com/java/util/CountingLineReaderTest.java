@@ -0,0 +1,86 @@
+package com.java.util;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для CountingLineReader
+ */
+class CountingLineReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldResumeCsvFromRecordedBytePosition() throws Exception {
+        // Given: UTF-8 файл с кириллицей, \r\n, многострочным значением в кавычках и emoji
+        Path file = tempDir.resolve("data.csv");
+        String content = "Название;Цена\r\n"
+                + "Товар один;100\r\n"
+                + "\"Товар\nдва\";200\n"
+                + "Товар 😀 три;300\r"
+                + "Товар четыре;400\n";
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+
+        // When: читаем две записи после заголовка и запоминаем позицию
+        long position;
+        try (CountingLineReader reader = new CountingLineReader(
+                Files.newBufferedReader(file, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 0)) {
+            CSVReader csvReader = new CSVReaderBuilder(reader)
+                    .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                    .build();
+            csvReader.readNext();
+            csvReader.readNext();
+            assertArrayEquals(new String[]{"Товар\nдва", "200"}, csvReader.readNext());
+            position = reader.getBytePosition();
+        }
+
+        // Then: чтение с этой позиции продолжается со следующей записи
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.position(position);
+            CountingLineReader resumed = new CountingLineReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8, position);
+            assertEquals("Товар 😀 три;300", resumed.readLine());
+            assertEquals("Товар четыре;400", resumed.readLine());
+            assertNull(resumed.readLine());
+            assertEquals(Files.size(file), resumed.getBytePosition());
+        }
+    }
+
+    @Test
+    void shouldCountSingleByteCharsetAndRejectMultiByte() throws Exception {
+        // Given: файл в windows-1251
+        Charset cp1251 = Charset.forName("windows-1251");
+        Path file = tempDir.resolve("cp1251.csv");
+        Files.writeString(file, "Строка\r\nещё\n", cp1251);
+
+        // When
+        try (CountingLineReader reader = new CountingLineReader(
+                Files.newBufferedReader(file, cp1251), cp1251, 0)) {
+            reader.readLine();
+
+            // Then: каждый символ — один байт
+            assertTrue(reader.isPositionSupported());
+            assertEquals(8, reader.getBytePosition());
+        }
+
+        // UTF-16 — позиция по строкам не вычисляется
+        assertFalse(new CountingLineReader(new StringReader(""), StandardCharsets.UTF_16, 0)
+                .isPositionSupported());
+    }
+}
@@ -0,0 +1,90 @@
+package com.java.util;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для CsvRecordCounter
+ */
+class CsvRecordCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldCountRecordsLikeCsvReaderAcrossChunkBoundaries() throws Exception {
+        // Given: переводы строк внутри кавычек, экранированные кавычки, \r и \r\n, нет \n в конце
+        StringBuilder content = new StringBuilder("Название;Описание\r\n");
+        for (int i = 0; i < 200; i++) {
+            content.append("Товар ").append(i).append(";\"строка\nс \"\"кавычками\"\"\r\nи 😀\"");
+            content.append(i % 3 == 0 ? "\r" : "\n");
+        }
+        content.append("Последний;\"без перевода\"");
+        Path file = tempDir.resolve("data.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+
+        long expected = 0;
+        try (CSVReader reader = new CSVReaderBuilder(Files.newBufferedReader(file, StandardCharsets.UTF_8))
+                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                .build()) {
+            while (reader.readNext() != null) {
+                expected++;
+            }
+        }
+
+        // When: куски по 7 байт режут записи в любом месте, в том числе внутри кавычек и \r\n
+        try (FileChannel channel = FileChannel.open(file)) {
+            for (long chunkSize : new long[]{7, 64, channel.size()}) {
+                long counted = CsvRecordCounter.countRecords(channel, channel.size(), chunkSize,
+                        (byte) '"', (byte) CsvRecordCounter.NO_ESCAPE, () -> false);
+
+                // Then
+                assertEquals(expected, counted, "размер куска " + chunkSize);
+            }
+        }
+        assertEquals(202, expected);
+    }
+
+    @Test
+    void shouldHandleEscapeCharAndCancellation() throws Exception {
+        // Given: кавычка, экранированная обратной косой чертой, на границе кусков
+        Path file = tempDir.resolve("escaped.csv");
+        Files.writeString(file, "a;\"x\\\"\ny\"\nb;c\n", StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            for (long chunkSize = 1; chunkSize <= channel.size(); chunkSize++) {
+                // When / Then
+                assertEquals(2, CsvRecordCounter.countRecords(channel, channel.size(), chunkSize,
+                        (byte) '"', (byte) '\\', () -> false), "размер куска " + chunkSize);
+            }
+            assertEquals(-1, CsvRecordCounter.countRecords(channel, channel.size(), 4,
+                    (byte) '"', (byte) '\\', () -> true));
+        }
+        assertFalse(CsvRecordCounter.isSupported(StandardCharsets.UTF_16));
+    }
+
+    @Test
+    void shouldPairConsecutiveEscapeCharsAtChunkBoundaries() throws Exception {
+        // Given: экранированная обратная косая черта перед закрывающей кавычкой и тройная — перед кавычкой
+        Path file = tempDir.resolve("escapes.csv");
+        Files.writeString(file, "a;\"x\\\\\"\nb;\"y\\\\\\\"\nz\"\nc;d\n", StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            for (long chunkSize = 1; chunkSize <= channel.size(); chunkSize++) {
+                // When / Then
+                assertEquals(3, CsvRecordCounter.countRecords(channel, channel.size(), chunkSize,
+                        (byte) '"', (byte) '\\', () -> false), "размер куска " + chunkSize);
+            }
+        }
+    }
+}
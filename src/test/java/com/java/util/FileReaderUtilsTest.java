@@ -0,0 +1,153 @@
+package com.java.util;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для FileReaderUtils
+ */
+class FileReaderUtilsTest {
+
+    private final FileReaderUtils fileReaderUtils = new FileReaderUtils();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldStreamXlsxRowsWithImportFormatting() throws Exception {
+        // Given: заголовок, строка с пропущенной ячейкой, штрихкод и дата
+        Path file = tempDir.resolve("data.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Штрихкод");
+            header.createCell(1).setCellValue("Дата");
+            header.createCell(2).setCellValue("Цена");
+
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd.mm.yyyy"));
+            Calendar date = Calendar.getInstance();
+            date.clear();
+            date.set(2024, Calendar.MARCH, 15);
+
+            Row data = sheet.createRow(1);
+            data.createCell(0).setCellValue(4607012345678d);
+            data.createCell(1).setCellValue(date.getTime());
+            data.getCell(1).setCellStyle(dateStyle);
+            data.createCell(2).setCellValue(12.5);
+
+            Row sparse = sheet.createRow(2);
+            sparse.createCell(2).setCellValue("x");
+            workbook.write(out);
+        }
+
+        // When
+        List<String[]> rows = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        fileReaderUtils.streamExcelRows(file, (rowIndex, cells) -> {
+            indexes.add(rowIndex);
+            rows.add(cells);
+            return true;
+        });
+
+        // Then
+        assertEquals(List.of(0, 1, 2), indexes);
+        assertArrayEquals(new String[]{"Штрихкод", "Дата", "Цена"}, rows.get(0));
+        assertArrayEquals(new String[]{"4607012345678", "15.03.2024", "12.5"}, rows.get(1));
+        assertArrayEquals(new String[]{"", "", "x"}, rows.get(2));
+    }
+
+    @Test
+    void shouldStopStreamingWhenHandlerReturnsFalse() throws Exception {
+        // Given
+        Path file = tempDir.resolve("many.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 0; i < 10; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("row" + i);
+            }
+            workbook.write(out);
+        }
+
+        // When
+        List<String> values = new ArrayList<>();
+        fileReaderUtils.streamExcelRows(file, (rowIndex, cells) -> {
+            values.add(cells[0]);
+            return values.size() < 3;
+        });
+
+        // Then
+        assertEquals(List.of("row0", "row1", "row2"), values);
+    }
+
+    @Test
+    void shouldReportSheetDimensionBeforeRows() throws Exception {
+        // Given
+        Path file = tempDir.resolve("sized.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 0; i < 10; i++) {
+                sheet.createRow(i).createCell(1).setCellValue("row" + i);
+            }
+            workbook.write(out);
+        }
+
+        // When
+        List<String> events = new ArrayList<>();
+        fileReaderUtils.streamExcelRows(file, "sized.xlsx", lastRowIndex -> events.add("last:" + lastRowIndex),
+                (rowIndex, cells) -> events.add("row:" + rowIndex));
+
+        // Then: размер листа известен до первой строки
+        assertEquals("last:9", events.get(0));
+        assertEquals(11, events.size());
+        assertEquals(-1, FileReaderUtils.lastRowIndex("A1"));
+        assertEquals(1048575, FileReaderUtils.lastRowIndex("A1:XFD1048576"));
+    }
+
+    @Test
+    void shouldStreamXlsxPartsOfZipThroughTemporaryFiles() throws Exception {
+        // Given: две книги в .zip
+        Path file = tempDir.resolve("upload.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (int part = 1; part <= 2; part++) {
+                zip.putNextEntry(new ZipEntry("part" + part + ".xlsx"));
+                try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+                    Sheet sheet = workbook.createSheet();
+                    sheet.createRow(0).createCell(0).setCellValue("Название");
+                    sheet.createRow(1).createCell(0).setCellValue("Товар " + part);
+                    workbook.write(zip);
+                }
+                zip.closeEntry();
+            }
+        }
+
+        // When
+        List<String> values = new ArrayList<>();
+        fileReaderUtils.streamExcelRows(file, "upload.zip", (rowIndex, cells) -> {
+            values.add(rowIndex + ":" + cells[0]);
+            return true;
+        });
+
+        // Then: строки частей подряд, временные файлы частей удалены
+        assertEquals(List.of("0:Название", "1:Товар 1", "0:Название", "1:Товар 2"), values);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для IngestInputStream
+ */
+class IngestInputStreamTest {
+
+    @Test
+    void shouldHashDetectEncodingAndKeepHeadInSinglePass() throws Exception {
+        // Given: CSV в UTF-8 больше сохраняемого начала
+        StringBuilder csv = new StringBuilder("Название;Цена\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append("Товар номер ").append(i).append(";").append(i * 10).append('\n');
+        }
+        byte[] content = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        // When: поток копируется целиком
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        IngestInputStream ingest = new IngestInputStream(new ByteArrayInputStream(content), 1024);
+        ingest.transferTo(copy);
+        ingest.finish();
+
+        // Then
+        assertArrayEquals(content, copy.toByteArray());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                ingest.getHash());
+        assertEquals("UTF-8", ingest.getDetectedCharset());
+        assertEquals(content.length, ingest.getSize());
+        assertArrayEquals(Arrays.copyOf(content, 1024), ingest.getHead());
+        assertFalse(ingest.isHeadComplete());
+    }
+
+    @Test
+    void shouldCountSkippedBytesInHash() throws Exception {
+        // Given
+        byte[] content = new byte[20_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        IngestInputStream ingest = new IngestInputStream(new ByteArrayInputStream(content), 16);
+
+        // When: часть потока пропускается, остаток читается
+        assertEquals(10_000, ingest.skip(10_000));
+        ingest.drain();
+        assertEquals(0, ingest.skip(1));
+        ingest.finish();
+
+        // Then: хеш и размер — как у всего файла
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                ingest.getHash());
+        assertEquals(content.length, ingest.getSize());
+        assertArrayEquals(Arrays.copyOf(content, 16), ingest.getHead());
+    }
+}